@@ -1,7 +1,5 @@
 -- Galbūt kapitonams ir savininkams ir neverta atskirų lentelių daryt – kaip rėmėjams...
 -- TODO: išversti į anglų kalbą
--- TODO: reikia trigerio, užtikrinančio, kad etape plaukianti jachta yra atitinkamos grupės dalyvė
--- TODO: reikai trigerio arba išorinio rakto, užtikrinančio, kad jachta regatoje dalyvauja tik vienoje grupėje
 
 CREATE TABLE Kapitonai (
   Id INTEGER IDENTITY,
@@ -63,7 +61,7 @@ CREATE TABLE Dalyviai (
   Kapitonas INTEGER REFERENCES Kapitonai,
   Savininkas INTEGER REFERENCES Savininkai,
   Rėmėjai VARCHAR(64),
-  PRIMARY KEY(Jachta, Grupė) -- FIXME: neleisti dalyvauti toje pačioje regatoje keliose grupėse (pridėti išorinį raktą arba trigerį)
+  PRIMARY KEY(Jachta, Grupė) -- regatoje jachta dalyvauja tik vienoje grupėje (trigeris DalyviųGrupės)
   );
 CREATE TABLE Plaukimai (
   Jachta INTEGER NOT NULL REFERENCES Jachtos,
@@ -77,37 +75,63 @@ CREATE TABLE Plaukimai (
 
 CREATE INDEX Modelis ON Jachtos (Modelis);
 
--- TODO: perrašyti trigerius iš plpgsql į Java
+-- Trigeriai tikrina rescore.validation.Rule taisykles (rescore.validation.Validator)
 -- Jachta negali būti pagaminta anksčiau, negu suprojektuotas jos modelis
-CREATE FUNCTION JachtosMetai()
-  RETURNS "trigger" AS
-  '
-    BEGIN
-      IF (SELECT COALESCE(ProjektavimoMetai, 0) FROM Modeliai WHERE Id = NEW.Modelis) > COALESCE(NEW.PagaminimoMetai, 0)
-        THEN
-	  RAISE EXCEPTION ''Jachta negali būti pagaminta anksčiau, negu buvo suprojektuota.'';
-	END IF;
-	RETURN NEW;
-    END;
-  '
-  LANGUAGE 'plpgsql';
 CREATE TRIGGER JachtosMetai
-  AFTER INSERT OR UPDATE ON Jachtos
-  FOR EACH ROW EXECUTE PROCEDURE JachtosMetai();
+  AFTER INSERT, UPDATE ON Jachtos
+  FOR EACH ROW CALL "rescore.validation.ValidationTrigger";
 
 -- Modelis negali būti suprojektuotas vėliau, negu yra pagaminta kokia nors to modelio jachta
-CREATE FUNCTION ModelioMetai()
-  RETURNS "trigger" AS
-  '
-    BEGIN
-      IF (SELECT COUNT(*) FROM Jachtos WHERE Modelis = NEW.Id AND PagaminimoMetai > NEW.ProjektavimoMetai) > 0
-        THEN
-	  RAISE EXCEPTION ''Modelis negali būti suprojektuotas anksčiau, negu yra pagaminta kokia nors to modelio jachta.'';
-	END IF;
-	RETURN NEW;
-    END;
-  '
-  LANGUAGE 'plpgsql';
 CREATE TRIGGER ModelioMetai
   AFTER UPDATE ON Modeliai
-  FOR EACH ROW EXECUTE PROCEDURE ModelioMetai();
+  FOR EACH ROW CALL "rescore.validation.ValidationTrigger";
+
+-- Jachta regatoje dalyvauja tik vienoje grupėje
+CREATE TRIGGER DalyviųGrupės
+  AFTER INSERT, UPDATE ON Dalyviai
+  FOR EACH ROW CALL "rescore.validation.ValidationTrigger";
+
+-- Tas pats, kai grupė perkeliama į kitą regatą
+CREATE TRIGGER GrupėsRegata
+  AFTER UPDATE ON Grupės
+  FOR EACH ROW CALL "rescore.validation.ValidationTrigger";
+
+-- Etape plaukianti jachta yra etapo grupės dalyvė
+-- (netikrinama, kai dalyvis panaikinamas ar etapas perkeliamas į kitą grupę)
+CREATE TRIGGER PlaukimųDalyviai
+  AFTER INSERT, UPDATE ON Plaukimai
+  FOR EACH ROW CALL "rescore.validation.ValidationTrigger";
+
+-- Duomenų versija (rescore.Snapshot): rescore.VersionTrigger ją didina po
+-- kiekvieno momentinėje kopijoje esančių lentelių keitimo sakinio
+CREATE SEQUENCE DuomenųVersija;
+CREATE TRIGGER ModeliųVersija AFTER INSERT, UPDATE, DELETE ON Modeliai CALL "rescore.VersionTrigger";
+CREATE TRIGGER KapitonųVersija AFTER INSERT, UPDATE, DELETE ON Kapitonai CALL "rescore.VersionTrigger";
+CREATE TRIGGER SavininkųVersija AFTER INSERT, UPDATE, DELETE ON Savininkai CALL "rescore.VersionTrigger";
+CREATE TRIGGER JachtųVersija AFTER INSERT, UPDATE, DELETE ON Jachtos CALL "rescore.VersionTrigger";
+CREATE TRIGGER RegatųVersija AFTER INSERT, UPDATE, DELETE ON Regatos CALL "rescore.VersionTrigger";
+CREATE TRIGGER GrupiųVersija AFTER INSERT, UPDATE, DELETE ON Grupės CALL "rescore.VersionTrigger";
+CREATE TRIGGER EtapųVersija AFTER INSERT, UPDATE, DELETE ON Etapai CALL "rescore.VersionTrigger";
+CREATE TRIGGER DalyviųVersija AFTER INSERT, UPDATE, DELETE ON Dalyviai CALL "rescore.VersionTrigger";
+CREATE TRIGGER PlaukimųVersija AFTER INSERT, UPDATE, DELETE ON Plaukimai CALL "rescore.VersionTrigger";
+
+-- Pakeitimų žurnalas (rescore.ChangePoller): rescore.ChangeTrigger įrašo
+-- kiekvienos pakeistos eilutės ID
+-- (Plaukimai – etapo, Dalyviai – grupės ID). Numeris didėja patvirtinimo
+-- tvarka, nes įterpiant užrakinama visa lentelė
+CREATE TABLE Pakeitimai (
+  Numeris BIGINT IDENTITY,
+  Lentelė VARCHAR(32) NOT NULL,
+  Id INTEGER NOT NULL,
+  Veiksmas TINYINT NOT NULL, -- 1 – įterpta, 2 – pakeista, 3 – panaikinta
+  Laikas TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+  );
+CREATE TRIGGER ModeliųPakeitimai AFTER INSERT, UPDATE, DELETE ON Modeliai FOR EACH ROW CALL "rescore.ChangeTrigger";
+CREATE TRIGGER KapitonųPakeitimai AFTER INSERT, UPDATE, DELETE ON Kapitonai FOR EACH ROW CALL "rescore.ChangeTrigger";
+CREATE TRIGGER SavininkųPakeitimai AFTER INSERT, UPDATE, DELETE ON Savininkai FOR EACH ROW CALL "rescore.ChangeTrigger";
+CREATE TRIGGER JachtųPakeitimai AFTER INSERT, UPDATE, DELETE ON Jachtos FOR EACH ROW CALL "rescore.ChangeTrigger";
+CREATE TRIGGER RegatųPakeitimai AFTER INSERT, UPDATE, DELETE ON Regatos FOR EACH ROW CALL "rescore.ChangeTrigger";
+CREATE TRIGGER GrupiųPakeitimai AFTER INSERT, UPDATE, DELETE ON Grupės FOR EACH ROW CALL "rescore.ChangeTrigger";
+CREATE TRIGGER EtapųPakeitimai AFTER INSERT, UPDATE, DELETE ON Etapai FOR EACH ROW CALL "rescore.ChangeTrigger";
+CREATE TRIGGER DalyviųPakeitimai AFTER INSERT, UPDATE, DELETE ON Dalyviai FOR EACH ROW CALL "rescore.ChangeTrigger";
+CREATE TRIGGER PlaukimųPakeitimai AFTER INSERT, UPDATE, DELETE ON Plaukimai FOR EACH ROW CALL "rescore.ChangeTrigger";
@@ -1,7 +1,27 @@
-DROP TRIGGER JachtosMetai ON Jachtos;
-DROP FUNCTION JachtosMetai();
-DROP TRIGGER ModelioMetai ON Modeliai;
-DROP FUNCTION ModelioMetai();
+DROP TRIGGER JachtosMetai;
+DROP TRIGGER ModelioMetai;
+DROP TRIGGER DalyviųGrupės;
+DROP TRIGGER PlaukimųDalyviai;
+DROP TRIGGER ModeliųVersija;
+DROP TRIGGER KapitonųVersija;
+DROP TRIGGER SavininkųVersija;
+DROP TRIGGER JachtųVersija;
+DROP TRIGGER RegatųVersija;
+DROP TRIGGER GrupiųVersija;
+DROP TRIGGER EtapųVersija;
+DROP TRIGGER DalyviųVersija;
+DROP TRIGGER PlaukimųVersija;
+DROP SEQUENCE DuomenųVersija;
+DROP TRIGGER ModeliųPakeitimai;
+DROP TRIGGER KapitonųPakeitimai;
+DROP TRIGGER SavininkųPakeitimai;
+DROP TRIGGER JachtųPakeitimai;
+DROP TRIGGER RegatųPakeitimai;
+DROP TRIGGER GrupiųPakeitimai;
+DROP TRIGGER EtapųPakeitimai;
+DROP TRIGGER DalyviųPakeitimai;
+DROP TRIGGER PlaukimųPakeitimai;
+DROP TABLE Pakeitimai;
 DROP VIEW JachtųKapitonai;
 DROP VIEW PlaukimųLaikai;
 DROP TABLE Plaukimai;
@@ -0,0 +1,198 @@
+/**
+ * RollingFileAppender, kuris įvykius rašo foninėje gijoje.
+ * Žurnaluojanti gija tik įdeda įvykį į riboto dydžio žiedinį buferį
+ * (BufferSize įvykių) ir nelaukia failo įrašymo. Jei buferis pilnas:
+ * Blocking=false (numatyta) – įvykis išmetamas, o foninė gija vėliau įrašo,
+ * kiek įvykių išmesta; Blocking=true – žurnaluojanti gija laukia vietos.
+ * Vietos informacija (%F, %L ir pan.) gaunama iš dėklo, todėl brangi –
+ * renkama tik nustačius LocationInfo=true.
+ * Konfigūruojamas kaip RollingFileAppender, pvz., logger.conf:
+ * log4j.appender.file=rescore.AsyncRollingFileAppender,
+ * log4j.appender.file.BufferSize=1024, log4j.appender.file.Blocking=false.
+ * Uždarant (close() arba JVM pabaigoje) buferis išrašomas.
+ */
+package rescore;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.RollingFileAppender;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+
+public class AsyncRollingFileAppender extends RollingFileAppender {
+  private static Logger logger = Logger.getLogger(AsyncRollingFileAppender.class.getName()); // gaunamas iš anksto: LogManager.shutdown() laiko Hierarchy užraktą, kol laukia foninės gijos
+  public static final int DEFAULT_BUFFER_SIZE = 1024;
+  private final Object queueLock = new Object(); // saugo ring, first, count, dropped, closing
+  private int bufferSize = DEFAULT_BUFFER_SIZE;
+  private boolean blocking = false;
+  private boolean locationInfo = false;
+  private LoggingEvent[] ring = null; // sukuriamas activateOptions()
+  private int first = 0, count = 0;
+  private long dropped = 0; // išmesta nuo paskutinio pranešimo
+  private boolean closing = false;
+  private Thread writer = null;
+
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = Math.max(bufferSize, 1);
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  public void setBlocking(boolean blocking) {
+    this.blocking = blocking;
+  }
+
+  public boolean getBlocking() {
+    return blocking;
+  }
+
+  public void setLocationInfo(boolean locationInfo) {
+    this.locationInfo = locationInfo;
+  }
+
+  public boolean getLocationInfo() {
+    return locationInfo;
+  }
+
+/**
+ * Atidaro failą ir paleidžia foninę giją.
+ */
+  public void activateOptions() {
+    super.activateOptions();
+    synchronized (queueLock) {
+      if (writer != null)
+        return;
+      ring = new LoggingEvent[bufferSize];
+      writer = new Thread("log-writer") {
+        public void run() {
+          drain();
+        }
+      };
+      writer.setDaemon(true);
+      writer.start();
+    }
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      public void run() {
+        close();
+      }
+    });
+  }
+
+/**
+ * Patikrina lygį ir filtrus ir įdeda įvykį į buferį.
+ * Skirtingai nei AppenderSkeleton.doAppend(), nerakina paties appender'io,
+ * kurį foninė gija laiko rašydama.
+ */
+  public void doAppend(LoggingEvent event) {
+    if (closed || !isAsSevereAsThreshold(event.getLevel()))
+      return;
+    for (Filter filter = getFirstFilter(); filter != null; ) {
+      int decision = filter.decide(event);
+      if (decision == Filter.DENY)
+        return;
+      filter = decision == Filter.ACCEPT ? null : filter.getNext();
+    }
+    // žurnaluojančios gijos duomenys paimami dabar
+    event.getNDC();
+    event.getThreadName();
+    event.getMDCCopy();
+    event.getRenderedMessage();
+    event.getThrowableStrRep();
+    if (locationInfo)
+      event.getLocationInformation();
+    synchronized (queueLock) {
+      if (ring == null || closing) // neaktyvuotas arba uždaromas – rašoma iš karto
+        writeNow(event);
+      else {
+        while (count == ring.length) {
+          if (!blocking) {
+            dropped++;
+            return;
+          }
+          try {
+            queueLock.wait();
+          } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            dropped++;
+            return;
+          }
+        }
+        ring[(first + count) % ring.length] = event;
+        if (count++ == 0)
+          queueLock.notifyAll();
+      }
+    }
+  }
+
+  private void writeNow(LoggingEvent event) {
+    synchronized (this) {
+      append(event);
+    }
+  }
+
+/**
+ * Foninės gijos darbas: ima visus buferio įvykius ir juos įrašo, kol
+ * appender'is uždaromas ir buferis tuščias.
+ */
+  private void drain() {
+    LoggingEvent[] batch = new LoggingEvent[bufferSize];
+    while (true) {
+      int size;
+      long lost;
+      synchronized (queueLock) {
+        while (count == 0 && !closing && dropped == 0) {
+          try {
+            queueLock.wait();
+          } catch (InterruptedException exception) {
+            closing = true;
+          }
+        }
+        if (count == 0 && closing && dropped == 0)
+          return;
+        size = count;
+        for (int i = 0; i < size; i++) {
+          batch[i] = ring[(first + i) % ring.length];
+          ring[(first + i) % ring.length] = null;
+        }
+        first = (first + size) % ring.length;
+        count = 0;
+        lost = dropped;
+        dropped = 0;
+        queueLock.notifyAll(); // laukiantiems vietos
+      }
+      synchronized (this) {
+        for (int i = 0; i < size; i++) {
+          append(batch[i]);
+          batch[i] = null;
+        }
+        if (lost > 0)
+          append(new LoggingEvent(AsyncRollingFileAppender.class.getName(), logger, Level.WARN, "Buffer full, " + lost + " logging events dropped", null));
+      }
+    }
+  }
+
+/**
+ * Išrašo buferį, sustabdo foninę giją ir uždaro failą.
+ */
+  public void close() {
+    Thread thread;
+    synchronized (queueLock) {
+      if (closing && writer == null)
+        return;
+      closing = true;
+      queueLock.notifyAll();
+      thread = writer;
+      writer = null;
+    }
+    if (thread != null && thread != Thread.currentThread()) {
+      try {
+        thread.join();
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    super.close();
+  }
+}
@@ -6,15 +6,21 @@ package rescore;
 
 import java.util.List;
 import java.util.Vector;
-import java.sql.PreparedStatement;
-import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import org.apache.log4j.Logger;
 
 public class Captain extends NamedEntity {
   private static Logger logger = Logger.getLogger(Captain.class.getName());
-  private static PreparedStatement selectCaptain, selectAllCaptains, selectAllCaptainIds, deleteCaptain, updateName;
+  private static final String SELECT_CAPTAIN = "SELECT Id, Vardas FROM Kapitonai WHERE Id = ?";
+  static final String SELECT_ALL_CAPTAINS = "SELECT Id, Vardas FROM Kapitonai ORDER BY Id";
+  private static final String SELECT_ALL_CAPTAIN_IDS = "SELECT Id FROM Kapitonai ORDER BY Id";
+  private static final String SELECT_CAPTAIN_COUNT = "SELECT COUNT(*), MAX(Id) FROM Kapitonai";
+  static final String SELECT_MANY_CAPTAINS = "SELECT Id, Vardas FROM Kapitonai WHERE Id IN (" + idListParameters() + ")";
+  private static final String SELECT_CAPTAINS_PAGE = "SELECT Id, Vardas FROM Kapitonai WHERE Id > ? ORDER BY Id LIMIT ?";
+  private static final String INSERT_CAPTAIN = "INSERT INTO Kapitonai (Vardas) VALUES (?)";
+  private static final String UPDATE_NAME = "UPDATE Kapitonai SET Vardas = ? WHERE Id = ?";
+  private static final String DELETE_CAPTAIN = "DELETE FROM Kapitonai WHERE Id = ?";
 
 /**
  * Konstruktorius.
@@ -26,26 +32,17 @@ public class Captain extends NamedEntity {
     this.name = name;
   }
 
-/**
- * Šį konstruktorių kviečia statiniai NamedEntity klasės metodai,
- * imantys objektą iš duomenų bazės.
- *
- * @param id objekto ID
- * @param resultSet skaitymui paruošta duombazės eilutė su kitais objekto
- *                  kūrimui reikalingais laukais, kuriuos grąžina selectCaptain
- */
-  public Captain(int id, ResultSet resultSet) throws SQLException {
-    this(id, resultSet.getString(1));
-  }
+  // esybių kūrimas iš duombazės eilučių, kurias grąžina select užklausos
+  static {
+    registerRowMapper(Captain.class, new RowMapper<Captain>() {
+      public Captain map(ResultSet resultSet, int column) throws SQLException {
+        return new Captain(resultSet.getInt(column), resultSet.getString(column + 1));
+      }
 
-/**
- * Šį konstruktorių kviečia NamedEntity.getAll().
- *
- * @param resultSet skaitymui paruošta duombazės eilutė su visais objekto
- *                  kūrimui reikalingais laikaus, kuriuos grąžina selectAllCaptains
- */
-  public Captain(ResultSet resultSet) throws SQLException {
-    this(resultSet.getInt(1), resultSet.getString(2));
+      public Captain map(SnapshotRow row, int column) {
+        return new Captain(row.getInt(column), row.getString(column + 1));
+      }
+    });
   }
 
 /**
@@ -55,7 +52,7 @@ public class Captain extends NamedEntity {
  * @return kapitonas su nurodytu id
  */
   public static Captain get(int id) {
-    return (Captain)NamedEntity.get(id, selectCaptain, Captain.class);
+    return (Captain)NamedEntity.get(id, SELECT_CAPTAIN, Captain.class);
   }
 
 /**
@@ -64,32 +61,92 @@ public class Captain extends NamedEntity {
  * @return visų kapitonų sąrašas id didėjimo tvarka
  */
   public static List<Captain> getAll() {
-    return (List<Captain>)NamedEntity.getAll(selectAllCaptains, selectAllCaptainIds, Captain.class);
+    return (List<Captain>)NamedEntity.getAll(SELECT_ALL_CAPTAINS, SELECT_ALL_CAPTAIN_IDS, SELECT_MANY_CAPTAINS, SELECT_CAPTAIN_COUNT, Captain.class);
+  }
+
+/**
+ * Grąžina kapitonų sąrašą pagal jų ID.
+ *
+ * @param ids kapitonų ID
+ * @return kapitonų sąrašas ta pačia tvarka kaip ids (nerastų sąraše nėra)
+ */
+  public static List<Captain> getMany(int[] ids) {
+    return (List<Captain>)NamedEntity.getMany(ids, SELECT_MANY_CAPTAINS, Captain.class);
   }
 
 /**
- * Paruošia statinius PreparedStatement objektus.
+ * Grąžina kapitonų puslapį: pirmus limit kapitonų, kurių ID didesnis nei
+ * afterId, ID didėjimo tvarka (žr. NamedEntity.page()).
  *
- * @param connection jungtis su duombaze
+ * @param afterId paskutinio ankstesnio puslapio ID arba 0
+ * @param limit   kiek daugiausiai grąžinti
+ * @return kapitonų sąrašas arba null, jei įvyko klaida
  */
-  static void prepareStatements(Connection connection) {
-    try {
-      selectCaptain = connection.prepareStatement("SELECT Vardas FROM Kapitonai WHERE Id = ?");
-      selectAllCaptains = connection.prepareStatement("SELECT Id, Vardas FROM Kapitonai ORDER BY Id");
-      selectAllCaptainIds = connection.prepareStatement("SELECT Id FROM Kapitonai ORDER BY Id");
-      updateName = connection.prepareStatement("UPDATE Kapitonai SET Vardas = ? WHERE Id = ?");
-      deleteCaptain = connection.prepareStatement("DELETE FROM Kapitonai WHERE Id = ?");
-    } catch (SQLException exception) {
-      logger.error("prepareStatements SQL error: " + exception.getMessage());
+  public static List<Captain> page(int afterId, int limit) {
+    return (List<Captain>)NamedEntity.page(afterId, limit, SELECT_CAPTAINS_PAGE, Captain.class);
+  }
+
+/**
+ * Visų kapitonų seka ID didėjimo tvarka, užklausiama po pageSize tik
+ * iteruojant (žr. NamedEntity.iterate()).
+ *
+ * @param pageSize kiek užklausti vienu kartu
+ */
+  public static Iterable<Captain> iterate(int pageSize) {
+    return NamedEntity.iterate(pageSize, SELECT_CAPTAINS_PAGE, Captain.class);
+  }
+
+  public static Iterable<Captain> iterate() {
+    return iterate(PAGE_SIZE);
+  }
+
+/**
+ * Sukuria naują kapitoną.
+ * Įrašo į duomenų bazę.
+ *
+ * @param name vardas
+ * @return kapitonas arba null, jei įvyko klaida
+ */
+  public static Captain create(String name) {
+    int id = insertName(name, INSERT_CAPTAIN);
+    if (id == 0)
+      return null;
+    Captain captain = (Captain)intern(new Captain(id, name));
+    fireCreated(captain);
+    return captain;
+  }
+
+/**
+ * Sukuria kelis naujus kapitonus vienu paketu.
+ * Įrašo į duomenų bazę.
+ *
+ * @param names vardai
+ * @return kapitonų sąrašas ta pačia tvarka kaip names arba null, jei įvyko
+ *         klaida (tada nesukuriamas nė vienas)
+ */
+  public static List<Captain> createMany(String[] names) {
+    int[] ids = insertNames(names, "Kapitonai", INSERT_CAPTAIN);
+    if (ids == null)
+      return null;
+    Vector<Captain> list = new Vector<Captain>();
+    for (int i = 0; i < ids.length; i++) {
+      Captain captain = (Captain)intern(new Captain(ids[i], names[i]));
+      fireCreated(captain);
+      list.add(captain);
     }
+    return list;
   }
 
   public boolean setName(String name) {
-    return setName(name, updateName);
+    return setName(name, UPDATE_NAME);
+  }
+
+  protected String getUpdateStatement(int fields) {
+    return UPDATE_NAME; // keičiamas tik pavadinimas
   }
 
   public boolean remove() {
-    return remove(deleteCaptain);
+    return remove(DELETE_CAPTAIN);
   }
 
 }
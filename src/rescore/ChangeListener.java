@@ -0,0 +1,24 @@
+/**
+ * Gauna pranešimus apie pakeitimų žurnalo (lentelės Pakeitimai) įrašus,
+ * įskaitant šio proceso padarytus pakeitimus (žr. ChangePoller).
+ * Kviečiama ChangePoller gijoje, jau pritaikius įrašus podėlyje esančioms
+ * esybėms. Tas pats įrašas gali būti praneštas pakartotinai.
+ */
+package rescore;
+
+public interface ChangeListener {
+/**
+ * Pakeista lentelės eilutė.
+ *
+ * @param table  lentelės vardas didžiosiomis raidėmis (pvz., PLAUKIMAI)
+ * @param id     eilutės ID arba rakto stulpelio reikšmė (žr. ChangeTrigger)
+ * @param action ChangeTrigger.INSERTED, UPDATED arba DELETED
+ */
+  void changed(String table, int id, int action);
+
+/**
+ * Pakeitimai galėjo būti praleisti (procesas ilgai nebuvo atnaujintas) –
+ * visa, kas išvesta iš duomenų, turi būti išmesta.
+ */
+  void lost();
+}
@@ -0,0 +1,215 @@
+/**
+ * Kitų procesų (pvz., kitų rescore, dirbančių su tuo pačiu H2 serveriu)
+ * pakeitimų pritaikymas šio proceso podėliams.
+ * ChangeTrigger kiekvieną pakeistą lentelių Modeliai, Kapitonai, Savininkai
+ * ir Jachtos eilutę įrašo į žurnalą Pakeitimai; poll() perskaito naujus
+ * įrašus ir podėlyje esančias YachtClass, Captain, Owner ir Yacht esybes
+ * atnaujina vietoje (NamedEntity.refresh()), todėl klausytojai (pvz.,
+ * RatingTable, YachtSearchIndex) gauna įprastus pranešimus, o podėliai
+ * neišvalomi. Visi įrašai, taip pat kitų lentelių (pvz., Plaukimai),
+ * perduodami ChangeListener klausytojams. start() poll() kviečia
+ * periodiškai.
+ * Žurnalo numeriai didėja transakcijų patvirtinimo tvarka, nes H2 (be MVCC)
+ * įterpiant užrakina visą lentelę Pakeitimai iki transakcijos pabaigos;
+ * su MVCC=TRUE pakeitimai gali būti praleisti.
+ * Senesni nei RETENTION sekundžių įrašai panaikinami; jei procesas tiek
+ * laiko nebuvo atnaujintas, jo podėliai išvalomi.
+ */
+package rescore;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.Vector;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class ChangePoller {
+  private static Logger logger = Logger.getLogger(ChangePoller.class.getName());
+  private static final String SELECT_LAST = "SELECT MAX(Numeris) FROM Pakeitimai";
+  private static final String SELECT_CHANGES = "SELECT Numeris, Lentelė, Id, Veiksmas FROM Pakeitimai WHERE Numeris > ? ORDER BY Numeris LIMIT ?";
+  private static final String DELETE_OLD = "DELETE FROM Pakeitimai WHERE Laikas < DATEADD('SECOND', ?, CURRENT_TIMESTAMP)";
+  // ChangeTrigger įrašomi lentelių vardai, jų esybės ir užklausos; modeliai,
+  // kapitonai ir savininkai atnaujinami prieš juos naudojančias jachtas
+  private static final String[] TABLES = {"MODELIAI", "KAPITONAI", "SAVININKAI", "JACHTOS"};
+  private static final List<Class<? extends NamedEntity>> ENTITIES = Arrays.<Class<? extends NamedEntity>>asList(YachtClass.class, Captain.class, Owner.class, Yacht.class); // TABLES[i] esybių klasė
+  private static final String[] SELECT_MANY = {YachtClass.SELECT_MANY_YACHT_CLASSES, Captain.SELECT_MANY_CAPTAINS, Owner.SELECT_MANY_OWNERS, Yacht.SELECT_MANY_YACHTS};
+  public static final long DEFAULT_PERIOD = 500; // ms
+  public static final int RETENTION = 600; // kiek sekundžių laikomi žurnalo įrašai
+  private static final int PRUNE_PERIOD = 60; // kas kiek sekundžių naikinami seni įrašai
+  private static final int BATCH_SIZE = 1000; // kiek įrašų skaitoma vienu kartu
+  private static Vector<ChangeListener> listeners = new Vector<ChangeListener>();
+  // paskutinės perskaitytų įrašų dalies lentelės, ID ir veiksmai (klausytojams)
+  private static final String[] batchTables = new String[BATCH_SIZE];
+  private static final int[] batchIds = new int[BATCH_SIZE], batchActions = new int[BATCH_SIZE];
+  private static Timer timer = null;
+  private static long last = -1; // paskutinio pritaikyto įrašo numeris; -1 – dar nepradėta
+  private static long lastPoll, lastPrune; // System.nanoTime()
+
+/**
+ * Pradeda kas period milisekundžių taikyti kitų procesų pakeitimus.
+ * Pakeitimai, padaryti iki šio kvietimo, netaikomi, todėl kviesti prieš
+ * užkraunant esybes (pvz., prieš Snapshot.load()).
+ * Ankstesnis taikymas, jei buvo pradėtas, sustabdomas.
+ *
+ * @return ar pavyko (false, pvz., jei duombazėje nėra lentelės Pakeitimai)
+ */
+  public static synchronized boolean start(long period) {
+    stop();
+    if (!reset())
+      return false;
+    timer = new Timer("change-poller", true);
+    timer.schedule(new TimerTask() {
+      public void run() {
+        poll();
+      }
+    }, period, period);
+    return true;
+  }
+
+  public static synchronized void stop() {
+    if (timer != null) {
+      timer.cancel();
+      timer = null;
+    }
+  }
+
+  public static void addListener(ChangeListener listener) {
+    listeners.add(listener);
+  }
+
+  public static void removeListener(ChangeListener listener) {
+    listeners.remove(listener);
+  }
+
+/**
+ * Pritaiko naujus žurnalo įrašus podėlyje esančioms esybėms ir praneša apie
+ * juos klausytojams.
+ * Jei įvyko klaida, tie patys įrašai bus pritaikyti kitą kartą.
+ *
+ * @return ar pavyko
+ */
+  public static synchronized boolean poll() {
+    long now = System.nanoTime();
+    if (last < 0)
+      return reset();
+    if (now - lastPoll > RETENTION * 1000000000L / 2) { // įrašai galėjo būti jau panaikinti
+      if (logger.isEnabledFor(Level.WARN))
+        logger.warn("Changes not polled for " + (now - lastPoll) / 1000000000L + " s, clearing caches");
+      if (!reset())
+        return false;
+      NamedEntity.clearCaches();
+      RatingTable.invalidate();
+      for (ChangeListener listener : listeners)
+        listener.lost();
+      return true;
+    }
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement selectChanges = session.prepare(SELECT_CHANGES);
+        int rows;
+        do {
+          // kiekvienai lentelei: pakeistų eilučių ID (didėjimo tvarka) ir ar
+          // eilutė buvo sukurta
+          List<TreeMap<Integer, Boolean>> changes = new ArrayList<TreeMap<Integer, Boolean>>(TABLES.length);
+          for (int table = 0; table < TABLES.length; table++)
+            changes.add(new TreeMap<Integer, Boolean>());
+          long next = last;
+          selectChanges.setLong(1, last);
+          selectChanges.setInt(2, BATCH_SIZE);
+          ResultSet resultSet = selectChanges.executeQuery();
+          for (rows = 0; resultSet.next(); rows++) {
+            next = resultSet.getLong(1);
+            batchTables[rows] = resultSet.getString(2);
+            batchIds[rows] = resultSet.getInt(3);
+            batchActions[rows] = resultSet.getInt(4);
+            int table = indexOf(batchTables[rows]);
+            if (table < 0)
+              continue;
+            boolean created = batchActions[rows] == ChangeTrigger.INSERTED;
+            Boolean known = changes.get(table).put(batchIds[rows], created);
+            if (known != null && known)
+              changes.get(table).put(batchIds[rows], true);
+          }
+          resultSet.close();
+          for (int table = 0; table < TABLES.length; table++)
+            if (!changes.get(table).isEmpty())
+              refresh(changes.get(table), table);
+          last = next; // tik pritaikius visus
+          for (ChangeListener listener : listeners)
+            for (int row = 0; row < rows; row++)
+              listener.changed(batchTables[row], batchIds[row], batchActions[row]);
+        } while (rows == BATCH_SIZE);
+        if (now - lastPrune > PRUNE_PERIOD * 1000000000L) {
+          PreparedStatement deleteOld = session.prepare(DELETE_OLD);
+          deleteOld.setInt(1, -RETENTION);
+          deleteOld.executeUpdate();
+          lastPrune = now;
+        }
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("poll SQL error: " + exception.getMessage());
+      return false;
+    }
+    lastPoll = now;
+    return true;
+  }
+
+/**
+ * Paskutinio pritaikyto žurnalo įrašo numeris.
+ *
+ * @return numeris arba -1, jei taikymas dar nepradėtas
+ */
+  public static synchronized long getLast() {
+    return last;
+  }
+
+  // praleidžia visus esamus įrašus
+  private static boolean reset() {
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        ResultSet resultSet = session.prepare(SELECT_LAST).executeQuery();
+        resultSet.next();
+        last = resultSet.getLong(1); // NULL – 0
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("reset SQL error: " + exception.getMessage());
+      return false;
+    }
+    lastPoll = lastPrune = System.nanoTime();
+    return true;
+  }
+
+  private static int indexOf(String tableName) {
+    for (int table = 0; table < TABLES.length; table++)
+      if (TABLES[table].equals(tableName))
+        return table;
+    return -1;
+  }
+
+  private static void refresh(TreeMap<Integer, Boolean> changes, int table) throws SQLException {
+    int[] ids = new int[changes.size()];
+    boolean[] created = new boolean[ids.length];
+    int i = 0;
+    for (Map.Entry<Integer, Boolean> change : changes.entrySet()) {
+      ids[i] = change.getKey();
+      created[i++] = change.getValue();
+    }
+    NamedEntity.refresh(ids, created, SELECT_MANY[table], ENTITIES.get(table));
+  }
+}
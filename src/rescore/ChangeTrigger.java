@@ -0,0 +1,71 @@
+/**
+ * H2 trigeris (AFTER INSERT, UPDATE, DELETE ... FOR EACH ROW), įrašantis
+ * kiekvieną pakeistą eilutę į pakeitimų žurnalą – lentelę Pakeitimai
+ * (žr. sql/create.sql, ChangePoller). Įrašas daromas toje pačioje
+ * transakcijoje, todėl kiti procesai jį mato tik ją patvirtinus, o atšaukus –
+ * nemato visai.
+ * Įrašomas eilutės ID, o lentelių be ID – rakto stulpelis, pagal kurį
+ * keičiami podėliai (Plaukimai – etapas, Dalyviai – grupė); jį pakeitus,
+ * įrašomos abi reikšmės.
+ * H2 kiekvienam fire() sukuria naują jungties objektą, bet tos pačios
+ * sesijos, todėl paruošta užklausa laikoma sesijai (ne jungčiai) – taip
+ * importuojant daug eilučių užklausa neparuošiama kiekvienai eilutei iš naujo.
+ * Užklausa per savo jungtį nurodo į sesiją, todėl ji laikoma per
+ * WeakReference: kitaip WeakHashMap niekada neatleistų uždarytų sesijų. Kai
+ * šiukšlių surinkėjas užklausą išmeta, ji tiesiog paruošiama iš naujo.
+ */
+package rescore;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.h2.api.Trigger;
+import org.h2.jdbc.JdbcConnection;
+
+public class ChangeTrigger implements Trigger {
+  private static final String INSERT_CHANGE = "INSERT INTO Pakeitimai (Lentelė, Id, Veiksmas) VALUES (?, ?, ?)";
+  public static final int INSERTED = 1, UPDATED = 2, DELETED = 3; // Pakeitimai.Veiksmas
+  private String tableName;
+  private int keyColumn; // įrašomo ID stulpelis (nuo 0)
+  private final Map<Object, WeakReference<PreparedStatement>> inserts = new WeakHashMap<Object, WeakReference<PreparedStatement>>(); // [sesija]
+
+  public void init(Connection connection, String schemaName, String triggerName, String tableName, boolean before, int type) {
+    this.tableName = tableName;
+    keyColumn = tableName.equals("PLAUKIMAI") || tableName.equals("DALYVIAI") ? 1 : 0;
+  }
+
+  public void fire(Connection connection, Object[] oldRow, Object[] newRow) throws SQLException {
+    Object session = ((JdbcConnection)connection).getSession();
+    PreparedStatement insert;
+    synchronized (inserts) {
+      WeakReference<PreparedStatement> reference = inserts.get(session);
+      insert = reference == null ? null : reference.get();
+      if (insert == null) {
+        insert = connection.prepareStatement(INSERT_CHANGE);
+        inserts.put(session, new WeakReference<PreparedStatement>(insert));
+      }
+    }
+    int action = oldRow == null ? INSERTED : newRow == null ? DELETED : UPDATED;
+    int key = ((Number)(newRow != null ? newRow : oldRow)[keyColumn]).intValue();
+    insert.setString(1, tableName);
+    insert.setInt(2, key);
+    insert.setInt(3, action);
+    insert.executeUpdate();
+    if (action == UPDATED && ((Number)oldRow[keyColumn]).intValue() != key) { // pvz., plaukimas perkeltas į kitą etapą
+      insert.setInt(2, ((Number)oldRow[keyColumn]).intValue());
+      insert.executeUpdate();
+    }
+  }
+
+  public void close() {
+    synchronized (inserts) {
+      inserts.clear();
+    }
+  }
+
+  public void remove() {
+  }
+}
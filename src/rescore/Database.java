@@ -0,0 +1,271 @@
+/**
+ * Jungčių su duombaze telkinys.
+ * Kiekviena jungtis turi savo paruoštų užklausų (PreparedStatement) podėlį,
+ * todėl esybių klases galima naudoti iš kelių gijų vienu metu: gija pasiima
+ * jungtį (acquire()), naudoja jos užklausas ir ją grąžina (Session.release()).
+ */
+package rescore;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class Database {
+  private static Logger logger = Logger.getLogger(Database.class.getName());
+  public static final int DEFAULT_POOL_SIZE = 8;
+  public static final int ACQUIRE_TIMEOUT = 30; // kiek sekundžių acquire()
+                          // laukia laisvos jungties
+  private static String url, user, password;
+  private static ArrayBlockingQueue<Session> idleSessions; // laisvos jungtys
+  private static int openSessions = 0; // kiek jungčių atidaryta (laisvų ir naudojamų)
+  private static int poolSize;
+  private static int generation = 0; // didinamas uždarius telkinį; senesnių telkinių jungtys grąžinant uždaromos
+  private static ThreadLocal<Session> currentSession = new ThreadLocal<Session>(); // gijos naudojama jungtis
+
+/**
+ * Jungtis su duombaze ir jos paruoštos užklausos.
+ * Vienu metu naudojama tik vienos gijos.
+ */
+  public static class Session {
+    private final Connection connection;
+    private final int generation; // telkinys, kuriam priklauso jungtis
+    private final HashMap<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+    private final HashMap<String, PreparedStatement> keyStatements = new HashMap<String, PreparedStatement>(); // grąžinančios sugeneruotus raktus
+    private int depth = 0; // kiek kartų gija pasiėmė šią jungtį ir dar negrąžino
+
+    private Session(Connection connection, int generation) {
+      this.connection = connection;
+      this.generation = generation;
+    }
+
+/**
+ * Grąžina paruoštą užklausą.
+ * Ta pati užklausa toje pačioje jungtyje paruošiama tik kartą. Jos vykdymų
+ * trukmės kaupiamos Metrics.statement(sql), jei matavimas įjungtas
+ * (Metrics.setStatementsEnabled()).
+ *
+ * @param sql užklausos tekstas
+ * @return paruošta užklausa
+ */
+    public PreparedStatement prepare(String sql) throws SQLException {
+      PreparedStatement statement = statements.get(sql);
+      if (statement == null) {
+        statement = instrument(connection.prepareStatement(sql), sql);
+        statements.put(sql, statement);
+      }
+      return statement;
+    }
+
+/**
+ * Grąžina paruoštą užklausą, kuri grąžina sugeneruotus raktus.
+ *
+ * @param sql               užklausos tekstas
+ * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS arba
+ *                          Statement.NO_GENERATED_KEYS
+ * @return paruošta užklausa
+ */
+    public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+      if (autoGeneratedKeys == Statement.NO_GENERATED_KEYS)
+        return prepare(sql);
+      PreparedStatement statement = keyStatements.get(sql);
+      if (statement == null) {
+        statement = instrument(connection.prepareStatement(sql, autoGeneratedKeys), sql);
+        keyStatements.put(sql, statement);
+      }
+      return statement;
+    }
+
+    private static PreparedStatement instrument(PreparedStatement statement, String sql) {
+      if (!Metrics.isStatementsEnabled())
+        return statement;
+      return InstrumentedStatement.wrap(statement, Metrics.statement(sql));
+    }
+
+    public Connection getConnection() {
+      return connection;
+    }
+
+/**
+ * Didžiausias lentelės Id, matomas šios jungties transakcijoje. Kviečiama
+ * prieš įterpimo paketą (žr. batchKeys()).
+ */
+    public int maxId(String table) throws SQLException {
+      ResultSet resultSet = prepare("SELECT MAX(Id) FROM " + table).executeQuery();
+      int maxId = resultSet.next() ? resultSet.getInt(1) : 0;
+      resultSet.close();
+      return maxId;
+    }
+
+/**
+ * Įterpimo paketo sugeneruoti ID. H2 po executeBatch() grąžina tik
+ * paskutinį raktą; kiti išvedami iš jo, jei toje pačioje transakcijoje
+ * patikrinus lentelę paketo ID eina iš eilės: virš maxId matomos lygiai
+ * count eilučių, mažiausias jų Id – lastId - count + 1. Kitaip (pvz., MVCC
+ * režimu lygiagrečiai įterpiant kitai jungčiai) ID nustatyti negalima.
+ *
+ * @param table  lentelė su IDENTITY stulpeliu Id
+ * @param maxId  maxId(table) prieš paketą
+ * @param lastId paskutinis paketo sugeneruotas raktas
+ * @param count  kiek eilučių pakete
+ * @return eilučių ID paketo tvarka arba null, jei jie neina iš eilės
+ */
+    public int[] batchKeys(String table, int maxId, int lastId, int count) throws SQLException {
+      PreparedStatement select = prepare("SELECT COUNT(*), MIN(Id) FROM " + table + " WHERE Id > ?");
+      select.setInt(1, maxId);
+      ResultSet resultSet = select.executeQuery();
+      boolean consecutive = resultSet.next() && resultSet.getInt(1) == count && resultSet.getInt(2) == lastId - count + 1;
+      resultSet.close();
+      if (!consecutive)
+        return null;
+      int[] ids = new int[count];
+      for (int row = 0; row < count; row++)
+        ids[row] = lastId - (count - 1 - row);
+      return ids;
+    }
+
+/**
+ * Grąžina jungtį į telkinį.
+ * Kiekvienam acquire() turi būti iškviestas vienas release().
+ */
+    public void release() {
+      if (--depth > 0)
+        return;
+      currentSession.remove();
+      Database.release(this);
+    }
+  }
+
+/**
+ * Nustato duombazę ir patikrina, ar pavyksta prisijungti.
+ *
+ * @param url      JDBC URL
+ * @param user     prisijungimo vardas
+ * @param password slaptažodis
+ * @param size     kiek daugiausiai jungčių laikyti atidarytų
+ */
+  public static synchronized void open(String url, String user, String password, int size) throws SQLException {
+    close();
+    Database.url = url;
+    Database.user = user;
+    Database.password = password;
+    poolSize = size;
+    Session session = connect(url, user, password, generation);
+    idleSessions = new ArrayBlockingQueue<Session>(size);
+    idleSessions.add(session);
+    openSessions = 1;
+  }
+
+/**
+ * Uždaro visas laisvas jungtis. Naudojamos jungtys uždaromos jas grąžinus
+ * (ir po naujo open() į naują telkinį nepatenka).
+ */
+  public static synchronized void close() {
+    if (idleSessions == null)
+      return;
+    Session session;
+    while ((session = idleSessions.poll()) != null)
+      closeConnection(session);
+    idleSessions = null;
+    openSessions = 0;
+    generation++;
+  }
+
+/**
+ * Pasiima jungtį.
+ * Jei gija jau turi negrąžintą jungtį, grąžinama ta pati (pvz., kad visos
+ * vienos transakcijos užklausos būtų vykdomos toje pačioje jungtyje).
+ *
+ * @return jungtis, kurią baigus naudoti reikia grąžinti Session.release()
+ * @throws SQLException jei nepavyko prisijungti arba per ACQUIRE_TIMEOUT
+ *                      neatsirado laisvos jungties
+ */
+  public static Session acquire() throws SQLException {
+    Session session = currentSession.get();
+    if (session == null) {
+      ArrayBlockingQueue<Session> idle;
+      boolean create = false;
+      String url = null, user = null, password = null;
+      int poolGeneration;
+      synchronized (Database.class) {
+        idle = idleSessions;
+        if (idle == null)
+          throw new SQLException("Database is not open");
+        poolGeneration = generation;
+        session = idle.poll();
+        if (session == null && openSessions < poolSize) {
+          openSessions++;
+          create = true;
+          url = Database.url;
+          user = Database.user;
+          password = Database.password;
+        }
+      }
+      if (create) {
+        try {
+          session = connect(url, user, password, poolGeneration);
+        } catch (SQLException exception) {
+          synchronized (Database.class) {
+            if (generation == poolGeneration)
+              openSessions--;
+          }
+          throw exception;
+        }
+      } else if (session == null) {
+        try {
+          session = idle.poll(ACQUIRE_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+        }
+        if (session == null)
+          throw new SQLException("No free database connection");
+      }
+      currentSession.set(session);
+    }
+    session.depth++;
+    return session;
+  }
+
+  private static void release(Session session) {
+    boolean closed = true;
+    try {
+      closed = session.connection.isClosed();
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("release SQL error: " + exception.getMessage());
+    }
+    synchronized (Database.class) {
+      if (session.generation == generation) { // kitaip telkinys, kuriam ji skaičiuota, jau uždarytas
+        if (!closed && idleSessions != null && idleSessions.offer(session))
+          return;
+        openSessions--;
+      }
+    }
+    closeConnection(session);
+  }
+
+  private static Session connect(String url, String user, String password, int generation) throws SQLException {
+    try {
+      Class.forName("org.h2.Driver");
+    } catch (ClassNotFoundException exception) {
+      throw new SQLException("H2 driver not found: " + exception.getMessage());
+    }
+    return new Session(DriverManager.getConnection(url, user, password), generation);
+  }
+
+  private static void closeConnection(Session session) {
+    try {
+      session.connection.close();
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("close SQL error: " + exception.getMessage());
+    }
+  }
+}
@@ -0,0 +1,284 @@
+/**
+ * Ribotos talpos iš duombazės užkrautų esybių podėlis.
+ * Raktas – esybės ID (int), todėl ID nėra „įpakuojami“ į Integer objektus.
+ * Esybės laikomos atvirojo adresavimo (tiesinio zondavimo) maišos lentelėje;
+ * kai podėlis pilnas, išmetama seniausiai naudota (LRU) esybė.
+ * Podėlis gali būti pažymėtas pilnu (markComplete()) – tada jame yra visos
+ * lentelės eilutės; žymė nuimama išmetus esybę ar išvalius podėlį.
+ */
+package rescore;
+
+public class EntityCache {
+  private static final int EMPTY = -1;
+  private final int capacity;
+  private final int mask;
+  private final int[] table; // mazgų indeksai arba EMPTY
+  // mazgai: esybės ID, pati esybė ir dvipusis LRU sąrašas
+  private final int[] keys, previous, next;
+  private final NamedEntity[] values;
+  private int head = EMPTY; // seniausiai naudotas mazgas
+  private int tail = EMPTY; // paskutinis naudotas mazgas
+  private int freeNode = EMPTY; // atlaisvintų mazgų sąrašas (per next)
+  private int usedNodes = 0; // kiek mazgų buvo kada nors panaudota
+  private int size = 0;
+  private long hits = 0, misses = 0, evictions = 0;
+  private int generation = 0; // didinamas išmetus esybę ar išvalius podėlį
+  private boolean complete = false; // podėlyje visos lentelės eilutės
+
+/**
+ * Konstruktorius.
+ *
+ * @param capacity kiek daugiausiai esybių gali būti podėlyje
+ */
+  public EntityCache(int capacity) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+    this.capacity = capacity;
+    int tableSize = Integer.highestOneBit(capacity) << 2; // užpildymas ne daugiau 50 %
+    mask = tableSize - 1;
+    table = new int[tableSize];
+    java.util.Arrays.fill(table, EMPTY);
+    keys = new int[capacity];
+    previous = new int[capacity];
+    next = new int[capacity];
+    values = new NamedEntity[capacity];
+  }
+
+  private int slotOf(int id) {
+    int hash = id * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+/**
+ * Randa lentelės vietą, kurioje yra esybės su duotu ID mazgas.
+ *
+ * @return vietos numeris arba EMPTY, jei tokios esybės podėlyje nėra
+ */
+  private int find(int id) {
+    for (int slot = slotOf(id); table[slot] != EMPTY; slot = (slot + 1) & mask)
+      if (keys[table[slot]] == id)
+        return slot;
+    return EMPTY;
+  }
+
+/**
+ * Grąžina esybę pagal ID ir pažymi ją kaip paskutinę naudotą.
+ *
+ * @param id esybės ID
+ * @return esybė arba null, jei jos podėlyje nėra
+ */
+  public synchronized NamedEntity get(int id) {
+    int slot = find(id);
+    if (slot == EMPTY) {
+      misses++;
+      return null;
+    }
+    hits++;
+    int node = table[slot];
+    moveToTail(node);
+    return values[node];
+  }
+
+/**
+ * Ar esybė su duotu ID yra podėlyje.
+ * Nekeičia nei LRU tvarkos, nei skaitiklių.
+ */
+  public synchronized boolean contains(int id) {
+    return find(id) != EMPTY;
+  }
+
+/**
+ * Įdeda esybę į podėlį, jei jame dar nėra esybės su tuo pačiu ID.
+ * Jei podėlis pilnas, išmeta seniausiai naudotą esybę.
+ *
+ * @param namedEntity esybė
+ * @return podėlyje jau buvusi esybė su tuo pačiu ID arba namedEntity
+ */
+  synchronized NamedEntity putIfAbsent(NamedEntity namedEntity) {
+    int id = namedEntity.getId();
+    int slot = find(id);
+    if (slot != EMPTY) {
+      int node = table[slot];
+      moveToTail(node);
+      return values[node];
+    }
+    if (size == capacity) {
+      removeSlot(find(keys[head]));
+      evictions++;
+      generation++;
+      complete = false;
+    }
+    int node;
+    if (freeNode != EMPTY) {
+      node = freeNode;
+      freeNode = next[node];
+    } else {
+      node = usedNodes++;
+    }
+    keys[node] = id;
+    values[node] = namedEntity;
+    linkTail(node);
+    for (slot = slotOf(id); table[slot] != EMPTY; slot = (slot + 1) & mask)
+      ;
+    table[slot] = node;
+    size++;
+    return namedEntity;
+  }
+
+/**
+ * Pašalina esybę iš podėlio.
+ *
+ * @param id esybės ID
+ * @return true, jei esybė buvo podėlyje
+ */
+  synchronized boolean remove(int id) {
+    int slot = find(id);
+    if (slot == EMPTY)
+      return false;
+    removeSlot(slot);
+    return true;
+  }
+
+/**
+ * Išvalo podėlį. Skaitikliai nekeičiami.
+ */
+  public synchronized void clear() {
+    java.util.Arrays.fill(table, EMPTY);
+    java.util.Arrays.fill(values, null);
+    head = tail = freeNode = EMPTY;
+    usedNodes = size = 0;
+    generation++;
+    complete = false;
+  }
+
+/**
+ * Grąžina kartą, kuri keičiasi išmetus esybę ar išvalius podėlį
+ * (žr. markComplete()).
+ */
+  synchronized int getGeneration() {
+    return generation;
+  }
+
+/**
+ * Pažymi, kad podėlyje yra visos lentelės eilutės, jei nuo generation
+ * gavimo niekas nebuvo išmesta ir podėlyje yra lygiai rows esybių.
+ * Kviečiama gavus visas lentelės eilutes (jos visos įdėtos į podėlį).
+ *
+ * @param generation getGeneration() reikšmė prieš užklausiant eilučių
+ * @param rows       kiek eilučių gauta
+ */
+  synchronized void markComplete(int generation, int rows) {
+    complete = generation == this.generation && size == rows;
+  }
+
+/**
+ * Ar podėlis pažymėtas pilnu (žr. markComplete()).
+ */
+  public synchronized boolean isComplete() {
+    return complete;
+  }
+
+/**
+ * Grąžina visas esybes ID didėjimo tvarka, jei podėlis pažymėtas pilnu.
+ * Nekeičia nei LRU tvarkos, nei skaitiklių.
+ *
+ * @return esybės arba null, jei podėlis nepažymėtas pilnu
+ */
+  synchronized NamedEntity[] completeValues() {
+    if (!complete)
+      return null;
+    long[] order = new long[size]; // ID ir mazgo numeris viename skaičiuje
+    int count = 0;
+    for (int node = head; node != EMPTY; node = next[node])
+      order[count++] = (long)keys[node] << 32 | node;
+    java.util.Arrays.sort(order);
+    NamedEntity[] entities = new NamedEntity[count];
+    for (int i = 0; i < count; i++)
+      entities[i] = values[(int)order[i]];
+    return entities;
+  }
+
+/**
+ * Perkelia esybes į kitą podėlį, seniausiai naudotas – pirmiau.
+ */
+  synchronized void copyTo(EntityCache cache) {
+    for (int node = head; node != EMPTY; node = next[node])
+      cache.putIfAbsent(values[node]);
+  }
+
+  private void removeSlot(int slot) {
+    int node = table[slot];
+    unlink(node);
+    values[node] = null;
+    next[node] = freeNode;
+    freeNode = node;
+    size--;
+    // atgalinis postūmis, kad nenutrūktų zondavimo sekos
+    int hole = slot;
+    for (int i = (slot + 1) & mask; table[i] != EMPTY; i = (i + 1) & mask) {
+      int home = slotOf(keys[table[i]]);
+      if (((i - home) & mask) >= ((i - hole) & mask)) {
+        table[hole] = table[i];
+        hole = i;
+      }
+    }
+    table[hole] = EMPTY;
+  }
+
+  private void unlink(int node) {
+    if (previous[node] == EMPTY)
+      head = next[node];
+    else
+      next[previous[node]] = next[node];
+    if (next[node] == EMPTY)
+      tail = previous[node];
+    else
+      previous[next[node]] = previous[node];
+  }
+
+  private void linkTail(int node) {
+    previous[node] = tail;
+    next[node] = EMPTY;
+    if (tail == EMPTY)
+      head = node;
+    else
+      next[tail] = node;
+    tail = node;
+  }
+
+  private void moveToTail(int node) {
+    if (node != tail) {
+      unlink(node);
+      linkTail(node);
+    }
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+/**
+ * Kiek kartų get() rado esybę podėlyje.
+ */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+/**
+ * Kiek kartų get() nerado esybės podėlyje.
+ */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+/**
+ * Kiek esybių išmesta dėl ribotos talpos.
+ */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+}
@@ -0,0 +1,23 @@
+/**
+ * Gauna pranešimus apie esybių sukūrimą, pakeitimą ir panaikinimą
+ * (pvz., kad atmintyje laikomi indeksai atitiktų esybes).
+ * Kviečiama gijoje, kuri esybę pakeitė.
+ */
+package rescore;
+
+public interface EntityListener {
+/**
+ * Esybė sukurta (create()).
+ */
+  void created(NamedEntity namedEntity);
+
+/**
+ * Pakeistas bent vienas esybės laukas (setteris).
+ */
+  void changed(NamedEntity namedEntity);
+
+/**
+ * Esybė panaikinta (remove()); kviečiama, kol getId() dar grąžina jos ID.
+ */
+  void removed(NamedEntity namedEntity);
+}
@@ -0,0 +1,73 @@
+/**
+ * Esybių klasės statistika: podėlio (EntityCache) ir getAll() būdų
+ * (GetAllPlanner) skaitikliai bei iš duombazės eilučių sukurtų esybių
+ * skaičius. Podėlis imamas kaskart iš naujo, nes setCacheCapacity() jį
+ * pakeičia.
+ */
+package rescore;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EntityMetrics implements EntityMetricsMBean {
+  private final Class<? extends NamedEntity> subClass;
+  private final AtomicLong rowsMaterialized = new AtomicLong();
+
+  EntityMetrics(Class<? extends NamedEntity> subClass) {
+    this.subClass = subClass;
+  }
+
+  void materialized() {
+    rowsMaterialized.incrementAndGet();
+  }
+
+  public String getName() {
+    return subClass.getSimpleName();
+  }
+
+  public int getCacheSize() {
+    return NamedEntity.getCache(subClass).size();
+  }
+
+  public int getCacheCapacity() {
+    return NamedEntity.getCache(subClass).getCapacity();
+  }
+
+  public long getCacheHits() {
+    return NamedEntity.getCache(subClass).getHits();
+  }
+
+  public long getCacheMisses() {
+    return NamedEntity.getCache(subClass).getMisses();
+  }
+
+  public long getCacheEvictions() {
+    return NamedEntity.getCache(subClass).getEvictions();
+  }
+
+  public boolean isCacheComplete() {
+    return NamedEntity.getCache(subClass).isComplete();
+  }
+
+/**
+ * Kiek esybių sukurta iš duombazės eilučių (podėlio nepataikymai).
+ */
+  public long getRowsMaterialized() {
+    return rowsMaterialized.get();
+  }
+
+  public long getGetAllScans() {
+    return NamedEntity.getPlanner(subClass).getScans();
+  }
+
+  public long getGetAllFetches() {
+    return NamedEntity.getPlanner(subClass).getFetches();
+  }
+
+  public long getGetAllCacheHits() {
+    return NamedEntity.getPlanner(subClass).getCacheHits();
+  }
+
+  public long getGetAllStaleCaches() {
+    return NamedEntity.getPlanner(subClass).getStaleCaches();
+  }
+}
@@ -0,0 +1,28 @@
+/**
+ * Esybių klasės statistika JMX (žr. EntityMetrics).
+ */
+package rescore;
+
+public interface EntityMetricsMBean {
+  int getCacheSize();
+
+  int getCacheCapacity();
+
+  long getCacheHits();
+
+  long getCacheMisses();
+
+  long getCacheEvictions();
+
+  boolean isCacheComplete();
+
+  long getRowsMaterialized();
+
+  long getGetAllScans();
+
+  long getGetAllFetches();
+
+  long getGetAllCacheHits();
+
+  long getGetAllStaleCaches();
+}
@@ -0,0 +1,131 @@
+/**
+ * Jachtos dalyvavimas regatos grupėje.
+ * Eilutės saugomos duombazės lentelėje Dalyviai; raktas – jachtos ir grupės
+ * ID pora, todėl tai ne NamedEntity (objektai nelaikomi podėlyje, o
+ * gaunami tik per Group.getEntries() ar Regatta.get(id, true)).
+ * Kapitonas ir savininkas – regatoje, jei skiriasi nuo jachtos.
+ */
+package rescore;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class Entry {
+  private static Logger logger = Logger.getLogger(Entry.class.getName());
+  private static final String SELECT_GROUP_ENTRIES = "SELECT d.Jachta, d.Grupė, d.Rėmėjai, k.Id, k.Vardas, s.Id, s.Vardas FROM Dalyviai d LEFT JOIN Kapitonai k ON k.Id = d.Kapitonas LEFT JOIN Savininkai s ON s.Id = d.Savininkas WHERE d.Grupė = ? ORDER BY d.Jachta";
+  static final String SELECT_ALL_ENTRIES = "SELECT d.Jachta, d.Grupė, d.Rėmėjai, k.Id, k.Vardas, s.Id, s.Vardas FROM Dalyviai d LEFT JOIN Kapitonai k ON k.Id = d.Kapitonas LEFT JOIN Savininkai s ON s.Id = d.Savininkas ORDER BY d.Grupė, d.Jachta";
+  static final String SELECT_REGATTA_ENTRIES = "SELECT d.Jachta, d.Grupė, d.Rėmėjai, k.Id, k.Vardas, s.Id, s.Vardas FROM Dalyviai d JOIN Grupės g ON g.Id = d.Grupė LEFT JOIN Kapitonai k ON k.Id = d.Kapitonas LEFT JOIN Savininkai s ON s.Id = d.Savininkas WHERE g.Regata = ? ORDER BY d.Grupė, d.Jachta";
+  private final int yachtId, groupId;
+  private Yacht yacht;
+  private final Captain captain;
+  private final Owner owner;
+  private final String sponsors;
+
+  private Entry(int yachtId, int groupId, Captain captain, Owner owner, String sponsors) {
+    this.yachtId = yachtId;
+    this.groupId = groupId;
+    this.captain = captain;
+    this.owner = owner;
+    this.sponsors = sponsors;
+  }
+
+/**
+ * Sukuria dalyvį iš SELECT_..._ENTRIES grąžintos eilutės.
+ *
+ * @param yachts jau užklaustos jachtos pagal ID (kitų jachtų užklausia
+ *               getYacht()) arba null
+ */
+  static Entry read(ResultSet resultSet, HashMap<Integer, Yacht> yachts) throws SQLException {
+    Entry entry = new Entry(resultSet.getInt(1), resultSet.getInt(2), (Captain)NamedEntity.load(resultSet, 4, Captain.class), (Owner)NamedEntity.load(resultSet, 6, Owner.class), resultSet.getString(3));
+    if (yachts != null)
+      entry.yacht = yachts.get(entry.yachtId);
+    return entry;
+  }
+
+/**
+ * Sukuria dalyvį iš momentinės kopijos eilutės (žr. Snapshot; jachtos jau
+ * podėlyje).
+ */
+  static Entry read(SnapshotRow row) {
+    return new Entry(row.getInt(1), row.getInt(2), (Captain)NamedEntity.load(row, 4, Captain.class), (Owner)NamedEntity.load(row, 6, Owner.class), row.getString(3));
+  }
+
+/**
+ * Užklausia grupės dalyvių (žr. Group.getEntries()).
+ *
+ * @return dalyviai jachtų ID didėjimo tvarka arba null, jei įvyko klaida
+ */
+  static List<Entry> getByGroup(int groupId) {
+    Vector<Entry> list = new Vector<Entry>();
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement selectEntries = session.prepare(SELECT_GROUP_ENTRIES);
+        selectEntries.setInt(1, groupId);
+        ResultSet resultSet = selectEntries.executeQuery();
+        while (resultSet.next())
+          list.add(read(resultSet, null));
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("getByGroup SQL error: " + exception.getMessage());
+      list = null;
+    }
+    return list;
+  }
+
+  public int getYachtId() {
+    return yachtId;
+  }
+
+  public Yacht getYacht() {
+    if (yacht == null)
+      yacht = Yacht.get(yachtId);
+    return yacht;
+  }
+
+  public int getGroupId() {
+    return groupId;
+  }
+
+/**
+ * Kapitonas regatoje.
+ *
+ * @return kapitonas arba null, jei nenurodytas
+ */
+  public Captain getCaptain() {
+    return captain;
+  }
+
+/**
+ * Savininkas regatoje.
+ *
+ * @return savininkas arba null, jei nenurodytas
+ */
+  public Owner getOwner() {
+    return owner;
+  }
+
+  public String getSponsors() {
+    return sponsors;
+  }
+
+  public boolean equals(Object object) {
+    if (!(object instanceof Entry))
+      return false;
+    Entry entry = (Entry)object;
+    return entry.yachtId == yachtId && entry.groupId == groupId;
+  }
+
+  public int hashCode() {
+    return yachtId * 31 + groupId;
+  }
+}
@@ -0,0 +1,156 @@
+/**
+ * Vienos esybių klasės NamedEntity.getAll() būdo parinkimas pagal išmatuotas
+ * sąnaudas.
+ * Būdai: SCAN – visų lentelės eilučių užklausa; FETCH – visų ID užklausa ir
+ * podėlyje trūkstamų esybių gavimas po NamedEntity.ID_LIST_SIZE; CACHED –
+ * esybės iš pilno podėlio (tik eilučių skaičiaus ir didžiausio ID patikra).
+ * CACHED parenkamas visada, kai podėlis pilnas; kitaip – pigesnis iš SCAN
+ * ir FETCH pagal slenkančius vidurkius: eilutės skaitymo SCAN metu, ID
+ * skaitymo ir vienos trūkstamų esybių užklausos trukmes. Kol FETCH
+ * nematuotas, jo sąnaudos vertinamos pagal SCAN: ID – pusė eilutės, trūkstama
+ * esybė – eilutė (FETCH parenkamas, kai podėlyje daugiau nei pusė lentelės).
+ * Jei lentelė netelpa į podėlį, laikoma, kad trūksta visų esybių: nuosekliai
+ * skaitant daugiau ID nei telpa, LRU podėlis išmeta esybes prieš jų
+ * prireikiant.
+ * Parinkimų skaitikliai ir vidurkiai pasiekiami statistikai.
+ */
+package rescore;
+
+public class GetAllPlanner {
+  public static final int SCAN = 0;
+  public static final int FETCH = 1;
+  public static final int CACHED = 2;
+  static final double WEIGHT = 0.25; // naujo matavimo svoris vidurkyje
+  private int tableSize = -1; // eilučių skaičius paskutinį kartą (-1 – nežinomas)
+  private double scanRowNanos = Double.NaN; // NaN – dar nematuota
+  private double idRowNanos = Double.NaN;
+  private double batchNanos = Double.NaN;
+  private long scans = 0, fetches = 0, cacheHits = 0, staleCaches = 0;
+
+/**
+ * Parenka SCAN arba FETCH (podėlis ne pilnas) ir jį įskaičiuoja.
+ *
+ * @param cached   kiek esybių yra podėlyje
+ * @param capacity podėlio talpa
+ */
+  synchronized int choose(int cached, int capacity) {
+    int choice = SCAN;
+    if (tableSize > 0 && !Double.isNaN(scanRowNanos)) {
+      double missing = tableSize > capacity ? tableSize : Math.max(0, tableSize - cached);
+      double idRow = Double.isNaN(idRowNanos) ? scanRowNanos / 2 : idRowNanos;
+      double batch = Double.isNaN(batchNanos) ? scanRowNanos * NamedEntity.ID_LIST_SIZE : batchNanos;
+      double fetchCost = tableSize * idRow + Math.ceil(missing / NamedEntity.ID_LIST_SIZE) * batch;
+      if (fetchCost < tableSize * scanRowNanos)
+        choice = FETCH;
+    }
+    if (choice == SCAN)
+      scans++;
+    else
+      fetches++;
+    return choice;
+  }
+
+/**
+ * Užregistruoja SCAN: gauta rows eilučių per nanos nanosekundžių.
+ */
+  synchronized void scanned(int rows, long nanos) {
+    tableSize = rows;
+    if (rows > 0)
+      scanRowNanos = average(scanRowNanos, nanos / (double)rows);
+  }
+
+/**
+ * Užregistruoja FETCH ID užklausą: gauta rows ID per nanos nanosekundžių.
+ */
+  synchronized void listed(int rows, long nanos) {
+    tableSize = rows;
+    if (rows > 0)
+      idRowNanos = average(idRowNanos, nanos / (double)rows);
+  }
+
+/**
+ * Užregistruoja FETCH trūkstamų esybių gavimą: missing esybių per nanos
+ * nanosekundžių.
+ */
+  synchronized void fetched(int missing, long nanos) {
+    if (missing > 0) {
+      int batches = (missing + NamedEntity.ID_LIST_SIZE - 1) / NamedEntity.ID_LIST_SIZE;
+      batchNanos = average(batchNanos, nanos / (double)batches);
+    }
+  }
+
+/**
+ * Užregistruoja CACHED: pilno podėlio esybės atitiko lentelę.
+ */
+  synchronized void cacheHit(int rows) {
+    tableSize = rows;
+    cacheHits++;
+  }
+
+/**
+ * Užregistruoja, kad pilnas podėlis neatitiko lentelės (ji pakeista ne per
+ * esybes) ir esybės bus gautos SCAN arba FETCH.
+ */
+  synchronized void staleCache(int rows) {
+    tableSize = rows;
+    staleCaches++;
+  }
+
+  private static double average(double average, double value) {
+    return Double.isNaN(average) ? value : average + WEIGHT * (value - average);
+  }
+
+/**
+ * Kiek eilučių buvo lentelėje paskutinį kartą (-1, jei nežinoma).
+ */
+  public synchronized int getTableSize() {
+    return tableSize;
+  }
+
+  public synchronized long getScans() {
+    return scans;
+  }
+
+  public synchronized long getFetches() {
+    return fetches;
+  }
+
+  public synchronized long getCacheHits() {
+    return cacheHits;
+  }
+
+/**
+ * Kiek kartų pilnas podėlis neatitiko lentelės.
+ */
+  public synchronized long getStaleCaches() {
+    return staleCaches;
+  }
+
+/**
+ * Vidutinė vienos eilutės SCAN trukmė nanosekundėmis (NaN – nematuota).
+ */
+  public synchronized double getScanRowNanos() {
+    return scanRowNanos;
+  }
+
+/**
+ * Vidutinė vieno ID skaitymo FETCH metu trukmė nanosekundėmis (NaN –
+ * nematuota).
+ */
+  public synchronized double getIdRowNanos() {
+    return idRowNanos;
+  }
+
+/**
+ * Vidutinė vienos trūkstamų esybių užklausos trukmė nanosekundėmis (NaN –
+ * nematuota).
+ */
+  public synchronized double getBatchNanos() {
+    return batchNanos;
+  }
+
+  public synchronized String toString() {
+    return "scans=" + scans + " fetches=" + fetches + " cacheHits=" + cacheHits + " staleCaches=" + staleCaches + " tableSize=" + tableSize
+        + " scanRowNanos=" + Math.round(scanRowNanos) + " idRowNanos=" + Math.round(idRowNanos) + " batchNanos=" + Math.round(batchNanos);
+  }
+}
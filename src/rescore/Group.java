@@ -0,0 +1,218 @@
+/**
+ * Regatos grupė (pvz., jachtų klasė ar įskaita).
+ * Objektai saugomi duombazės lentelėje Grupės; grupės dalyviai – Dalyviai
+ * (žr. Entry). Visą regatą kartu su grupėmis žr. Regatta.get(id, true).
+ */
+package rescore;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class Group extends NamedEntity {
+  private static Logger logger = Logger.getLogger(Group.class.getName());
+  private static final String SELECT_GROUP = "SELECT Id, Regata, Pavadinimas, Pastabos FROM Grupės WHERE Id = ?";
+  static final String SELECT_ALL_GROUPS = "SELECT Id, Regata, Pavadinimas, Pastabos FROM Grupės ORDER BY Id";
+  static final String SELECT_REGATTA_GROUPS = "SELECT Id, Regata, Pavadinimas, Pastabos FROM Grupės WHERE Regata = ? ORDER BY Id";
+  private static final String INSERT_GROUP = "INSERT INTO Grupės (Regata, Pavadinimas) VALUES (?, ?)";
+  private static final String UPDATE_NAME = "UPDATE Grupės SET Pavadinimas = ? WHERE Id = ?";
+  private static final String DELETE_GROUP = "DELETE FROM Grupės WHERE Id = ?";
+  private final int regattaId;
+  private Regatta regatta;
+  private String notes;
+  private List<Stage> stages; // null – dar neužklausta
+  private List<Entry> entries; // null – dar neužklausta
+
+/**
+ * Konstruktorius.
+ * Naudojamas tik šioje klasėje. Norint gauti grupės objektą iš kitur, naudoti
+ * get() arba Regatta.getGroups().
+ */
+  private Group(int id, int regattaId, String name, String notes) {
+    super(id);
+    this.regattaId = regattaId;
+    this.name = name;
+    this.notes = notes;
+  }
+
+  // esybių kūrimas iš duombazės eilučių, kurias grąžina select užklausos
+  static {
+    registerRowMapper(Group.class, new RowMapper<Group>() {
+      public Group map(ResultSet resultSet, int column) throws SQLException {
+        return new Group(resultSet.getInt(column), resultSet.getInt(column + 1), resultSet.getString(column + 2), resultSet.getString(column + 3));
+      }
+
+      public Group map(SnapshotRow row, int column) {
+        return new Group(row.getInt(column), row.getInt(column + 1), row.getString(column + 2), row.getString(column + 3));
+      }
+    });
+  }
+
+/**
+ * Grąžina grupę pagal jos ID.
+ *
+ * @param id grupės ID
+ * @return grupė arba null, jei tokios grupės nėra
+ */
+  public static Group get(int id) {
+    return (Group)NamedEntity.get(id, SELECT_GROUP, Group.class);
+  }
+
+/**
+ * Užklausia regatos grupių (žr. Regatta.getGroups()).
+ *
+ * @return grupės ID didėjimo tvarka arba null, jei įvyko klaida
+ */
+  static List<Group> getByRegatta(Regatta regatta) {
+    Vector<Group> list = new Vector<Group>();
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement selectGroups = session.prepare(SELECT_REGATTA_GROUPS);
+        selectGroups.setInt(1, regatta.getId());
+        ResultSet resultSet = selectGroups.executeQuery();
+        while (resultSet.next()) {
+          Group group = (Group)load(resultSet, 1, Group.class);
+          group.regatta = regatta;
+          list.add(group);
+        }
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("getByRegatta SQL error: " + exception.getMessage());
+      list = null;
+    }
+    return list;
+  }
+
+/**
+ * Sukuria naują regatos grupę.
+ * Įrašo į duomenų bazę.
+ *
+ * @param regatta regata
+ * @param name    pavadinimas (gali būti null)
+ * @return grupė arba null, jei įvyko klaida
+ */
+  public static Group create(Regatta regatta, String name) {
+    Group group = null;
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement insertGroup = session.prepare(INSERT_GROUP, Statement.RETURN_GENERATED_KEYS);
+        insertGroup.setInt(1, regatta.getId());
+        if (name == null)
+          insertGroup.setNull(2, java.sql.Types.VARCHAR);
+        else
+          insertGroup.setString(2, name);
+        if (insertGroup.executeUpdate() == 1) {
+          group = (Group)intern(new Group(getGeneratedKey(insertGroup), regatta.getId(), name, null));
+          group.setGraph(regatta, new Vector<Stage>(), new Vector<Entry>());
+          regatta.groupsChanged();
+          fireCreated(group);
+        }
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("create SQL error: " + exception.getMessage());
+    }
+    return group;
+  }
+
+/**
+ * Nustato Regatta.get(id, true) užklaustus grupės sąrašus.
+ */
+  void setGraph(Regatta regatta, List<Stage> stages, List<Entry> entries) {
+    this.regatta = regatta;
+    for (Stage stage : stages)
+      stage.setGroup(this);
+    this.stages = Collections.unmodifiableList(stages);
+    this.entries = Collections.unmodifiableList(entries);
+  }
+
+/**
+ * Išmeta užklaustų etapų sąrašą (sukūrus ar panaikinus etapą).
+ */
+  void stagesChanged() {
+    stages = null;
+  }
+
+  public int getRegattaId() {
+    return regattaId;
+  }
+
+  public Regatta getRegatta() {
+    if (regatta == null)
+      regatta = Regatta.get(regattaId);
+    return regatta;
+  }
+
+  public String getNotes() {
+    return notes;
+  }
+
+/**
+ * Grupės etapai ID didėjimo tvarka.
+ * Jei dar neužklausti, užklausia jų viena užklausa.
+ *
+ * @return etapų sąrašas (nekeičiamas) arba null, jei įvyko klaida
+ */
+  public List<Stage> getStages() {
+    if (stages == null) {
+      List<Stage> list = Stage.getByGroup(this);
+      if (list != null)
+        stages = Collections.unmodifiableList(list);
+    }
+    return stages;
+  }
+
+/**
+ * Grupės dalyviai jachtų ID didėjimo tvarka.
+ * Jei dar neužklausti, užklausia jų viena užklausa (jų jachtų – ne).
+ *
+ * @return dalyvių sąrašas (nekeičiamas) arba null, jei įvyko klaida
+ */
+  public List<Entry> getEntries() {
+    if (entries == null) {
+      List<Entry> list = Entry.getByGroup(getId());
+      if (list != null)
+        entries = Collections.unmodifiableList(list);
+    }
+    return entries;
+  }
+
+  public boolean setName(String name) {
+    return setName(name, UPDATE_NAME);
+  }
+
+  protected String getUpdateStatement(int fields) {
+    return UPDATE_NAME; // keičiamas tik pavadinimas
+  }
+
+/**
+ * Panaikina grupę iš duomenų bazės kartu su jos etapais, dalyviais ir
+ * plaukimais (ON DELETE CASCADE).
+ * Toliau šis objektas nebeturėtų būti naudojamas.
+ *
+ * @return true, jei objektas panaikintas, false – jei įvyko klaida arba
+ *         objektas buvo panaikintas anksčiau
+ */
+  public boolean remove() {
+    Regatta known = regatta;
+    if (!remove(DELETE_GROUP))
+      return false;
+    getCache(Stage.class).clear(); // kartu panaikinti etapai neturi likti podėlyje
+    if (known != null)
+      known.groupsChanged();
+    return true;
+  }
+}
@@ -0,0 +1,564 @@
+/**
+ * Paruošta užklausa, matuojanti execute*() trukmę ir pakeistų eilučių
+ * skaičių (StatementMetrics). Kiti metodai (parametrų nustatymas ir pan.)
+ * tiesiog perduodami apgaubtai užklausai; ResultSet negaubiamas, todėl
+ * eilučių skaitymas nelėtėja.
+ */
+package rescore;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+class InstrumentedStatement implements PreparedStatement {
+  private static final long FAILED = -1; // rows reikšmė, kai vykdymas nepavyko
+  private final PreparedStatement statement;
+  private final StatementMetrics metrics;
+
+  private InstrumentedStatement(PreparedStatement statement, StatementMetrics metrics) {
+    this.statement = statement;
+    this.metrics = metrics;
+  }
+
+/**
+ * Apgaubia paruoštą užklausą.
+ *
+ * @param statement paruošta užklausa
+ * @param metrics   kur kaupti statistiką
+ * @return užklausa, kurios vykdymai matuojami
+ */
+  static PreparedStatement wrap(PreparedStatement statement, StatementMetrics metrics) {
+    return new InstrumentedStatement(statement, metrics);
+  }
+
+  private void record(long start, long rows) {
+    metrics.record(System.nanoTime() - start, Math.max(rows, 0), rows == FAILED);
+  }
+
+  private static long rows(int[] rowCounts) {
+    long rows = 0;
+    for (int count : rowCounts)
+      rows += Math.max(count, 0); // Statement.SUCCESS_NO_INFO < 0
+    return rows;
+  }
+
+  public boolean execute() throws SQLException {
+    long start = System.nanoTime();
+    long rows = FAILED;
+    try {
+      boolean result = statement.execute();
+      rows = 0;
+      return result;
+    } finally {
+      record(start, rows);
+    }
+  }
+
+  public boolean execute(String sql) throws SQLException {
+    long start = System.nanoTime();
+    long rows = FAILED;
+    try {
+      boolean result = statement.execute(sql);
+      rows = 0;
+      return result;
+    } finally {
+      record(start, rows);
+    }
+  }
+
+  public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+    long start = System.nanoTime();
+    long rows = FAILED;
+    try {
+      boolean result = statement.execute(sql, autoGeneratedKeys);
+      rows = 0;
+      return result;
+    } finally {
+      record(start, rows);
+    }
+  }
+
+  public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+    long start = System.nanoTime();
+    long rows = FAILED;
+    try {
+      boolean result = statement.execute(sql, columnIndexes);
+      rows = 0;
+      return result;
+    } finally {
+      record(start, rows);
+    }
+  }
+
+  public boolean execute(String sql, String[] columnNames) throws SQLException {
+    long start = System.nanoTime();
+    long rows = FAILED;
+    try {
+      boolean result = statement.execute(sql, columnNames);
+      rows = 0;
+      return result;
+    } finally {
+      record(start, rows);
+    }
+  }
+
+  public int[] executeBatch() throws SQLException {
+    long start = System.nanoTime();
+    long rows = FAILED;
+    try {
+      int[] result = statement.executeBatch();
+      rows = rows(result);
+      return result;
+    } finally {
+      record(start, rows);
+    }
+  }
+
+  public ResultSet executeQuery() throws SQLException {
+    long start = System.nanoTime();
+    long rows = FAILED;
+    try {
+      ResultSet result = statement.executeQuery();
+      rows = 0;
+      return result;
+    } finally {
+      record(start, rows);
+    }
+  }
+
+  public ResultSet executeQuery(String sql) throws SQLException {
+    long start = System.nanoTime();
+    long rows = FAILED;
+    try {
+      ResultSet result = statement.executeQuery(sql);
+      rows = 0;
+      return result;
+    } finally {
+      record(start, rows);
+    }
+  }
+
+  public int executeUpdate() throws SQLException {
+    long start = System.nanoTime();
+    long rows = FAILED;
+    try {
+      int result = statement.executeUpdate();
+      rows = result;
+      return result;
+    } finally {
+      record(start, rows);
+    }
+  }
+
+  public int executeUpdate(String sql) throws SQLException {
+    long start = System.nanoTime();
+    long rows = FAILED;
+    try {
+      int result = statement.executeUpdate(sql);
+      rows = result;
+      return result;
+    } finally {
+      record(start, rows);
+    }
+  }
+
+  public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+    long start = System.nanoTime();
+    long rows = FAILED;
+    try {
+      int result = statement.executeUpdate(sql, autoGeneratedKeys);
+      rows = result;
+      return result;
+    } finally {
+      record(start, rows);
+    }
+  }
+
+  public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+    long start = System.nanoTime();
+    long rows = FAILED;
+    try {
+      int result = statement.executeUpdate(sql, columnIndexes);
+      rows = result;
+      return result;
+    } finally {
+      record(start, rows);
+    }
+  }
+
+  public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+    long start = System.nanoTime();
+    long rows = FAILED;
+    try {
+      int result = statement.executeUpdate(sql, columnNames);
+      rows = result;
+      return result;
+    } finally {
+      record(start, rows);
+    }
+  }
+
+  public void addBatch() throws SQLException {
+    statement.addBatch();
+  }
+
+  public void addBatch(String sql) throws SQLException {
+    statement.addBatch(sql);
+  }
+
+  public void cancel() throws SQLException {
+    statement.cancel();
+  }
+
+  public void clearBatch() throws SQLException {
+    statement.clearBatch();
+  }
+
+  public void clearParameters() throws SQLException {
+    statement.clearParameters();
+  }
+
+  public void clearWarnings() throws SQLException {
+    statement.clearWarnings();
+  }
+
+  public void close() throws SQLException {
+    statement.close();
+  }
+
+  public void closeOnCompletion() throws SQLException {
+    statement.closeOnCompletion();
+  }
+
+  public Connection getConnection() throws SQLException {
+    return statement.getConnection();
+  }
+
+  public int getFetchDirection() throws SQLException {
+    return statement.getFetchDirection();
+  }
+
+  public int getFetchSize() throws SQLException {
+    return statement.getFetchSize();
+  }
+
+  public ResultSet getGeneratedKeys() throws SQLException {
+    return statement.getGeneratedKeys();
+  }
+
+  public int getMaxFieldSize() throws SQLException {
+    return statement.getMaxFieldSize();
+  }
+
+  public int getMaxRows() throws SQLException {
+    return statement.getMaxRows();
+  }
+
+  public ResultSetMetaData getMetaData() throws SQLException {
+    return statement.getMetaData();
+  }
+
+  public boolean getMoreResults() throws SQLException {
+    return statement.getMoreResults();
+  }
+
+  public boolean getMoreResults(int current) throws SQLException {
+    return statement.getMoreResults(current);
+  }
+
+  public ParameterMetaData getParameterMetaData() throws SQLException {
+    return statement.getParameterMetaData();
+  }
+
+  public int getQueryTimeout() throws SQLException {
+    return statement.getQueryTimeout();
+  }
+
+  public ResultSet getResultSet() throws SQLException {
+    return statement.getResultSet();
+  }
+
+  public int getResultSetConcurrency() throws SQLException {
+    return statement.getResultSetConcurrency();
+  }
+
+  public int getResultSetHoldability() throws SQLException {
+    return statement.getResultSetHoldability();
+  }
+
+  public int getResultSetType() throws SQLException {
+    return statement.getResultSetType();
+  }
+
+  public int getUpdateCount() throws SQLException {
+    return statement.getUpdateCount();
+  }
+
+  public SQLWarning getWarnings() throws SQLException {
+    return statement.getWarnings();
+  }
+
+  public boolean isCloseOnCompletion() throws SQLException {
+    return statement.isCloseOnCompletion();
+  }
+
+  public boolean isClosed() throws SQLException {
+    return statement.isClosed();
+  }
+
+  public boolean isPoolable() throws SQLException {
+    return statement.isPoolable();
+  }
+
+  public boolean isWrapperFor(Class<?> iface) throws SQLException {
+    return statement.isWrapperFor(iface);
+  }
+
+  public void setArray(int parameterIndex, Array x) throws SQLException {
+    statement.setArray(parameterIndex, x);
+  }
+
+  public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+    statement.setAsciiStream(parameterIndex, x);
+  }
+
+  public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+    statement.setAsciiStream(parameterIndex, x, length);
+  }
+
+  public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+    statement.setAsciiStream(parameterIndex, x, length);
+  }
+
+  public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+    statement.setBigDecimal(parameterIndex, x);
+  }
+
+  public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+    statement.setBinaryStream(parameterIndex, x);
+  }
+
+  public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+    statement.setBinaryStream(parameterIndex, x, length);
+  }
+
+  public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+    statement.setBinaryStream(parameterIndex, x, length);
+  }
+
+  public void setBlob(int parameterIndex, InputStream x) throws SQLException {
+    statement.setBlob(parameterIndex, x);
+  }
+
+  public void setBlob(int parameterIndex, InputStream x, long length) throws SQLException {
+    statement.setBlob(parameterIndex, x, length);
+  }
+
+  public void setBlob(int parameterIndex, Blob x) throws SQLException {
+    statement.setBlob(parameterIndex, x);
+  }
+
+  public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+    statement.setBoolean(parameterIndex, x);
+  }
+
+  public void setByte(int parameterIndex, byte x) throws SQLException {
+    statement.setByte(parameterIndex, x);
+  }
+
+  public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+    statement.setBytes(parameterIndex, x);
+  }
+
+  public void setCharacterStream(int parameterIndex, Reader x) throws SQLException {
+    statement.setCharacterStream(parameterIndex, x);
+  }
+
+  public void setCharacterStream(int parameterIndex, Reader x, int length) throws SQLException {
+    statement.setCharacterStream(parameterIndex, x, length);
+  }
+
+  public void setCharacterStream(int parameterIndex, Reader x, long length) throws SQLException {
+    statement.setCharacterStream(parameterIndex, x, length);
+  }
+
+  public void setClob(int parameterIndex, Reader x) throws SQLException {
+    statement.setClob(parameterIndex, x);
+  }
+
+  public void setClob(int parameterIndex, Reader x, long length) throws SQLException {
+    statement.setClob(parameterIndex, x, length);
+  }
+
+  public void setClob(int parameterIndex, Clob x) throws SQLException {
+    statement.setClob(parameterIndex, x);
+  }
+
+  public void setCursorName(String name) throws SQLException {
+    statement.setCursorName(name);
+  }
+
+  public void setDate(int parameterIndex, Date x) throws SQLException {
+    statement.setDate(parameterIndex, x);
+  }
+
+  public void setDate(int parameterIndex, Date x, Calendar calendar) throws SQLException {
+    statement.setDate(parameterIndex, x, calendar);
+  }
+
+  public void setDouble(int parameterIndex, double x) throws SQLException {
+    statement.setDouble(parameterIndex, x);
+  }
+
+  public void setEscapeProcessing(boolean escapeProcessing) throws SQLException {
+    statement.setEscapeProcessing(escapeProcessing);
+  }
+
+  public void setFetchDirection(int fetchDirection) throws SQLException {
+    statement.setFetchDirection(fetchDirection);
+  }
+
+  public void setFetchSize(int fetchSize) throws SQLException {
+    statement.setFetchSize(fetchSize);
+  }
+
+  public void setFloat(int parameterIndex, float x) throws SQLException {
+    statement.setFloat(parameterIndex, x);
+  }
+
+  public void setInt(int parameterIndex, int x) throws SQLException {
+    statement.setInt(parameterIndex, x);
+  }
+
+  public void setLong(int parameterIndex, long x) throws SQLException {
+    statement.setLong(parameterIndex, x);
+  }
+
+  public void setMaxFieldSize(int maxFieldSize) throws SQLException {
+    statement.setMaxFieldSize(maxFieldSize);
+  }
+
+  public void setMaxRows(int maxRows) throws SQLException {
+    statement.setMaxRows(maxRows);
+  }
+
+  public void setNCharacterStream(int parameterIndex, Reader x) throws SQLException {
+    statement.setNCharacterStream(parameterIndex, x);
+  }
+
+  public void setNCharacterStream(int parameterIndex, Reader x, long length) throws SQLException {
+    statement.setNCharacterStream(parameterIndex, x, length);
+  }
+
+  public void setNClob(int parameterIndex, Reader x) throws SQLException {
+    statement.setNClob(parameterIndex, x);
+  }
+
+  public void setNClob(int parameterIndex, Reader x, long length) throws SQLException {
+    statement.setNClob(parameterIndex, x, length);
+  }
+
+  public void setNClob(int parameterIndex, NClob x) throws SQLException {
+    statement.setNClob(parameterIndex, x);
+  }
+
+  public void setNString(int parameterIndex, String x) throws SQLException {
+    statement.setNString(parameterIndex, x);
+  }
+
+  public void setNull(int parameterIndex, int sqlType) throws SQLException {
+    statement.setNull(parameterIndex, sqlType);
+  }
+
+  public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+    statement.setNull(parameterIndex, sqlType, typeName);
+  }
+
+  public void setObject(int parameterIndex, Object x) throws SQLException {
+    statement.setObject(parameterIndex, x);
+  }
+
+  public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+    statement.setObject(parameterIndex, x, targetSqlType);
+  }
+
+  public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+    statement.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+  }
+
+  public void setPoolable(boolean poolable) throws SQLException {
+    statement.setPoolable(poolable);
+  }
+
+  public void setQueryTimeout(int queryTimeout) throws SQLException {
+    statement.setQueryTimeout(queryTimeout);
+  }
+
+  public void setRef(int parameterIndex, Ref x) throws SQLException {
+    statement.setRef(parameterIndex, x);
+  }
+
+  public void setRowId(int parameterIndex, RowId x) throws SQLException {
+    statement.setRowId(parameterIndex, x);
+  }
+
+  public void setSQLXML(int parameterIndex, SQLXML x) throws SQLException {
+    statement.setSQLXML(parameterIndex, x);
+  }
+
+  public void setShort(int parameterIndex, short x) throws SQLException {
+    statement.setShort(parameterIndex, x);
+  }
+
+  public void setString(int parameterIndex, String x) throws SQLException {
+    statement.setString(parameterIndex, x);
+  }
+
+  public void setTime(int parameterIndex, Time x) throws SQLException {
+    statement.setTime(parameterIndex, x);
+  }
+
+  public void setTime(int parameterIndex, Time x, Calendar calendar) throws SQLException {
+    statement.setTime(parameterIndex, x, calendar);
+  }
+
+  public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+    statement.setTimestamp(parameterIndex, x);
+  }
+
+  public void setTimestamp(int parameterIndex, Timestamp x, Calendar calendar) throws SQLException {
+    statement.setTimestamp(parameterIndex, x, calendar);
+  }
+
+  public void setURL(int parameterIndex, URL x) throws SQLException {
+    statement.setURL(parameterIndex, x);
+  }
+
+  @Deprecated
+  public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+    statement.setUnicodeStream(parameterIndex, x, length);
+  }
+
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    return statement.unwrap(iface);
+  }
+}
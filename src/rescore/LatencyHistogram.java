@@ -0,0 +1,115 @@
+/**
+ * Trukmių histograma (kaip HdrHistogram): reikšmės nuo 0 iki Long.MAX_VALUE
+ * nanosekundžių skirstomos į dvejeto laipsnių intervalus, o kiekvienas jų –
+ * į SUB_BUCKETS vienodų dalių, todėl santykinė paklaida ne didesnė nei
+ * 1 / SUB_BUCKETS (~3 %), o histograma užima pastovią atmintį.
+ * record() neužrakina (atominiai skaitikliai), todėl jį galima kviesti iš
+ * daugelio gijų; skaitant gaunama apytikslė (ne vienu momentu) būsena.
+ */
+package rescore;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+/**
+ * Įrašo trukmę.
+ *
+ * @param nanos trukmė nanosekundėmis (neigiama laikoma 0)
+ */
+  public void record(long nanos) {
+    if (nanos < 0)
+      nanos = 0;
+    counts.incrementAndGet(index(nanos));
+    count.incrementAndGet();
+    total.addAndGet(nanos);
+    for (long current = max.get(); nanos > current && !max.compareAndSet(current, nanos); current = max.get())
+      ;
+  }
+
+/**
+ * Intervalo numeris: mažos reikšmės – tiesiogiai, didesnės – pagal
+ * aukščiausią bitą ir SUB_BUCKET_BITS po jo einančių bitų.
+ */
+  static int index(long value) {
+    if (value < SUB_BUCKETS)
+      return (int)value;
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    int shift = magnitude - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int)(value >>> shift & SUB_BUCKETS - 1);
+  }
+
+/**
+ * Mažiausia intervalo reikšmė.
+ */
+  static long lowestValue(int index) {
+    int group = index >>> SUB_BUCKET_BITS;
+    int subBucket = index & SUB_BUCKETS - 1;
+    if (group == 0)
+      return subBucket;
+    return (long)(SUB_BUCKETS + subBucket) << group - 1;
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+/**
+ * Visų trukmių suma nanosekundėmis.
+ */
+  public long getTotal() {
+    return total.get();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+/**
+ * Vidutinė trukmė nanosekundėmis (0, jei įrašų nėra).
+ */
+  public double getMean() {
+    long current = count.get();
+    return current == 0 ? 0 : total.get() / (double)current;
+  }
+
+/**
+ * Trukmė, už kurią ne ilgesnės percentile procentų įrašytų trukmių
+ * (intervalo, kuriame ji yra, viršutinė riba, bet ne daugiau nei getMax()).
+ *
+ * @param percentile procentai (0–100)
+ * @return trukmė nanosekundėmis (0, jei įrašų nėra)
+ */
+  public long getPercentile(double percentile) {
+    long current = count.get();
+    if (current == 0)
+      return 0;
+    long rank = Math.max(1, (long)Math.ceil(current * Math.min(percentile, 100) / 100));
+    long seen = 0;
+    for (int index = 0; index < BUCKETS; index++) {
+      seen += counts.get(index);
+      if (seen >= rank)
+        return Math.min(index + 1 < BUCKETS ? lowestValue(index + 1) - 1 : Long.MAX_VALUE, max.get());
+    }
+    return max.get();
+  }
+
+/**
+ * Išvalo histogramą.
+ */
+  public void reset() {
+    for (int index = 0; index < BUCKETS; index++)
+      counts.set(index, 0);
+    count.set(0);
+    total.set(0);
+    max.set(0);
+  }
+}
@@ -3,9 +3,9 @@
  */
 package rescore;
 
+import java.io.File;
 import java.util.Scanner;
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.SQLException;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 
@@ -13,28 +13,33 @@ public class Main {
   private static Logger logger = Logger.getLogger(Main.class.getName());
 
   public static void main(String args[]) {
-    if (args.length != 4) {
-      System.out.println("Paleidimo parametrai: JDBC_URL prisijungimoVardas slaptažodis log4jKonfigūracijosFailas");
+    if (args.length != 4 && args.length != 5) {
+      System.out.println("Paleidimo parametrai: JDBC_URL prisijungimoVardas slaptažodis log4jKonfigūracijosFailas [momentinėsKopijosByla]");
       return;
     }
 
     PropertyConfigurator.configure(args[3]);
 
-    Connection connection;
     try {
-      Class.forName("org.h2.Driver");
-      connection = DriverManager.getConnection(args[0], args[1], args[2]);
-    } catch (Exception exception) {
+      Database.open(args[0], args[1], args[2], Database.DEFAULT_POOL_SIZE);
+    } catch (SQLException exception) {
       logger.error("Unable to connect to the database: " + exception.getMessage());
       return;
     }
 
-    Yacht.prepareStatements(connection);
-    YachtClass.prepareStatements(connection);
-    Captain.prepareStatements(connection);
-    Owner.prepareStatements(connection);
-    NamedEntity.prepareStatements(connection);
-
+    ChangePoller.start(ChangePoller.DEFAULT_PERIOD); // kitų procesų pakeitimai
+    File snapshot = args.length == 5 ? new File(args[4]) : null; // žr. Snapshot
+    if (snapshot != null)
+      Snapshot.load(snapshot);
+    Metrics.register();
+    Metrics.startDump(Metrics.DEFAULT_DUMP_PERIOD);
     (new YachtManager(System.in, System.out)).start();
+    Metrics.stopDump();
+    ChangePoller.stop();
+    if (logger.isInfoEnabled())
+      logger.info(Metrics.report());
+    if (snapshot != null)
+      Snapshot.write(snapshot);
+    Database.close();
   }
 }
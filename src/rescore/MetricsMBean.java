@@ -0,0 +1,12 @@
+/**
+ * Visos statistikos ataskaita JMX (žr. Metrics).
+ */
+package rescore;
+
+public interface MetricsMBean {
+  String getReport();
+
+  int getStatementCount();
+
+  void reset();
+}
@@ -3,37 +3,224 @@
  */
 package rescore;
 
-import java.lang.ref.WeakReference;
-import java.util.Map;
-import java.util.HashMap;
-import java.util.TreeMap;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Vector;
-import java.sql.PreparedStatement;
+import java.util.concurrent.ConcurrentHashMap;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
-public abstract class NamedEntity {
+public abstract class NamedEntity implements Cloneable {
   private static Logger logger = Logger.getLogger(NamedEntity.class.getName());
-  private static PreparedStatement lastInsertId;
-  private static HashMap<Class<? extends NamedEntity>, Integer> tableSizeEstimate = new HashMap<Class<? extends NamedEntity>, Integer>(); // kiek paskutinį kartą buvo įrašų atitinkamos esybės duombazės lentelėje
-  private static HashMap<Class<? extends NamedEntity>, TreeMap<Integer, WeakReference<NamedEntity> > > objectMaps = new HashMap<Class<? extends NamedEntity>, TreeMap<Integer, WeakReference<NamedEntity> > >(); // iš duombazės užkrautos esybės
-  protected static double LIST_RATIO = 0.5;
-  // jeigu atitinkamas objectMaps elementas turi mažesnę nei LIST_RATIO dalį
-  // numanomo lentelės įrašų skaičiaus (pagal atitinkamą tableSizeEstimate
-  // elementą) arba numanomo skaičiaus nėra, tada duombazės užklausia visų įrašų;
-  // priešingu atveju – visų ID, pagal kuriuos gauna trūkstamas esybes po vieną
+  private static ConcurrentHashMap<Class<? extends NamedEntity>, GetAllPlanner> planners = new ConcurrentHashMap<Class<? extends NamedEntity>, GetAllPlanner>(); // getAll() būdo parinkimas (žr. GetAllPlanner)
+  private static ConcurrentHashMap<Class<? extends NamedEntity>, EntityCache> objectMaps = new ConcurrentHashMap<Class<? extends NamedEntity>, EntityCache>(); // iš duombazės užkrautos esybės
+  private static ConcurrentHashMap<Class<? extends NamedEntity>, Vector<EntityListener> > listeners = new ConcurrentHashMap<Class<? extends NamedEntity>, Vector<EntityListener> >(); // esybių pakeitimų klausytojai
+  private static ConcurrentHashMap<Class<? extends NamedEntity>, RowMapper<? extends NamedEntity> > rowMappers = new ConcurrentHashMap<Class<? extends NamedEntity>, RowMapper<? extends NamedEntity> >(); // esybių kūrimas iš duombazės eilučių
+  public static final int DEFAULT_CACHE_CAPACITY = 10000; // kiek daugiausiai
+                          // kiekvienos esybės objektų laikoma objectMaps
+  public static final int PAGE_SIZE = 100; // kiek esybių vienu kartu užklausia
+                          // iterate() (numatytasis puslapio dydis)
+  public static final int ID_LIST_SIZE = 100; // kiek ID vienu kartu užklausia
+                          // getMany (parametrų skaičius užklausos IN sąraše)
+  protected static final int NAME = 1; // pakeisto lauko žymė (žr. markDirty())
   protected int id;
   protected String name;
+  private int dirtyFields = 0; // laukai, pakeisti UnitOfWork metu ir dar neįrašyti
 
   // objectMaps inicializacija
   static {
-    Class[] subClasses = {Yacht.class, YachtClass.class, Captain.class, Owner.class}; // palaikomi poklasiai
-    for (Class<? extends NamedEntity> subClass : subClasses)
-      objectMaps.put(subClass, new TreeMap<Integer, WeakReference<NamedEntity> >());
+    Class[] subClasses = {Yacht.class, YachtClass.class, Captain.class, Owner.class, Regatta.class, Group.class, Stage.class}; // palaikomi poklasiai
+    for (Class<? extends NamedEntity> subClass : subClasses) {
+      objectMaps.put(subClass, new EntityCache(DEFAULT_CACHE_CAPACITY));
+      planners.put(subClass, new GetAllPlanner());
+      listeners.put(subClass, new Vector<EntityListener>());
     }
+    }
+
+/**
+ * Pakeičia esybių podėlio talpą.
+ * Jau užkrautos esybės perkeliamos į naują podėlį (jei netelpa – išmetamos
+ * seniausiai naudotos).
+ *
+ * @param subClass konkrečios esybės klasė
+ * @param capacity kiek daugiausiai esybių laikyti podėlyje
+ */
+  public static synchronized void setCacheCapacity(Class<? extends NamedEntity> subClass, int capacity) {
+    EntityCache cache = new EntityCache(capacity);
+    objectMaps.get(subClass).copyTo(cache);
+    objectMaps.put(subClass, cache);
+  }
+
+/**
+ * Grąžina esybių podėlį (pvz., statistikai).
+ *
+ * @param subClass konkrečios esybės klasė
+ * @return esybių podėlis
+ */
+  public static EntityCache getCache(Class<? extends NamedEntity> subClass) {
+    return objectMaps.get(subClass);
+  }
+
+/**
+ * Grąžina getAll() būdo parinkimo statistiką.
+ *
+ * @param subClass konkrečios esybės klasė
+ * @return getAll() būdų parinkimas
+ */
+  public static GetAllPlanner getPlanner(Class<? extends NamedEntity> subClass) {
+    return planners.get(subClass);
+  }
+
+/**
+ * Užregistruoja esybių sukūrimo, pakeitimo ir panaikinimo klausytoją.
+ *
+ * @param subClass konkrečios esybės klasė
+ * @param listener klausytojas
+ */
+  public static void addListener(Class<? extends NamedEntity> subClass, EntityListener listener) {
+    listeners.get(subClass).add(listener);
+  }
+
+  public static void removeListener(Class<? extends NamedEntity> subClass, EntityListener listener) {
+    listeners.get(subClass).remove(listener);
+  }
+
+/**
+ * Praneša klausytojams apie sukurtą esybę. Jei gija vykdo UnitOfWork, esybė
+ * jame įsimenama, kad atšaukus transakciją būtų išmesta.
+ */
+  protected static void fireCreated(NamedEntity namedEntity) {
+    UnitOfWork unitOfWork = UnitOfWork.current();
+    if (unitOfWork != null)
+      unitOfWork.created(namedEntity);
+    notifyCreated(namedEntity);
+  }
+
+  private static void notifyCreated(NamedEntity namedEntity) {
+    for (EntityListener listener : listeners.get(namedEntity.getClass()))
+      listener.created(namedEntity);
+  }
+
+/**
+ * Išvalo visų esybių podėlius (pvz., kai duombazė pakeista kitaip nei per
+ * esybių klases).
+ */
+  static void clearCaches() {
+    for (EntityCache cache : objectMaps.values())
+      cache.clear();
+  }
+
+  protected void fireChanged() {
+    for (EntityListener listener : listeners.get(getClass()))
+      listener.changed(this);
+  }
+
+  protected void fireRemoved() {
+    for (EntityListener listener : listeners.get(getClass()))
+      listener.removed(this);
+  }
+
+/**
+ * Užregistruoja esybės kūrimo iš duombazės eilutės būdą.
+ * Kviečia poklasių statiniai inicializatoriai.
+ *
+ * @param subClass  konkrečios esybės klasė
+ * @param rowMapper subClass objektų kūrimas iš duombazės eilutės
+ */
+  protected static <T extends NamedEntity> void registerRowMapper(Class<T> subClass, RowMapper<T> rowMapper) {
+    rowMappers.put(subClass, rowMapper);
+  }
+
+/**
+ * Grąžina užregistruotą esybės RowMapper.
+ * Jei poklasis dar neinicializuotas (pvz., Captain, kai jį pirmą kartą
+ * užkrauna Yacht.get(id, true)), jį inicializuoja.
+ */
+  private static RowMapper<? extends NamedEntity> rowMapper(Class<? extends NamedEntity> subClass) {
+    RowMapper<? extends NamedEntity> rowMapper = rowMappers.get(subClass);
+    if (rowMapper == null) {
+      try {
+        Class.forName(subClass.getName(), true, subClass.getClassLoader());
+      } catch (ClassNotFoundException exception) {
+        throw new IllegalStateException(exception);
+      }
+      rowMapper = rowMappers.get(subClass);
+    }
+    return rowMapper;
+  }
+
+/**
+ * Grąžina užregistruotą esybės RowMapper (pvz., bandymams, kuriantiems
+ * esybes be podėlio).
+ *
+ * @param subClass konkrečios esybės klasė
+ */
+  public static RowMapper<? extends NamedEntity> getRowMapper(Class<? extends NamedEntity> subClass) {
+    return rowMapper(subClass);
+  }
+
+/**
+ * Grąžina esybę iš duombazės eilutės.
+ * Jeigu esybė su tokiu ID jau yra podėlyje, grąžina ją; priešingu atveju
+ * sukuria naują esybę užregistruotu RowMapper.
+ *
+ * @param resultSet skaitymui paruošta duombazės eilutė
+ * @param column    stulpelio su esybės ID numeris (žr. RowMapper)
+ * @param subClass  konkrečios esybės klasė
+ * @return esybė arba null, jei stulpelio reikšmė NULL
+ */
+  protected static NamedEntity load(ResultSet resultSet, int column, Class<? extends NamedEntity> subClass) throws SQLException {
+    int id = resultSet.getInt(column);
+    if (resultSet.wasNull())
+      return null;
+    NamedEntity namedEntity = objectMaps.get(subClass).get(id);
+    if (namedEntity == null)
+      namedEntity = materialize(resultSet, column, rowMapper(subClass), subClass);
+    return namedEntity;
+  }
+
+/**
+ * Tas pats iš momentinės kopijos eilutės (žr. Snapshot).
+ */
+  static NamedEntity load(SnapshotRow row, int column, Class<? extends NamedEntity> subClass) {
+    int id = row.getInt(column);
+    if (row.wasNull())
+      return null;
+    NamedEntity namedEntity = objectMaps.get(subClass).get(id);
+    if (namedEntity == null) {
+      Metrics.materialized(subClass);
+      namedEntity = intern(rowMapper(subClass).map(row, column));
+    }
+    return namedEntity;
+  }
+
+/**
+ * Sukuria esybę iš duombazės eilutės ir įdeda ją į podėlį (žr. intern()).
+ * Užskaito ją Metrics.
+ */
+  private static NamedEntity materialize(ResultSet resultSet, int column, RowMapper<? extends NamedEntity> rowMapper, Class<? extends NamedEntity> subClass) throws SQLException {
+    Metrics.materialized(subClass);
+    return intern(rowMapper.map(resultSet, column));
+  }
+
+/**
+ * Įdeda naujai sukurtą esybę į podėlį.
+ * Jei kita gija tuo pačiu metu jau įdėjo esybę su tuo pačiu ID, grąžina ją,
+ * kad kiekvieną duombazės eilutę atitiktų vienas objektas.
+ *
+ * @param namedEntity naujai sukurta esybė
+ * @return podėlyje esanti esybė su tuo pačiu ID
+ */
+  protected static NamedEntity intern(NamedEntity namedEntity) {
+    return objectMaps.get(namedEntity.getClass()).putIfAbsent(namedEntity);
+  }
 
 /**
  * Šį konstruktorių kviečia paveldinčios klasės.
@@ -42,40 +229,38 @@ public abstract class NamedEntity {
  */
   protected NamedEntity(int id) {
     this.id = id;
-    objectMaps.get(this.getClass()).put(id, new WeakReference<NamedEntity>(this));
   }
 
 /**
  * Grąžina esybę pagal jos ID.
  *
  * @param id        esybės ID
- * @param select    paruošta užklausa esybės iš duomazės pagal ID gavimui
- * @param subClass  konkrečios esybės klasė, turinti konstruktorių, kuriam
- *                  perduodamas ID ir ResultSet
+ * @param select    užklausa esybės iš duomazės pagal ID gavimui
+ * @param subClass  konkrečios esybės klasė su užregistruotu RowMapper
  * @return jeigu yra anksčiau gauta esybė su duotu ID – grąžina ją;
  *         jeigu ją paėmė iš duombazės – grąžina rezultatą (ResultSet);
  *         jeigu esybės su duotu ID nėra duombazėje, grąžina null
  */
-  protected static NamedEntity get(int id, PreparedStatement select, Class<? extends NamedEntity> subClass) {
-    TreeMap<Integer, WeakReference<NamedEntity> > objectMap = objectMaps.get(subClass);
-    WeakReference<NamedEntity> weakReference = objectMap.get(id);
-    NamedEntity namedEntity = null;
-    if (weakReference != null)
-      namedEntity = weakReference.get();
+  protected static NamedEntity get(int id, String select, Class<? extends NamedEntity> subClass) {
+    NamedEntity namedEntity = objectMaps.get(subClass).get(id);
     if (namedEntity == null) {
       try {
-        select.setInt(1, id);
-        ResultSet resultSet = select.executeQuery();
-        if (resultSet.next()) {
-          namedEntity = subClass.getConstructor(int.class, ResultSet.class).newInstance(id, resultSet);
-          objectMap.put(namedEntity.getId(), new WeakReference<NamedEntity>(namedEntity));
-        } else {
-          logger.warn("Entity not found in the database");
+        Database.Session session = Database.acquire();
+        try {
+          PreparedStatement statement = session.prepare(select);
+          statement.setInt(1, id);
+          ResultSet resultSet = statement.executeQuery();
+          if (resultSet.next()) {
+            namedEntity = materialize(resultSet, 1, rowMapper(subClass), subClass);
+          } else {
+            logger.warn("Entity not found in the database");
+          }
+        } finally {
+          session.release();
         }
       } catch (SQLException exception) {
-        logger.error("get SQL error: " + exception.getMessage());
-      } catch (Exception exception) {
-        logger.error("get non-SQL error: " + exception.getMessage());
+        if (logger.isEnabledFor(Level.ERROR))
+          logger.error("get SQL error: " + exception.getMessage());
       }
     }
     return namedEntity;
@@ -83,53 +268,317 @@ public abstract class NamedEntity {
 
 /**
  * Grąžina visų esybių sąrašą jų ID didėjimo tvarka.
+ * Jei podėlis pilnas ir atitinka lentelę, esybės imamos iš jo; kitaip
+ * GetAllPlanner pagal išmatuotas sąnaudas parenka visų eilučių užklausą
+ * arba visų ID užklausą ir trūkstamų esybių gavimą (kaip getMany()).
  *
- * @param selectAll    paruošta užklausa visų subClass esybės objektų visų
- *                     duomenų gavimui iš duobmazės
- * @param selectAllIds paruošta užklausa visų subClass esybės objektų ID
+ * @param selectAll    užklausa visų subClass esybės objektų visų duomenų
  *                     gavimui iš duobmazės
- * @param subClass     konkrečios esybės klasė, turinti konstruktorius, kuriems
- *                     perduodamas ResultSet bei ID ir ResultSet
+ * @param selectAllIds užklausa visų subClass esybės objektų ID gavimui iš
+ *                     duobmazės
+ * @param selectMany   užklausa esybių gavimui pagal ID (žr. getMany())
+ * @param selectCount  užklausa eilučių skaičiaus ir didžiausio ID gavimui
+ *                     („SELECT COUNT(*), MAX(Id) FROM ...“)
+ * @param subClass     konkrečios esybės klasė su užregistruotu RowMapper
  * @return visų esybių sąrašas jų ID didėjimo tvarka arba null, jei įvyko klaida
  */
-protected static List getAll(PreparedStatement selectAll, PreparedStatement selectAllIds, Class<? extends NamedEntity> subClass) {
-  TreeMap<Integer, WeakReference<NamedEntity> > objectMap = objectMaps.get(subClass);
-  Vector list = new Vector();
-  NamedEntity namedEntity;
-  WeakReference<NamedEntity> weakReference;
-  int tableSize = 0;
+protected static List getAll(String selectAll, String selectAllIds, String selectMany, String selectCount, Class<? extends NamedEntity> subClass) {
+  EntityCache objectMap = objectMaps.get(subClass);
+  GetAllPlanner planner = planners.get(subClass);
+  Vector list;
   try {
-    Integer count = tableSizeEstimate.get(subClass);
-    if (count == null ||  objectMap.size() / count.doubleValue() < LIST_RATIO) {
-      ResultSet resultSet = selectAll.executeQuery();
-      for (tableSize = 0; resultSet.next(); tableSize++) {
-        namedEntity = null;
-        weakReference = objectMap.get(resultSet.getInt(1));
-        if (weakReference != null)
-          namedEntity = weakReference.get();
-        if (namedEntity == null) {
-          namedEntity = subClass.getConstructor(ResultSet.class).newInstance(resultSet);
-          objectMap.put(namedEntity.getId(), new WeakReference<NamedEntity>(namedEntity));
+    Database.Session session = Database.acquire();
+    try {
+      int generation = objectMap.getGeneration();
+      NamedEntity[] cached = objectMap.completeValues();
+      if (cached != null) {
+        ResultSet resultSet = session.prepare(selectCount).executeQuery();
+        resultSet.next();
+        int count = resultSet.getInt(1);
+        if (count == cached.length && (count == 0 || cached[count - 1].getId() == resultSet.getInt(2))) {
+          planner.cacheHit(count);
+          return new Vector(Arrays.asList(cached));
         }
-        list.add(namedEntity);
+        planner.staleCache(count);
       }
-    } else {
-      ResultSet resultSet = selectAllIds.executeQuery();
-      for (tableSize = 0; resultSet.next(); tableSize++) {
-        list.add((NamedEntity)subClass.getMethod("get", int.class).invoke(null, resultSet.getInt(1)));
+      long start = System.nanoTime();
+      if (planner.choose(objectMap.size(), objectMap.getCapacity()) == GetAllPlanner.SCAN) {
+        ResultSet resultSet = session.prepare(selectAll).executeQuery();
+        list = new Vector();
+        while (resultSet.next())
+          list.add(load(resultSet, 1, subClass));
+        planner.scanned(list.size(), System.nanoTime() - start);
+      } else {
+        ResultSet resultSet = session.prepare(selectAllIds).executeQuery();
+        int[] ids = new int[Math.max(planner.getTableSize(), 0) + 16];
+        int tableSize;
+        for (tableSize = 0; resultSet.next(); tableSize++) {
+          if (tableSize == ids.length)
+            ids = Arrays.copyOf(ids, ids.length * 2);
+          ids[tableSize] = resultSet.getInt(1);
+        }
+        planner.listed(tableSize, System.nanoTime() - start);
+        list = fetchMany(Arrays.copyOf(ids, tableSize), session.prepare(selectMany), subClass, planner);
       }
+      objectMap.markComplete(generation, list.size());
+    } finally {
+      session.release();
     }
   } catch (SQLException exception) {
-    logger.error("getAll SQL error: " + exception.getMessage());
-    list = null;
-  } catch (Exception exception) {
-    logger.error("getAll non-SQL error: " + exception.getMessage());
+    if (logger.isEnabledFor(Level.ERROR))
+      logger.error("getAll SQL error: " + exception.getMessage());
     list = null;
   }
-  tableSizeEstimate.put(subClass, tableSize);
   return list;
 }
 
+/**
+ * Grąžina esybes pagal jų ID.
+ * Podėlyje esančios esybės imamos iš jo, o trūkstamos gaunamos iš duombazės
+ * po ID_LIST_SIZE viena užklausa.
+ *
+ * @param ids        esybių ID
+ * @param selectMany užklausa subClass esybės objektų visų duomenų gavimui
+ *                   pagal ID_LIST_SIZE ID (žr. idListParameters())
+ * @param subClass   konkrečios esybės klasė su užregistruotu RowMapper
+ * @return esybių sąrašas ta pačia tvarka kaip ids (duombazėje nerastų
+ *         esybių sąraše nėra) arba null, jei įvyko klaida
+ */
+  protected static List getMany(int[] ids, String selectMany, Class<? extends NamedEntity> subClass) {
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        return fetchMany(ids, session.prepare(selectMany), subClass, null);
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("getMany SQL error: " + exception.getMessage());
+    }
+    return null;
+  }
+
+/**
+ * Grąžina esybių puslapį: pirmas limit esybių, kurių ID didesnis nei
+ * afterId, ID didėjimo tvarka. Kitas puslapis gaunamas kaip afterId
+ * perdavus paskutinės gautos esybės ID (pirmam puslapiui – 0).
+ * Skirtingai nei getAll(), užklausia tik vieno puslapio eilučių.
+ *
+ * @param afterId    paskutinės ankstesnio puslapio esybės ID arba 0
+ * @param limit      kiek daugiausiai esybių grąžinti
+ * @param selectPage užklausa subClass esybės objektų visų duomenų gavimui
+ *                   su parametrais afterId ir limit
+ *                   („... WHERE Id > ? ORDER BY Id LIMIT ?“)
+ * @param subClass   konkrečios esybės klasė su užregistruotu RowMapper
+ * @return esybių sąrašas ID didėjimo tvarka (tuščias, jei daugiau esybių
+ *         nėra) arba null, jei įvyko klaida
+ */
+  protected static List page(int afterId, int limit, String selectPage, Class<? extends NamedEntity> subClass) {
+    Vector list = new Vector(limit);
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement select = session.prepare(selectPage);
+        select.setInt(1, afterId);
+        select.setInt(2, limit);
+        ResultSet resultSet = select.executeQuery();
+        while (resultSet.next())
+          list.add(load(resultSet, 1, subClass));
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("page SQL error: " + exception.getMessage());
+      return null;
+    }
+    return list;
+  }
+
+/**
+ * Grąžina visas esybes ID didėjimo tvarka, užklausdamas jų po puslapį
+ * (žr. page()) tik tada, kai iteruojant jų prireikia.
+ * Esybės, sukurtos ar panaikintos iteravimo metu, gali būti matomos arba ne;
+ * jei užklausiant puslapio įvyksta klaida, iteravimas baigiamas.
+ *
+ * @param pageSize   kiek esybių užklausti vienu kartu
+ * @param selectPage puslapio užklausa (žr. page())
+ * @param subClass   konkrečios esybės klasė su užregistruotu RowMapper
+ * @return esybių seka, kurią galima iteruoti daug kartų
+ */
+  protected static <T extends NamedEntity> Iterable<T> iterate(final int pageSize, final String selectPage, final Class<T> subClass) {
+    return new Iterable<T>() {
+      public Iterator<T> iterator() {
+        return new Iterator<T>() {
+          private List page = null;
+          private int position = 0, lastId = 0;
+          private boolean lastPage = false;
+
+          public boolean hasNext() {
+            if (page != null && position < page.size())
+              return true;
+            if (lastPage)
+              return false;
+            page = NamedEntity.page(lastId, pageSize, selectPage, subClass);
+            position = 0;
+            if (page == null || page.size() < pageSize)
+              lastPage = true;
+            if (page == null || page.isEmpty())
+              return false;
+            lastId = ((NamedEntity)page.get(page.size() - 1)).id;
+            return true;
+          }
+
+          public T next() {
+            if (!hasNext())
+              throw new NoSuchElementException();
+            return (T)page.get(position++);
+          }
+
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+  }
+
+/**
+ * Gauna esybes pagal ID: iš podėlio arba po ID_LIST_SIZE iš duombazės.
+ *
+ * @param planner jei ne null, jam pranešama trūkstamų esybių gavimo trukmė
+ */
+  private static Vector fetchMany(int[] ids, PreparedStatement selectMany, Class<? extends NamedEntity> subClass, GetAllPlanner planner) throws SQLException {
+    EntityCache objectMap = objectMaps.get(subClass);
+    RowMapper<? extends NamedEntity> rowMapper = rowMapper(subClass);
+    NamedEntity[] found = new NamedEntity[ids.length];
+    int[] missing = new int[ids.length];
+    int missingCount = 0;
+    for (int i = 0; i < ids.length; i++) {
+      found[i] = objectMap.get(ids[i]);
+      if (found[i] == null)
+        missing[missingCount++] = ids[i];
+    }
+    if (missingCount > 0) {
+      long start = System.nanoTime();
+      // trūkstami ID surikiuojami ir be pasikartojimų, kad gautas esybes būtų
+      // galima rasti dvejetainės paieškos būdu
+      Arrays.sort(missing, 0, missingCount);
+      int unique = 0;
+      for (int i = 0; i < missingCount; i++)
+        if (unique == 0 || missing[unique - 1] != missing[i])
+          missing[unique++] = missing[i];
+      NamedEntity[] fetched = new NamedEntity[unique];
+      for (int from = 0; from < unique; from += ID_LIST_SIZE) {
+        for (int parameter = 0; parameter < ID_LIST_SIZE; parameter++) // paskutinės dalies trūkstami parametrai užpildomi paskutiniu ID
+          selectMany.setInt(parameter + 1, missing[Math.min(from + parameter, unique - 1)]);
+        ResultSet resultSet = selectMany.executeQuery();
+        while (resultSet.next()) {
+          int index = Arrays.binarySearch(missing, 0, unique, resultSet.getInt(1));
+          if (index >= 0 && fetched[index] == null)
+            fetched[index] = materialize(resultSet, 1, rowMapper, subClass);
+        }
+      }
+      if (planner != null)
+        planner.fetched(unique, System.nanoTime() - start);
+      for (int i = 0; i < ids.length; i++)
+        if (found[i] == null) {
+          int index = Arrays.binarySearch(missing, 0, unique, ids[i]);
+          found[i] = fetched[index];
+        }
+    }
+    Vector list = new Vector(ids.length);
+    for (NamedEntity namedEntity : found)
+      if (namedEntity != null)
+        list.add(namedEntity);
+    if (list.size() != ids.length)
+      if (logger.isEnabledFor(Level.WARN))
+        logger.warn((ids.length - list.size()) + " entities not found in the database");
+    return list;
+  }
+
+/**
+ * Atnaujina esybes pagal duombazę, kai jų eilutes pakeitė kitas procesas
+ * (žr. ChangePoller): podėlyje esančios esybės pakeičiamos vietoje
+ * (copyFrom()), panaikintų eilučių esybės išimamos iš podėlio, o sukurtų
+ * eilučių esybės į jį įdedamos. Klausytojams pranešama tik apie tikrus
+ * pakeitimus, todėl paties proceso jau pritaikyti pakeitimai nepranešami
+ * antrą kartą. Esybių su neįrašytais UnitOfWork pakeitimais laukai
+ * nekeičiami.
+ *
+ * @param ids        pakeistų eilučių ID didėjimo tvarka, be pasikartojimų
+ * @param created    ar eilutė ids[i] buvo sukurta
+ * @param selectMany užklausa su ID_LIST_SIZE ID parametrų (kaip getMany())
+ * @param subClass   konkrečios esybės klasė
+ */
+  static void refresh(int[] ids, boolean[] created, String selectMany, Class<? extends NamedEntity> subClass) throws SQLException {
+    EntityCache objectMap = objectMaps.get(subClass);
+    RowMapper<? extends NamedEntity> rowMapper = rowMapper(subClass);
+    // užklausiama tik podėlyje esančių ir sukurtų eilučių
+    int[] wanted = new int[ids.length];
+    boolean[] wantedCreated = new boolean[ids.length];
+    int count = 0;
+    for (int i = 0; i < ids.length; i++)
+      if (created[i] || objectMap.contains(ids[i])) {
+        wantedCreated[count] = created[i];
+        wanted[count++] = ids[i];
+      }
+    if (count == 0)
+      return;
+    boolean[] found = new boolean[count];
+    Database.Session session = Database.acquire();
+    try {
+      PreparedStatement select = session.prepare(selectMany);
+      for (int from = 0; from < count; from += ID_LIST_SIZE) {
+        for (int parameter = 0; parameter < ID_LIST_SIZE; parameter++)
+          select.setInt(parameter + 1, wanted[Math.min(from + parameter, count - 1)]);
+        ResultSet resultSet = select.executeQuery();
+        while (resultSet.next()) {
+          int index = Arrays.binarySearch(wanted, 0, count, resultSet.getInt(1));
+          if (index < 0 || found[index])
+            continue;
+          found[index] = true;
+          NamedEntity fresh = rowMapper.map(resultSet, 1);
+          NamedEntity cached = objectMap.get(fresh.id);
+          if (cached == null) {
+            if (wantedCreated[index]) { // kitaip esybė ką tik išmesta iš podėlio
+              Metrics.materialized(subClass);
+              if (intern(fresh) == fresh)
+                notifyCreated(fresh); // sukūrė kitas procesas
+            }
+          } else if (!cached.isDirty() && cached.copyFrom(fresh)) {
+            cached.fireChanged();
+          }
+        }
+      }
+    } finally {
+      session.release();
+    }
+    for (int i = 0; i < count; i++) {
+      if (found[i])
+        continue;
+      NamedEntity cached = objectMap.get(wanted[i]);
+      if (cached != null) { // eilutė panaikinta
+        cached.fireRemoved();
+        objectMap.remove(wanted[i]);
+        cached.id = 0;
+      }
+    }
+  }
+
+/**
+ * Grąžina getMany() užklausos IN sąrašo parametrus.
+ *
+ * @return ID_LIST_SIZE kableliais atskirtų „?“
+ */
+  protected static String idListParameters() {
+    StringBuilder parameters = new StringBuilder("?");
+    for (int i = 1; i < ID_LIST_SIZE; i++)
+      parameters.append(", ?");
+    return parameters.toString();
+  }
+
   public int getId() {
     return id;
   }
@@ -138,29 +587,207 @@ protected static List getAll(PreparedStatement selectAll, PreparedStatement sele
     return name;
   }
 
-  protected boolean setName(String name, PreparedStatement updateName) {
+  protected boolean setName(String name, String update) {
+    if (markDirty(NAME)) {
+      this.name = name;
+      fireChanged();
+      return true;
+    }
     boolean ret = false;
     try {
-      if (name == null)
-        updateName.setNull(1, java.sql.Types.VARCHAR);
-      else
-        updateName.setString(1, name);
-      updateName.setInt(2, id);
-      int rowsAffected = updateName.executeUpdate();
-      if (rowsAffected == 1) {
-        this.name = name;
-        ret = true;
-      } else {
-        logger.warn("Strange setName updated database rows count: " + rowsAffected);
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement updateName = session.prepare(update);
+        if (name == null)
+          updateName.setNull(1, java.sql.Types.VARCHAR);
+        else
+          updateName.setString(1, name);
+        updateName.setInt(2, id);
+        int rowsAffected = updateName.executeUpdate();
+        if (rowsAffected == 1) {
+          this.name = name;
+          ret = true;
+        } else {
+          if (logger.isEnabledFor(Level.WARN))
+            logger.warn("Strange setName updated database rows count: " + rowsAffected);
+        }
+      } finally {
+        session.release();
       }
     } catch (SQLException exception) {
-      logger.error("setName SQL error: " + exception.getMessage());
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("setName SQL error: " + exception.getMessage());
     }
+    if (ret)
+      fireChanged();
     return ret;
   }
 
   abstract public boolean setName(String name);
 
+/**
+ * Jei gija vykdo UnitOfWork, pažymi lauką kaip pakeistą (įrašomas bus
+ * UnitOfWork.flush() metu) ir grąžina true; kitaip grąžina false – tada
+ * setteris laukų reikšmę įrašo iš karto.
+ *
+ * @param field lauko žymė (NAME arba poklasio žymė)
+ */
+  protected boolean markDirty(int field) {
+    UnitOfWork unitOfWork = UnitOfWork.current();
+    if (unitOfWork == null)
+      return false;
+    synchronized (this) {
+      dirtyFields |= field;
+    }
+    unitOfWork.register(this);
+    return true;
+  }
+
+/**
+ * Esybės kopija su dabartinėmis laukų reikšmėmis (žr. restore()).
+ */
+  NamedEntity snapshot() {
+    try {
+      return (NamedEntity)clone();
+    } catch (CloneNotSupportedException exception) {
+      throw new InternalError(exception.getMessage());
+    }
+  }
+
+/**
+ * Atkuria esybės laukus ir ID iš snapshot() kopijos, atšaukus UnitOfWork
+ * transakciją. Esybė grąžinama į podėlį (vietoj tuo metu užkrautos kitos
+ * tos eilutės kopijos); klausytojams pranešama, jei laukai pasikeitė arba
+ * esybė buvo panaikinta.
+ *
+ * @param snapshot kopija, padaryta prieš pirmąjį pakeitimą
+ * @param removed  ar esybė buvo panaikinta (remove())
+ */
+  void restore(NamedEntity snapshot, boolean removed) {
+    takeDirtyFields();
+    id = snapshot.id;
+    boolean changed = copyFrom(snapshot);
+    EntityCache objectMap = objectMaps.get(getClass());
+    if (objectMap.putIfAbsent(this) != this) {
+      objectMap.remove(id);
+      objectMap.putIfAbsent(this);
+    }
+    if (removed)
+      notifyCreated(this);
+    else if (changed)
+      fireChanged();
+  }
+
+/**
+ * Išmeta esybę, sukurtą atšauktoje UnitOfWork transakcijoje.
+ */
+  void discard() {
+    takeDirtyFields();
+    if (id == 0) // jau panaikinta
+      return;
+    fireRemoved();
+    objectMaps.get(getClass()).remove(id);
+    id = 0;
+  }
+
+/**
+ * Grąžina pakeistų laukų žymes ir jas išvalo.
+ */
+  synchronized int takeDirtyFields() {
+    int fields = dirtyFields;
+    dirtyFields = 0;
+    return fields;
+  }
+
+/**
+ * Pakeistų ir dar neįrašytų laukų žymės.
+ */
+  synchronized int getDirtyFields() {
+    return dirtyFields;
+  }
+
+/**
+ * Išvalo įrašytų laukų žymes (žr. UnitOfWork.flush()).
+ */
+  synchronized void clearDirtyFields(int fields) {
+    dirtyFields &= ~fields;
+  }
+
+/**
+ * Ar esybė turi UnitOfWork metu pakeistų ir dar neįrašytų laukų.
+ */
+  synchronized boolean isDirty() {
+    return dirtyFields != 0;
+  }
+
+/**
+ * Nukopijuoja laukus iš tos pačios eilutės naujai sukurtos esybės
+ * (žr. refresh()). Poklasiai, turintys savų laukų, kviečia
+ * super.copyFrom() ir nukopijuoja juos.
+ *
+ * @param namedEntity tos pačios klasės esybė su tuo pačiu ID
+ * @return ar pasikeitė bent vienas laukas
+ */
+  protected boolean copyFrom(NamedEntity namedEntity) {
+    if (equal(name, namedEntity.name))
+      return false;
+    name = namedEntity.name;
+    return true;
+  }
+
+/**
+ * Ar reikšmės lygios (abi gali būti null).
+ */
+  protected static boolean equal(Object value, Object other) {
+    return value == null ? other == null : value.equals(other);
+  }
+
+/**
+ * Grąžina UPDATE užklausą, įrašančią nurodytus laukus.
+ * Jos parametrai – laukų reikšmės (bindUpdate()) ir, paskutinis, ID.
+ *
+ * @param fields pakeistų laukų žymės
+ */
+  abstract protected String getUpdateStatement(int fields);
+
+/**
+ * Nustato getUpdateStatement() užklausos laukų parametrus.
+ * Poklasiai pirmiausia kviečia super.bindUpdate().
+ *
+ * @param update užklausa
+ * @param fields pakeistų laukų žymės
+ * @return kito parametro numeris
+ */
+  protected int bindUpdate(PreparedStatement update, int fields) throws SQLException {
+    int parameter = 1;
+    if ((fields & NAME) != 0) {
+      if (name == null)
+        update.setNull(parameter++, java.sql.Types.VARCHAR);
+      else
+        update.setString(parameter++, name);
+    }
+    return parameter;
+  }
+
+/**
+ * Sudaro UPDATE užklausą nurodytiems stulpeliams.
+ *
+ * @param table   lentelė
+ * @param columns stulpeliai; columns[i] atitinka žymę 1 << i
+ * @param fields  pakeistų laukų žymės
+ */
+  protected static String updateStatement(String table, String[] columns, int fields) {
+    StringBuilder update = new StringBuilder("UPDATE ").append(table).append(" SET ");
+    String separator = "";
+    for (int column = 0; column < columns.length; column++) {
+      if ((fields & 1 << column) != 0) {
+        update.append(separator).append(columns[column]).append(" = ?");
+        separator = ", ";
+      }
+    }
+    return update.append(" WHERE Id = ?").toString();
+  }
+
   /**
    * Panaikina esybę iš duomenų bazės.
    * Toliau šis objektas nebeturėtų būti naudojamas.
@@ -169,20 +796,32 @@ protected static List getAll(PreparedStatement selectAll, PreparedStatement sele
    * @return true, jei objektas panaikintas, false – jei įvyko klaida arba
    *         objektas buvo panaikintas anksčiau
    */
-  protected boolean remove(PreparedStatement erase) {
+  protected boolean remove(String erase) {
     if (id != 0) {
       try {
-        erase.setInt(1, id);
-        int rowsDeleted = erase.executeUpdate();
-        if (rowsDeleted == 1) {
-          objectMaps.get(this.getClass()).remove(id);
-          id = 0;
-          return true;
-        } else {
-          logger.warn("Strange remove deleted database rows count: " + rowsDeleted);
+        Database.Session session = Database.acquire();
+        try {
+          PreparedStatement delete = session.prepare(erase);
+          delete.setInt(1, id);
+          int rowsDeleted = delete.executeUpdate();
+          if (rowsDeleted == 1) {
+            UnitOfWork unitOfWork = UnitOfWork.current();
+            if (unitOfWork != null)
+              unitOfWork.removed(this);
+            fireRemoved();
+            objectMaps.get(this.getClass()).remove(id);
+            id = 0;
+            return true;
+          } else {
+            if (logger.isEnabledFor(Level.WARN))
+              logger.warn("Strange remove deleted database rows count: " + rowsDeleted);
+          }
+        } finally {
+          session.release();
         }
       } catch (SQLException exception) {
-        logger.error("remove SQL error: " + exception.getMessage());
+        if (logger.isEnabledFor(Level.ERROR))
+          logger.error("remove SQL error: " + exception.getMessage());
       }
     }
     return false;
@@ -190,34 +829,119 @@ protected static List getAll(PreparedStatement selectAll, PreparedStatement sele
 
   abstract public boolean remove();
 
-  static protected int getLastInsertId() {
+/**
+ * Grąžina paskutinio paruoštos užklausos įvykdymo sugeneruotą ID.
+ * Užklausa turi būti paruošta su Statement.RETURN_GENERATED_KEYS.
+ *
+ * @return sugeneruotas ID arba 0, jei jo nėra
+ */
+  static protected int getGeneratedKey(PreparedStatement insert) throws SQLException {
+    ResultSet keys = insert.getGeneratedKeys();
+    int id = 0;
+    while (keys.next()) // H2 grąžina tik paskutinį raktą
+      id = keys.getInt(1);
+    return id;
+  }
+
+/**
+ * Įvykdo sukauptą įterpimo paketą (addBatch()) ir grąžina sugeneruotus ID.
+ * H2 grąžina tik paskutinį sugeneruotą raktą, todėl kiti ID išvedami iš jo
+ * (Database.Session.batchKeys()): paketas vykdomas vienoje transakcijoje ir
+ * prieš ją patvirtinant patikrinama, kad paketo ID eina iš eilės. Jei bent
+ * vienos eilutės įterpti nepavyko arba ID iš eilės neina, atšaukiamas visas
+ * paketas.
+ *
+ * @param session jungtis, kurioje paruošta insert
+ * @param table   lentelė, į kurią įterpiama
+ * @param insert  užklausa, paruošta su Statement.RETURN_GENERATED_KEYS
+ * @param count   kiek eilučių pakete
+ * @return eilučių ID paketo tvarka
+ * @throws SQLException jei paketo įvykdyti nepavyko arba jo ID nustatyti
+ *                      negalima
+ */
+  static protected int[] executeInsertBatch(Database.Session session, String table, PreparedStatement insert, int count) throws SQLException {
+    Connection connection = session.getConnection();
+    boolean autoCommit = connection.getAutoCommit(); // jei ne – transakciją valdo kviečiantysis
+    if (autoCommit)
+      connection.setAutoCommit(false);
+    try {
+      int maxId = session.maxId(table);
+      int[] rowCounts = insert.executeBatch();
+      for (int rowCount : rowCounts)
+        if (rowCount != 1 && rowCount != Statement.SUCCESS_NO_INFO)
+          throw new SQLException("Strange batch insert rows count: " + rowCount);
+      int[] ids = session.batchKeys(table, maxId, getGeneratedKey(insert), count);
+      if (ids == null)
+        throw new SQLException("Generated keys of the " + table + " batch are not consecutive");
+      if (autoCommit)
+        connection.commit();
+      return ids;
+    } finally {
+      insert.clearBatch();
+      if (autoCommit) {
+        connection.rollback(); // jei nepavyko; po commit() nieko nekeičia
+        connection.setAutoCommit(true);
+      }
+    }
+  }
+
+/**
+ * Įterpia esybę su vien pavadinimu.
+ *
+ * @param name   pavadinimas
+ * @param insert įterpimo užklausa su vienu parametru
+ * @return sugeneruotas ID arba 0, jei įvyko klaida
+ */
+  static protected int insertName(String name, String insert) {
     try {
-      ResultSet resultSet = lastInsertId.executeQuery();
-      if (resultSet.next()) {
-        return resultSet.getInt(1);
-      } else {
-        logger.error("lastInsertId returned empty set");
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement insertName = session.prepare(insert, Statement.RETURN_GENERATED_KEYS);
+        if (name == null)
+          insertName.setNull(1, java.sql.Types.VARCHAR);
+        else
+          insertName.setString(1, name);
+        if (insertName.executeUpdate() == 1)
+          return getGeneratedKey(insertName);
+      } finally {
+        session.release();
       }
     } catch (SQLException exception) {
-      logger.error("getLastInsertId SQL error: " + exception.getMessage());
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("insertName SQL error: " + exception.getMessage());
     }
     return 0;
   }
 
 /**
- * Paruošia statinius PreparedStatement objektus.
+ * Įterpia kelias esybes su vien pavadinimais vienu paketu.
  *
- * @param connection jungtis su duombaze
+ * @param names  pavadinimai
+ * @param table  lentelė, į kurią įterpiama
+ * @param insert įterpimo užklausa su vienu parametru
+ * @return sugeneruoti ID ta pačia tvarka kaip names arba null, jei įvyko
+ *         klaida (tada neįterpiama nė viena)
  */
-  static void prepareStatements(Connection connection) {
+  static protected int[] insertNames(String[] names, String table, String insert) {
     try {
-      lastInsertId = connection.prepareStatement("SELECT LAST_INSERT_ID()");
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement insertName = session.prepare(insert, Statement.RETURN_GENERATED_KEYS);
+        for (String name : names) {
+          if (name == null)
+            insertName.setNull(1, java.sql.Types.VARCHAR);
+          else
+            insertName.setString(1, name);
+          insertName.addBatch();
+        }
+        return executeInsertBatch(session, table, insertName, names.length);
+      } finally {
+        session.release();
+      }
     } catch (SQLException exception) {
-      logger.error("prepareStatements SQL error: " + exception.getMessage());
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("insertNames SQL error: " + exception.getMessage());
     }
-  }
-
-  protected void finalize () {
-    objectMaps.get(this.getClass()).remove(id);
+    return null;
   }
 }
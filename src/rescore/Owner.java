@@ -6,15 +6,21 @@ package rescore;
 
 import java.util.List;
 import java.util.Vector;
-import java.sql.PreparedStatement;
-import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import org.apache.log4j.Logger;
 
 public class Owner extends NamedEntity {
   private static Logger logger = Logger.getLogger(Owner.class.getName());
-  private static PreparedStatement selectOwner, selectAllOwners, selectAllOwnerIds, deleteOwner, updateName;
+  private static final String SELECT_OWNER = "SELECT Id, Vardas FROM Savininkai WHERE Id = ?";
+  static final String SELECT_ALL_OWNERS = "SELECT Id, Vardas FROM Savininkai ORDER BY Id";
+  private static final String SELECT_ALL_OWNER_IDS = "SELECT Id FROM Savininkai ORDER BY Id";
+  private static final String SELECT_OWNER_COUNT = "SELECT COUNT(*), MAX(Id) FROM Savininkai";
+  static final String SELECT_MANY_OWNERS = "SELECT Id, Vardas FROM Savininkai WHERE Id IN (" + idListParameters() + ")";
+  private static final String SELECT_OWNERS_PAGE = "SELECT Id, Vardas FROM Savininkai WHERE Id > ? ORDER BY Id LIMIT ?";
+  private static final String INSERT_OWNER = "INSERT INTO Savininkai (Vardas) VALUES (?)";
+  private static final String UPDATE_NAME = "UPDATE Savininkai SET Vardas = ? WHERE Id = ?";
+  private static final String DELETE_OWNER = "DELETE FROM Savininkai WHERE Id = ?";
 
 /**
  * Konstruktorius.
@@ -26,26 +32,17 @@ public class Owner extends NamedEntity {
     this.name = name;
   }
 
-/**
- * Šį konstruktorių kviečia statiniai NamedEntity klasės metodai,
- * imantys objektą iš duomenų bazės.
- *
- * @param id objekto ID
- * @param resultSet skaitymui paruošta duombazės eilutė su kitais objekto
- *                  kūrimui reikalingais laukais, kuriuos grąžina selectOwner
- */
-  public Owner(int id, ResultSet resultSet) throws SQLException {
-    this(id, resultSet.getString(1));
-  }
+  // esybių kūrimas iš duombazės eilučių, kurias grąžina select užklausos
+  static {
+    registerRowMapper(Owner.class, new RowMapper<Owner>() {
+      public Owner map(ResultSet resultSet, int column) throws SQLException {
+        return new Owner(resultSet.getInt(column), resultSet.getString(column + 1));
+      }
 
-/**
- * Šį konstruktorių kviečia NamedEntity.getAll().
- *
- * @param resultSet skaitymui paruošta duombazės eilutė su visais objekto
- *                  kūrimui reikalingais laikaus, kuriuos grąžina selectAllOwners
- */
-  public Owner(ResultSet resultSet) throws SQLException {
-    this(resultSet.getInt(1), resultSet.getString(2));
+      public Owner map(SnapshotRow row, int column) {
+        return new Owner(row.getInt(column), row.getString(column + 1));
+      }
+    });
   }
 
 /**
@@ -55,7 +52,7 @@ public class Owner extends NamedEntity {
  * @return savininkas su nurodytu id
  */
   public static Owner get(int id) {
-    return (Owner)NamedEntity.get(id, selectOwner, Owner.class);
+    return (Owner)NamedEntity.get(id, SELECT_OWNER, Owner.class);
   }
 
 /**
@@ -64,32 +61,92 @@ public class Owner extends NamedEntity {
  * @return visų savininkų sąrašas id didėjimo tvarka
  */
   public static List<Owner> getAll() {
-    return (List<Owner>)NamedEntity.getAll(selectAllOwners, selectAllOwnerIds, Owner.class);
+    return (List<Owner>)NamedEntity.getAll(SELECT_ALL_OWNERS, SELECT_ALL_OWNER_IDS, SELECT_MANY_OWNERS, SELECT_OWNER_COUNT, Owner.class);
+  }
+
+/**
+ * Grąžina savininkų sąrašą pagal jų ID.
+ *
+ * @param ids savininkų ID
+ * @return savininkų sąrašas ta pačia tvarka kaip ids (nerastų sąraše nėra)
+ */
+  public static List<Owner> getMany(int[] ids) {
+    return (List<Owner>)NamedEntity.getMany(ids, SELECT_MANY_OWNERS, Owner.class);
   }
 
 /**
- * Paruošia statinius PreparedStatement objektus.
+ * Grąžina savininkų puslapį: pirmus limit savininkų, kurių ID didesnis nei
+ * afterId, ID didėjimo tvarka (žr. NamedEntity.page()).
  *
- * @param connection jungtis su duombaze
+ * @param afterId paskutinio ankstesnio puslapio ID arba 0
+ * @param limit   kiek daugiausiai grąžinti
+ * @return savininkų sąrašas arba null, jei įvyko klaida
  */
-  static void prepareStatements(Connection connection) {
-    try {
-      selectOwner = connection.prepareStatement("SELECT Vardas FROM Savininkai WHERE Id = ?");
-      selectAllOwners = connection.prepareStatement("SELECT Id, Vardas FROM Savininkai ORDER BY Id");
-      selectAllOwnerIds = connection.prepareStatement("SELECT Id FROM Savininkai ORDER BY Id");
-      updateName = connection.prepareStatement("UPDATE Savininkai SET Vardas = ? WHERE Id = ?");
-      deleteOwner = connection.prepareStatement("DELETE FROM Savininkai WHERE Id = ?");
-    } catch (SQLException exception) {
-      logger.error("prepareStatements SQL error: " + exception.getMessage());
+  public static List<Owner> page(int afterId, int limit) {
+    return (List<Owner>)NamedEntity.page(afterId, limit, SELECT_OWNERS_PAGE, Owner.class);
+  }
+
+/**
+ * Visų savininkų seka ID didėjimo tvarka, užklausiama po pageSize tik
+ * iteruojant (žr. NamedEntity.iterate()).
+ *
+ * @param pageSize kiek užklausti vienu kartu
+ */
+  public static Iterable<Owner> iterate(int pageSize) {
+    return NamedEntity.iterate(pageSize, SELECT_OWNERS_PAGE, Owner.class);
+  }
+
+  public static Iterable<Owner> iterate() {
+    return iterate(PAGE_SIZE);
+  }
+
+/**
+ * Sukuria naują savininką.
+ * Įrašo į duomenų bazę.
+ *
+ * @param name vardas
+ * @return savininkas arba null, jei įvyko klaida
+ */
+  public static Owner create(String name) {
+    int id = insertName(name, INSERT_OWNER);
+    if (id == 0)
+      return null;
+    Owner owner = (Owner)intern(new Owner(id, name));
+    fireCreated(owner);
+    return owner;
+  }
+
+/**
+ * Sukuria kelis naujus savininkus vienu paketu.
+ * Įrašo į duomenų bazę.
+ *
+ * @param names vardai
+ * @return savininkų sąrašas ta pačia tvarka kaip names arba null, jei įvyko
+ *         klaida (tada nesukuriamas nė vienas)
+ */
+  public static List<Owner> createMany(String[] names) {
+    int[] ids = insertNames(names, "Savininkai", INSERT_OWNER);
+    if (ids == null)
+      return null;
+    Vector<Owner> list = new Vector<Owner>();
+    for (int i = 0; i < ids.length; i++) {
+      Owner owner = (Owner)intern(new Owner(ids[i], names[i]));
+      fireCreated(owner);
+      list.add(owner);
     }
+    return list;
   }
 
   public boolean setName(String name) {
-    return setName(name, updateName);
+    return setName(name, UPDATE_NAME);
+  }
+
+  protected String getUpdateStatement(int fields) {
+    return UPDATE_NAME; // keičiamas tik pavadinimas
   }
 
   public boolean remove() {
-    return remove(deleteOwner);
+    return remove(DELETE_OWNER);
   }
 
 }
@@ -0,0 +1,152 @@
+/**
+ * Jachtos plaukimas etape.
+ * Eilutės saugomos duombazės lentelėje Plaukimai; raktas – jachtos ir etapo
+ * ID pora, todėl tai ne NamedEntity (objektai nelaikomi podėlyje, o
+ * gaunami tik per Stage.getRaces() ar Regatta.get(id, true)).
+ */
+package rescore;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class Race {
+  private static Logger logger = Logger.getLogger(Race.class.getName());
+  private static final String SELECT_STAGE_RACES = "SELECT p.Jachta, p.Etapas, p.StartoLaikas, p.FinišoLaikas, DATEDIFF('MS', p.StartoLaikas, p.FinišoLaikas), p.Kodas, p.Pastabos FROM Plaukimai p WHERE p.Etapas = ? ORDER BY p.Jachta";
+  static final String SELECT_ALL_RACES = "SELECT p.Jachta, p.Etapas, p.StartoLaikas, p.FinišoLaikas, DATEDIFF('MS', p.StartoLaikas, p.FinišoLaikas), p.Kodas, p.Pastabos FROM Plaukimai p ORDER BY p.Etapas, p.Jachta";
+  static final String SELECT_REGATTA_RACES = "SELECT p.Jachta, p.Etapas, p.StartoLaikas, p.FinišoLaikas, DATEDIFF('MS', p.StartoLaikas, p.FinišoLaikas), p.Kodas, p.Pastabos FROM Plaukimai p JOIN Etapai e ON e.Id = p.Etapas JOIN Grupės g ON g.Id = e.Grupė WHERE g.Regata = ? ORDER BY p.Etapas, p.Jachta";
+  public static final long NO_TIME = -1; // trukmė nežinoma
+  private final int yachtId, stageId;
+  private Yacht yacht;
+  private final Timestamp start, finish;
+  private final long elapsed; // milisekundėmis arba NO_TIME
+  private final int code;
+  private final String notes;
+
+  private Race(int yachtId, int stageId, Timestamp start, Timestamp finish, long elapsed, int code, String notes) {
+    this.yachtId = yachtId;
+    this.stageId = stageId;
+    this.start = start;
+    this.finish = finish;
+    this.elapsed = elapsed;
+    this.code = code;
+    this.notes = notes;
+  }
+
+/**
+ * Sukuria plaukimą iš SELECT_..._RACES grąžintos eilutės.
+ *
+ * @param yachts jau užklaustos jachtos pagal ID (kitų jachtų užklausia
+ *               getYacht()) arba null
+ */
+  static Race read(ResultSet resultSet, HashMap<Integer, Yacht> yachts) throws SQLException {
+    long elapsed = resultSet.getLong(5);
+    if (resultSet.wasNull())
+      elapsed = NO_TIME;
+    Race race = new Race(resultSet.getInt(1), resultSet.getInt(2), resultSet.getTimestamp(3), resultSet.getTimestamp(4), elapsed, resultSet.getInt(6), resultSet.getString(7)); // Kodas NULL – 0
+    if (yachts != null)
+      race.yacht = yachts.get(race.yachtId);
+    return race;
+  }
+
+/**
+ * Sukuria plaukimą iš momentinės kopijos eilutės (žr. Snapshot).
+ */
+  static Race read(SnapshotRow row) {
+    long elapsed = row.getLong(5);
+    if (row.wasNull())
+      elapsed = NO_TIME;
+    return new Race(row.getInt(1), row.getInt(2), row.getTimestamp(3), row.getTimestamp(4), elapsed, row.getInt(6), row.getString(7));
+  }
+
+/**
+ * Užklausia etapo plaukimų (žr. Stage.getRaces()).
+ *
+ * @return plaukimai jachtų ID didėjimo tvarka arba null, jei įvyko klaida
+ */
+  static List<Race> getByStage(int stageId) {
+    Vector<Race> list = new Vector<Race>();
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement selectRaces = session.prepare(SELECT_STAGE_RACES);
+        selectRaces.setInt(1, stageId);
+        ResultSet resultSet = selectRaces.executeQuery();
+        while (resultSet.next())
+          list.add(read(resultSet, null));
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("getByStage SQL error: " + exception.getMessage());
+      list = null;
+    }
+    return list;
+  }
+
+  public int getYachtId() {
+    return yachtId;
+  }
+
+  public Yacht getYacht() {
+    if (yacht == null)
+      yacht = Yacht.get(yachtId);
+    return yacht;
+  }
+
+  public int getStageId() {
+    return stageId;
+  }
+
+/**
+ * Starto laikas (null, jei nežinomas).
+ */
+  public Timestamp getStart() {
+    return start;
+  }
+
+/**
+ * Finišo laikas (null, jei nežinomas).
+ */
+  public Timestamp getFinish() {
+    return finish;
+  }
+
+/**
+ * Plaukimo trukmė.
+ *
+ * @return milisekundėmis arba NO_TIME, jei starto ar finišo laikas nežinomas
+ */
+  public long getElapsed() {
+    return elapsed;
+  }
+
+/**
+ * Rezultato kodas (rescore.scoring.ResultCode; 0 – finišavo).
+ */
+  public int getCode() {
+    return code;
+  }
+
+  public String getNotes() {
+    return notes;
+  }
+
+  public boolean equals(Object object) {
+    if (!(object instanceof Race))
+      return false;
+    Race race = (Race)object;
+    return race.yachtId == yachtId && race.stageId == stageId;
+  }
+
+  public int hashCode() {
+    return yachtId * 31 + stageId;
+  }
+}
@@ -0,0 +1,183 @@
+/**
+ * Modelių koeficientų ir kitų reitingo laukų lentelė skaičiavimams:
+ * masyvai, indeksuojami modelio ID, todėl reikšmė gaunama be esybių
+ * objektų ir be užklausų (pvz., įskaitos cikluose kiekvienam plaukimui).
+ * Lentelė sukuriama viena užklausa (get() pirmą kartą) ir nebekeičiama;
+ * sukūrus, pakeitus ar panaikinus modelį per YachtClass (EntityListener),
+ * ji išmetama, o kitas get() sukuria naują. Tiesiogiai duombazėje pakeistų
+ * modelių lentelė nemato – tada reikia iškviesti invalidate().
+ */
+package rescore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class RatingTable {
+  private static Logger logger = Logger.getLogger(RatingTable.class.getName());
+  private static final String SELECT_MAX_ID = "SELECT MAX(Id) FROM Modeliai";
+  private static final String SELECT_RATINGS = "SELECT Id, Koeficientas, ProjektavimoMetai, Ilgis, Plotis, Vandentalpa, VaterlinijosIlgis, BuriųPlotasPlaukiantPavėjui, BuriųPlotasPlaukiantPriešVėją FROM Modeliai";
+  public static final int DESIGN_YEAR = 0, LENGTH = 1, BEAM = 2, DISPLACEMENT = 3, WATERLINE_LENGTH = 4, DOWNWIND_SAIL_AREA = 5, UPWIND_SAIL_AREA = 6; // getRating() laukai
+  private static final int RATINGS = 7;
+  private static volatile RatingTable current = null;
+  private static int version = 0; // didinamas invalidate(); saugo RatingTable.class
+  private final float[] coefficients; // [modelio ID], NaN – nežinomas arba modelio nėra
+  private final int[][] ratings; // [laukas][modelio ID], 0 – nežinomas
+
+  static {
+    NamedEntity.addListener(YachtClass.class, new EntityListener() {
+      public void created(NamedEntity namedEntity) {
+        invalidate();
+      }
+
+      public void changed(NamedEntity namedEntity) {
+        invalidate();
+      }
+
+      public void removed(NamedEntity namedEntity) {
+        invalidate();
+      }
+    });
+  }
+
+  private RatingTable(int size) {
+    coefficients = new float[size];
+    Arrays.fill(coefficients, Float.NaN);
+    ratings = new int[RATINGS][size];
+  }
+
+/**
+ * Grąžina dabartinę lentelę (jei reikia – ją sukuria).
+ *
+ * @return lentelė arba null, jei įvyko klaida
+ */
+  public static RatingTable get() {
+    RatingTable table = current;
+    return table != null ? table : compile();
+  }
+
+/**
+ * Išmeta lentelę; kitas get() ją sukurs iš duombazės.
+ */
+  public static synchronized void invalidate() {
+    version++;
+    current = null;
+  }
+
+  private static RatingTable compile() {
+    int compiledVersion;
+    synchronized (RatingTable.class) {
+      compiledVersion = version;
+    }
+    RatingTable table;
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        ResultSet resultSet = session.prepare(SELECT_MAX_ID).executeQuery();
+        resultSet.next();
+        table = new RatingTable(resultSet.getInt(1) + 1);
+        resultSet = session.prepare(SELECT_RATINGS).executeQuery();
+        while (resultSet.next()) {
+          int id = resultSet.getInt(1);
+          if (id >= table.coefficients.length)
+            continue; // sukurtas po SELECT_MAX_ID – lentelė jau išmesta
+          float coefficient = resultSet.getFloat(2);
+          if (!resultSet.wasNull())
+            table.coefficients[id] = coefficient;
+          for (int rating = 0; rating < RATINGS; rating++)
+            table.ratings[rating][id] = resultSet.getInt(rating + 3); // NULL – 0
+        }
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("compile SQL error: " + exception.getMessage());
+      return null;
+    }
+    synchronized (RatingTable.class) {
+      if (version == compiledVersion) // kitaip lentelė galėjo būti sukurta iš senų duomenų
+        current = table;
+    }
+    return table;
+  }
+
+/**
+ * Sukuria lentelę iš jau gautų modelių (visų lentelės Modeliai eilučių, žr.
+ * Snapshot.load()), neužklausdama duombazės, ir ją padaro dabartine.
+ *
+ * @param yachtClasses visi modeliai
+ * @param version      invalidate() skaitiklis prieš gaunant modelius
+ *                     (getVersion())
+ */
+  static void install(List<YachtClass> yachtClasses, int version) {
+    int maxId = 0;
+    for (YachtClass yachtClass : yachtClasses)
+      maxId = Math.max(maxId, yachtClass.getId());
+    RatingTable table = new RatingTable(maxId + 1);
+    for (YachtClass yachtClass : yachtClasses) {
+      int id = yachtClass.getId();
+      table.coefficients[id] = yachtClass.getCoefficient();
+      table.ratings[DESIGN_YEAR][id] = yachtClass.getDesignYear();
+      table.ratings[LENGTH][id] = yachtClass.getLength();
+      table.ratings[BEAM][id] = yachtClass.getBeam();
+      table.ratings[DISPLACEMENT][id] = yachtClass.getDisplacement();
+      table.ratings[WATERLINE_LENGTH][id] = yachtClass.getWaterlineLength();
+      table.ratings[DOWNWIND_SAIL_AREA][id] = yachtClass.getDownwindSailArea();
+      table.ratings[UPWIND_SAIL_AREA][id] = yachtClass.getUpwindSailArea();
+    }
+    synchronized (RatingTable.class) {
+      if (RatingTable.version == version)
+        current = table;
+    }
+  }
+
+  static synchronized int getVersion() {
+    return version;
+  }
+
+/**
+ * Modelio koeficientas.
+ *
+ * @param yachtClassId modelio ID
+ * @return koeficientas arba Float.NaN, jei nežinomas arba tokio modelio nėra
+ */
+  public float getCoefficient(int yachtClassId) {
+    return yachtClassId >= 0 && yachtClassId < coefficients.length ? coefficients[yachtClassId] : Float.NaN;
+  }
+
+/**
+ * Modelio koeficientas.
+ *
+ * @param yachtClassId modelio ID
+ * @param unknown      ką grąžinti, jei koeficientas nežinomas arba tokio
+ *                     modelio nėra
+ */
+  public float getCoefficient(int yachtClassId, float unknown) {
+    float coefficient = getCoefficient(yachtClassId);
+    return Float.isNaN(coefficient) ? unknown : coefficient;
+  }
+
+/**
+ * Modelio reitingo laukas (matavimo vienetai – kaip YachtClass getteriuose).
+ *
+ * @param rating       DESIGN_YEAR, LENGTH, BEAM, DISPLACEMENT,
+ *                     WATERLINE_LENGTH, DOWNWIND_SAIL_AREA arba UPWIND_SAIL_AREA
+ * @param yachtClassId modelio ID
+ * @return reikšmė arba 0, jei nežinoma arba tokio modelio nėra
+ */
+  public int getRating(int rating, int yachtClassId) {
+    int[] values = ratings[rating];
+    return yachtClassId >= 0 && yachtClassId < values.length ? values[yachtClassId] : 0;
+  }
+
+/**
+ * Kiek vietų lentelėje (didžiausias modelio ID + 1).
+ */
+  public int size() {
+    return coefficients.length;
+  }
+}
@@ -0,0 +1,362 @@
+/**
+ * Regata.
+ * Objektai saugomi duombazės lentelėje Regatos.
+ *
+ * Regatos grupės, jų etapai, dalyviai ir plaukimai gali būti gaunami
+ * dviem būdais: get(id) ir getGroups(), Group.getStages(), Stage.getRaces()...
+ * kiekvieną sąrašą užklausia tik tada, kai jo prireikia (viena užklausa
+ * sąrašui, o Entry.getYacht() ir Race.getYacht() – dar po vieną kiekvienai
+ * jachtai), o get(id, true) visą regatą (grupes → etapus → dalyvius →
+ * plaukimus ir jų jachtas su modeliais, kapitonais ir savininkais) gauna
+ * pastoviu užklausų skaičiumi (GRAPH_QUERIES), nepriklausančiu nuo grupių,
+ * etapų ar jachtų skaičiaus.
+ * Sąrašai – paskutinio užklausimo kopija: tiesiogiai duombazėje (pvz.,
+ * LiveStage, BulkImporter) pridėtus dalyvius ir plaukimus mato tik naujas
+ * get(id, true).
+ */
+package rescore;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class Regatta extends NamedEntity {
+  private static Logger logger = Logger.getLogger(Regatta.class.getName());
+  private static final String SELECT_REGATTA = "SELECT Id, Pavadinimas, Regionas, Pradžia, Pabaiga, Sistema, Pastabos FROM Regatos WHERE Id = ?";
+  static final String SELECT_ALL_REGATTAS = "SELECT Id, Pavadinimas, Regionas, Pradžia, Pabaiga, Sistema, Pastabos FROM Regatos ORDER BY Id";
+  private static final String SELECT_ALL_REGATTA_IDS = "SELECT Id FROM Regatos ORDER BY Id";
+  private static final String SELECT_REGATTA_COUNT = "SELECT COUNT(*), MAX(Id) FROM Regatos";
+  private static final String SELECT_MANY_REGATTAS = "SELECT Id, Pavadinimas, Regionas, Pradžia, Pabaiga, Sistema, Pastabos FROM Regatos WHERE Id IN (" + idListParameters() + ")";
+  // regatos dalyvių ir etapuose plaukusių jachtų (gali būti ir ne dalyvės) ID; du parametrai – regatos ID
+  private static final String SELECT_GRAPH_YACHTS = "SELECT " + Yacht.COLUMNS_WITH_ASSOCIATIONS + " FROM (SELECT d.Jachta FROM Dalyviai d JOIN Grupės g ON g.Id = d.Grupė WHERE g.Regata = ? UNION SELECT p.Jachta FROM Plaukimai p JOIN Etapai e ON e.Id = p.Etapas JOIN Grupės g ON g.Id = e.Grupė WHERE g.Regata = ?) r JOIN Jachtos j ON j.Id = r.Jachta " + Yacht.JOIN_ASSOCIATIONS;
+  private static final String INSERT_REGATTA = "INSERT INTO Regatos (Pavadinimas, Regionas, Pradžia, Pabaiga) VALUES (?, ?, ?, ?)";
+  private static final String UPDATE_NAME = "UPDATE Regatos SET Pavadinimas = ? WHERE Id = ?";
+  private static final String DELETE_REGATTA = "DELETE FROM Regatos WHERE Id = ?";
+  public static final int GRAPH_QUERIES = 6; // kiek užklausų įvykdo get(id, true)
+  private String region;
+  private Date start, end;
+  private int system; // 0 – nenurodyta
+  private String notes;
+  private List<Group> groups; // null – dar neužklausta
+
+/**
+ * Konstruktorius.
+ * Naudojamas tik šioje klasėje. Norint gauti regatos objektą iš kitur, naudoti
+ * get() arba getAll().
+ */
+  private Regatta(int id, String name, String region, Date start, Date end, int system, String notes) {
+    super(id);
+    this.name = name;
+    this.region = region;
+    this.start = start;
+    this.end = end;
+    this.system = system;
+    this.notes = notes;
+  }
+
+  // esybių kūrimas iš duombazės eilučių, kurias grąžina select užklausos
+  static {
+    registerRowMapper(Regatta.class, new RowMapper<Regatta>() {
+      public Regatta map(ResultSet resultSet, int column) throws SQLException {
+        return new Regatta(resultSet.getInt(column), resultSet.getString(column + 1), resultSet.getString(column + 2), resultSet.getDate(column + 3), resultSet.getDate(column + 4), resultSet.getInt(column + 5), resultSet.getString(column + 6));
+      }
+
+      public Regatta map(SnapshotRow row, int column) {
+        return new Regatta(row.getInt(column), row.getString(column + 1), row.getString(column + 2), row.getDate(column + 3), row.getDate(column + 4), row.getInt(column + 5), row.getString(column + 6));
+      }
+    });
+  }
+
+/**
+ * Grąžina regatą pagal jos ID.
+ *
+ * @param id regatos ID
+ * @return regata arba null, jei tokios regatos nėra
+ */
+  public static Regatta get(int id) {
+    return (Regatta)NamedEntity.get(id, SELECT_REGATTA, Regatta.class);
+  }
+
+/**
+ * Grąžina regatą pagal jos ID.
+ * Jeigu fetchGraph, kartu gauna visas jos grupes, etapus, dalyvius,
+ * plaukimus ir jų jachtas (su modeliais, kapitonais ir savininkais) –
+ * GRAPH_QUERIES užklausų, kiek jų bebūtų; vėlesni getGroups(),
+ * Group.getStages(), Group.getEntries(), Stage.getRaces(), Entry.getYacht(),
+ * Race.getYacht() ir Yacht.getYachtClass() nebekreipia į duombazę.
+ * Anksčiau užklausti regatos sąrašai pakeičiami naujais.
+ *
+ * @param id         regatos ID
+ * @param fetchGraph ar kartu gauti visą regatą
+ * @return regata arba null, jei tokios regatos nėra arba įvyko klaida
+ */
+  public static Regatta get(int id, boolean fetchGraph) {
+    if (!fetchGraph)
+      return get(id);
+    Regatta regatta = null;
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement selectRegatta = session.prepare(SELECT_REGATTA);
+        selectRegatta.setInt(1, id);
+        ResultSet resultSet = selectRegatta.executeQuery();
+        if (resultSet.next())
+          regatta = (Regatta)load(resultSet, 1, Regatta.class);
+        else
+          logger.warn("Regatta not found in the database");
+        if (regatta != null)
+          regatta.fetchGraph(session);
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("get SQL error: " + exception.getMessage());
+      regatta = null;
+    }
+    return regatta;
+  }
+
+/**
+ * Užklausia regatos grupių, etapų, dalyvių, plaukimų ir jachtų – po vieną
+ * užklausą kiekvienai lentelei – ir sujungia juos atmintyje.
+ */
+  private void fetchGraph(Database.Session session) throws SQLException {
+    HashMap<Integer, Yacht> yachts = new HashMap<Integer, Yacht>();
+    PreparedStatement select = session.prepare(SELECT_GRAPH_YACHTS);
+    select.setInt(1, id);
+    select.setInt(2, id);
+    ResultSet resultSet = select.executeQuery();
+    while (resultSet.next()) {
+      Yacht yacht = Yacht.loadWithAssociations(resultSet);
+      yachts.put(yacht.getId(), yacht);
+    }
+
+    Vector<Group> groupList = new Vector<Group>();
+    select = session.prepare(Group.SELECT_REGATTA_GROUPS);
+    select.setInt(1, id);
+    resultSet = select.executeQuery();
+    while (resultSet.next())
+      groupList.add((Group)load(resultSet, 1, Group.class));
+
+    Vector<Stage> stageList = new Vector<Stage>();
+    select = session.prepare(Stage.SELECT_REGATTA_STAGES);
+    select.setInt(1, id);
+    resultSet = select.executeQuery();
+    while (resultSet.next())
+      stageList.add((Stage)load(resultSet, 1, Stage.class));
+
+    Vector<Entry> entryList = new Vector<Entry>();
+    select = session.prepare(Entry.SELECT_REGATTA_ENTRIES);
+    select.setInt(1, id);
+    resultSet = select.executeQuery();
+    while (resultSet.next())
+      entryList.add(Entry.read(resultSet, yachts));
+
+    Vector<Race> raceList = new Vector<Race>();
+    select = session.prepare(Race.SELECT_REGATTA_RACES);
+    select.setInt(1, id);
+    resultSet = select.executeQuery();
+    while (resultSet.next())
+      raceList.add(Race.read(resultSet, yachts));
+
+    Vector<Regatta> regattas = new Vector<Regatta>();
+    regattas.add(this);
+    setGraphs(regattas, groupList, stageList, entryList, raceList);
+  }
+
+/**
+ * Sujungia regatas su jų grupėmis, etapais, dalyviais ir plaukimais
+ * (žr. get(id, true), Snapshot.load()). Grupės, etapai, dalyviai ir
+ * plaukimai, nepriklausantys nė vienai iš regattas (pvz., sukurti tarp
+ * užklausų), praleidžiami. Anksčiau užklausti regatų sąrašai pakeičiami.
+ *
+ * @param stages  etapai ID didėjimo tvarka
+ * @param entries dalyviai grupių, o grupėje – jachtų ID didėjimo tvarka
+ * @param races   plaukimai etapų, o etape – jachtų ID didėjimo tvarka
+ */
+  static void setGraphs(List<Regatta> regattas, List<Group> groups, List<Stage> stages, List<Entry> entries, List<Race> races) {
+    HashMap<Integer, Vector<Group>> groupsByRegatta = new HashMap<Integer, Vector<Group>>();
+    for (Regatta regatta : regattas)
+      groupsByRegatta.put(regatta.getId(), new Vector<Group>());
+    HashMap<Integer, Vector<Stage>> stagesByGroup = new HashMap<Integer, Vector<Stage>>();
+    HashMap<Integer, Vector<Entry>> entriesByGroup = new HashMap<Integer, Vector<Entry>>();
+    for (Group group : groups) {
+      Vector<Group> list = groupsByRegatta.get(group.getRegattaId());
+      if (list == null)
+        continue;
+      list.add(group);
+      stagesByGroup.put(group.getId(), new Vector<Stage>());
+      entriesByGroup.put(group.getId(), new Vector<Entry>());
+    }
+
+    HashMap<Integer, Vector<Race>> racesByStage = new HashMap<Integer, Vector<Race>>();
+    Vector<Stage> stageList = new Vector<Stage>();
+    for (Stage stage : stages) {
+      Vector<Stage> list = stagesByGroup.get(stage.getGroupId());
+      if (list == null)
+        continue; // grupė sukurta po grupių užklausos
+      list.add(stage);
+      stageList.add(stage);
+      racesByStage.put(stage.getId(), new Vector<Race>());
+    }
+
+    for (Entry entry : entries) {
+      Vector<Entry> list = entriesByGroup.get(entry.getGroupId());
+      if (list != null)
+        list.add(entry);
+    }
+
+    for (Race race : races) {
+      Vector<Race> list = racesByStage.get(race.getStageId());
+      if (list != null)
+        list.add(race);
+    }
+
+    for (Stage stage : stageList)
+      stage.setRaces(racesByStage.get(stage.getId()));
+    for (Regatta regatta : regattas) {
+      Vector<Group> groupList = groupsByRegatta.get(regatta.getId());
+      for (Group group : groupList)
+        group.setGraph(regatta, stagesByGroup.get(group.getId()), entriesByGroup.get(group.getId()));
+      regatta.groups = Collections.unmodifiableList(groupList);
+    }
+  }
+
+/**
+ * Grąžina visų regatų sąrašą ID didėjimo tvarka.
+ *
+ * @return visų regatų sąrašas ID didėjimo tvarka arba null, jei įvyko klaida
+ */
+  public static List<Regatta> getAll() {
+    return (List<Regatta>)NamedEntity.getAll(SELECT_ALL_REGATTAS, SELECT_ALL_REGATTA_IDS, SELECT_MANY_REGATTAS, SELECT_REGATTA_COUNT, Regatta.class);
+  }
+
+/**
+ * Grąžina regatų sąrašą pagal jų ID.
+ *
+ * @param ids regatų ID
+ * @return regatų sąrašas ta pačia tvarka kaip ids (nerastų sąraše nėra)
+ */
+  public static List<Regatta> getMany(int[] ids) {
+    return (List<Regatta>)NamedEntity.getMany(ids, SELECT_MANY_REGATTAS, Regatta.class);
+  }
+
+/**
+ * Sukuria naują regatą.
+ * Įrašo į duomenų bazę.
+ *
+ * @param name   pavadinimas
+ * @param region regionas (gali būti null)
+ * @param start  pradžia (gali būti null)
+ * @param end    pabaiga (gali būti null)
+ * @return regata arba null, jei įvyko klaida
+ */
+  public static Regatta create(String name, String region, Date start, Date end) {
+    Regatta regatta = null;
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement insertRegatta = session.prepare(INSERT_REGATTA, Statement.RETURN_GENERATED_KEYS);
+        insertRegatta.setString(1, name);
+        if (region == null)
+          insertRegatta.setNull(2, java.sql.Types.VARCHAR);
+        else
+          insertRegatta.setString(2, region);
+        if (start == null)
+          insertRegatta.setNull(3, java.sql.Types.DATE);
+        else
+          insertRegatta.setDate(3, start);
+        if (end == null)
+          insertRegatta.setNull(4, java.sql.Types.DATE);
+        else
+          insertRegatta.setDate(4, end);
+        if (insertRegatta.executeUpdate() == 1) {
+          regatta = (Regatta)intern(new Regatta(getGeneratedKey(insertRegatta), name, region, start, end, 0, null));
+          regatta.groups = Collections.unmodifiableList(new Vector<Group>());
+          fireCreated(regatta);
+        }
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("create SQL error: " + exception.getMessage());
+    }
+    return regatta;
+  }
+
+/**
+ * Regatos grupės ID didėjimo tvarka.
+ * Jei dar neužklaustos (get(id) be fetchGraph), užklausia jų viena užklausa.
+ *
+ * @return grupių sąrašas (nekeičiamas) arba null, jei įvyko klaida
+ */
+  public List<Group> getGroups() {
+    if (groups == null) {
+      List<Group> list = Group.getByRegatta(this);
+      if (list != null)
+        groups = Collections.unmodifiableList(list);
+    }
+    return groups;
+  }
+
+/**
+ * Išmeta užklaustų grupių sąrašą (sukūrus ar panaikinus grupę).
+ */
+  void groupsChanged() {
+    groups = null;
+  }
+
+  public String getRegion() {
+    return region;
+  }
+
+  public Date getStart() {
+    return start;
+  }
+
+  public Date getEnd() {
+    return end;
+  }
+
+/**
+ * Taškų skaičiavimo sistema.
+ *
+ * @return sistemos kodas arba 0, jei nenurodyta
+ */
+  public int getSystem() {
+    return system;
+  }
+
+  public String getNotes() {
+    return notes;
+  }
+
+  public boolean setName(String name) {
+    return setName(name, UPDATE_NAME);
+  }
+
+  protected String getUpdateStatement(int fields) {
+    return UPDATE_NAME; // keičiamas tik pavadinimas
+  }
+
+/**
+ * Panaikina regatą iš duomenų bazės (jei ji neturi grupių).
+ * Toliau šis objektas nebeturėtų būti naudojamas.
+ *
+ * @return true, jei objektas panaikintas, false – jei įvyko klaida (pvz.,
+ *         regata turi grupių) arba objektas buvo panaikintas anksčiau
+ */
+  public boolean remove() {
+    return remove(DELETE_REGATTA);
+  }
+}
@@ -0,0 +1,28 @@
+/**
+ * Esybės objekto kūrimas iš duombazės eilutės.
+ * Kiekvienas NamedEntity poklasis užregistruoja savo RowMapper
+ * (NamedEntity.registerRowMapper()).
+ */
+package rescore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public interface RowMapper<T extends NamedEntity> {
+/**
+ * Sukuria esybę iš duombazės eilutės.
+ *
+ * @param resultSet skaitymui paruošta duombazės eilutė
+ * @param column    stulpelio su esybės ID numeris; kiti esybės laukai yra
+ *                  tolesniuose stulpeliuose ta tvarka, kokia juos grąžina
+ *                  esybės select užklausos
+ * @return naujas esybės objektas
+ */
+  T map(ResultSet resultSet, int column) throws SQLException;
+
+/**
+ * Sukuria esybę iš momentinės kopijos eilutės (žr. Snapshot). Stulpeliai tie
+ * patys, kaip map(ResultSet, int).
+ */
+  T map(SnapshotRow row, int column);
+}
@@ -0,0 +1,331 @@
+/**
+ * Momentinė duomenų kopija greitam paleidimui: modeliai (su koeficientais),
+ * kapitonai, savininkai, jachtos, regatos, grupės, etapai, dalyviai ir
+ * plaukimai vienoje dvejetainėje byloje.
+ * write() bylą įrašo (pvz., baigiant darbą ar kitu patogiu momentu), o
+ * load() ją atvaizduoja į atmintį (MappedByteBuffer); eilutes tiesiai iš
+ * jo (SnapshotRow) skaito esybių RowMapper ir Entry.read() / Race.read()
+ * (stulpeliai tie patys, kaip duombazės eilučių) – užpildomi esybių
+ * podėliai, regatų grafai (kaip po Regatta.get(id, true)) ir RatingTable be
+ * nė vienos duomenų užklausos. Eilučių skaitymas – maža load() laiko dalis:
+ * esybių kūrimas, podėliai ir grafai tie patys, kaip skaitant iš SQL, todėl
+ * duombazei atmintyje kopija beveik nepadeda; ji naudinga failų duombazei.
+ * Kopija tinka tik tada, kai duomenys nuo jos įrašymo nepakito: kiekvienas
+ * šių lentelių keitimo sakinys (VersionTrigger) didina seką DuomenųVersija,
+ * o byloje įrašyta sekos reikšmė ir duombazės kelias, nuskaityti prieš
+ * duomenis. Jei jie nesutampa su dabartiniais, load() kopijos neima. Po
+ * nekorektiško duombazės išjungimo seka tik šokteli į priekį (H2 saugo ją su
+ * atsarga), todėl pasenusi kopija niekada nelaikoma tinkama.
+ *
+ * Bylos formatas: MAGIC, FORMAT, SECTIONS maiša, duomenų versija ir
+ * duombazės kelias, po to kiekvienai SECTIONS užklausai – stulpelių
+ * skaičius, jų tipai, eilučių skaičius ir eilutės (prieš kiekvieną reikšmę –
+ * baitas: 0 – NULL, 1 – reikšmė yra).
+ */
+package rescore;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class Snapshot {
+  private static Logger logger = Logger.getLogger(Snapshot.class.getName());
+  private static final String SELECT_VERSION = "SELECT CURRENT_VALUE, DATABASE_PATH() FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'DUOMENŲVERSIJA'";
+  private static final int MAGIC = 0x52534e50; // „RSNP“
+  private static final int FORMAT = 1; // keičiamas pakeitus reikšmių kodavimą
+  // bylos dalys: esybių klasių visų eilučių užklausos (pakeitus kurią nors, senos bylos netinka)
+  private static final String[] SECTIONS = {YachtClass.SELECT_ALL_YACHT_CLASSES, Captain.SELECT_ALL_CAPTAINS, Owner.SELECT_ALL_OWNERS, Yacht.SELECT_ALL_YACHTS, Regatta.SELECT_ALL_REGATTAS, Group.SELECT_ALL_GROUPS, Stage.SELECT_ALL_STAGES, Entry.SELECT_ALL_ENTRIES, Race.SELECT_ALL_RACES};
+  private static final List<Class<? extends NamedEntity>> ENTITIES = Arrays.<Class<? extends NamedEntity>>asList(YachtClass.class, Captain.class, Owner.class, Yacht.class, Regatta.class, Group.class, Stage.class); // SECTIONS[i] esybių klasė
+  private static final int YACHT_CLASSES = 0, YACHTS = 3, REGATTAS = 4, GROUPS = 5, STAGES = 6, ENTRIES = 7, RACES = 8; // SECTIONS indeksai
+  // reikšmių tipai byloje
+  static final byte INT = 1, LONG = 2, DOUBLE = 3, STRING = 4, DATE = 5, TIMESTAMP = 6;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private Snapshot() {
+  }
+
+/**
+ * Įrašo dabartinius duomenis į bylą.
+ * Pirmiausia rašoma į laikiną bylą (file + „.tmp“), kuri baigus pervadinama,
+ * todėl load() niekada nemato nebaigtos bylos.
+ *
+ * @param file byla
+ * @return true, jei kopija įrašyta, false – jei įvyko klaida
+ */
+  public static boolean write(File file) {
+    File temporary = new File(file.getPath() + ".tmp");
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+          ResultSet resultSet = session.prepare(SELECT_VERSION).executeQuery();
+          if (!resultSet.next())
+            throw new SQLException("Data version sequence DuomenųVersija not found");
+          output.writeInt(MAGIC);
+          output.writeInt(FORMAT);
+          output.writeInt(Arrays.hashCode(SECTIONS));
+          output.writeLong(resultSet.getLong(1));
+          writeString(output, resultSet.getString(2));
+          for (String section : SECTIONS)
+            writeSection(output, session.prepare(section).executeQuery());
+        } finally {
+          output.close();
+        }
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("write SQL error: " + exception.getMessage());
+      temporary.delete();
+      return false;
+    } catch (IOException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("write I/O error: " + exception.getMessage());
+      temporary.delete();
+      return false;
+    }
+    if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("Unable to rename " + temporary + " to " + file);
+      return false;
+    }
+    return true;
+  }
+
+  private static void writeSection(DataOutputStream output, ResultSet resultSet) throws SQLException, IOException {
+    ResultSetMetaData metaData = resultSet.getMetaData();
+    byte[] types = new byte[metaData.getColumnCount()];
+    for (int column = 0; column < types.length; column++)
+      types[column] = typeOf(metaData.getColumnType(column + 1));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream rows = new DataOutputStream(bytes);
+    int count = 0;
+    while (resultSet.next()) {
+      for (int column = 0; column < types.length; column++) {
+        switch (types[column]) {
+          case INT:
+            int intValue = resultSet.getInt(column + 1);
+            if (present(rows, resultSet))
+              rows.writeInt(intValue);
+            break;
+          case LONG:
+            long longValue = resultSet.getLong(column + 1);
+            if (present(rows, resultSet))
+              rows.writeLong(longValue);
+            break;
+          case DOUBLE:
+            double doubleValue = resultSet.getDouble(column + 1);
+            if (present(rows, resultSet))
+              rows.writeDouble(doubleValue);
+            break;
+          case STRING:
+            String string = resultSet.getString(column + 1);
+            if (present(rows, resultSet))
+              writeString(rows, string);
+            break;
+          case DATE:
+            Date date = resultSet.getDate(column + 1);
+            if (present(rows, resultSet))
+              rows.writeLong(date.getTime());
+            break;
+          case TIMESTAMP:
+            Timestamp timestamp = resultSet.getTimestamp(column + 1);
+            if (present(rows, resultSet)) {
+              rows.writeLong(timestamp.getTime());
+              rows.writeInt(timestamp.getNanos());
+            }
+            break;
+        }
+      }
+      count++;
+    }
+    rows.flush();
+    output.writeInt(types.length);
+    output.write(types);
+    output.writeInt(count);
+    bytes.writeTo(output);
+  }
+
+/**
+ * Įrašo reikšmės žymę: ar paskutinė perskaityta reikšmė ne NULL.
+ */
+  private static boolean present(DataOutputStream rows, ResultSet resultSet) throws SQLException, IOException {
+    boolean present = !resultSet.wasNull();
+    rows.writeByte(present ? 1 : 0);
+    return present;
+  }
+
+  private static byte typeOf(int sqlType) throws SQLException {
+    switch (sqlType) {
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+        return INT;
+      case Types.BIGINT:
+        return LONG;
+      case Types.REAL:
+      case Types.FLOAT:
+      case Types.DOUBLE:
+        return DOUBLE;
+      case Types.CHAR:
+      case Types.VARCHAR:
+        return STRING;
+      case Types.DATE:
+        return DATE;
+      case Types.TIMESTAMP:
+        return TIMESTAMP;
+    }
+    throw new SQLException("Unsupported snapshot column type: " + sqlType);
+  }
+
+  private static void writeString(DataOutputStream output, String string) throws IOException {
+    if (string == null) {
+      output.writeInt(-1);
+      return;
+    }
+    byte[] bytes = string.getBytes(UTF8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0)
+      return null;
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, UTF8);
+  }
+
+/**
+ * Užkrauna kopiją, jei ji atitinka dabartinius duomenis: sudeda esybes į
+ * podėlius (jei visos lentelės eilutės tilpo – pažymi podėlį pilnu, žr.
+ * EntityCache.markComplete()), sujungia visų regatų grafus ir sukuria
+ * RatingTable.
+ * Kviečiama paleidžiant, kol kitos gijos dar nenaudoja esybių.
+ *
+ * @param file byla
+ * @return true, jei kopija užkrauta; false – jei bylos nėra, ji pasenusi ar
+ *         netinkamo formato arba įvyko klaida (tada podėliai išvalomi)
+ */
+  public static boolean load(File file) {
+    if (!file.isFile())
+      return false;
+    long start = System.nanoTime();
+    MappedByteBuffer buffer;
+    try {
+      FileInputStream input = new FileInputStream(file);
+      try {
+        FileChannel channel = input.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      } finally {
+        input.close(); // atvaizdis lieka galioti
+      }
+    } catch (IOException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("load I/O error: " + exception.getMessage());
+      return false;
+    }
+    boolean loading = false;
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT || buffer.getInt() != Arrays.hashCode(SECTIONS)) {
+        if (logger.isEnabledFor(Level.WARN))
+          logger.warn("Snapshot " + file + " has an incompatible format");
+        return false;
+      }
+      long version = buffer.getLong();
+      String path = readString(buffer);
+      Database.Session session = Database.acquire();
+      try {
+        ResultSet resultSet = session.prepare(SELECT_VERSION).executeQuery();
+        if (!resultSet.next() || resultSet.getLong(1) != version || !(path == null ? resultSet.getString(2) == null : path.equals(resultSet.getString(2)))) {
+          if (logger.isInfoEnabled())
+            logger.info("Snapshot " + file + " is stale");
+          return false;
+        }
+      } finally {
+        session.release();
+      }
+
+      loading = true;
+      int ratingVersion = RatingTable.getVersion();
+      int yachts = 0;
+      Vector<YachtClass> yachtClasses = new Vector<YachtClass>();
+      Vector<Regatta> regattas = new Vector<Regatta>();
+      Vector<Group> groups = new Vector<Group>();
+      Vector<Stage> stages = new Vector<Stage>();
+      for (int section = YACHT_CLASSES; section < ENTITIES.size(); section++) {
+        Class<? extends NamedEntity> subClass = ENTITIES.get(section);
+        EntityCache cache = NamedEntity.getCache(subClass);
+        int generation = cache.getGeneration();
+        SnapshotRow row = new SnapshotRow(buffer);
+        int rows = 0;
+        for (; row.next(); rows++) {
+          NamedEntity namedEntity = NamedEntity.load(row, 1, subClass);
+          switch (section) {
+            case YACHT_CLASSES:
+              yachtClasses.add((YachtClass)namedEntity);
+              break;
+            case REGATTAS:
+              regattas.add((Regatta)namedEntity);
+              break;
+            case GROUPS:
+              groups.add((Group)namedEntity);
+              break;
+            case STAGES:
+              stages.add((Stage)namedEntity);
+              break;
+          }
+        }
+        cache.markComplete(generation, rows);
+        if (section == YACHTS)
+          yachts = rows;
+      }
+      Vector<Entry> entries = new Vector<Entry>();
+      SnapshotRow row = new SnapshotRow(buffer);
+      while (row.next())
+        entries.add(Entry.read(row));
+      Vector<Race> races = new Vector<Race>();
+      row = new SnapshotRow(buffer);
+      while (row.next())
+        races.add(Race.read(row));
+
+      Regatta.setGraphs(regattas, groups, stages, entries, races);
+      RatingTable.install(yachtClasses, ratingVersion);
+      if (logger.isInfoEnabled())
+        logger.info("Snapshot " + file + " loaded in " + (System.nanoTime() - start) / 1000000 + " ms: " + yachts + " yachts, " + regattas.size() + " regattas, " + races.size() + " races");
+      return true;
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("load SQL error: " + exception.getMessage());
+    } catch (BufferUnderflowException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("Snapshot " + file + " is truncated");
+    }
+    if (loading)
+      NamedEntity.clearCaches();
+    return false;
+  }
+}
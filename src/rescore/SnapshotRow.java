@@ -0,0 +1,129 @@
+/**
+ * Momentinės kopijos dalies eilutės (žr. Snapshot), skaitomos tiesiai iš
+ * bylos atvaizdžio.
+ * next() iškoduoja kitą eilutę į primityvių reikšmių masyvus, o get...()
+ * metodai, kaip ir ResultSet, grąžina stulpelio (numeruojama nuo 1) reikšmę
+ * ir wasNull() – ar ji buvo NULL. Taip RowMapper.map(SnapshotRow, int),
+ * Entry.read() ir Race.read() skaito tuos pačius stulpelius, kaip iš
+ * duombazės, be tarpinių objektų kiekvienai reikšmei.
+ */
+package rescore;
+
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.Timestamp;
+
+public final class SnapshotRow {
+  private final ByteBuffer buffer;
+  private final byte[] types;
+  private final int count; // kiek eilučių dalyje
+  private int read = 0;
+  private final boolean[] nulls;
+  private final long[] numbers; // INT, LONG, DATE, TIMESTAMP (milisekundės), DOUBLE (bitai)
+  private final int[] nanos; // TIMESTAMP
+  private final String[] strings;
+  private boolean wasNull = false;
+
+/**
+ * Perskaito dalies antraštę (stulpelių tipus ir eilučių skaičių).
+ *
+ * @param buffer byla, nustatyta į dalies pradžią
+ */
+  SnapshotRow(ByteBuffer buffer) {
+    this.buffer = buffer;
+    types = new byte[buffer.getInt()];
+    buffer.get(types);
+    count = buffer.getInt();
+    nulls = new boolean[types.length];
+    numbers = new long[types.length];
+    nanos = new int[types.length];
+    strings = new String[types.length];
+  }
+
+/**
+ * Pereina prie kitos eilutės.
+ *
+ * @return false, jei eilučių nebeliko (buffer tada nustatytas į kitos dalies
+ *         pradžią)
+ */
+  boolean next() {
+    if (read == count)
+      return false;
+    read++;
+    for (int column = 0; column < types.length; column++) {
+      nulls[column] = buffer.get() == 0;
+      if (nulls[column])
+        continue;
+      switch (types[column]) {
+        case Snapshot.INT:
+          numbers[column] = buffer.getInt();
+          break;
+        case Snapshot.LONG:
+        case Snapshot.DOUBLE:
+        case Snapshot.DATE:
+          numbers[column] = buffer.getLong();
+          break;
+        case Snapshot.STRING:
+          strings[column] = Snapshot.readString(buffer);
+          break;
+        case Snapshot.TIMESTAMP:
+          numbers[column] = buffer.getLong();
+          nanos[column] = buffer.getInt();
+          break;
+      }
+    }
+    return true;
+  }
+
+  boolean wasNull() {
+    return wasNull;
+  }
+
+  int getInt(int column) {
+    return (int)getLong(column);
+  }
+
+  long getLong(int column) {
+    if (isNull(column))
+      return 0;
+    return types[column - 1] == Snapshot.DOUBLE ? (long)Double.longBitsToDouble(numbers[column - 1]) : numbers[column - 1];
+  }
+
+  float getFloat(int column) {
+    return (float)getDouble(column);
+  }
+
+  double getDouble(int column) {
+    if (isNull(column))
+      return 0;
+    return types[column - 1] == Snapshot.DOUBLE ? Double.longBitsToDouble(numbers[column - 1]) : numbers[column - 1];
+  }
+
+  String getString(int column) {
+    if (isNull(column))
+      return null;
+    if (types[column - 1] != Snapshot.STRING)
+      throw new IllegalStateException("Snapshot column " + column + " is not a string");
+    return strings[column - 1];
+  }
+
+  Date getDate(int column) {
+    if (isNull(column))
+      return null;
+    return new Date(numbers[column - 1]);
+  }
+
+  Timestamp getTimestamp(int column) {
+    if (isNull(column))
+      return null;
+    Timestamp timestamp = new Timestamp(numbers[column - 1]);
+    if (types[column - 1] == Snapshot.TIMESTAMP)
+      timestamp.setNanos(nanos[column - 1]);
+    return timestamp;
+  }
+
+  private boolean isNull(int column) {
+    wasNull = nulls[column - 1];
+    return wasNull;
+  }
+}
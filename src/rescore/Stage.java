@@ -0,0 +1,204 @@
+/**
+ * Grupės etapas (lenktynės).
+ * Objektai saugomi duombazės lentelėje Etapai; etapo plaukimai – Plaukimai
+ * (žr. Race). Visą regatą kartu su etapais žr. Regatta.get(id, true).
+ */
+package rescore;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class Stage extends NamedEntity {
+  private static Logger logger = Logger.getLogger(Stage.class.getName());
+  private static final String SELECT_STAGE = "SELECT Id, Grupė, Pavadinimas, Sistema, Pastabos FROM Etapai WHERE Id = ?";
+  private static final String SELECT_GROUP_STAGES = "SELECT Id, Grupė, Pavadinimas, Sistema, Pastabos FROM Etapai WHERE Grupė = ? ORDER BY Id";
+  static final String SELECT_ALL_STAGES = "SELECT Id, Grupė, Pavadinimas, Sistema, Pastabos FROM Etapai ORDER BY Id";
+  static final String SELECT_REGATTA_STAGES = "SELECT e.Id, e.Grupė, e.Pavadinimas, e.Sistema, e.Pastabos FROM Etapai e JOIN Grupės g ON g.Id = e.Grupė WHERE g.Regata = ? ORDER BY e.Id";
+  private static final String INSERT_STAGE = "INSERT INTO Etapai (Grupė, Pavadinimas) VALUES (?, ?)";
+  private static final String UPDATE_NAME = "UPDATE Etapai SET Pavadinimas = ? WHERE Id = ?";
+  private static final String DELETE_STAGE = "DELETE FROM Etapai WHERE Id = ?";
+  private final int groupId;
+  private Group group;
+  private int system; // 0 – nenurodyta
+  private String notes;
+  private List<Race> races; // null – dar neužklausta
+
+/**
+ * Konstruktorius.
+ * Naudojamas tik šioje klasėje. Norint gauti etapo objektą iš kitur, naudoti
+ * get() arba Group.getStages().
+ */
+  private Stage(int id, int groupId, String name, int system, String notes) {
+    super(id);
+    this.groupId = groupId;
+    this.name = name;
+    this.system = system;
+    this.notes = notes;
+  }
+
+  // esybių kūrimas iš duombazės eilučių, kurias grąžina select užklausos
+  static {
+    registerRowMapper(Stage.class, new RowMapper<Stage>() {
+      public Stage map(ResultSet resultSet, int column) throws SQLException {
+        return new Stage(resultSet.getInt(column), resultSet.getInt(column + 1), resultSet.getString(column + 2), resultSet.getInt(column + 3), resultSet.getString(column + 4));
+      }
+
+      public Stage map(SnapshotRow row, int column) {
+        return new Stage(row.getInt(column), row.getInt(column + 1), row.getString(column + 2), row.getInt(column + 3), row.getString(column + 4));
+      }
+    });
+  }
+
+/**
+ * Grąžina etapą pagal jo ID.
+ *
+ * @param id etapo ID
+ * @return etapas arba null, jei tokio etapo nėra
+ */
+  public static Stage get(int id) {
+    return (Stage)NamedEntity.get(id, SELECT_STAGE, Stage.class);
+  }
+
+/**
+ * Užklausia grupės etapų (žr. Group.getStages()).
+ *
+ * @return etapai ID didėjimo tvarka arba null, jei įvyko klaida
+ */
+  static List<Stage> getByGroup(Group group) {
+    Vector<Stage> list = new Vector<Stage>();
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement selectStages = session.prepare(SELECT_GROUP_STAGES);
+        selectStages.setInt(1, group.getId());
+        ResultSet resultSet = selectStages.executeQuery();
+        while (resultSet.next()) {
+          Stage stage = (Stage)load(resultSet, 1, Stage.class);
+          stage.group = group;
+          list.add(stage);
+        }
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("getByGroup SQL error: " + exception.getMessage());
+      list = null;
+    }
+    return list;
+  }
+
+/**
+ * Sukuria naują grupės etapą.
+ * Įrašo į duomenų bazę.
+ *
+ * @param group grupė
+ * @param name  pavadinimas
+ * @return etapas arba null, jei įvyko klaida
+ */
+  public static Stage create(Group group, String name) {
+    Stage stage = null;
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement insertStage = session.prepare(INSERT_STAGE, Statement.RETURN_GENERATED_KEYS);
+        insertStage.setInt(1, group.getId());
+        insertStage.setString(2, name);
+        if (insertStage.executeUpdate() == 1) {
+          stage = (Stage)intern(new Stage(getGeneratedKey(insertStage), group.getId(), name, 0, null));
+          stage.group = group;
+          stage.races = Collections.unmodifiableList(new Vector<Race>());
+          group.stagesChanged();
+          fireCreated(stage);
+        }
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("create SQL error: " + exception.getMessage());
+    }
+    return stage;
+  }
+
+  void setGroup(Group group) {
+    this.group = group;
+  }
+
+/**
+ * Nustato Regatta.get(id, true) užklaustus etapo plaukimus.
+ */
+  void setRaces(List<Race> races) {
+    this.races = Collections.unmodifiableList(races);
+  }
+
+  public int getGroupId() {
+    return groupId;
+  }
+
+  public Group getGroup() {
+    if (group == null)
+      group = Group.get(groupId);
+    return group;
+  }
+
+/**
+ * Taškų skaičiavimo sistema.
+ *
+ * @return sistemos kodas arba 0, jei nenurodyta
+ */
+  public int getSystem() {
+    return system;
+  }
+
+  public String getNotes() {
+    return notes;
+  }
+
+/**
+ * Etapo plaukimai jachtų ID didėjimo tvarka.
+ * Jei dar neužklausti, užklausia jų viena užklausa (jų jachtų – ne).
+ *
+ * @return plaukimų sąrašas (nekeičiamas) arba null, jei įvyko klaida
+ */
+  public List<Race> getRaces() {
+    if (races == null) {
+      List<Race> list = Race.getByStage(getId());
+      if (list != null)
+        races = Collections.unmodifiableList(list);
+    }
+    return races;
+  }
+
+  public boolean setName(String name) {
+    return setName(name, UPDATE_NAME);
+  }
+
+  protected String getUpdateStatement(int fields) {
+    return UPDATE_NAME; // keičiamas tik pavadinimas
+  }
+
+/**
+ * Panaikina etapą iš duomenų bazės kartu su jo plaukimais (ON DELETE
+ * CASCADE).
+ * Toliau šis objektas nebeturėtų būti naudojamas.
+ *
+ * @return true, jei objektas panaikintas, false – jei įvyko klaida arba
+ *         objektas buvo panaikintas anksčiau
+ */
+  public boolean remove() {
+    Group known = group;
+    if (!remove(DELETE_STAGE))
+      return false;
+    if (known != null)
+      known.stagesChanged();
+    return true;
+  }
+}
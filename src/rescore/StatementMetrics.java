@@ -0,0 +1,88 @@
+/**
+ * Vienos paruoštos užklausos (SQL teksto) vykdymų statistika: trukmių
+ * histograma, klaidų ir pakeistų eilučių skaičius.
+ * Renka Database.Session paruoštos užklausos (žr. InstrumentedStatement).
+ */
+package rescore;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StatementMetrics implements StatementMetricsMBean {
+  private final String sql;
+  private final LatencyHistogram latencies = new LatencyHistogram();
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong rowsUpdated = new AtomicLong();
+
+  StatementMetrics(String sql) {
+    this.sql = sql;
+  }
+
+/**
+ * Įrašo vieną vykdymą.
+ *
+ * @param nanos  trukmė nanosekundėmis
+ * @param rows   kiek eilučių pakeista (0 – užklausa)
+ * @param failed ar vykdant įvyko klaida
+ */
+  void record(long nanos, long rows, boolean failed) {
+    latencies.record(nanos);
+    if (rows > 0)
+      rowsUpdated.addAndGet(rows);
+    if (failed)
+      errors.incrementAndGet();
+  }
+
+  public LatencyHistogram getLatencies() {
+    return latencies;
+  }
+
+  public String getSql() {
+    return sql;
+  }
+
+  public long getCount() {
+    return latencies.getCount();
+  }
+
+  public long getErrors() {
+    return errors.get();
+  }
+
+  public long getRowsUpdated() {
+    return rowsUpdated.get();
+  }
+
+  public double getTotalMillis() {
+    return latencies.getTotal() / 1e6;
+  }
+
+  public double getMeanMicros() {
+    return latencies.getMean() / 1e3;
+  }
+
+  public double getP50Micros() {
+    return latencies.getPercentile(50) / 1e3;
+  }
+
+  public double getP90Micros() {
+    return latencies.getPercentile(90) / 1e3;
+  }
+
+  public double getP99Micros() {
+    return latencies.getPercentile(99) / 1e3;
+  }
+
+  public double getP999Micros() {
+    return latencies.getPercentile(99.9) / 1e3;
+  }
+
+  public double getMaxMicros() {
+    return latencies.getMax() / 1e3;
+  }
+
+  public void reset() {
+    latencies.reset();
+    errors.set(0);
+    rowsUpdated.set(0);
+  }
+}
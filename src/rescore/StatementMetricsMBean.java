@@ -0,0 +1,30 @@
+/**
+ * Paruoštos užklausos statistika JMX (žr. StatementMetrics).
+ */
+package rescore;
+
+public interface StatementMetricsMBean {
+  String getSql();
+
+  long getCount();
+
+  long getErrors();
+
+  long getRowsUpdated();
+
+  double getTotalMillis();
+
+  double getMeanMicros();
+
+  double getP50Micros();
+
+  double getP90Micros();
+
+  double getP99Micros();
+
+  double getP999Micros();
+
+  double getMaxMicros();
+
+  void reset();
+}
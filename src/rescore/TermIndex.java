@@ -0,0 +1,347 @@
+/**
+ * Žodžių (terminų) indeksas: poros (terminas, ID).
+ * Terminai laikomi surikiuotame masyve, todėl terminų su duota pradžia
+ * paieška – dvejetainė paieška ir nuoseklus skaitymas. Paieškai su viena
+ * klaida (įterptu, praleistu ar pakeistu simboliu) laikoma kiekvieno termino
+ * „trynimų kaimynystė“: kiekvieno skirtingo termino ir visų jo variantų be
+ * vieno simbolio maišos kodai (maišos lentelėje, kad pakeitimai būtų pigūs).
+ * Du terminai skiriasi ne daugiau kaip vienu redagavimu tik tada, kai jų
+ * kaimynystės susikerta, o kandidatai dar patikrinami tiksliai.
+ * Objektas nesinchronizuotas – sinchronizuoja naudotojas.
+ */
+package rescore;
+
+import java.util.Arrays;
+
+class TermIndex {
+  private static final int NONE = -1;
+  private String[] terms = new String[16]; // surikiuota pagal (terminas, ID)
+  private int[] termIds = new int[16];
+  private int termCount = 0;
+  private boolean sorted = true; // false – po addUnsorted(), kol nepakviestas sort()
+  // skirtingų terminų trynimų kaimynystė: maišos lentelė su grandinėlėmis,
+  // elementai masyvuose (ID randami terms masyve)
+  private int[] buckets = newBuckets(64); // pirmas grandinėlės elementas arba NONE
+  private long[] entryHashes = new long[64];
+  private String[] entryTerms = new String[64];
+  private int[] nextEntries = new int[64]; // kitas grandinėlės (arba laisvas) elementas
+  private int entryCount = 0, usedEntries = 0;
+  private int freeEntry = NONE; // panaikintų elementų sąrašas
+
+  int size() {
+    return termCount;
+  }
+
+/**
+ * Prideda porą ir palaiko terminų tvarką (O(n) – masyvo postūmis).
+ */
+  void add(String term, int id) {
+    int position = find(term, id);
+    if (position >= 0)
+      return;
+    position = -position - 1;
+    ensureTermCapacity(termCount + 1);
+    System.arraycopy(terms, position, terms, position + 1, termCount - position);
+    System.arraycopy(termIds, position, termIds, position + 1, termCount - position);
+    terms[position] = term;
+    termIds[position] = id;
+    termCount++;
+    if (!hasTerm(position - 1, term) && !hasTerm(position + 1, term)) // naujas terminas
+      addNeighbourhood(term);
+  }
+
+/**
+ * Prideda porą nerikiuodamas (greitam pradiniam užpildymui).
+ * Ta pati pora neturi kartotis. Prieš paiešką būtina iškviesti sort().
+ */
+  void addUnsorted(String term, int id) {
+    sorted = false;
+    ensureTermCapacity(termCount + 1);
+    terms[termCount] = term;
+    termIds[termCount++] = id;
+  }
+
+  void sort() {
+    if (!sorted) {
+      sortTerms(0, termCount - 1);
+      for (int position = 0; position < termCount; position++)
+        if (!hasTerm(position - 1, terms[position]))
+          addNeighbourhood(terms[position]);
+      sorted = true;
+    }
+  }
+
+  void remove(String term, int id) {
+    int position = find(term, id);
+    if (position < 0)
+      return;
+    System.arraycopy(terms, position + 1, terms, position, termCount - position - 1);
+    System.arraycopy(termIds, position + 1, termIds, position, termCount - position - 1);
+    terms[--termCount] = null;
+    if (hasTerm(position - 1, term) || hasTerm(position, term)) // terminą turi ir kiti ID
+      return;
+    for (int deleted = -1; deleted < term.length(); deleted++) {
+      if (isDuplicateDeletion(term, deleted))
+        continue;
+      long hash = hash(term, deleted);
+      int bucket = (int)(hash ^ hash >>> 32) & buckets.length - 1;
+      int previous = NONE;
+      for (int entry = buckets[bucket]; entry != NONE; previous = entry, entry = nextEntries[entry])
+        if (entryHashes[entry] == hash && entryTerms[entry].equals(term)) {
+          if (previous == NONE)
+            buckets[bucket] = nextEntries[entry];
+          else
+            nextEntries[previous] = nextEntries[entry];
+          entryTerms[entry] = null;
+          nextEntries[entry] = freeEntry;
+          freeEntry = entry;
+          usedEntries--;
+          break;
+        }
+    }
+  }
+
+/**
+ * Randa ID porų, kurių terminas prasideda prefix (terminų tvarka).
+ *
+ * @param prefix  termino pradžia
+ * @param results surastų ID kaupiklis
+ */
+  void findPrefix(String prefix, IdCollector results) {
+    for (int position = lowerBound(prefix); position < termCount && !results.isFull() && terms[position].startsWith(prefix); position++)
+      results.add(termIds[position]);
+  }
+
+/**
+ * Randa ID porų, kurių terminas nuo query skiriasi lygiai vienu redagavimu.
+ */
+  void findFuzzy(String query, IdCollector results) {
+    for (int deleted = -1; deleted < query.length() && !results.isFull(); deleted++) {
+      if (isDuplicateDeletion(query, deleted))
+        continue;
+      long hash = hash(query, deleted);
+      for (int entry = buckets[(int)(hash ^ hash >>> 32) & buckets.length - 1]; entry != NONE && !results.isFull(); entry = nextEntries[entry])
+        if (entryHashes[entry] == hash && isOneEdit(entryTerms[entry], query)) {
+          String term = entryTerms[entry];
+          for (int position = lowerBound(term); position < termCount && !results.isFull() && terms[position].equals(term); position++)
+            results.add(termIds[position]);
+        }
+    }
+  }
+
+/**
+ * Ar a ir b skiriasi lygiai vienu įterpimu, praleidimu ar pakeitimu.
+ */
+  static boolean isOneEdit(String a, String b) {
+    int lengthA = a.length(), lengthB = b.length();
+    if (lengthA < lengthB)
+      return isOneEdit(b, a);
+    if (lengthA - lengthB > 1)
+      return false;
+    int start = 0;
+    while (start < lengthB && a.charAt(start) == b.charAt(start))
+      start++;
+    if (start == lengthB)
+      return lengthA != lengthB;
+    if (lengthA == lengthB)
+      return a.regionMatches(start + 1, b, start + 1, lengthA - start - 1);
+    return a.regionMatches(start + 1, b, start, lengthB - start);
+  }
+
+  private void addNeighbourhood(String term) {
+    for (int deleted = -1; deleted < term.length(); deleted++) {
+      if (isDuplicateDeletion(term, deleted))
+        continue;
+      if (usedEntries >= buckets.length - (buckets.length >> 2))
+        rehash(buckets.length * 2);
+      int entry = freeEntry;
+      if (entry != NONE)
+        freeEntry = nextEntries[entry];
+      else {
+        if (entryCount == entryHashes.length) {
+          int capacity = entryCount * 2;
+          entryHashes = Arrays.copyOf(entryHashes, capacity);
+          entryTerms = Arrays.copyOf(entryTerms, capacity);
+          nextEntries = Arrays.copyOf(nextEntries, capacity);
+        }
+        entry = entryCount++;
+      }
+      long hash = hash(term, deleted);
+      int bucket = (int)(hash ^ hash >>> 32) & buckets.length - 1;
+      entryHashes[entry] = hash;
+      entryTerms[entry] = term;
+      nextEntries[entry] = buckets[bucket];
+      buckets[bucket] = entry;
+      usedEntries++;
+    }
+  }
+
+  private void rehash(int capacity) {
+    buckets = newBuckets(capacity);
+    for (int entry = 0; entry < entryCount; entry++) {
+      if (entryTerms[entry] == null) // laisvas
+        continue;
+      long hash = entryHashes[entry];
+      int bucket = (int)(hash ^ hash >>> 32) & capacity - 1;
+      nextEntries[entry] = buckets[bucket];
+      buckets[bucket] = entry;
+    }
+    freeEntry = NONE; // laisvi elementai sudedami iš naujo
+    for (int entry = entryCount - 1; entry >= 0; entry--)
+      if (entryTerms[entry] == null) {
+        nextEntries[entry] = freeEntry;
+        freeEntry = entry;
+      }
+  }
+
+  private static int[] newBuckets(int capacity) {
+    int[] buckets = new int[capacity];
+    Arrays.fill(buckets, NONE);
+    return buckets;
+  }
+
+/**
+ * Termino be deleted-ojo simbolio (-1 – viso termino) 64 bitų FNV-1a maiša.
+ */
+  private static long hash(String term, int deleted) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < term.length(); i++) {
+      if (i == deleted)
+        continue;
+      hash ^= term.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+/**
+ * Praleidus vieną iš kelių vienodų gretimų simbolių gaunamas tas pats
+ * variantas – jis saugomas tik kartą.
+ */
+  private static boolean isDuplicateDeletion(String term, int deleted) {
+    return deleted > 0 && term.charAt(deleted) == term.charAt(deleted - 1);
+  }
+
+  private boolean hasTerm(int position, String term) {
+    return position >= 0 && position < termCount && terms[position].equals(term);
+  }
+
+/**
+ * Pirmoji terms pozicija, kurios terminas ne mažesnis nei term.
+ */
+  private int lowerBound(String term) {
+    int lower = 0, upper = termCount;
+    while (lower < upper) {
+      int middle = (lower + upper) >>> 1;
+      if (terms[middle].compareTo(term) < 0)
+        lower = middle + 1;
+      else
+        upper = middle;
+    }
+    return lower;
+  }
+
+  private int find(String term, int id) {
+    int lower = 0, upper = termCount - 1;
+    while (lower <= upper) {
+      int middle = (lower + upper) >>> 1;
+      int comparison = compareTerms(terms[middle], termIds[middle], term, id);
+      if (comparison < 0)
+        lower = middle + 1;
+      else if (comparison > 0)
+        upper = middle - 1;
+      else
+        return middle;
+    }
+    return -lower - 1;
+  }
+
+  private static int compareTerms(String term, int id, String otherTerm, int otherId) {
+    int comparison = term.compareTo(otherTerm);
+    if (comparison != 0)
+      return comparison;
+    return id < otherId ? -1 : id == otherId ? 0 : 1;
+  }
+
+  private void sortTerms(int lower, int upper) {
+    while (lower < upper) {
+      int middle = (lower + upper) >>> 1;
+      String pivot = terms[middle];
+      int pivotId = termIds[middle];
+      int i = lower, j = upper;
+      while (i <= j) {
+        while (compareTerms(terms[i], termIds[i], pivot, pivotId) < 0)
+          i++;
+        while (compareTerms(terms[j], termIds[j], pivot, pivotId) > 0)
+          j--;
+        if (i <= j) {
+          String term = terms[i];
+          terms[i] = terms[j];
+          terms[j] = term;
+          int id = termIds[i];
+          termIds[i++] = termIds[j];
+          termIds[j--] = id;
+        }
+      }
+      if (j - lower < upper - i) { // rekursija – mažesnei daliai
+        sortTerms(lower, j);
+        lower = i;
+      } else {
+        sortTerms(i, upper);
+        upper = j;
+      }
+    }
+  }
+
+  private void ensureTermCapacity(int capacity) {
+    if (capacity > terms.length) {
+      capacity = Math.max(capacity, terms.length * 2);
+      terms = Arrays.copyOf(terms, capacity);
+      termIds = Arrays.copyOf(termIds, capacity);
+    }
+  }
+
+/**
+ * Surastų ID kaupiklis: be pasikartojimų (ID – teigiami), ne daugiau nei
+ * limit, pridėjimo tvarka.
+ */
+  static class IdCollector {
+    private final int[] ids;
+    private final int[] seen; // atviro adresavimo aibė, 0 – tuščia vieta
+    private int count = 0;
+
+    IdCollector(int limit) {
+      ids = new int[limit];
+      seen = new int[Integer.highestOneBit(Math.max(limit, 2) * 2 - 1) * 2];
+    }
+
+    boolean isFull() {
+      return count == ids.length;
+    }
+
+    void add(int id) {
+      if (isFull())
+        return;
+      int slot = id * 0x9e3779b9 & seen.length - 1;
+      while (seen[slot] != 0) {
+        if (seen[slot] == id)
+          return;
+        slot = slot + 1 & seen.length - 1;
+      }
+      seen[slot] = id;
+      ids[count++] = id;
+    }
+
+    int size() {
+      return count;
+    }
+
+    int get(int index) {
+      return ids[index];
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(ids, count);
+    }
+  }
+}
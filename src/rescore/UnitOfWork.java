@@ -0,0 +1,235 @@
+/**
+ * Esybių pakeitimų kaupimas ir įrašymas vienoje transakcijoje.
+ * Kol gija vykdo UnitOfWork (nuo begin() iki commit() arba rollback()),
+ * esybių setteriai pakeičia tik objekto laukus ir pažymi juos kaip pakeistus;
+ * flush() kiekvienai pakeistai esybei įrašo vieną UPDATE su visais jos
+ * pakeistais stulpeliais, o vienodos užklausos siunčiamos paketu.
+ * Be UnitOfWork setteriai, kaip ir anksčiau, įrašo kiekvieną lauką iš karto.
+ *
+ * Visą UnitOfWork laiką gija laiko tą pačią jungtį, todėl ir kitos jos
+ * užklausos (get(), create(), remove()) vykdomos toje pačioje transakcijoje.
+ * Pakeisti objektų laukai kitoms gijoms matomi iš karto, o duombazėje –
+ * tik po commit().
+ *
+ * Pirmą kartą keičiamos arba naikinamos esybės laukai įsimenami
+ * (NamedEntity.snapshot()); rollback() juos atkuria, sukurtas esybes
+ * išmeta, o panaikintas grąžina – ir apie tai praneša klausytojams, todėl
+ * jie (pvz., YachtSearchIndex) nelieka su atšauktomis reikšmėmis.
+ */
+package rescore;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Vector;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class UnitOfWork {
+  private static Logger logger = Logger.getLogger(UnitOfWork.class.getName());
+  private static ThreadLocal<UnitOfWork> currentUnit = new ThreadLocal<UnitOfWork>(); // gijos vykdomas UnitOfWork
+  private final Database.Session session;
+  private boolean failed = false; // flush() nepavyko – lieka tik rollback()
+  private final LinkedHashSet<NamedEntity> dirtyEntities = new LinkedHashSet<NamedEntity>(); // pakeitimų tvarka
+  private final LinkedHashMap<NamedEntity, NamedEntity> snapshots = new LinkedHashMap<NamedEntity, NamedEntity>(); // esybė – jos kopija prieš pirmąjį pakeitimą
+  private final LinkedHashSet<NamedEntity> createdEntities = new LinkedHashSet<NamedEntity>();
+  private final HashSet<NamedEntity> removedEntities = new HashSet<NamedEntity>();
+
+  private UnitOfWork(Database.Session session) {
+    this.session = session;
+  }
+
+/**
+ * Pradeda UnitOfWork šioje gijoje.
+ *
+ * @return UnitOfWork arba null, jei nepavyko gauti jungties
+ * @throws IllegalStateException jei gija jau vykdo UnitOfWork
+ */
+  public static UnitOfWork begin() {
+    if (currentUnit.get() != null)
+      throw new IllegalStateException("Unit of work already in progress");
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        session.getConnection().setAutoCommit(false);
+      } catch (SQLException exception) {
+        session.release();
+        throw exception;
+      }
+      UnitOfWork unitOfWork = new UnitOfWork(session);
+      currentUnit.set(unitOfWork);
+      return unitOfWork;
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("begin SQL error: " + exception.getMessage());
+      return null;
+    }
+  }
+
+/**
+ * Šios gijos vykdomas UnitOfWork.
+ *
+ * @return UnitOfWork arba null, jei gija jo nevykdo
+ */
+  public static UnitOfWork current() {
+    return currentUnit.get();
+  }
+
+  void register(NamedEntity namedEntity) {
+    dirtyEntities.add(namedEntity);
+    enlist(namedEntity);
+  }
+
+  void created(NamedEntity namedEntity) {
+    createdEntities.add(namedEntity);
+  }
+
+  void removed(NamedEntity namedEntity) {
+    enlist(namedEntity);
+    removedEntities.add(namedEntity);
+  }
+
+/**
+ * Įsimena esybės laukus, jei ji šiame UnitOfWork dar nekeista.
+ */
+  private void enlist(NamedEntity namedEntity) {
+    if (!snapshots.containsKey(namedEntity))
+      snapshots.put(namedEntity, namedEntity.snapshot());
+  }
+
+/**
+ * Kiek esybių turi neįrašytų pakeitimų.
+ */
+  public int getDirtyCount() {
+    return dirtyEntities.size();
+  }
+
+/**
+ * Įrašo pakeitimus į duombazę (transakcija lieka neatlikta).
+ * Esybių pakeitimų žymės išvalomos tik įrašius visus paketus. Jei nepavyko
+ * (įskaitant UPDATE, neradusį eilutės – ją panaikino kitas procesas),
+ * UnitOfWork lieka nepavykęs: tolesni flush() grąžina false, o commit()
+ * transakciją atšaukia.
+ *
+ * @return ar pavyko
+ */
+  public boolean flush() {
+    checkThread();
+    if (failed)
+      return false;
+    LinkedHashSet<PreparedStatement> updates = new LinkedHashSet<PreparedStatement>();
+    Vector<NamedEntity> entities = new Vector<NamedEntity>();
+    Vector<Integer> flushedFields = new Vector<Integer>();
+    try {
+      for (NamedEntity namedEntity : dirtyEntities) {
+        int fields = namedEntity.getDirtyFields();
+        if (fields == 0 || namedEntity.getId() == 0) // panaikinta
+          continue;
+        PreparedStatement update = session.prepare(namedEntity.getUpdateStatement(fields));
+        int parameter = namedEntity.bindUpdate(update, fields);
+        update.setInt(parameter, namedEntity.getId());
+        update.addBatch();
+        updates.add(update);
+        entities.add(namedEntity);
+        flushedFields.add(fields);
+      }
+      for (PreparedStatement update : updates) {
+        int[] rowCounts = update.executeBatch();
+        for (int rowCount : rowCounts)
+          if (rowCount == 0)
+            throw new SQLException("Row to update not found");
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("flush SQL error: " + exception.getMessage());
+      failed = true;
+      for (PreparedStatement update : updates) {
+        try {
+          update.clearBatch();
+        } catch (SQLException clearException) {
+          if (logger.isEnabledFor(Level.ERROR))
+            logger.error("flush SQL error: " + clearException.getMessage());
+        }
+      }
+      return false;
+    }
+    for (int i = 0; i < entities.size(); i++)
+      entities.get(i).clearDirtyFields(flushedFields.get(i));
+    dirtyEntities.clear();
+    return true;
+  }
+
+/**
+ * Įrašo pakeitimus, atlieka transakciją ir baigia UnitOfWork.
+ * Jei nepavyko, transakcija atšaukiama (kaip rollback()).
+ *
+ * @return ar pavyko
+ */
+  public boolean commit() {
+    if (!flush()) {
+      rollback();
+      return false;
+    }
+    try {
+      session.getConnection().commit();
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("commit SQL error: " + exception.getMessage());
+      rollback();
+      return false;
+    }
+    end();
+    clear();
+    return true;
+  }
+
+/**
+ * Atšaukia transakciją ir baigia UnitOfWork.
+ * Pakeistų ir panaikintų esybių laukai atkuriami, šiame UnitOfWork sukurtos
+ * esybės išmetamos; klausytojams pranešama tik apie jas.
+ */
+  public void rollback() {
+    checkThread();
+    dirtyEntities.clear();
+    try {
+      session.getConnection().rollback();
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("rollback SQL error: " + exception.getMessage());
+    }
+    end(); // kad pranešimai apie atkūrimą nebūtų priskirti šiam UnitOfWork
+    for (NamedEntity namedEntity : createdEntities)
+      namedEntity.discard();
+    for (Map.Entry<NamedEntity, NamedEntity> snapshot : snapshots.entrySet())
+      if (!createdEntities.contains(snapshot.getKey()))
+        snapshot.getKey().restore(snapshot.getValue(), removedEntities.contains(snapshot.getKey()));
+    clear();
+  }
+
+  private void clear() {
+    snapshots.clear();
+    createdEntities.clear();
+    removedEntities.clear();
+  }
+
+  private void end() {
+    currentUnit.remove();
+    Connection connection = session.getConnection();
+    try {
+      connection.setAutoCommit(true);
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("end SQL error: " + exception.getMessage());
+    }
+    session.release();
+  }
+
+  private void checkThread() {
+    if (currentUnit.get() != this)
+      throw new IllegalStateException("Unit of work is not in progress in this thread");
+  }
+}
@@ -0,0 +1,39 @@
+/**
+ * H2 trigeris (AFTER INSERT, UPDATE, DELETE, kartą sakiniui), didinantis
+ * duomenų versiją – seką DuomenųVersija – po kiekvieno lentelės keitimo
+ * sakinio (žr. sql/create.sql, Snapshot).
+ * H2 užklausa su NEXT VALUE FOR nėra transakcinė (ją įvykdžius jungtis
+ * patvirtina transakciją), o trigeryje to daryti negalima, todėl seka
+ * didinama tiesiogiai per H2 vidinę sąsają (org.h2.schema.Sequence).
+ */
+package rescore;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.h2.api.Trigger;
+import org.h2.engine.Session;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.schema.Sequence;
+
+public class VersionTrigger implements Trigger {
+  private static final String SEQUENCE = "DUOMENŲVERSIJA";
+  private String schemaName;
+
+  public void init(Connection connection, String schemaName, String triggerName, String tableName, boolean before, int type) {
+    this.schemaName = schemaName;
+  }
+
+  public void fire(Connection connection, Object[] oldRow, Object[] newRow) throws SQLException {
+    Session session = (Session)((JdbcConnection)connection).getSession();
+    Sequence sequence = session.getDatabase().getSchema(schemaName).findSequence(SEQUENCE);
+    if (sequence == null)
+      throw new SQLException("Data version sequence DuomenųVersija not found");
+    sequence.getNext(session);
+  }
+
+  public void close() {
+  }
+
+  public void remove() {
+  }
+}
@@ -7,14 +7,38 @@ package rescore;
 import java.util.List;
 import java.util.Vector;
 import java.sql.PreparedStatement;
-import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
 public class Yacht extends NamedEntity {
   private static Logger logger = Logger.getLogger(Yacht.class.getName());
-  private static PreparedStatement selectYacht, selectAllYachts, selectAllYachtIds, insertYacht, deleteYacht, updateSailNumber, updateYachtClass, updateName, updateYear, updateCaptain, updateOwner, updateSponsors;
+  // jachtos (j) kartu su modeliu, kapitonu ir savininku stulpeliai ir jungimai (žr. loadWithAssociations())
+  static final String COLUMNS_WITH_ASSOCIATIONS = "j.Id, j.BurėsNumeris, j.Modelis, j.Pavadinimas, j.PagaminimoMetai, j.Kapitonas, j.Savininkas, j.Rėmėjai, m.Id, m.Pavadinimas, m.Koeficientas, m.ProjektavimoMetai, m.Ilgis, m.Plotis, m.Vandentalpa, m.VaterlinijosIlgis, m.BuriųPlotasPlaukiantPavėjui, m.BuriųPlotasPlaukiantPriešVėją, k.Id, k.Vardas, s.Id, s.Vardas";
+  static final String JOIN_ASSOCIATIONS = "JOIN Modeliai m ON m.Id = j.Modelis LEFT JOIN Kapitonai k ON k.Id = j.Kapitonas LEFT JOIN Savininkai s ON s.Id = j.Savininkas";
+  private static final String SELECT_WITH_ASSOCIATIONS = "SELECT " + COLUMNS_WITH_ASSOCIATIONS + " FROM Jachtos j " + JOIN_ASSOCIATIONS;
+  private static final String SELECT_YACHT = "SELECT Id, BurėsNumeris, Modelis, Pavadinimas, PagaminimoMetai, Kapitonas, Savininkas, Rėmėjai FROM Jachtos WHERE Id = ?";
+  static final String SELECT_ALL_YACHTS = "SELECT Id, BurėsNumeris, Modelis, Pavadinimas, PagaminimoMetai, Kapitonas, Savininkas, Rėmėjai FROM Jachtos ORDER BY Id";
+  private static final String SELECT_ALL_YACHT_IDS = "SELECT Id FROM Jachtos ORDER BY Id";
+  private static final String SELECT_YACHT_COUNT = "SELECT COUNT(*), MAX(Id) FROM Jachtos";
+  private static final String SELECT_YACHT_WITH_ASSOCIATIONS = SELECT_WITH_ASSOCIATIONS + " WHERE j.Id = ?";
+  private static final String SELECT_ALL_YACHTS_WITH_ASSOCIATIONS = SELECT_WITH_ASSOCIATIONS + " ORDER BY j.Id";
+  static final String SELECT_MANY_YACHTS = "SELECT Id, BurėsNumeris, Modelis, Pavadinimas, PagaminimoMetai, Kapitonas, Savininkas, Rėmėjai FROM Jachtos WHERE Id IN (" + idListParameters() + ")";
+  private static final String SELECT_YACHTS_PAGE = "SELECT Id, BurėsNumeris, Modelis, Pavadinimas, PagaminimoMetai, Kapitonas, Savininkas, Rėmėjai FROM Jachtos WHERE Id > ? ORDER BY Id LIMIT ?";
+  private static final String INSERT_YACHT = "INSERT INTO Jachtos (BurėsNumeris, Modelis, Pavadinimas, PagaminimoMetai, Kapitonas, Savininkas, Rėmėjai) VALUES(?, ?, ?, ?, ?, ?, ?)";
+  private static final String DELETE_YACHT = "DELETE FROM Jachtos WHERE Id = ?";
+  private static final String UPDATE_SAIL_NUMBER = "UPDATE Jachtos SET BurėsNumeris = ? WHERE Id = ?";
+  private static final String UPDATE_YACHT_CLASS = "UPDATE Jachtos SET Modelis = ? WHERE Id = ?";
+  private static final String UPDATE_NAME = "UPDATE Jachtos SET Pavadinimas = ? WHERE Id = ?";
+  private static final String UPDATE_YEAR = "UPDATE Jachtos SET PagaminimoMetai = ? WHERE Id = ?";
+  private static final String UPDATE_CAPTAIN = "UPDATE Jachtos SET Kapitonas = ? WHERE Id = ?";
+  private static final String UPDATE_OWNER = "UPDATE Jachtos SET Savininkas = ? WHERE Id = ?";
+  private static final String UPDATE_SPONSORS = "UPDATE Jachtos SET Rėmėjai = ? WHERE Id = ?";
+  // pakeistų laukų žymės (NAME – NamedEntity) ir jų stulpeliai
+  private static final int SAIL_NUMBER = 2, YACHT_CLASS = 4, YEAR = 8, CAPTAIN = 16, OWNER = 32, SPONSORS = 64;
+  private static final String[] COLUMNS = {"Pavadinimas", "BurėsNumeris", "Modelis", "PagaminimoMetai", "Kapitonas", "Savininkas", "Rėmėjai"};
   private String sailNumber;
   private YachtClass yachtClass;
   private int year, yachtClassId, captainId, ownerId;
@@ -38,69 +62,148 @@ public class Yacht extends NamedEntity {
     this.sponsors = sponsors;
   }
 
+  // esybių kūrimas iš duombazės eilučių, kurias grąžina select užklausos
+  static {
+    registerRowMapper(Yacht.class, new RowMapper<Yacht>() {
+      public Yacht map(ResultSet resultSet, int column) throws SQLException {
+        return new Yacht(resultSet.getInt(column), resultSet.getString(column + 1), resultSet.getInt(column + 2), resultSet.getString(column + 3), resultSet.getInt(column + 4), resultSet.getInt(column + 5), resultSet.getInt(column + 6), resultSet.getString(column + 7));
+      }
+
+      public Yacht map(SnapshotRow row, int column) {
+        return new Yacht(row.getInt(column), row.getString(column + 1), row.getInt(column + 2), row.getString(column + 3), row.getInt(column + 4), row.getInt(column + 5), row.getInt(column + 6), row.getString(column + 7));
+      }
+    });
+  }
+
 /**
- * Šį konstruktorių kviečia statiniai NamedEntity klasės metodai,
- * imantys objektą iš duomenų bazės.
+ * Grąžina jachtą pagal jos ID.
  *
- * @param id objekto ID
- * @param resultSet skaitymui paruošta duombazės eilutė su kitais objekto
- *                  kūrimui reikalingais laukais, kuriuos grąžina selectYacht
+ * @param id jachtos ID
+ * @return jachtos objektas su duotu ID, arba null, jei tokios jachtos nėra
  */
-  public Yacht(int id, ResultSet resultSet) throws SQLException {
-    this(id, resultSet.getString(1), resultSet.getInt(2), resultSet.getString(3), resultSet.getInt(4), resultSet.getInt(5), resultSet.getInt(6), resultSet.getString(7));
+  public static Yacht get(int id) {
+    return (Yacht)NamedEntity.get(id, SELECT_YACHT, Yacht.class);
   }
 
 /**
- * Šį konstruktorių kviečia NamedEntity.getAll().
+ * Grąžina visų jachtų sąrašą ID didėjimo tvarka.
  *
- * @param resultSet skaitymui paruošta duombazės eilutė su visais objekto
- *                  kūrimui reikalingais laikaus, kuriuos grąžina selectAllYachts
+ * @return visų jachtų sąrašas ID didėjimo tvarka
  */
-  public Yacht(ResultSet resultSet) throws SQLException {
-    this(resultSet.getInt(1), resultSet.getString(2), resultSet.getInt(3), resultSet.getString(4), resultSet.getInt(5), resultSet.getInt(6), resultSet.getInt(7), resultSet.getString(8));
+  public static List<Yacht> getAll() {
+    return (List<Yacht>)NamedEntity.getAll(SELECT_ALL_YACHTS, SELECT_ALL_YACHT_IDS, SELECT_MANY_YACHTS, SELECT_YACHT_COUNT, Yacht.class);
   }
 
 /**
  * Grąžina jachtą pagal jos ID.
+ * Jeigu fetchAssociations, kartu ta pačia užklausa gauna ir jachtos modelį,
+ * kapitoną bei savininką, kad vėlesni getYachtClass(), getCaptain() ir
+ * getOwner() nebekreiptų į duombazę.
  *
  * @param id jachtos ID
+ * @param fetchAssociations ar kartu gauti modelį, kapitoną ir savininką
  * @return jachtos objektas su duotu ID, arba null, jei tokios jachtos nėra
  */
-  public static Yacht get(int id) {
-    return (Yacht)NamedEntity.get(id, selectYacht, Yacht.class);
+  public static Yacht get(int id, boolean fetchAssociations) {
+    if (!fetchAssociations)
+      return get(id);
+    Yacht yacht = null;
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement selectYachtWithAssociations = session.prepare(SELECT_YACHT_WITH_ASSOCIATIONS);
+        selectYachtWithAssociations.setInt(1, id);
+        ResultSet resultSet = selectYachtWithAssociations.executeQuery();
+        if (resultSet.next())
+          yacht = loadWithAssociations(resultSet);
+        else
+          logger.warn("Yacht not found in the database");
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("get SQL error: " + exception.getMessage());
+    }
+    return yacht;
   }
 
 /**
  * Grąžina visų jachtų sąrašą ID didėjimo tvarka.
+ * Jeigu fetchAssociations, visos jachtos kartu su modeliais, kapitonais ir
+ * savininkais gaunamos viena užklausa.
  *
- * @return visų jachtų sąrašas ID didėjimo tvarka
+ * @param fetchAssociations ar kartu gauti modelius, kapitonus ir savininkus
+ * @return visų jachtų sąrašas ID didėjimo tvarka arba null, jei įvyko klaida
  */
-  public static List<Yacht> getAll() {
-    return (List<Yacht>)NamedEntity.getAll(selectAllYachts, selectAllYachtIds, Yacht.class);
+  public static List<Yacht> getAll(boolean fetchAssociations) {
+    if (!fetchAssociations)
+      return getAll();
+    Vector<Yacht> list = new Vector<Yacht>();
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement selectAllYachtsWithAssociations = session.prepare(SELECT_ALL_YACHTS_WITH_ASSOCIATIONS);
+        ResultSet resultSet = selectAllYachtsWithAssociations.executeQuery();
+        while (resultSet.next())
+          list.add(loadWithAssociations(resultSet));
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("getAll SQL error: " + exception.getMessage());
+      list = null;
+    }
+    return list;
+  }
+
+/**
+ * Sukuria (arba paima iš podėlio) jachtą ir su ja susijusias esybes iš
+ * eilutės, kurios pirmi stulpeliai – COLUMNS_WITH_ASSOCIATIONS.
+ */
+  static Yacht loadWithAssociations(ResultSet resultSet) throws SQLException {
+    Yacht yacht = (Yacht)load(resultSet, 1, Yacht.class);
+    yacht.yachtClass = (YachtClass)load(resultSet, 9, YachtClass.class);
+    yacht.captain = (Captain)load(resultSet, 9 + YachtClass.COLUMN_COUNT, Captain.class);
+    yacht.owner = (Owner)load(resultSet, 11 + YachtClass.COLUMN_COUNT, Owner.class);
+    return yacht;
   }
 
 /**
- * Paruošia statinius PreparedStatement objektus.
+ * Grąžina jachtų sąrašą pagal jų ID.
  *
- * @param connection jungtis su duombaze
+ * @param ids jachtų ID
+ * @return jachtų sąrašas ta pačia tvarka kaip ids (nerastų sąraše nėra)
  */
-  static void prepareStatements(Connection connection) {
-    try {
-      selectYacht = connection.prepareStatement("SELECT BurėsNumeris, Modelis, Pavadinimas, PagaminimoMetai, Kapitonas, Savininkas, Rėmėjai FROM Jachtos WHERE Id = ?");
-      selectAllYachts = connection.prepareStatement("SELECT Id, BurėsNumeris, Modelis, Pavadinimas, PagaminimoMetai, Kapitonas, Savininkas, Rėmėjai FROM Jachtos ORDER BY Id");
-      selectAllYachtIds = connection.prepareStatement("SELECT Id FROM Jachtos ORDER BY Id");
-      insertYacht = connection.prepareStatement("INSERT INTO Jachtos (BurėsNumeris, Modelis, Pavadinimas, PagaminimoMetai, Kapitonas, Savininkas, Rėmėjai) VALUES(?, ?, ?, ?, ?, ?, ?)");
-      deleteYacht = connection.prepareStatement("DELETE FROM Jachtos WHERE Id = ?");
-      updateSailNumber = connection.prepareStatement("UPDATE Jachtos SET BurėsNumeris = ? WHERE Id = ?");
-      updateYachtClass = connection.prepareStatement("UPDATE Jachtos SET Modelis = ? WHERE Id = ?");
-      updateName = connection.prepareStatement("UPDATE Jachtos SET Pavadinimas = ? WHERE Id = ?");
-      updateYear = connection.prepareStatement("UPDATE Jachtos SET PagaminimoMetai = ? WHERE Id = ?");
-      updateCaptain = connection.prepareStatement("UPDATE Jachtos SET Kapitonas = ? WHERE Id = ?");
-      updateOwner = connection.prepareStatement("UPDATE Jachtos SET Savininkas = ? WHERE Id = ?");
-      updateSponsors = connection.prepareStatement("UPDATE Jachtos SET Rėmėjai = ? WHERE Id = ?");
-    } catch (SQLException exception) {
-      logger.error("prepareStatements SQL error: " + exception.getMessage());
-    }
+  public static List<Yacht> getMany(int[] ids) {
+    return (List<Yacht>)NamedEntity.getMany(ids, SELECT_MANY_YACHTS, Yacht.class);
+  }
+
+/**
+ * Grąžina jachtų puslapį: pirmus limit jachtų, kurių ID didesnis nei
+ * afterId, ID didėjimo tvarka (žr. NamedEntity.page()).
+ *
+ * @param afterId paskutinio ankstesnio puslapio ID arba 0
+ * @param limit   kiek daugiausiai grąžinti
+ * @return jachtų sąrašas arba null, jei įvyko klaida
+ */
+  public static List<Yacht> page(int afterId, int limit) {
+    return (List<Yacht>)NamedEntity.page(afterId, limit, SELECT_YACHTS_PAGE, Yacht.class);
+  }
+
+/**
+ * Visų jachtų seka ID didėjimo tvarka, užklausiama po pageSize tik
+ * iteruojant (žr. NamedEntity.iterate()).
+ *
+ * @param pageSize kiek užklausti vienu kartu
+ */
+  public static Iterable<Yacht> iterate(int pageSize) {
+    return NamedEntity.iterate(pageSize, SELECT_YACHTS_PAGE, Yacht.class);
+  }
+
+  public static Iterable<Yacht> iterate() {
+    return iterate(PAGE_SIZE);
   }
 
 /**
@@ -120,46 +223,104 @@ public class Yacht extends NamedEntity {
   public static Yacht create(String sailNumber, YachtClass yachtClass, String name, int year, Captain captain, Owner owner, String sponsors) {
     Yacht yacht = null;
     try {
-      int captainId, ownerId;
-      insertYacht.setString(1, sailNumber);
-      insertYacht.setInt(2, yachtClass.getId());
-      if (name == null)
-        insertYacht.setNull(3, java.sql.Types.VARCHAR);
-      else
-        insertYacht.setString(3, name);
-      if (year == 0)
-        insertYacht.setNull(4, java.sql.Types.INTEGER);
-      else
-        insertYacht.setInt(4, year);
-      if (captain == null) {
-        insertYacht.setNull(5, java.sql.Types.INTEGER);
-        captainId = 0;
-      } else {
-        captainId = captain.getId();
-        insertYacht.setInt(5, captainId);
-      }
-      if (owner == null) {
-        insertYacht.setNull(6, java.sql.Types.INTEGER);
-        ownerId = 0;
-      } else {
-        ownerId = owner.getId();
-        insertYacht.setInt(6, ownerId);
-      }
-      if (name == null)
-        insertYacht.setNull(7, java.sql.Types.VARCHAR);
-      else
-        insertYacht.setString(7, sponsors);
-      if (insertYacht.executeUpdate() == 1) {
-        yacht = new Yacht(getLastInsertId(), sailNumber, yachtClass.getId(), name, year, captainId, ownerId, sponsors);
-      } else {
-        // TODO
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement insertYacht = session.prepare(INSERT_YACHT, Statement.RETURN_GENERATED_KEYS);
+        bindInsert(insertYacht, sailNumber, yachtClass, name, year, captain, owner, sponsors);
+        int rowsAffected = insertYacht.executeUpdate();
+        if (rowsAffected == 1) {
+          yacht = (Yacht)intern(new Yacht(getGeneratedKey(insertYacht), sailNumber, yachtClass.getId(), name, year, idOf(captain), idOf(owner), sponsors));
+          fireCreated(yacht);
+        } else {
+          if (logger.isEnabledFor(Level.WARN))
+            logger.warn("Strange create inserted database rows count: " + rowsAffected);
+        }
+      } finally {
+        session.release();
       }
     } catch (SQLException exception) {
-      logger.error("create SQL error: " + exception.getMessage());
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("create SQL error: " + exception.getMessage());
     }
     return yacht;
   }
 
+/**
+ * Sukuria kelias naujas jachtas vienu paketu.
+ * Įrašo į duomenų bazę. Visi masyvai turi būti vienodo ilgio; i-toji jachta
+ * sudaroma iš i-tųjų jų elementų (kaip create()).
+ *
+ * @param sailNumbers burių numeriai
+ * @param yachtClasses modeliai
+ * @param names pavadinimai
+ * @param years pagaminimo metai (0, jei nežinomi)
+ * @param captains kapitonai (elementai gali būti null)
+ * @param owners savininkai (elementai gali būti null)
+ * @param sponsors rėmėjai
+ * @return jachtų sąrašas ta pačia tvarka kaip masyvuose arba null, jei
+ *         įvyko klaida (tada nesukuriama nė viena)
+ */
+  public static List<Yacht> createMany(String[] sailNumbers, YachtClass[] yachtClasses, String[] names, int[] years, Captain[] captains, Owner[] owners, String[] sponsors) {
+    int[] ids = null;
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement insertYacht = session.prepare(INSERT_YACHT, Statement.RETURN_GENERATED_KEYS);
+        for (int i = 0; i < sailNumbers.length; i++) {
+          bindInsert(insertYacht, sailNumbers[i], yachtClasses[i], names[i], years[i], captains[i], owners[i], sponsors[i]);
+          insertYacht.addBatch();
+        }
+        ids = executeInsertBatch(session, "Jachtos", insertYacht, sailNumbers.length);
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("createMany SQL error: " + exception.getMessage());
+    }
+    if (ids == null)
+      return null;
+    Vector<Yacht> list = new Vector<Yacht>();
+    for (int i = 0; i < ids.length; i++) {
+      Yacht yacht = (Yacht)intern(new Yacht(ids[i], sailNumbers[i], yachtClasses[i].getId(), names[i], years[i], idOf(captains[i]), idOf(owners[i]), sponsors[i]));
+      fireCreated(yacht);
+      list.add(yacht);
+    }
+    return list;
+  }
+
+/**
+ * Nustato INSERT_YACHT parametrus.
+ */
+  private static void bindInsert(PreparedStatement insertYacht, String sailNumber, YachtClass yachtClass, String name, int year, Captain captain, Owner owner, String sponsors) throws SQLException {
+    insertYacht.setString(1, sailNumber);
+    insertYacht.setInt(2, yachtClass.getId());
+    if (name == null)
+      insertYacht.setNull(3, java.sql.Types.VARCHAR);
+    else
+      insertYacht.setString(3, name);
+    if (year == 0)
+      insertYacht.setNull(4, java.sql.Types.INTEGER);
+    else
+      insertYacht.setInt(4, year);
+    if (captain == null)
+      insertYacht.setNull(5, java.sql.Types.INTEGER);
+    else
+      insertYacht.setInt(5, captain.getId());
+    if (owner == null)
+      insertYacht.setNull(6, java.sql.Types.INTEGER);
+    else
+      insertYacht.setInt(6, owner.getId());
+    if (sponsors == null)
+      insertYacht.setNull(7, java.sql.Types.VARCHAR);
+    else
+      insertYacht.setString(7, sponsors);
+  }
+
+  private static int idOf(NamedEntity entity) {
+    return entity == null ? 0 : entity.getId();
+  }
+
   /**
    * Panaikina jachtą iš duomenų bazės.
    * Toliau šis objektas nebeturėtų būti naudojamas.
@@ -168,147 +329,314 @@ public class Yacht extends NamedEntity {
    *         objektas buvo panaikintas anksčiau
    */
   public boolean remove() {
-    return remove(deleteYacht);
-  }
-
-  protected void finalize () {
-    super.finalize();
+    return remove(DELETE_YACHT);
   }
 
   public boolean setSailNumber(String sailNumber) {
     if (sailNumber == null || sailNumber.equals(this.sailNumber))
       return false;
+    if (markDirty(SAIL_NUMBER)) {
+      this.sailNumber = sailNumber;
+      fireChanged();
+      return true;
+    }
     boolean ret = false;
     try {
-      updateSailNumber.setString(1, sailNumber);
-      updateSailNumber.setInt(2, id);
-      int rowsAffected = updateSailNumber.executeUpdate();
-      if (rowsAffected == 1) {
-        this.name = name;
-        ret = true;
-      } else {
-        logger.warn("Strange setSailNumber updated database rows count: " + rowsAffected);
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement updateSailNumber = session.prepare(UPDATE_SAIL_NUMBER);
+        updateSailNumber.setString(1, sailNumber);
+        updateSailNumber.setInt(2, id);
+        int rowsAffected = updateSailNumber.executeUpdate();
+        if (rowsAffected == 1) {
+          this.sailNumber = sailNumber;
+          ret = true;
+        } else {
+          if (logger.isEnabledFor(Level.WARN))
+            logger.warn("Strange setSailNumber updated database rows count: " + rowsAffected);
+        }
+      } finally {
+        session.release();
       }
     } catch (SQLException exception) {
-      logger.error("setSailNumber SQL error: " + exception.getMessage());
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("setSailNumber SQL error: " + exception.getMessage());
     }
+    if (ret)
+      fireChanged();
     return ret;
   }
 
   public boolean setYachtClass(YachtClass yachtClass) {
+    if (markDirty(YACHT_CLASS)) {
+      this.yachtClass = yachtClass;
+      this.yachtClassId = yachtClass.getId();
+      fireChanged();
+      return true;
+    }
     boolean ret = false;
     try {
-      updateYachtClass.setInt(1, yachtClass.getId());
-      updateYachtClass.setInt(2, id);
-      int rowsAffected = updateYachtClass.executeUpdate();
-      if (rowsAffected == 1) {
-        this.yachtClass = yachtClass;
-        ret = true;
-      } else {
-        logger.warn("Strange setYachtClass updated database rows count: " + rowsAffected);
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement updateYachtClass = session.prepare(UPDATE_YACHT_CLASS);
+        updateYachtClass.setInt(1, yachtClass.getId());
+        updateYachtClass.setInt(2, id);
+        int rowsAffected = updateYachtClass.executeUpdate();
+        if (rowsAffected == 1) {
+          this.yachtClass = yachtClass;
+          this.yachtClassId = yachtClass.getId();
+          ret = true;
+        } else {
+          if (logger.isEnabledFor(Level.WARN))
+            logger.warn("Strange setYachtClass updated database rows count: " + rowsAffected);
+        }
+      } finally {
+        session.release();
       }
     } catch (SQLException exception) {
-      logger.error("setYachtClass SQL error: " + exception.getMessage());
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("setYachtClass SQL error: " + exception.getMessage());
     }
+    if (ret)
+      fireChanged();
     return ret;
   }
 
   public boolean setName(String name) {
-    return setName(name, updateName);
+    return setName(name, UPDATE_NAME);
   }
 
   public boolean setYear(int year) {
+    if (markDirty(YEAR)) {
+      this.year = year;
+      fireChanged();
+      return true;
+    }
     boolean ret = false;
     try {
-      if (year == 0)
-        updateYear.setNull(1, java.sql.Types.INTEGER);
-      else
-        updateYear.setInt(1, year);
-      updateYear.setInt(2, id);
-      int rowsAffected = updateYear.executeUpdate();
-      if (rowsAffected == 1) {
-        this.year = year;
-        ret = true;
-      } else {
-        logger.warn("Strange setYear updated database rows count: " + rowsAffected);
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement updateYear = session.prepare(UPDATE_YEAR);
+        if (year == 0)
+          updateYear.setNull(1, java.sql.Types.INTEGER);
+        else
+          updateYear.setInt(1, year);
+        updateYear.setInt(2, id);
+        int rowsAffected = updateYear.executeUpdate();
+        if (rowsAffected == 1) {
+          this.year = year;
+          ret = true;
+        } else {
+          if (logger.isEnabledFor(Level.WARN))
+            logger.warn("Strange setYear updated database rows count: " + rowsAffected);
+        }
+      } finally {
+        session.release();
       }
     } catch (SQLException exception) {
-      logger.error("setYear SQL error: " + exception.getMessage());
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("setYear SQL error: " + exception.getMessage());
     }
+    if (ret)
+      fireChanged();
     return ret;
   }
 
   public boolean setCaptain(Captain captain) {
+    if (markDirty(CAPTAIN)) {
+      this.captain = captain;
+      this.captainId = captain == null ? 0 : captain.getId();
+      fireChanged();
+      return true;
+    }
     boolean ret = false;
     try {
-      if (captain == null)
-        updateCaptain.setNull(1, java.sql.Types.INTEGER);
-      else
-        updateCaptain.setInt(1, captain.getId());
-      updateCaptain.setInt(2, id);
-      int rowsAffected = updateCaptain.executeUpdate();
-      if (rowsAffected == 1) {
-        this.captain = captain;
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement updateCaptain = session.prepare(UPDATE_CAPTAIN);
         if (captain == null)
-          this.captainId = 0;
+          updateCaptain.setNull(1, java.sql.Types.INTEGER);
         else
-          this.captainId = captain.getId();
-        ret = true;
-      } else {
-        logger.warn("Strange setCaptain updated database rows count: " + rowsAffected);
+          updateCaptain.setInt(1, captain.getId());
+        updateCaptain.setInt(2, id);
+        int rowsAffected = updateCaptain.executeUpdate();
+        if (rowsAffected == 1) {
+          this.captain = captain;
+          if (captain == null)
+            this.captainId = 0;
+          else
+            this.captainId = captain.getId();
+          ret = true;
+        } else {
+          if (logger.isEnabledFor(Level.WARN))
+            logger.warn("Strange setCaptain updated database rows count: " + rowsAffected);
+        }
+      } finally {
+        session.release();
       }
     } catch (SQLException exception) {
-      logger.error("setCaptain SQL error: " + exception.getMessage());
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("setCaptain SQL error: " + exception.getMessage());
     }
+    if (ret)
+      fireChanged();
     return ret;
   }
 
   public boolean setOwner(Owner owner) {
+    if (markDirty(OWNER)) {
+      this.owner = owner;
+      this.ownerId = owner == null ? 0 : owner.getId();
+      fireChanged();
+      return true;
+    }
     boolean ret = false;
     try {
-      if (owner == null)
-        updateOwner.setNull(1, java.sql.Types.INTEGER);
-      else
-        updateOwner.setInt(1, owner.getId());
-      updateOwner.setInt(2, id);
-      int rowsAffected = updateOwner.executeUpdate();
-      if (rowsAffected == 1) {
-        this.owner = owner;
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement updateOwner = session.prepare(UPDATE_OWNER);
         if (owner == null)
-          this.ownerId = 0;
+          updateOwner.setNull(1, java.sql.Types.INTEGER);
         else
-          this.ownerId = owner.getId();
-        ret = true;
-      } else {
-        logger.warn("Strange setOwner updated database rows count: " + rowsAffected);
+          updateOwner.setInt(1, owner.getId());
+        updateOwner.setInt(2, id);
+        int rowsAffected = updateOwner.executeUpdate();
+        if (rowsAffected == 1) {
+          this.owner = owner;
+          if (owner == null)
+            this.ownerId = 0;
+          else
+            this.ownerId = owner.getId();
+          ret = true;
+        } else {
+          if (logger.isEnabledFor(Level.WARN))
+            logger.warn("Strange setOwner updated database rows count: " + rowsAffected);
+        }
+      } finally {
+        session.release();
       }
     } catch (SQLException exception) {
-      logger.error("setOwner SQL error: " + exception.getMessage());
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("setOwner SQL error: " + exception.getMessage());
     }
+    if (ret)
+      fireChanged();
     return ret;
   }
 
   public boolean setSponsors(String sponsors) {
+    if (markDirty(SPONSORS)) {
+      this.sponsors = sponsors;
+      fireChanged();
+      return true;
+    }
     boolean ret = false;
     try {
-      if (sponsors == null)
-        updateSponsors.setNull(1, java.sql.Types.VARCHAR);
-      else
-        updateSponsors.setString(1, sponsors);
-      updateSponsors.setInt(2, id);
-      int rowsAffected = updateSponsors.executeUpdate();
-      if (rowsAffected == 1) {
-        this.sponsors = sponsors;
-        ret = true;
-      } else {
-        logger.warn("Strange setSponsors updated database rows count: " + rowsAffected);
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement updateSponsors = session.prepare(UPDATE_SPONSORS);
+        if (sponsors == null)
+          updateSponsors.setNull(1, java.sql.Types.VARCHAR);
+        else
+          updateSponsors.setString(1, sponsors);
+        updateSponsors.setInt(2, id);
+        int rowsAffected = updateSponsors.executeUpdate();
+        if (rowsAffected == 1) {
+          this.sponsors = sponsors;
+          ret = true;
+        } else {
+          if (logger.isEnabledFor(Level.WARN))
+            logger.warn("Strange setSponsors updated database rows count: " + rowsAffected);
+        }
+      } finally {
+        session.release();
       }
     } catch (SQLException exception) {
-      logger.error("setSponsors SQL error: " + exception.getMessage());
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("setSponsors SQL error: " + exception.getMessage());
     }
+    if (ret)
+      fireChanged();
     return ret;
   }
 
+  protected String getUpdateStatement(int fields) {
+    return updateStatement("Jachtos", COLUMNS, fields);
+  }
+
+  protected int bindUpdate(PreparedStatement update, int fields) throws SQLException {
+    int parameter = super.bindUpdate(update, fields);
+    if ((fields & SAIL_NUMBER) != 0)
+      update.setString(parameter++, sailNumber);
+    if ((fields & YACHT_CLASS) != 0)
+      update.setInt(parameter++, yachtClassId);
+    if ((fields & YEAR) != 0) {
+      if (year == 0)
+        update.setNull(parameter++, java.sql.Types.INTEGER);
+      else
+        update.setInt(parameter++, year);
+    }
+    if ((fields & CAPTAIN) != 0) {
+      if (captainId == 0)
+        update.setNull(parameter++, java.sql.Types.INTEGER);
+      else
+        update.setInt(parameter++, captainId);
+    }
+    if ((fields & OWNER) != 0) {
+      if (ownerId == 0)
+        update.setNull(parameter++, java.sql.Types.INTEGER);
+      else
+        update.setInt(parameter++, ownerId);
+    }
+    if ((fields & SPONSORS) != 0) {
+      if (sponsors == null)
+        update.setNull(parameter++, java.sql.Types.VARCHAR);
+      else
+        update.setString(parameter++, sponsors);
+    }
+    return parameter;
+  }
+
+  protected boolean copyFrom(NamedEntity namedEntity) {
+    Yacht yacht = (Yacht)namedEntity;
+    boolean changed = super.copyFrom(namedEntity);
+    if (!equal(sailNumber, yacht.sailNumber)) {
+      sailNumber = yacht.sailNumber;
+      changed = true;
+    }
+    if (yachtClassId != yacht.yachtClassId) {
+      yachtClassId = yacht.yachtClassId;
+      yachtClass = null; // getYachtClass() gaus naują
+      changed = true;
+    }
+    if (year != yacht.year) {
+      year = yacht.year;
+      changed = true;
+    }
+    if (captainId != yacht.captainId) {
+      captainId = yacht.captainId;
+      captain = null;
+      changed = true;
+    }
+    if (ownerId != yacht.ownerId) {
+      ownerId = yacht.ownerId;
+      owner = null;
+      changed = true;
+    }
+    if (!equal(sponsors, yacht.sponsors)) {
+      sponsors = yacht.sponsors;
+      changed = true;
+    }
+    return changed;
+  }
+
+/**
+ * Modelio ID (nekreipiantis į duombazę, skirtingai nei getYachtClass()).
+ */
+  public int getYachtClassId() {
+    return yachtClassId;
+  }
+
   public String getSailNumber() {
     return sailNumber;
   }
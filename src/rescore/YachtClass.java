@@ -7,14 +7,29 @@ package rescore;
 import java.util.List;
 import java.util.Vector;
 import java.sql.PreparedStatement;
-import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
 public class YachtClass extends NamedEntity {
   private static Logger logger = Logger.getLogger(YachtClass.class.getName());
-  private static PreparedStatement selectYachtClass, selectAllYachtClasses, selectAllYachtClassIds, updateName, deleteYachtClass;
+  private static final String SELECT_YACHT_CLASS = "SELECT Id, Pavadinimas, Koeficientas, ProjektavimoMetai, Ilgis, Plotis, Vandentalpa, VaterlinijosIlgis, BuriųPlotasPlaukiantPavėjui, BuriųPlotasPlaukiantPriešVėją FROM Modeliai WHERE Id = ?";
+  static final String SELECT_ALL_YACHT_CLASSES = "SELECT Id, Pavadinimas, Koeficientas, ProjektavimoMetai, Ilgis, Plotis, Vandentalpa, VaterlinijosIlgis, BuriųPlotasPlaukiantPavėjui, BuriųPlotasPlaukiantPriešVėją FROM Modeliai ORDER BY Id";
+  private static final String SELECT_ALL_YACHT_CLASS_IDS = "SELECT Id FROM Modeliai ORDER BY Id";
+  private static final String SELECT_YACHT_CLASS_COUNT = "SELECT COUNT(*), MAX(Id) FROM Modeliai";
+  static final String SELECT_MANY_YACHT_CLASSES = "SELECT Id, Pavadinimas, Koeficientas, ProjektavimoMetai, Ilgis, Plotis, Vandentalpa, VaterlinijosIlgis, BuriųPlotasPlaukiantPavėjui, BuriųPlotasPlaukiantPriešVėją FROM Modeliai WHERE Id IN (" + idListParameters() + ")";
+  private static final String SELECT_YACHT_CLASSES_PAGE = "SELECT Id, Pavadinimas, Koeficientas, ProjektavimoMetai, Ilgis, Plotis, Vandentalpa, VaterlinijosIlgis, BuriųPlotasPlaukiantPavėjui, BuriųPlotasPlaukiantPriešVėją FROM Modeliai WHERE Id > ? ORDER BY Id LIMIT ?";
+  private static final String INSERT_YACHT_CLASS = "INSERT INTO Modeliai (Pavadinimas) VALUES (?)";
+  private static final String UPDATE_NAME = "UPDATE Modeliai SET Pavadinimas = ? WHERE Id = ?";
+  private static final String UPDATE_COEFFICIENT = "UPDATE Modeliai SET Koeficientas = ? WHERE Id = ?";
+  private static final String DELETE_YACHT_CLASS = "DELETE FROM Modeliai WHERE Id = ?";
+  static final int COLUMN_COUNT = 10; // kiek stulpelių iš select užklausos eilutės skaito esybės kūrimas
+  // pakeistų laukų žymės (NAME – NamedEntity) ir jų stulpeliai
+  private static final int COEFFICIENT = 2;
+  private static final String[] COLUMNS = {"Pavadinimas", "Koeficientas"};
+  private float coefficient; // NaN – nežinomas
+  private int designYear, length, beam, displacement, waterlineLength, downwindSailArea, upwindSailArea; // 0 – nežinomi
 
 /**
  * Konstruktorius.
@@ -24,28 +39,42 @@ public class YachtClass extends NamedEntity {
   private YachtClass(int id, String name) {
     super(id);
     this.name = name;
+    this.coefficient = Float.NaN;
   }
 
-/**
- * Šį konstruktorių kviečia statiniai NamedEntity klasės metodai,
- * imantys objektą iš duomenų bazės.
- *
- * @param id objekto ID
- * @param resultSet skaitymui paruošta duombazės eilutė su kitais objekto
- *                  kūrimui reikalingais laukais, kuriuos grąžina selectYachtClass
- */
-  public YachtClass(int id, ResultSet resultSet) throws SQLException {
-    this(id, resultSet.getString(1));
-  }
+  // esybių kūrimas iš duombazės eilučių, kurias grąžina select užklausos
+  static {
+    registerRowMapper(YachtClass.class, new RowMapper<YachtClass>() {
+      public YachtClass map(ResultSet resultSet, int column) throws SQLException {
+        YachtClass yachtClass = new YachtClass(resultSet.getInt(column), resultSet.getString(column + 1));
+        float coefficient = resultSet.getFloat(column + 2);
+        if (!resultSet.wasNull())
+          yachtClass.coefficient = coefficient;
+        yachtClass.designYear = resultSet.getInt(column + 3); // NULL – 0
+        yachtClass.length = resultSet.getInt(column + 4);
+        yachtClass.beam = resultSet.getInt(column + 5);
+        yachtClass.displacement = resultSet.getInt(column + 6);
+        yachtClass.waterlineLength = resultSet.getInt(column + 7);
+        yachtClass.downwindSailArea = resultSet.getInt(column + 8);
+        yachtClass.upwindSailArea = resultSet.getInt(column + 9);
+        return yachtClass;
+      }
 
-/**
- * Šį konstruktorių kviečia NamedEntity.getAll().
- *
- * @param resultSet skaitymui paruošta duombazės eilutė su visais objekto
- *                  kūrimui reikalingais laikaus, kuriuos grąžina selectAllYachtClasses
- */
-  public YachtClass(ResultSet resultSet) throws SQLException {
-    this(resultSet.getInt(1), resultSet.getString(2));
+      public YachtClass map(SnapshotRow row, int column) {
+        YachtClass yachtClass = new YachtClass(row.getInt(column), row.getString(column + 1));
+        float coefficient = row.getFloat(column + 2);
+        if (!row.wasNull())
+          yachtClass.coefficient = coefficient;
+        yachtClass.designYear = row.getInt(column + 3); // NULL – 0
+        yachtClass.length = row.getInt(column + 4);
+        yachtClass.beam = row.getInt(column + 5);
+        yachtClass.displacement = row.getInt(column + 6);
+        yachtClass.waterlineLength = row.getInt(column + 7);
+        yachtClass.downwindSailArea = row.getInt(column + 8);
+        yachtClass.upwindSailArea = row.getInt(column + 9);
+        return yachtClass;
+      }
+    });
   }
 
 /**
@@ -55,7 +84,7 @@ public class YachtClass extends NamedEntity {
  * @return modelis su nurodytu id
  */
   public static YachtClass get(int id) {
-    return (YachtClass)NamedEntity.get(id, selectYachtClass, YachtClass.class);
+    return (YachtClass)NamedEntity.get(id, SELECT_YACHT_CLASS, YachtClass.class);
   }
 
 /**
@@ -64,31 +93,223 @@ public class YachtClass extends NamedEntity {
  * @return visų modelių sąrašas id didėjimo tvarka
  */
   public static List<YachtClass> getAll() {
-    return (List<YachtClass>)NamedEntity.getAll(selectAllYachtClasses, selectAllYachtClassIds, YachtClass.class);
+    return (List<YachtClass>)NamedEntity.getAll(SELECT_ALL_YACHT_CLASSES, SELECT_ALL_YACHT_CLASS_IDS, SELECT_MANY_YACHT_CLASSES, SELECT_YACHT_CLASS_COUNT, YachtClass.class);
   }
 
 /**
- * Paruošia statinius PreparedStatement objektus.
+ * Grąžina modelių sąrašą pagal jų ID.
  *
- * @param connection jungtis su duombaze
+ * @param ids modelių ID
+ * @return modelių sąrašas ta pačia tvarka kaip ids (nerastų sąraše nėra)
  */
-  static void prepareStatements(Connection connection) {
+  public static List<YachtClass> getMany(int[] ids) {
+    return (List<YachtClass>)NamedEntity.getMany(ids, SELECT_MANY_YACHT_CLASSES, YachtClass.class);
+  }
+
+/**
+ * Grąžina modelių puslapį: pirmus limit modelių, kurių ID didesnis nei
+ * afterId, ID didėjimo tvarka (žr. NamedEntity.page()).
+ *
+ * @param afterId paskutinio ankstesnio puslapio ID arba 0
+ * @param limit   kiek daugiausiai grąžinti
+ * @return modelių sąrašas arba null, jei įvyko klaida
+ */
+  public static List<YachtClass> page(int afterId, int limit) {
+    return (List<YachtClass>)NamedEntity.page(afterId, limit, SELECT_YACHT_CLASSES_PAGE, YachtClass.class);
+  }
+
+/**
+ * Visų modelių seka ID didėjimo tvarka, užklausiama po pageSize tik
+ * iteruojant (žr. NamedEntity.iterate()).
+ *
+ * @param pageSize kiek užklausti vienu kartu
+ */
+  public static Iterable<YachtClass> iterate(int pageSize) {
+    return NamedEntity.iterate(pageSize, SELECT_YACHT_CLASSES_PAGE, YachtClass.class);
+  }
+
+  public static Iterable<YachtClass> iterate() {
+    return iterate(PAGE_SIZE);
+  }
+
+/**
+ * Sukuria naują modelį.
+ * Įrašo į duomenų bazę.
+ *
+ * @param name pavadinimas
+ * @return modelis arba null, jei įvyko klaida
+ */
+  public static YachtClass create(String name) {
+    int id = insertName(name, INSERT_YACHT_CLASS);
+    if (id == 0)
+      return null;
+    YachtClass yachtClass = (YachtClass)intern(new YachtClass(id, name));
+    fireCreated(yachtClass);
+    return yachtClass;
+  }
+
+/**
+ * Sukuria kelis naujus modelius vienu paketu.
+ * Įrašo į duomenų bazę.
+ *
+ * @param names pavadinimai
+ * @return modelių sąrašas ta pačia tvarka kaip names arba null, jei įvyko
+ *         klaida (tada nesukuriamas nė vienas)
+ */
+  public static List<YachtClass> createMany(String[] names) {
+    int[] ids = insertNames(names, "Modeliai", INSERT_YACHT_CLASS);
+    if (ids == null)
+      return null;
+    Vector<YachtClass> list = new Vector<YachtClass>();
+    for (int i = 0; i < ids.length; i++) {
+      YachtClass yachtClass = (YachtClass)intern(new YachtClass(ids[i], names[i]));
+      fireCreated(yachtClass);
+      list.add(yachtClass);
+    }
+    return list;
+  }
+
+  public boolean setName(String name) {
+    return setName(name, UPDATE_NAME);
+  }
+
+/**
+ * Pakeičia modelio koeficientą.
+ *
+ * @param coefficient koeficientas arba Float.NaN, jei nežinomas
+ * @return ar pavyko
+ */
+  public boolean setCoefficient(float coefficient) {
+    if (markDirty(COEFFICIENT)) {
+      this.coefficient = coefficient;
+      fireChanged();
+      return true;
+    }
+    boolean ret = false;
     try {
-      selectYachtClass = connection.prepareStatement("SELECT Pavadinimas FROM Modeliai WHERE Id = ?");
-      selectAllYachtClasses = connection.prepareStatement("SELECT Id, Pavadinimas FROM Modeliai ORDER BY Id");
-      selectAllYachtClassIds = connection.prepareStatement("SELECT Id FROM Modeliai ORDER BY Id");
-      updateName = connection.prepareStatement("UPDATE Modeliai SET Pavadinimas = ? WHERE Id = ?");
-      deleteYachtClass = connection.prepareStatement("DELETE FROM Modeliai WHERE Id = ?");
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement updateCoefficient = session.prepare(UPDATE_COEFFICIENT);
+        bindCoefficient(updateCoefficient, 1, coefficient);
+        updateCoefficient.setInt(2, id);
+        int rowsAffected = updateCoefficient.executeUpdate();
+        if (rowsAffected == 1) {
+          this.coefficient = coefficient;
+          ret = true;
+        } else {
+          if (logger.isEnabledFor(Level.WARN))
+            logger.warn("Strange setCoefficient updated database rows count: " + rowsAffected);
+        }
+      } finally {
+        session.release();
+      }
     } catch (SQLException exception) {
-      logger.error("prepareStatements SQL error: " + exception.getMessage());
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("setCoefficient SQL error: " + exception.getMessage());
     }
+    if (ret)
+      fireChanged();
+    return ret;
   }
 
-  public boolean setName(String name) {
-    return setName(name, updateName);
+  private static void bindCoefficient(PreparedStatement statement, int parameter, float coefficient) throws SQLException {
+    if (Float.isNaN(coefficient))
+      statement.setNull(parameter, java.sql.Types.FLOAT);
+    else
+      statement.setFloat(parameter, coefficient);
+  }
+
+  protected String getUpdateStatement(int fields) {
+    return updateStatement("Modeliai", COLUMNS, fields);
+  }
+
+  protected int bindUpdate(PreparedStatement update, int fields) throws SQLException {
+    int parameter = super.bindUpdate(update, fields);
+    if ((fields & COEFFICIENT) != 0)
+      bindCoefficient(update, parameter++, coefficient);
+    return parameter;
+  }
+
+  protected boolean copyFrom(NamedEntity namedEntity) {
+    YachtClass yachtClass = (YachtClass)namedEntity;
+    boolean changed = super.copyFrom(namedEntity);
+    if (Float.floatToIntBits(coefficient) != Float.floatToIntBits(yachtClass.coefficient)) { // NaN lygus NaN
+      coefficient = yachtClass.coefficient;
+      changed = true;
+    }
+    if (designYear != yachtClass.designYear || length != yachtClass.length || beam != yachtClass.beam || displacement != yachtClass.displacement
+        || waterlineLength != yachtClass.waterlineLength || downwindSailArea != yachtClass.downwindSailArea || upwindSailArea != yachtClass.upwindSailArea) {
+      designYear = yachtClass.designYear;
+      length = yachtClass.length;
+      beam = yachtClass.beam;
+      displacement = yachtClass.displacement;
+      waterlineLength = yachtClass.waterlineLength;
+      downwindSailArea = yachtClass.downwindSailArea;
+      upwindSailArea = yachtClass.upwindSailArea;
+      changed = true;
+    }
+    return changed;
   }
 
   public boolean remove() {
-    return remove(deleteYachtClass);
+    return remove(DELETE_YACHT_CLASS);
+  }
+
+/**
+ * Perskaičiavimo koeficientas (laikas × koeficientas).
+ *
+ * @return koeficientas arba Float.NaN, jei nežinomas
+ */
+  public float getCoefficient() {
+    return coefficient;
+  }
+
+/**
+ * Projektavimo metai (0, jei nežinomi).
+ */
+  public int getDesignYear() {
+    return designYear;
+  }
+
+/**
+ * Ilgis centimetrais (0, jei nežinomas).
+ */
+  public int getLength() {
+    return length;
+  }
+
+/**
+ * Plotis centimetrais (0, jei nežinomas).
+ */
+  public int getBeam() {
+    return beam;
+  }
+
+/**
+ * Vandentalpa kilogramais (0, jei nežinoma).
+ */
+  public int getDisplacement() {
+    return displacement;
+  }
+
+/**
+ * Vaterlinijos ilgis centimetrais (0, jei nežinomas).
+ */
+  public int getWaterlineLength() {
+    return waterlineLength;
+  }
+
+/**
+ * Burių plotas plaukiant pavėjui kvadratiniais metrais (0, jei nežinomas).
+ */
+  public int getDownwindSailArea() {
+    return downwindSailArea;
+  }
+
+/**
+ * Burių plotas plaukiant prieš vėją kvadratiniais metrais (0, jei nežinomas).
+ */
+  public int getUpwindSailArea() {
+    return upwindSailArea;
   }
 }
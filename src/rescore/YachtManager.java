@@ -6,6 +6,7 @@ package rescore;
 
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Scanner;
 import java.sql.Connection;
@@ -16,8 +17,12 @@ public class YachtManager {
   private static Logger logger = Logger.getLogger(YachtManager.class.getName());
   private Scanner scanner;
   private PrintStream printStream;
+  private YachtSearchIndex searchIndex; // sukuriamas pirmą kartą ieškant
   private final static int LIST_ITEMS_AT_ONCE = 20; // kiek daugiausiai
                           // pasirinkimų vienu metu spausdins choose...()
+  private final static int LIST_PAGE_SIZE = LIST_ITEMS_AT_ONCE + 1; // kiek
+                          // įrašų užklausti vienu kartu: vienu daugiau, kad
+                          // būtų žinoma, ar sąrašas turi tęsinį
 
   public YachtManager(InputStream inputStream, PrintStream printStream) {
     this.scanner = new Scanner(inputStream);
@@ -28,10 +33,11 @@ public class YachtManager {
     printStream.println("Jachtų duomenų tvarkymas");
     printStream.println("Meniu pasirinkimus atlikite įvesdami skaičių.");
     int command = -1;
-    while (command != 3) {
+    while (command != 4) {
       printStream.println("1. Įtraukti naują jachtą");
       printStream.println("2. Pasirinkti jachtą iš sąrašo");
-      printStream.println("3. Baigti");
+      printStream.println("3. Ieškoti jachtos pagal burės numerį, pavadinimą ar modelį");
+      printStream.println("4. Baigti");
       command = scanInt();
       switch (command) {
         case 1:
@@ -47,7 +53,7 @@ public class YachtManager {
           if (name.isEmpty())
             name = null;
           printStream.println("Pasirinkite jachtos modelį.");
-          YachtClass yachtClass = chooseYachtClass(YachtClass.getAll());
+          YachtClass yachtClass = chooseYachtClass(YachtClass.iterate(LIST_PAGE_SIZE));
           if (yachtClass == null) {
             printStream.println("Nepasirinktas modelis – atšaukiama");
             break;
@@ -55,9 +61,9 @@ public class YachtManager {
           printStream.println("Pagaminimo metai (jeigu nežinomi, įveskite 0):");
           int year = scanInt();
           printStream.println("Pasirinkite jachtos kapitoną.");
-          Captain captain = chooseCaptain(Captain.getAll());
+          Captain captain = chooseCaptain(Captain.iterate(LIST_PAGE_SIZE));
           printStream.println("Pasirinkite jachtos savininką.");
-          Owner owner = chooseOwner(Owner.getAll());
+          Owner owner = chooseOwner(Owner.iterate(LIST_PAGE_SIZE));
           scanner.nextLine();
           printStream.println("Rėmėjai:");
           String sponsors = scanner.nextLine();
@@ -69,12 +75,33 @@ public class YachtManager {
             printStream.println("Jachta neįtraukta");
           break;
         case 2:
-          Yacht yacht = chooseYacht(Yacht.getAll());
+          Yacht yacht = chooseYacht(Yacht.iterate(LIST_PAGE_SIZE));
+          if (yacht != null)
+            processYacht(yacht);
+          break;
+        case 3:
+          scanner.nextLine();
+          printStream.println("Paieškos tekstas:");
+          String query = scanner.nextLine();
+          if (searchIndex == null)
+            searchIndex = YachtSearchIndex.build();
+          if (searchIndex == null) {
+            printStream.println("Paieška neprieinama");
+            break;
+          }
+          List<Yacht> found = searchIndex.search(query, LIST_ITEMS_AT_ONCE);
+          if (found == null) {
+            printStream.println("Paieška nepavyko");
+            break;
+          }
+          yacht = chooseYacht(found);
           if (yacht != null)
             processYacht(yacht);
           break;
       }
     }
+    if (searchIndex != null)
+      searchIndex.close();
   }
   
 /**
@@ -94,17 +121,19 @@ public class YachtManager {
     return -1;
   }
 
-  private Yacht chooseYacht(List<Yacht> list) {
-    int traversed = 0, id = 0, size = list.size();
-    if (list.isEmpty()) {
+  private Yacht chooseYacht(Iterable<Yacht> list) {
+    int traversed = 0, id = 0;
+    Iterator<Yacht> iterator = list.iterator();
+    if (!iterator.hasNext()) {
       printStream.println("Jachtų sąrašas tuščias");
       return null;
     }
-    for (Yacht yacht : list) {
+    while (iterator.hasNext()) {
+      Yacht yacht = iterator.next();
       printStream.println(yacht.getId() + ". " + yacht.getSailNumber() + (yacht.getName() == null ? "" : " (" + yacht.getName() + ")"));
       traversed++;
-      if (traversed % LIST_ITEMS_AT_ONCE == 0 && traversed != list.size()) {
-        printStream.println("Rodomi pirmi " + traversed + " iš " + size + " pasirinkimų. Įveskite prie pasirinktos jachtos esantį numerį, arba 0, jei norite matyti sąrašo tęsinį. Norėdami nieko nepasirinkti, įveskite neigiamą skaičių.");
+      if (traversed % LIST_ITEMS_AT_ONCE == 0 && iterator.hasNext()) {
+        printStream.println("Rodomi pirmi " + traversed + " pasirinkimų. Įveskite prie pasirinktos jachtos esantį numerį, arba 0, jei norite matyti sąrašo tęsinį. Norėdami nieko nepasirinkti, įveskite neigiamą skaičių.");
         id = scanInt();
         if (id != 0)
           break;
@@ -115,20 +144,22 @@ public class YachtManager {
       id = scanInt();
     }
     if (id > 0)
-      return Yacht.get(id);
+      return Yacht.get(id, true); // processYacht() rodo ir modelį, kapitoną bei savininką
     else
       return null;
     }
 
-  private YachtClass chooseYachtClass(List<YachtClass> list) {
-    int traversed = 0, id = 0, size = list.size();
-    if (list.isEmpty())
+  private YachtClass chooseYachtClass(Iterable<YachtClass> list) {
+    int traversed = 0, id = 0;
+    Iterator<YachtClass> iterator = list.iterator();
+    if (!iterator.hasNext())
       printStream.println("Sąrašas tuščias");
-    for (YachtClass yachtclass : list) {
+    while (iterator.hasNext()) {
+      YachtClass yachtclass = iterator.next();
       printStream.println(yachtclass.getId() + ". " + yachtclass.getName());
       traversed++;
-      if (traversed % LIST_ITEMS_AT_ONCE == 0 && traversed != list.size()) {
-        printStream.println("Rodomi pirmi " + traversed + " iš " + size + " pasirinkimų. Įveskite pasirinkimo ID, arba 0, jei norite matyti sąrašo tęsinį. Norėdami nieko nepasirinkti, įveskite neigiamą skaičių.");
+      if (traversed % LIST_ITEMS_AT_ONCE == 0 && iterator.hasNext()) {
+        printStream.println("Rodomi pirmi " + traversed + " pasirinkimų. Įveskite pasirinkimo ID, arba 0, jei norite matyti sąrašo tęsinį. Norėdami nieko nepasirinkti, įveskite neigiamą skaičių.");
         id = scanInt();
         if (id != 0)
           break;
@@ -144,15 +175,17 @@ public class YachtManager {
       return null;
     }
 
-  private Captain chooseCaptain(List<Captain> list) {
-    int traversed = 0, id = 0, size = list.size();
-    if (list.isEmpty())
+  private Captain chooseCaptain(Iterable<Captain> list) {
+    int traversed = 0, id = 0;
+    Iterator<Captain> iterator = list.iterator();
+    if (!iterator.hasNext())
       printStream.println("Sąrašas tuščias");
-    for (Captain captain : list) {
+    while (iterator.hasNext()) {
+      Captain captain = iterator.next();
       printStream.println(captain.getId() + ". " + captain.getName());
       traversed++;
-      if (traversed % LIST_ITEMS_AT_ONCE == 0 && traversed != list.size()) {
-        printStream.println("Rodomi pirmi " + traversed + " iš " + size + " pasirinkimų. Įveskite pasirinkimo ID, arba 0, jei norite matyti sąrašo tęsinį. Norėdami nieko nepasirinkti, įveskite neigiamą skaičių.");
+      if (traversed % LIST_ITEMS_AT_ONCE == 0 && iterator.hasNext()) {
+        printStream.println("Rodomi pirmi " + traversed + " pasirinkimų. Įveskite pasirinkimo ID, arba 0, jei norite matyti sąrašo tęsinį. Norėdami nieko nepasirinkti, įveskite neigiamą skaičių.");
         id = scanInt();
         if (id != 0)
           break;
@@ -168,15 +201,17 @@ public class YachtManager {
       return null;
     }
 
-  private Owner chooseOwner(List<Owner> list) {
-    int traversed = 0, id = 0, size = list.size();
-    if (list.isEmpty())
+  private Owner chooseOwner(Iterable<Owner> list) {
+    int traversed = 0, id = 0;
+    Iterator<Owner> iterator = list.iterator();
+    if (!iterator.hasNext())
       printStream.println("Sąrašas tuščias");
-    for (Owner owner : list) {
+    while (iterator.hasNext()) {
+      Owner owner = iterator.next();
       printStream.println(owner.getId() + ". " + owner.getName());
       traversed++;
-      if (traversed % LIST_ITEMS_AT_ONCE == 0 && traversed != list.size()) {
-        printStream.println("Rodomi pirmi " + traversed + " iš " + size + " pasirinkimų. Įveskite pasirinkimo ID, arba 0, jei norite matyti sąrašo tęsinį. Norėdami nieko nepasirinkti, įveskite neigiamą skaičių.");
+      if (traversed % LIST_ITEMS_AT_ONCE == 0 && iterator.hasNext()) {
+        printStream.println("Rodomi pirmi " + traversed + " pasirinkimų. Įveskite pasirinkimo ID, arba 0, jei norite matyti sąrašo tęsinį. Norėdami nieko nepasirinkti, įveskite neigiamą skaičių.");
         id = scanInt();
         if (id != 0)
           break;
@@ -251,7 +286,7 @@ public class YachtManager {
           break;
         case 3:
           printStream.println("Ankstesnis jachtos modelis buvo " + yacht.getYachtClass().getName() + ". Pasirinkite naują modelį.");
-          YachtClass yachtClass = chooseYachtClass(YachtClass.getAll());
+          YachtClass yachtClass = chooseYachtClass(YachtClass.iterate(LIST_PAGE_SIZE));
           if (yachtClass == null || !yacht.setYachtClass(yachtClass))
             printStream.println("Jachtos modelis nepakeistas");
           break;
@@ -264,14 +299,14 @@ public class YachtManager {
         case 5:
           if (yacht.getCaptain() != null)
             printStream.println("Anksčiau jachtos kapitonas buvo " + yacht.getCaptain().getName() + ". Pasirinkite naują kapitoną.");
-          Captain captain = chooseCaptain(Captain.getAll());
+          Captain captain = chooseCaptain(Captain.iterate(LIST_PAGE_SIZE));
           if (!yacht.setCaptain(captain))
             printStream.println("Jachtos kapitonas nepakeistas");
           break;
         case 6:
           if (yacht.getOwner() != null)
             printStream.println("Anksčiau jachtos savininkas buvo " + yacht.getOwner().getName() + ". Pasirinkite naują savininką.");
-          Owner owner = chooseOwner(Owner.getAll());
+          Owner owner = chooseOwner(Owner.iterate(LIST_PAGE_SIZE));
           if (!yacht.setOwner(owner))
             printStream.println("Jachtos savininkas nepakeistas");
           break;
@@ -0,0 +1,390 @@
+/**
+ * Jachtų paieška atmintyje pagal burės numerį, pavadinimą ir modelį.
+ * Indeksas vieną kartą užkraunamas iš duombazės (build()), o vėliau
+ * atnaujinamas pagal Yacht ir YachtClass pakeitimus (EntityListener), todėl
+ * paieška į duombazę nesikreipia – tik search() gauna rastų jachtų objektus.
+ *
+ * Paieškos žodžiai ir indeksuojami terminai normalizuojami: didžiosios raidės,
+ * be tarpų ir skyrybos ženklų (burės numeris „LTU-1234“ indeksuojamas kaip
+ * „LTU1234“, pavadinimas ir modelis – kaip atskiri žodžiai).
+ * Jachtų, pakeistų tiesiogiai duombazėje (ne per esybių klases), indeksas
+ * nemato – tada jį reikia sukurti iš naujo.
+ */
+package rescore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Vector;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class YachtSearchIndex {
+  private static Logger logger = Logger.getLogger(YachtSearchIndex.class.getName());
+  private static final String SELECT_YACHTS = "SELECT Id, BurėsNumeris, Pavadinimas, Modelis FROM Jachtos";
+  private static final String SELECT_YACHT_CLASSES = "SELECT Id, Pavadinimas FROM Modeliai";
+  public static final int FUZZY_MIN_LENGTH = 3; // trumpesni žodžiai ieškomi tik tiksliai
+  public static final int CANDIDATE_LIMIT = 1000; // kiek daugiausiai kandidatų
+                          // vienam žodžiui, kai užklausoje keli žodžiai
+  private final TermIndex sailNumbers = new TermIndex(); // ID – jachtos
+  private final TermIndex names = new TermIndex(); // pavadinimų žodžiai, ID – jachtos
+  private final TermIndex classNames = new TermIndex(); // modelių pavadinimų žodžiai, ID – modelio
+  private final HashMap<Integer, YachtTerms> yachts = new HashMap<Integer, YachtTerms>();
+  private final HashMap<Integer, String[]> yachtClasses = new HashMap<Integer, String[]>(); // modelio ID – jo žodžiai
+  private final HashMap<Integer, LinkedHashSet<Integer>> yachtsByClass = new HashMap<Integer, LinkedHashSet<Integer>>(); // modelio ID – jachtų ID
+  private final EntityListener yachtListener, yachtClassListener;
+
+/**
+ * Vienos jachtos indeksuoti terminai.
+ */
+  private static class YachtTerms {
+    final String sailNumber;
+    final String[] names;
+    final int yachtClassId;
+
+    YachtTerms(String sailNumber, String name, int yachtClassId) {
+      this.sailNumber = normalize(sailNumber);
+      this.names = tokenize(name);
+      this.yachtClassId = yachtClassId;
+    }
+  }
+
+  private YachtSearchIndex() {
+    yachtListener = new EntityListener() {
+      public void created(NamedEntity namedEntity) {
+        changed(namedEntity);
+      }
+
+      public void changed(NamedEntity namedEntity) {
+        Yacht yacht = (Yacht)namedEntity;
+        synchronized (YachtSearchIndex.this) {
+          updateYacht(yacht.getId(), new YachtTerms(yacht.getSailNumber(), yacht.getName(), yacht.getYachtClassId()));
+        }
+      }
+
+      public void removed(NamedEntity namedEntity) {
+        synchronized (YachtSearchIndex.this) {
+          removeYacht(namedEntity.getId());
+        }
+      }
+    };
+    yachtClassListener = new EntityListener() {
+      public void created(NamedEntity namedEntity) {
+        changed(namedEntity);
+      }
+
+      public void changed(NamedEntity namedEntity) {
+        synchronized (YachtSearchIndex.this) {
+          removeYachtClass(namedEntity.getId());
+          addYachtClass(namedEntity.getId(), namedEntity.getName(), false);
+        }
+      }
+
+      public void removed(NamedEntity namedEntity) {
+        synchronized (YachtSearchIndex.this) {
+          removeYachtClass(namedEntity.getId());
+        }
+      }
+    };
+  }
+
+/**
+ * Sukuria indeksą iš duombazės ir užregistruoja jo atnaujinimą.
+ * Kai indeksas nebereikalingas, reikia iškviesti close().
+ *
+ * @return indeksas arba null, jei įvyko klaida
+ */
+  public static YachtSearchIndex build() {
+    YachtSearchIndex index = new YachtSearchIndex();
+    // klausytojai registruojami prieš užkraunant, kad nebūtų prarasti
+    // užkrovimo metu atlikti pakeitimai; jų iškvietimai laukia, kol indeksas
+    // bus užkrautas (sinchronizacija), ir užkrautus įrašus perrašo
+    NamedEntity.addListener(Yacht.class, index.yachtListener);
+    NamedEntity.addListener(YachtClass.class, index.yachtClassListener);
+    synchronized (index) {
+      try {
+        Database.Session session = Database.acquire();
+        try {
+          ResultSet resultSet = session.prepare(SELECT_YACHT_CLASSES).executeQuery();
+          while (resultSet.next())
+            index.addYachtClass(resultSet.getInt(1), resultSet.getString(2), true);
+          resultSet = session.prepare(SELECT_YACHTS).executeQuery();
+          while (resultSet.next())
+            index.addYacht(resultSet.getInt(1), new YachtTerms(resultSet.getString(2), resultSet.getString(3), resultSet.getInt(4)), true);
+        } finally {
+          session.release();
+        }
+      } catch (SQLException exception) {
+        if (logger.isEnabledFor(Level.ERROR))
+          logger.error("build SQL error: " + exception.getMessage());
+        index.close();
+        return null;
+      }
+      index.sailNumbers.sort();
+      index.names.sort();
+      index.classNames.sort();
+    }
+    return index;
+  }
+
+/**
+ * Atjungia indeksą nuo esybių pakeitimų.
+ */
+  public void close() {
+    NamedEntity.removeListener(Yacht.class, yachtListener);
+    NamedEntity.removeListener(YachtClass.class, yachtClassListener);
+  }
+
+/**
+ * Kiek jachtų indeksuota.
+ */
+  public synchronized int size() {
+    return yachts.size();
+  }
+
+/**
+ * Ieško jachtų ir grąžina jų objektus.
+ *
+ * @param query paieškos tekstas (žr. searchIds())
+ * @param limit kiek daugiausiai jachtų grąžinti
+ * @return rastos jachtos (tinkamiausios pirmos) arba null, jei įvyko klaida
+ */
+  public List<Yacht> search(String query, int limit) {
+    return Yacht.getMany(searchIds(query, limit));
+  }
+
+/**
+ * Ieško jachtų ID. Jachtos grąžinamos tokia tvarka:
+ * burės numeris prasideda užklausa (be tarpų), pavadinimo žodis prasideda
+ * užklausos žodžiu, modelio pavadinimo žodis prasideda užklausos žodžiu,
+ * pavadinimo žodis skiriasi nuo užklausos žodžio vienu simboliu, burės
+ * numeris skiriasi nuo užklausos vienu simboliu (paieška su klaida – tik ne
+ * trumpesniems nei FUZZY_MIN_LENGTH žodžiams).
+ * Jei užklausoje keli žodžiai, jachta (išskyrus rastas pagal burės numerį)
+ * turi atitikti kiekvieną iš jų.
+ *
+ * @param query paieškos tekstas
+ * @param limit kiek daugiausiai ID grąžinti
+ * @return jachtų ID
+ */
+  public synchronized int[] searchIds(String query, int limit) {
+    String[] words = tokenize(query);
+    if (words.length == 0 || limit <= 0)
+      return new int[0];
+    TermIndex.IdCollector results = new TermIndex.IdCollector(limit);
+    String sailNumber = normalize(query);
+    sailNumbers.findPrefix(sailNumber, results);
+    if (words.length == 1)
+      findWord(words[0], results);
+    else if (!results.isFull()) {
+      // keli žodžiai: kandidatai pagal retesnį žodį, tikrinami likę žodžiai
+      TermIndex.IdCollector candidates = null;
+      int selected = 0;
+      for (int i = 0; i < words.length; i++) {
+        TermIndex.IdCollector wordCandidates = new TermIndex.IdCollector(CANDIDATE_LIMIT);
+        findWord(words[i], wordCandidates);
+        if (candidates == null || wordCandidates.size() < candidates.size()) {
+          candidates = wordCandidates;
+          selected = i;
+        }
+      }
+      for (int i = 0; i < candidates.size() && !results.isFull(); i++) {
+        int yachtId = candidates.get(i);
+        boolean matches = true;
+        for (int word = 0; word < words.length && matches; word++)
+          matches = word == selected || matches(yachtId, words[word]);
+        if (matches)
+          results.add(yachtId);
+      }
+    }
+    if (!results.isFull() && sailNumber.length() >= FUZZY_MIN_LENGTH)
+      sailNumbers.findFuzzy(sailNumber, results);
+    return results.toArray();
+  }
+
+/**
+ * Ieško jachtų, kurių burės numeris prasideda duotu tekstu, o jei tokių
+ * trūksta – kurių burės numeris nuo jo skiriasi vienu simboliu.
+ *
+ * @param sailNumber burės numeris arba jo pradžia
+ * @param limit      kiek daugiausiai ID grąžinti
+ * @return jachtų ID
+ */
+  public synchronized int[] findBySailNumber(String sailNumber, int limit) {
+    String key = normalize(sailNumber);
+    if (key.length() == 0 || limit <= 0)
+      return new int[0];
+    TermIndex.IdCollector results = new TermIndex.IdCollector(limit);
+    sailNumbers.findPrefix(key, results);
+    if (!results.isFull() && key.length() >= FUZZY_MIN_LENGTH)
+      sailNumbers.findFuzzy(key, results);
+    return results.toArray();
+  }
+
+  private void findWord(String word, TermIndex.IdCollector results) {
+    names.findPrefix(word, results);
+    if (!results.isFull()) {
+      TermIndex.IdCollector classIds = new TermIndex.IdCollector(yachtClasses.size() + 1);
+      classNames.findPrefix(word, classIds);
+      if (word.length() >= FUZZY_MIN_LENGTH)
+        classNames.findFuzzy(word, classIds);
+      for (int i = 0; i < classIds.size() && !results.isFull(); i++) {
+        LinkedHashSet<Integer> yachtIds = yachtsByClass.get(classIds.get(i));
+        if (yachtIds != null)
+          for (Iterator<Integer> iterator = yachtIds.iterator(); iterator.hasNext() && !results.isFull(); )
+            results.add(iterator.next());
+      }
+    }
+    if (!results.isFull() && word.length() >= FUZZY_MIN_LENGTH)
+      names.findFuzzy(word, results);
+  }
+
+/**
+ * Ar jachtos burės numeris, pavadinimo ar modelio žodis prasideda word arba
+ * (ne trumpesniam nei FUZZY_MIN_LENGTH žodžiui) skiriasi nuo jo vienu simboliu.
+ */
+  private boolean matches(int yachtId, String word) {
+    YachtTerms terms = yachts.get(yachtId);
+    if (terms == null)
+      return false;
+    if (matches(terms.sailNumber, word) || matches(terms.names, word))
+      return true;
+    String[] classTerms = yachtClasses.get(terms.yachtClassId);
+    return classTerms != null && matches(classTerms, word);
+  }
+
+  private static boolean matches(String[] terms, String word) {
+    for (String term : terms)
+      if (matches(term, word))
+        return true;
+    return false;
+  }
+
+  private static boolean matches(String term, String word) {
+    return term.startsWith(word) || word.length() >= FUZZY_MIN_LENGTH && TermIndex.isOneEdit(term, word);
+  }
+
+  private void addYacht(int yachtId, YachtTerms terms, boolean unsorted) {
+    yachts.put(yachtId, terms);
+    if (terms.sailNumber.length() > 0) {
+      if (unsorted)
+        sailNumbers.addUnsorted(terms.sailNumber, yachtId);
+      else
+        sailNumbers.add(terms.sailNumber, yachtId);
+    }
+    for (String name : terms.names) {
+      if (unsorted)
+        names.addUnsorted(name, yachtId);
+      else
+        names.add(name, yachtId);
+    }
+    addToClass(yachtId, terms.yachtClassId);
+  }
+
+/**
+ * Pakeičia tik tuos jachtos terminus, kurie skiriasi.
+ */
+  private void updateYacht(int yachtId, YachtTerms terms) {
+    YachtTerms oldTerms = yachts.put(yachtId, terms);
+    if (oldTerms == null) {
+      addYacht(yachtId, terms, false);
+      return;
+    }
+    if (!oldTerms.sailNumber.equals(terms.sailNumber)) {
+      if (oldTerms.sailNumber.length() > 0)
+        sailNumbers.remove(oldTerms.sailNumber, yachtId);
+      if (terms.sailNumber.length() > 0)
+        sailNumbers.add(terms.sailNumber, yachtId);
+    }
+    if (!Arrays.equals(oldTerms.names, terms.names)) {
+      for (String name : oldTerms.names)
+        names.remove(name, yachtId);
+      for (String name : terms.names)
+        names.add(name, yachtId);
+    }
+    if (oldTerms.yachtClassId != terms.yachtClassId) {
+      yachtsByClass.get(oldTerms.yachtClassId).remove(yachtId);
+      addToClass(yachtId, terms.yachtClassId);
+    }
+  }
+
+  private void removeYacht(int yachtId) {
+    YachtTerms terms = yachts.remove(yachtId);
+    if (terms == null)
+      return;
+    if (terms.sailNumber.length() > 0)
+      sailNumbers.remove(terms.sailNumber, yachtId);
+    for (String name : terms.names)
+      names.remove(name, yachtId);
+    yachtsByClass.get(terms.yachtClassId).remove(yachtId);
+  }
+
+  private void addToClass(int yachtId, int yachtClassId) {
+    LinkedHashSet<Integer> yachtIds = yachtsByClass.get(yachtClassId);
+    if (yachtIds == null) {
+      yachtIds = new LinkedHashSet<Integer>();
+      yachtsByClass.put(yachtClassId, yachtIds);
+    }
+    yachtIds.add(yachtId);
+  }
+
+  private void addYachtClass(int yachtClassId, String name, boolean unsorted) {
+    String[] terms = tokenize(name);
+    yachtClasses.put(yachtClassId, terms);
+    for (String term : terms) {
+      if (unsorted)
+        classNames.addUnsorted(term, yachtClassId);
+      else
+        classNames.add(term, yachtClassId);
+    }
+  }
+
+  private void removeYachtClass(int yachtClassId) {
+    String[] terms = yachtClasses.remove(yachtClassId);
+    if (terms != null)
+      for (String term : terms)
+        classNames.remove(term, yachtClassId);
+  }
+
+/**
+ * Tekstas didžiosiomis raidėmis be tarpų ir skyrybos ženklų.
+ */
+  static String normalize(String text) {
+    if (text == null)
+      return "";
+    StringBuilder normalized = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      char character = text.charAt(i);
+      if (Character.isLetterOrDigit(character))
+        normalized.append(character);
+    }
+    return normalized.toString().toUpperCase(Locale.ROOT);
+  }
+
+/**
+ * Teksto žodžiai (normalizuoti, be pasikartojimų).
+ */
+  static String[] tokenize(String text) {
+    Vector<String> words = new Vector<String>();
+    if (text != null) {
+      int start = -1;
+      for (int i = 0; i <= text.length(); i++) {
+        boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+        if (letter && start < 0)
+          start = i;
+        else if (!letter && start >= 0) {
+          String word = text.substring(start, i).toUpperCase(Locale.ROOT);
+          if (!words.contains(word))
+            words.add(word);
+          start = -1;
+        }
+      }
+    }
+    return words.toArray(new String[words.size()]);
+  }
+}
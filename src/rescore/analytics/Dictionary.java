@@ -0,0 +1,75 @@
+/**
+ * Eilučių žodynas: kiekviena skirtinga reikšmė gauna kodą 0, 1, 2, ...
+ * (pridėjimo tvarka), o stulpelyje laikomi tik kodai.
+ * Į FleetSnapshot įdėtas žodynas nebekeičiamas: atnaujinant momentinę kopiją
+ * naujos reikšmės pridedamos į žodyno kopiją (copy()), todėl seni kodai
+ * lieka galioti.
+ */
+package rescore.analytics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class Dictionary {
+  public static final int NONE = -1; // reikšmės nėra
+  private String[] values;
+  private int size = 0;
+  private final HashMap<String, Integer> codes;
+
+  Dictionary() {
+    values = new String[16];
+    codes = new HashMap<String, Integer>();
+  }
+
+  private Dictionary(Dictionary dictionary) {
+    values = Arrays.copyOf(dictionary.values, Math.max(dictionary.size * 2, 16));
+    size = dictionary.size;
+    codes = new HashMap<String, Integer>(dictionary.codes);
+  }
+
+/**
+ * Grąžina reikšmės kodą, jei reikia – ją pridėjus.
+ *
+ * @return kodas arba NONE, jei value null
+ */
+  int encode(String value) {
+    if (value == null)
+      return NONE;
+    Integer code = codes.get(value);
+    if (code == null) {
+      if (size == values.length)
+        values = Arrays.copyOf(values, size * 2);
+      values[size] = value;
+      code = size++;
+      codes.put(value, code);
+    }
+    return code;
+  }
+
+  Dictionary copy() {
+    return new Dictionary(this);
+  }
+
+/**
+ * Grąžina reikšmės kodą.
+ *
+ * @return kodas arba NONE, jei tokios reikšmės žodyne nėra
+ */
+  public int lookup(String value) {
+    Integer code = value == null ? null : codes.get(value);
+    return code == null ? NONE : code;
+  }
+
+/**
+ * Grąžina kodo reikšmę.
+ *
+ * @return reikšmė arba null, jei kodas NONE
+ */
+  public String getValue(int code) {
+    return code == NONE ? null : values[code];
+  }
+
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,426 @@
+/**
+ * Analitinės užklausos momentinei kopijai (FleetSnapshot): filtrai grąžina
+ * atranką (Selection), suvestinės – grupių reikšmes (GroupAggregate) arba
+ * geriausių jachtų ID.
+ * Stulpeliai skaitomi paprastais ciklais per masyvus. Didelė kopija
+ * dalijama į dalis po chunkSize eilučių, kurios skaitomos lygiagrečiai
+ * (ForkJoinPool), o dalių rezultatai sujungiami; rezultatai nuo gijų skaičiaus
+ * nepriklauso. Mažesnė nei chunkSize kopija skaitoma kviečiančioje gijoje.
+ *
+ * Pavyzdžiai: jachtų skaičius pagal modelį –
+ * aggregate(snapshot, FleetSnapshot.MODEL, null); vidutinis koeficientas
+ * regatos grupėje – aggregate(snapshot, FleetSnapshot.MODEL, yachts(snapshot, dalyvių ID));
+ * 10 seniausių regatos jachtų – top(snapshot, FleetSnapshot.YEAR, true, 10, yachts(snapshot, dalyvių ID)).
+ */
+package rescore.analytics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class FleetQuery {
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 14; // eilučių vienai užduočiai
+  private final ForkJoinPool pool;
+  private final int chunkSize; // 64 kartotinis, kad dalys nesidalintų Selection žodžių
+
+/**
+ * Konstruktorius.
+ *
+ * @param pool gijos, kuriose skaičiuojama
+ */
+  public FleetQuery(ForkJoinPool pool) {
+    this(pool, DEFAULT_CHUNK_SIZE);
+  }
+
+/**
+ * Konstruktorius.
+ *
+ * @param pool      gijos, kuriose skaičiuojama
+ * @param chunkSize kiek daugiausiai eilučių skaito viena užduotis
+ *                  (suapvalinama iki 64 kartotinio)
+ */
+  public FleetQuery(ForkJoinPool pool, int chunkSize) {
+    this.pool = pool;
+    this.chunkSize = Math.max(64, (chunkSize + 63) & ~63);
+  }
+
+/**
+ * Eilučių [from, to) skaitymas, kai reikia – padalijamas pusiau.
+ */
+  private abstract class Scan<T> extends RecursiveTask<T> {
+    private static final long serialVersionUID = 1L;
+    final int from, to;
+
+    Scan(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    protected T compute() {
+      if (to - from <= chunkSize)
+        return scan(from, to);
+      int middle = from + (((to - from) / 2 + 63) & ~63);
+      Scan<T> first = split(from, middle);
+      Scan<T> second = split(middle, to);
+      first.fork();
+      T secondResult = second.compute();
+      return merge(first.join(), secondResult);
+    }
+
+    abstract T scan(int from, int to);
+
+    abstract Scan<T> split(int from, int to);
+
+    abstract T merge(T first, T second);
+  }
+
+  private <T> T run(Scan<T> scan) {
+    return scan.to - scan.from <= chunkSize ? scan.scan(scan.from, scan.to) : pool.invoke(scan);
+  }
+
+/**
+ * Atrenka eilutes, kurių stulpelio reikšmė tarp min ir max (imtinai).
+ *
+ * @param column MODEL, YEAR, CAPTAIN, OWNER arba CLASS_NAME
+ * @param within tik iš šių eilučių (null – iš visų)
+ */
+  public Selection range(FleetSnapshot snapshot, int column, int min, int max, Selection within) {
+    return run(new RangeScan(snapshot.columns[column], min, max, within == null ? null : within.words, new Selection(snapshot.size), 0, snapshot.size));
+  }
+
+/**
+ * Atrenka eilutes, kurių stulpelio reikšmė lygi value.
+ *
+ * @param within tik iš šių eilučių (null – iš visų)
+ */
+  public Selection equal(FleetSnapshot snapshot, int column, int value, Selection within) {
+    return range(snapshot, column, value, value, within);
+  }
+
+/**
+ * Atrenka jachtas, kurių modelio pavadinimas lygus name.
+ *
+ * @param within tik iš šių eilučių (null – iš visų)
+ */
+  public Selection className(FleetSnapshot snapshot, String name, Selection within) {
+    int code = snapshot.getClassNames().lookup(name);
+    if (code == Dictionary.NONE)
+      return new Selection(snapshot.size);
+    return equal(snapshot, FleetSnapshot.CLASS_NAME, code, within);
+  }
+
+/**
+ * Atrenka jachtas, kurių koeficientas tarp min ir max (imtinai);
+ * nežinomas koeficientas netinka.
+ *
+ * @param within tik iš šių eilučių (null – iš visų)
+ */
+  public Selection coefficientRange(FleetSnapshot snapshot, float min, float max, Selection within) {
+    return run(new CoefficientScan(snapshot.coefficients, min, max, within == null ? null : within.words, new Selection(snapshot.size), 0, snapshot.size));
+  }
+
+/**
+ * Atrenka jachtas pagal ID (pvz., regatos grupės dalyvius); kopijoje
+ * nesančių ID nepaisoma.
+ */
+  public Selection yachts(FleetSnapshot snapshot, int[] yachtIds) {
+    Selection selection = new Selection(snapshot.size);
+    for (int yachtId : yachtIds) {
+      int row = snapshot.findRow(yachtId);
+      if (row >= 0)
+        selection.add(row);
+    }
+    return selection;
+  }
+
+/**
+ * Suskaičiuoja atrinktų jachtų suvestinę pagal stulpelio reikšmę.
+ *
+ * @param column grupavimo stulpelis (MODEL, YEAR, CAPTAIN, OWNER arba CLASS_NAME)
+ * @param within tik šios eilutės (null – visos)
+ */
+  public GroupAggregate aggregate(FleetSnapshot snapshot, int column, Selection within) {
+    Partial partial = run(new AggregateScan(snapshot, column, within == null ? null : within.words, 0, snapshot.size));
+    int groups = 0;
+    for (int count : partial.counts)
+      if (count > 0)
+        groups++;
+    int[] keys = new int[groups], counts = new int[groups], coefficientCounts = new int[groups], minYears = new int[groups], maxYears = new int[groups];
+    double[] coefficientSums = new double[groups];
+    int group = 0;
+    for (int key = 0; key < partial.counts.length; key++)
+      if (partial.counts[key] > 0) {
+        keys[group] = key;
+        counts[group] = partial.counts[key];
+        coefficientCounts[group] = partial.coefficientCounts[key];
+        coefficientSums[group] = partial.coefficientSums[key];
+        minYears[group] = partial.minYears[key];
+        maxYears[group] = partial.maxYears[key];
+        group++;
+      }
+    return new GroupAggregate(keys, counts, coefficientCounts, coefficientSums, minYears, maxYears);
+  }
+
+/**
+ * Grąžina jachtas su mažiausiomis (ascending) arba didžiausiomis stulpelio
+ * reikšmėmis, pvz., seniausias – top(snapshot, FleetSnapshot.YEAR, true, limit, within).
+ * Reikšmė 0 (nežinoma) praleidžiama; lygias reikšmes turinčios jachtos
+ * rikiuojamos pagal ID.
+ *
+ * @param within tik iš šių eilučių (null – iš visų)
+ * @return daugiausiai limit jachtų ID, geriausios pirmos
+ */
+  public int[] top(FleetSnapshot snapshot, int column, boolean ascending, int limit, Selection within) {
+    if (limit <= 0)
+      return new int[0];
+    TopHeap heap = run(new TopScan(snapshot.columns[column], ascending, limit, within == null ? null : within.words, 0, snapshot.size));
+    long[] keys = Arrays.copyOf(heap.keys, heap.size);
+    Arrays.sort(keys);
+    int[] yachtIds = new int[keys.length];
+    for (int i = 0; i < keys.length; i++)
+      yachtIds[i] = snapshot.ids[(int)keys[i]];
+    return yachtIds;
+  }
+
+  private class RangeScan extends Scan<Selection> {
+    private static final long serialVersionUID = 1L;
+    private final int[] values;
+    private final int min, max;
+    private final long[] within;
+    private final Selection result; // dalys rašo į skirtingus žodžius
+
+    RangeScan(int[] values, int min, int max, long[] within, Selection result, int from, int to) {
+      super(from, to);
+      this.values = values;
+      this.min = min;
+      this.max = max;
+      this.within = within;
+      this.result = result;
+    }
+
+    Selection scan(int from, int to) {
+      long[] words = result.words;
+      for (int word = from >>> 6, end = (to + 63) >>> 6; word < end; word++) {
+        int first = word << 6, last = Math.min(first + 64, to);
+        long bits = 0;
+        for (int row = first; row < last; row++) {
+          int value = values[row];
+          if (value >= min && value <= max)
+            bits |= 1L << row;
+        }
+        words[word] = within == null ? bits : bits & within[word];
+      }
+      return result;
+    }
+
+    Scan<Selection> split(int from, int to) {
+      return new RangeScan(values, min, max, within, result, from, to);
+    }
+
+    Selection merge(Selection first, Selection second) {
+      return first;
+    }
+  }
+
+  private class CoefficientScan extends Scan<Selection> {
+    private static final long serialVersionUID = 1L;
+    private final float[] values;
+    private final float min, max;
+    private final long[] within;
+    private final Selection result;
+
+    CoefficientScan(float[] values, float min, float max, long[] within, Selection result, int from, int to) {
+      super(from, to);
+      this.values = values;
+      this.min = min;
+      this.max = max;
+      this.within = within;
+      this.result = result;
+    }
+
+    Selection scan(int from, int to) {
+      long[] words = result.words;
+      for (int word = from >>> 6, end = (to + 63) >>> 6; word < end; word++) {
+        int first = word << 6, last = Math.min(first + 64, to);
+        long bits = 0;
+        for (int row = first; row < last; row++) {
+          float value = values[row];
+          if (value >= min && value <= max) // NaN netinka
+            bits |= 1L << row;
+        }
+        words[word] = within == null ? bits : bits & within[word];
+      }
+      return result;
+    }
+
+    Scan<Selection> split(int from, int to) {
+      return new CoefficientScan(values, min, max, within, result, from, to);
+    }
+
+    Selection merge(Selection first, Selection second) {
+      return first;
+    }
+  }
+
+/**
+ * Dalies suvestinė, indeksuojama stulpelio reikšme.
+ */
+  private static class Partial {
+    final int[] counts, coefficientCounts, minYears, maxYears;
+    final double[] coefficientSums;
+
+    Partial(int keys) {
+      counts = new int[keys];
+      coefficientCounts = new int[keys];
+      coefficientSums = new double[keys];
+      minYears = new int[keys];
+      maxYears = new int[keys];
+      Arrays.fill(minYears, Integer.MAX_VALUE);
+    }
+  }
+
+  private class AggregateScan extends Scan<Partial> {
+    private static final long serialVersionUID = 1L;
+    private final FleetSnapshot snapshot;
+    private final int column;
+    private final long[] within;
+
+    AggregateScan(FleetSnapshot snapshot, int column, long[] within, int from, int to) {
+      super(from, to);
+      this.snapshot = snapshot;
+      this.column = column;
+      this.within = within;
+    }
+
+    Partial scan(int from, int to) {
+      Partial partial = new Partial(snapshot.getMaxValue(column) + 1);
+      int[] keys = snapshot.columns[column], years = snapshot.columns[FleetSnapshot.YEAR];
+      float[] coefficients = snapshot.coefficients;
+      if (within == null)
+        for (int row = from; row < to; row++)
+          add(partial, keys[row], years[row], coefficients[row]);
+      else
+        for (int word = from >>> 6, end = (to + 63) >>> 6; word < end; word++)
+          for (long bits = within[word]; bits != 0; bits &= bits - 1) {
+            int row = word << 6 | Long.numberOfTrailingZeros(bits);
+            add(partial, keys[row], years[row], coefficients[row]);
+          }
+      return partial;
+    }
+
+    private void add(Partial partial, int key, int year, float coefficient) {
+      if (key < 0) // nėra reikšmės
+        return;
+      partial.counts[key]++;
+      if (!Float.isNaN(coefficient)) {
+        partial.coefficientCounts[key]++;
+        partial.coefficientSums[key] += coefficient;
+      }
+      if (year > 0) {
+        if (year < partial.minYears[key])
+          partial.minYears[key] = year;
+        if (year > partial.maxYears[key])
+          partial.maxYears[key] = year;
+      }
+    }
+
+    Scan<Partial> split(int from, int to) {
+      return new AggregateScan(snapshot, column, within, from, to);
+    }
+
+    Partial merge(Partial first, Partial second) {
+      for (int key = 0; key < first.counts.length; key++) {
+        first.counts[key] += second.counts[key];
+        first.coefficientCounts[key] += second.coefficientCounts[key];
+        first.coefficientSums[key] += second.coefficientSums[key];
+        first.minYears[key] = Math.min(first.minYears[key], second.minYears[key]);
+        first.maxYears[key] = Math.max(first.maxYears[key], second.maxYears[key]);
+      }
+      return first;
+    }
+  }
+
+/**
+ * Mažiausi limit raktų: didžiausias – šaknyje (keys[0]).
+ * Raktas – (reikšmė arba -reikšmė) << 32 | eilutė, todėl lygių reikšmių
+ * eilutės (ir ID) lyginamos didėjimo tvarka.
+ */
+  private static class TopHeap {
+    final long[] keys;
+    int size = 0;
+
+    TopHeap(int limit) {
+      keys = new long[limit];
+    }
+
+    void offer(long key) {
+      int slot;
+      if (size < keys.length) {
+        slot = size++;
+        while (slot > 0 && keys[(slot - 1) / 2] < key) {
+          keys[slot] = keys[(slot - 1) / 2];
+          slot = (slot - 1) / 2;
+        }
+      } else if (key < keys[0]) {
+        slot = 0;
+        while (true) {
+          int child = 2 * slot + 1;
+          if (child >= size)
+            break;
+          if (child + 1 < size && keys[child + 1] > keys[child])
+            child++;
+          if (keys[child] <= key)
+            break;
+          keys[slot] = keys[child];
+          slot = child;
+        }
+      } else
+        return;
+      keys[slot] = key;
+    }
+  }
+
+  private class TopScan extends Scan<TopHeap> {
+    private static final long serialVersionUID = 1L;
+    private final int[] values;
+    private final boolean ascending;
+    private final int limit;
+    private final long[] within;
+
+    TopScan(int[] values, boolean ascending, int limit, long[] within, int from, int to) {
+      super(from, to);
+      this.values = values;
+      this.ascending = ascending;
+      this.limit = limit;
+      this.within = within;
+    }
+
+    TopHeap scan(int from, int to) {
+      TopHeap heap = new TopHeap(limit);
+      if (within == null)
+        for (int row = from; row < to; row++)
+          offer(heap, row);
+      else
+        for (int word = from >>> 6, end = (to + 63) >>> 6; word < end; word++)
+          for (long bits = within[word]; bits != 0; bits &= bits - 1)
+            offer(heap, word << 6 | Long.numberOfTrailingZeros(bits));
+      return heap;
+    }
+
+    private void offer(TopHeap heap, int row) {
+      int value = values[row];
+      if (value != 0)
+        heap.offer((long)(ascending ? value : -value) << 32 | row);
+    }
+
+    Scan<TopHeap> split(int from, int to) {
+      return new TopScan(values, ascending, limit, within, from, to);
+    }
+
+    TopHeap merge(TopHeap first, TopHeap second) {
+      for (int i = 0; i < second.size; i++)
+        first.offer(second.keys[i]);
+      return first;
+    }
+  }
+}
@@ -0,0 +1,257 @@
+/**
+ * Stulpelinė jachtų (lentelės Jachtos ir Modeliai) momentinė kopija
+ * analitinėms užklausoms (žr. FleetQuery). Kiekvienas stulpelis – atskiras
+ * masyvas, eilutės surikiuotos pagal jachtos ID; eilutės numeris visuose
+ * stulpeliuose tas pats. Sveikųjų skaičių stulpeliai: MODEL (modelio ID),
+ * YEAR (pagaminimo metai, 0 – nežinomi), CAPTAIN ir OWNER (kapitono ir
+ * savininko ID, 0 – nėra), CLASS_NAME (modelio pavadinimo kodas žodyne
+ * getClassNames()); be jų – modelio koeficientas (NaN – nežinomas), burės
+ * numeris ir pavadinimas.
+ * Kopija sukuriama viena užklausa (build()) ir nebekeičiama, todėl ją be
+ * sinchronizacijos gali skaityti kelios gijos; naujesnę kopiją pagal esybių
+ * pakeitimus sukuria LiveSnapshot.
+ */
+package rescore.analytics;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import rescore.Database;
+
+public class FleetSnapshot {
+  private static Logger logger = Logger.getLogger(FleetSnapshot.class.getName());
+  static final String SELECT_FLEET_ROWS = "SELECT j.Id, j.Modelis, j.PagaminimoMetai, j.Kapitonas, j.Savininkas, m.Koeficientas, j.BurėsNumeris, j.Pavadinimas, m.Pavadinimas FROM Jachtos j JOIN Modeliai m ON m.Id = j.Modelis"; // Builder.read() stulpeliai
+  private static final String SELECT_FLEET = SELECT_FLEET_ROWS + " ORDER BY j.Id";
+  static final String SELECT_YACHT_COUNT = "SELECT COUNT(*), MAX(Id) FROM Jachtos";
+  public static final int MODEL = 0, YEAR = 1, CAPTAIN = 2, OWNER = 3, CLASS_NAME = 4; // sveikųjų skaičių stulpeliai
+  static final int COLUMNS = 5;
+  final int size;
+  final int[] ids; // didėjimo tvarka
+  final int[][] columns; // [stulpelis][eilutė]
+  final float[] coefficients;
+  private final String[] sailNumbers, names;
+  private final Dictionary classNames;
+  private final int[] maxValues; // kiekvieno stulpelio didžiausia reikšmė (bent 0)
+
+  private FleetSnapshot(Builder builder) {
+    size = builder.size;
+    ids = builder.ids;
+    columns = builder.columns;
+    coefficients = builder.coefficients;
+    sailNumbers = builder.sailNumbers;
+    names = builder.names;
+    classNames = builder.classNames;
+    maxValues = new int[COLUMNS];
+    for (int column = 0; column < COLUMNS; column++) {
+      int[] values = columns[column];
+      int max = 0;
+      for (int row = 0; row < size; row++)
+        if (values[row] > max)
+          max = values[row];
+      maxValues[column] = max;
+    }
+  }
+
+/**
+ * Sukuria visų jachtų momentinę kopiją.
+ *
+ * @return kopija arba null, jei įvyko klaida
+ */
+  public static FleetSnapshot build() {
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        return load(session);
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("build SQL error: " + exception.getMessage());
+      return null;
+    }
+  }
+
+  static FleetSnapshot load(Database.Session session) throws SQLException {
+    ResultSet resultSet = session.prepare(SELECT_YACHT_COUNT).executeQuery();
+    resultSet.next();
+    Builder builder = new Builder(resultSet.getInt(1) + 16, new Dictionary());
+    resultSet = session.prepare(SELECT_FLEET).executeQuery();
+    while (resultSet.next())
+      builder.read(resultSet);
+    return builder.toSnapshot();
+  }
+
+/**
+ * Kiek jachtų (eilučių).
+ */
+  public int size() {
+    return size;
+  }
+
+/**
+ * Grąžina jachtos eilutės numerį.
+ *
+ * @return eilutė arba -1, jei tokios jachtos nėra
+ */
+  public int findRow(int yachtId) {
+    int row = Arrays.binarySearch(ids, 0, size, yachtId);
+    return row >= 0 ? row : -1;
+  }
+
+  public int getId(int row) {
+    return ids[row];
+  }
+
+/**
+ * Grąžina sveikųjų skaičių stulpelio reikšmę.
+ *
+ * @param column MODEL, YEAR, CAPTAIN, OWNER arba CLASS_NAME
+ */
+  public int getValue(int column, int row) {
+    return columns[column][row];
+  }
+
+/**
+ * Didžiausia stulpelio reikšmė (0, jei jachtų nėra).
+ */
+  public int getMaxValue(int column) {
+    return maxValues[column];
+  }
+
+/**
+ * Didžiausias jachtos ID (0, jei jachtų nėra).
+ */
+  public int getMaxId() {
+    return size == 0 ? 0 : ids[size - 1];
+  }
+
+  public float getCoefficient(int row) {
+    return coefficients[row];
+  }
+
+  public String getSailNumber(int row) {
+    return sailNumbers[row];
+  }
+
+  public String getName(int row) {
+    return names[row];
+  }
+
+  public String getClassName(int row) {
+    return classNames.getValue(columns[CLASS_NAME][row]);
+  }
+
+/**
+ * Modelių pavadinimų žodynas (CLASS_NAME stulpelio kodai).
+ */
+  public Dictionary getClassNames() {
+    return classNames;
+  }
+
+/**
+ * Kuria momentinę kopiją: eilutės pridedamos didėjančių ID tvarka.
+ * Masyvai perduodami kopijai nekopijuojami, todėl sukūrus kopiją Builder
+ * nebenaudojamas.
+ */
+  static class Builder {
+    int size = 0;
+    int[] ids;
+    final int[][] columns = new int[COLUMNS][];
+    float[] coefficients;
+    String[] sailNumbers, names;
+    final Dictionary classNames;
+
+    Builder(int capacity, Dictionary classNames) {
+      capacity = Math.max(capacity, 16);
+      ids = new int[capacity];
+      for (int column = 0; column < COLUMNS; column++)
+        columns[column] = new int[capacity];
+      coefficients = new float[capacity];
+      sailNumbers = new String[capacity];
+      names = new String[capacity];
+      this.classNames = classNames;
+    }
+
+    private void ensure(int capacity) {
+      if (capacity <= ids.length)
+        return;
+      capacity = Math.max(capacity, ids.length * 2);
+      ids = Arrays.copyOf(ids, capacity);
+      for (int column = 0; column < COLUMNS; column++)
+        columns[column] = Arrays.copyOf(columns[column], capacity);
+      coefficients = Arrays.copyOf(coefficients, capacity);
+      sailNumbers = Arrays.copyOf(sailNumbers, capacity);
+      names = Arrays.copyOf(names, capacity);
+    }
+
+/**
+ * Prideda SELECT_FLEET_ROWS eilutę.
+ */
+    void read(ResultSet resultSet) throws SQLException {
+      ensure(size + 1);
+      ids[size] = resultSet.getInt(1);
+      columns[MODEL][size] = resultSet.getInt(2);
+      columns[YEAR][size] = resultSet.getInt(3);
+      columns[CAPTAIN][size] = resultSet.getInt(4);
+      columns[OWNER][size] = resultSet.getInt(5);
+      float coefficient = resultSet.getFloat(6);
+      coefficients[size] = resultSet.wasNull() ? Float.NaN : coefficient;
+      sailNumbers[size] = resultSet.getString(7);
+      names[size] = resultSet.getString(8);
+      columns[CLASS_NAME][size] = classNames.encode(resultSet.getString(9));
+      size++;
+    }
+
+/**
+ * Prideda kopijos eilutes [from, to). Kopijos žodynas turi būti šio
+ * žodyno dalis (žr. Dictionary.copy()).
+ */
+    void copy(FleetSnapshot snapshot, int from, int to) {
+      int count = to - from;
+      if (count <= 0)
+        return;
+      ensure(size + count);
+      System.arraycopy(snapshot.ids, from, ids, size, count);
+      for (int column = 0; column < COLUMNS; column++)
+        System.arraycopy(snapshot.columns[column], from, columns[column], size, count);
+      System.arraycopy(snapshot.coefficients, from, coefficients, size, count);
+      System.arraycopy(snapshot.sailNumbers, from, sailNumbers, size, count);
+      System.arraycopy(snapshot.names, from, names, size, count);
+      size += count;
+    }
+
+/**
+ * Prideda kito Builder (su tuo pačiu žodynu) eilutę.
+ */
+    void copy(Builder builder, int row) {
+      ensure(size + 1);
+      ids[size] = builder.ids[row];
+      for (int column = 0; column < COLUMNS; column++)
+        columns[column][size] = builder.columns[column][row];
+      coefficients[size] = builder.coefficients[row];
+      sailNumbers[size] = builder.sailNumbers[row];
+      names[size] = builder.names[row];
+      size++;
+    }
+
+/**
+ * Pakeičia visų modelio jachtų modelio pavadinimą ir koeficientą.
+ */
+    void setYachtClass(int yachtClassId, String name, float coefficient) {
+      int code = classNames.encode(name);
+      int[] models = columns[MODEL];
+      for (int row = 0; row < size; row++)
+        if (models[row] == yachtClassId) {
+          columns[CLASS_NAME][row] = code;
+          coefficients[row] = coefficient;
+        }
+    }
+
+    FleetSnapshot toSnapshot() {
+      return new FleetSnapshot(this);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Atrinktų jachtų suvestinė pagal stulpelio reikšmę (grupę): jachtų
+ * skaičius, vidutinis koeficientas (be nežinomų) ir seniausios bei naujausios
+ * jachtos metai (be nežinomų). Grupės surikiuotos pagal reikšmę; tuščių
+ * grupių nėra. Sukuriama FleetQuery.aggregate().
+ */
+package rescore.analytics;
+
+import java.util.Arrays;
+
+public class GroupAggregate {
+  private final int[] keys, counts, coefficientCounts, minYears, maxYears;
+  private final double[] coefficientSums;
+
+  GroupAggregate(int[] keys, int[] counts, int[] coefficientCounts, double[] coefficientSums, int[] minYears, int[] maxYears) {
+    this.keys = keys;
+    this.counts = counts;
+    this.coefficientCounts = coefficientCounts;
+    this.coefficientSums = coefficientSums;
+    this.minYears = minYears;
+    this.maxYears = maxYears;
+  }
+
+/**
+ * Kiek grupių.
+ */
+  public int size() {
+    return keys.length;
+  }
+
+/**
+ * Grąžina grupės numerį.
+ *
+ * @param key stulpelio reikšmė
+ * @return grupė arba -1, jei tokios nėra
+ */
+  public int find(int key) {
+    int group = Arrays.binarySearch(keys, key);
+    return group >= 0 ? group : -1;
+  }
+
+/**
+ * Grupės stulpelio reikšmė (CLASS_NAME – žodyno kodas).
+ */
+  public int getKey(int group) {
+    return keys[group];
+  }
+
+  public int getCount(int group) {
+    return counts[group];
+  }
+
+/**
+ * Vidutinis žinomų koeficientų dydis (NaN, jei nežinomas nė vienas).
+ */
+  public double getMeanCoefficient(int group) {
+    return coefficientCounts[group] == 0 ? Double.NaN : coefficientSums[group] / coefficientCounts[group];
+  }
+
+/**
+ * Seniausios jachtos metai (0, jei nežinomi nė vienos).
+ */
+  public int getMinYear(int group) {
+    return minYears[group] == Integer.MAX_VALUE ? 0 : minYears[group];
+  }
+
+/**
+ * Naujausios jachtos metai (0, jei nežinomi nė vienos).
+ */
+  public int getMaxYear(int group) {
+    return maxYears[group];
+  }
+}
@@ -0,0 +1,258 @@
+/**
+ * Atnaujinama jachtų momentinė kopija (FleetSnapshot).
+ * Klauso Yacht ir YachtClass pakeitimų (EntityListener) ir įsimena pakeistų
+ * jachtų ir modelių ID; refresh() iš duombazės perskaito tik juos ir
+ * jachtas, kurių ID didesnis už kopijos didžiausią, o likusias eilutes
+ * nukopijuoja iš ankstesnės kopijos (System.arraycopy). Ankstesnė kopija
+ * nekeičiama, todėl ją skaitančios gijos netrukdomos.
+ * Jei po atnaujinimo jachtų skaičius nesutampa su duombaze (jachtos
+ * panaikintos tiesiogiai duombazėje), kopija sukuriama iš naujo. Kitų
+ * tiesiogiai duombazėje atliktų pakeitimų kopija nemato – tada reikia
+ * rebuild().
+ */
+package rescore.analytics;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import rescore.Database;
+import rescore.EntityListener;
+import rescore.NamedEntity;
+import rescore.Yacht;
+import rescore.YachtClass;
+
+public class LiveSnapshot {
+  private static Logger logger = Logger.getLogger(LiveSnapshot.class.getName());
+  private static final String SELECT_YACHTS_AFTER = FleetSnapshot.SELECT_FLEET_ROWS + " WHERE j.Id > ? ORDER BY j.Id";
+  private static final String SELECT_MANY_YACHTS = FleetSnapshot.SELECT_FLEET_ROWS + " WHERE j.Id IN (" + idListParameters() + ") ORDER BY j.Id";
+  private static final String SELECT_MANY_YACHT_CLASSES = "SELECT Id, Pavadinimas, Koeficientas FROM Modeliai WHERE Id IN (" + idListParameters() + ")";
+  private volatile FleetSnapshot snapshot = null;
+  private final Object changes = new Object(); // saugo changedYachts ir changedYachtClasses
+  private TreeSet<Integer> changedYachts = new TreeSet<Integer>();
+  private TreeSet<Integer> changedYachtClasses = new TreeSet<Integer>();
+  private final EntityListener yachtListener, yachtClassListener;
+
+  private LiveSnapshot() {
+    yachtListener = new EntityListener() {
+      public void created(NamedEntity namedEntity) {
+        changed(namedEntity);
+      }
+
+      public void changed(NamedEntity namedEntity) {
+        synchronized (changes) {
+          changedYachts.add(namedEntity.getId());
+        }
+      }
+
+      public void removed(NamedEntity namedEntity) {
+        changed(namedEntity);
+      }
+    };
+    yachtClassListener = new EntityListener() {
+      public void created(NamedEntity namedEntity) {
+      }
+
+      public void changed(NamedEntity namedEntity) {
+        synchronized (changes) {
+          changedYachtClasses.add(namedEntity.getId());
+        }
+      }
+
+      public void removed(NamedEntity namedEntity) {
+      }
+    };
+  }
+
+/**
+ * Sukuria kopiją iš duombazės ir užregistruoja jos atnaujinimą.
+ * Kai kopija nebereikalinga, reikia iškviesti close().
+ *
+ * @return atnaujinama kopija arba null, jei įvyko klaida
+ */
+  public static LiveSnapshot build() {
+    LiveSnapshot live = new LiveSnapshot();
+    // klausytojai registruojami prieš užkraunant, kad užkrovimo metu atlikti
+    // pakeitimai būtų perskaityti per pirmą refresh()
+    NamedEntity.addListener(Yacht.class, live.yachtListener);
+    NamedEntity.addListener(YachtClass.class, live.yachtClassListener);
+    if (live.rebuild() == null) {
+      live.close();
+      return null;
+    }
+    return live;
+  }
+
+/**
+ * Atjungia kopiją nuo esybių pakeitimų.
+ */
+  public void close() {
+    NamedEntity.removeListener(Yacht.class, yachtListener);
+    NamedEntity.removeListener(YachtClass.class, yachtClassListener);
+  }
+
+/**
+ * Paskutinė sukurta kopija.
+ */
+  public FleetSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+/**
+ * Sukuria kopiją iš naujo (viena užklausa).
+ *
+ * @return nauja kopija arba null, jei įvyko klaida (lieka ankstesnė)
+ */
+  public synchronized FleetSnapshot rebuild() {
+    synchronized (changes) {
+      changedYachts = new TreeSet<Integer>();
+      changedYachtClasses = new TreeSet<Integer>();
+    }
+    FleetSnapshot rebuilt = FleetSnapshot.build();
+    if (rebuilt != null)
+      snapshot = rebuilt;
+    return rebuilt;
+  }
+
+/**
+ * Sukuria naujesnę kopiją pagal nuo paskutinio atnaujinimo pakeistas
+ * jachtas ir modelius.
+ *
+ * @return nauja (arba, jei niekas nepasikeitė, ta pati) kopija arba null,
+ *         jei įvyko klaida (lieka ankstesnė, pakeitimai neprarandami)
+ */
+  public synchronized FleetSnapshot refresh() {
+    TreeSet<Integer> yachtIds, yachtClassIds;
+    synchronized (changes) {
+      yachtIds = changedYachts;
+      yachtClassIds = changedYachtClasses;
+      changedYachts = new TreeSet<Integer>();
+      changedYachtClasses = new TreeSet<Integer>();
+    }
+    FleetSnapshot previous = snapshot;
+    int previousMaxId = previous.getMaxId();
+    int[] ids = toArray(yachtIds.headSet(previousMaxId, true)); // naujesnės už kopiją perskaitomos visos
+    FleetSnapshot.Builder loaded = new FleetSnapshot.Builder(ids.length + 16, previous.getClassNames().copy());
+    int[] classIds = toArray(yachtClassIds);
+    int[] loadedClassIds = new int[classIds.length];
+    String[] classNames = new String[classIds.length];
+    float[] coefficients = new float[classIds.length];
+    int classCount = 0, yachtCount;
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        ResultSet resultSet = session.prepare(FleetSnapshot.SELECT_YACHT_COUNT).executeQuery();
+        resultSet.next();
+        yachtCount = resultSet.getInt(1);
+        int maxId = resultSet.getInt(2);
+        PreparedStatement selectManyYachts = session.prepare(SELECT_MANY_YACHTS);
+        for (int from = 0; from < ids.length; from += NamedEntity.ID_LIST_SIZE) {
+          setIds(selectManyYachts, ids, from);
+          resultSet = selectManyYachts.executeQuery();
+          while (resultSet.next())
+            loaded.read(resultSet);
+        }
+        if (maxId > previousMaxId) {
+          PreparedStatement selectYachtsAfter = session.prepare(SELECT_YACHTS_AFTER);
+          selectYachtsAfter.setInt(1, previousMaxId);
+          resultSet = selectYachtsAfter.executeQuery();
+          while (resultSet.next())
+            loaded.read(resultSet);
+        }
+        PreparedStatement selectManyYachtClasses = session.prepare(SELECT_MANY_YACHT_CLASSES);
+        for (int from = 0; from < classIds.length; from += NamedEntity.ID_LIST_SIZE) {
+          setIds(selectManyYachtClasses, classIds, from);
+          resultSet = selectManyYachtClasses.executeQuery();
+          while (resultSet.next()) {
+            loadedClassIds[classCount] = resultSet.getInt(1);
+            classNames[classCount] = resultSet.getString(2);
+            float coefficient = resultSet.getFloat(3);
+            coefficients[classCount++] = resultSet.wasNull() ? Float.NaN : coefficient;
+          }
+        }
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("refresh SQL error: " + exception.getMessage());
+      synchronized (changes) {
+        changedYachts.addAll(yachtIds);
+        changedYachtClasses.addAll(yachtClassIds);
+      }
+      return null;
+    }
+    if (ids.length == 0 && loaded.size == 0 && classCount == 0 && yachtCount == previous.size())
+      return previous;
+    FleetSnapshot.Builder merged = merge(previous, ids, loaded);
+    for (int i = 0; i < classCount; i++) // modelio pakeitimas galioja ir nepakeistoms jachtoms
+      merged.setYachtClass(loadedClassIds[i], classNames[i], coefficients[i]);
+    if (merged.size != yachtCount) {
+      if (logger.isEnabledFor(Level.INFO))
+        logger.info("Snapshot has " + merged.size + " yachts, database " + yachtCount + ": rebuilding");
+      return rebuild();
+    }
+    snapshot = merged.toSnapshot();
+    return snapshot;
+  }
+
+/**
+ * Sujungia ankstesnę kopiją su perskaitytomis jachtomis: pakeistos eilutės
+ * pakeičiamos, naujos įterpiamos, o changedIds jachtos, kurių neperskaityta,
+ * išmetamos; nepakeistų eilučių intervalai kopijuojami.
+ *
+ * @param changedIds pakeistų jachtų ID didėjimo tvarka
+ * @param loaded     perskaitytos jachtos didėjimo ID tvarka
+ */
+  private static FleetSnapshot.Builder merge(FleetSnapshot previous, int[] changedIds, FleetSnapshot.Builder loaded) {
+    FleetSnapshot.Builder merged = new FleetSnapshot.Builder(previous.size() + loaded.size, loaded.classNames);
+    int previousRow = 0, changed = 0, loadedRow = 0;
+    while (changed < changedIds.length || loadedRow < loaded.size) {
+      boolean found = loadedRow < loaded.size && (changed == changedIds.length || loaded.ids[loadedRow] <= changedIds[changed]);
+      int id = found ? loaded.ids[loadedRow] : changedIds[changed];
+      if (changed < changedIds.length && changedIds[changed] == id)
+        changed++;
+      int row = Arrays.binarySearch(previous.ids, previousRow, previous.size(), id);
+      int next = row >= 0 ? row : -row - 1;
+      merged.copy(previous, previousRow, next);
+      previousRow = row >= 0 ? row + 1 : next;
+      if (found)
+        merged.copy(loaded, loadedRow++);
+    }
+    merged.copy(previous, previousRow, previous.size());
+    return merged;
+  }
+
+  private static int[] toArray(SortedSet<Integer> ids) {
+    int[] array = new int[ids.size()];
+    int i = 0;
+    for (int id : ids)
+      array[i++] = id;
+    return array;
+  }
+
+/**
+ * Nustato IN sąrašo parametrus ids[from], ...; trūkstami užpildomi
+ * paskutiniu ID.
+ */
+  private static void setIds(PreparedStatement statement, int[] ids, int from) throws SQLException {
+    for (int parameter = 0; parameter < NamedEntity.ID_LIST_SIZE; parameter++)
+      statement.setInt(parameter + 1, ids[Math.min(from + parameter, ids.length - 1)]);
+  }
+
+/**
+ * Grąžina IN sąrašo parametrus.
+ *
+ * @return NamedEntity.ID_LIST_SIZE kableliais atskirtų „?“
+ */
+  private static String idListParameters() {
+    StringBuilder parameters = new StringBuilder("?");
+    for (int i = 1; i < NamedEntity.ID_LIST_SIZE; i++)
+      parameters.append(", ?");
+    return parameters.toString();
+  }
+}
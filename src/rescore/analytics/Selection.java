@@ -0,0 +1,87 @@
+/**
+ * Atrinktos momentinės kopijos (FleetSnapshot) eilutės – bitų masyvas, po
+ * 64 eilutes viename long. Sukuriama FleetQuery filtrų ir nebekeičiama.
+ */
+package rescore.analytics;
+
+public class Selection {
+  final int size; // kopijos eilučių skaičius
+  final long[] words;
+
+  Selection(int size) {
+    this.size = size;
+    words = new long[(size + 63) >>> 6];
+  }
+
+/**
+ * Visos size eilučių.
+ */
+  public static Selection all(int size) {
+    Selection selection = new Selection(size);
+    for (int word = 0; word < selection.words.length; word++)
+      selection.words[word] = -1L;
+    if ((size & 63) != 0)
+      selection.words[selection.words.length - 1] = (1L << (size & 63)) - 1;
+    return selection;
+  }
+
+  void add(int row) {
+    words[row >>> 6] |= 1L << row;
+  }
+
+  public boolean contains(int row) {
+    return (words[row >>> 6] & 1L << row) != 0;
+  }
+
+/**
+ * Kiek eilučių atrinkta.
+ */
+  public int count() {
+    int count = 0;
+    for (long word : words)
+      count += Long.bitCount(word);
+    return count;
+  }
+
+/**
+ * Eilutės, esančios ir šioje, ir kitoje atrankoje.
+ */
+  public Selection and(Selection selection) {
+    Selection result = new Selection(size);
+    for (int word = 0; word < words.length; word++)
+      result.words[word] = words[word] & selection.words[word];
+    return result;
+  }
+
+/**
+ * Eilutės, esančios bent vienoje atrankoje.
+ */
+  public Selection or(Selection selection) {
+    Selection result = new Selection(size);
+    for (int word = 0; word < words.length; word++)
+      result.words[word] = words[word] | selection.words[word];
+    return result;
+  }
+
+/**
+ * Neatrinktos eilutės.
+ */
+  public Selection not() {
+    Selection result = all(size);
+    for (int word = 0; word < words.length; word++)
+      result.words[word] &= ~words[word];
+    return result;
+  }
+
+/**
+ * Atrinktų eilučių numeriai didėjimo tvarka.
+ */
+  public int[] rows() {
+    int[] rows = new int[count()];
+    int count = 0;
+    for (int word = 0; word < words.length; word++)
+      for (long bits = words[word]; bits != 0; bits &= bits - 1)
+        rows[count++] = word << 6 | Long.numberOfTrailingZeros(bits);
+    return rows;
+  }
+}
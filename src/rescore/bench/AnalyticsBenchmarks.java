@@ -0,0 +1,129 @@
+/**
+ * Stulpelinės momentinės kopijos (rescore.analytics) bandymai: kopijos
+ * sukūrimas ir atnaujinimas pakeitus vieną jachtą, jachtų skaičius pagal
+ * modelį (palyginimui – per Yacht.getAll() su pilnu podėliu) ir seniausios
+ * jachtos, su skirtingu ForkJoinPool gijų skaičiumi.
+ */
+package rescore.bench;
+
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import rescore.Yacht;
+import rescore.analytics.FleetQuery;
+import rescore.analytics.FleetSnapshot;
+import rescore.analytics.GroupAggregate;
+import rescore.analytics.LiveSnapshot;
+
+class AnalyticsBenchmarks {
+  private static final int TOP = 10;
+
+  static Vector<Benchmark> all() {
+    Vector<Benchmark> benchmarks = new Vector<Benchmark>();
+
+    benchmarks.add(new Benchmark("analytics.build") {
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++)
+          checksum += FleetSnapshot.build().size();
+        return checksum;
+      }
+    });
+
+    // kiekviena operacija pakeičia vienos jachtos metus ir atnaujina kopiją
+    benchmarks.add(new Benchmark("analytics.refresh") {
+      private LiveSnapshot live;
+      private int size, next = 0;
+
+      void setUp(Fleet fleet) {
+        live = LiveSnapshot.build();
+        size = fleet.getSize();
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++) {
+          Yacht yacht = Yacht.get(next + 1);
+          yacht.setYear(yacht.getYear() == 2000 ? 2001 : 2000);
+          checksum += live.refresh().size();
+          next = (next + 1) % size;
+        }
+        return checksum;
+      }
+
+      void tearDown(Fleet fleet) {
+        live.close();
+      }
+    });
+
+    benchmarks.add(new Benchmark("analytics.countByClass.getAll") {
+      void setUp(Fleet fleet) {
+        Yacht.getAll();
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++) {
+          HashMap<Integer, Integer> counts = new HashMap<Integer, Integer>();
+          for (Yacht yacht : Yacht.getAll()) {
+            Integer count = counts.get(yacht.getYachtClass().getId());
+            counts.put(yacht.getYachtClass().getId(), count == null ? 1 : count + 1);
+          }
+          checksum += counts.size();
+        }
+        return checksum;
+      }
+    });
+
+    for (final int parallelism : ScoringBenchmarks.parallelisms()) {
+      benchmarks.add(new Benchmark("analytics.countByClass", parallelism) {
+        private ForkJoinPool pool;
+        private FleetQuery query;
+        private FleetSnapshot snapshot;
+
+        void setUp(Fleet fleet) {
+          pool = new ForkJoinPool(parallelism);
+          query = new FleetQuery(pool);
+          snapshot = FleetSnapshot.build();
+        }
+
+        long run(int operations) {
+          long checksum = 0;
+          for (int i = 0; i < operations; i++) {
+            GroupAggregate counts = query.aggregate(snapshot, FleetSnapshot.MODEL, null);
+            checksum += counts.size() + counts.getCount(0);
+          }
+          return checksum;
+        }
+
+        void tearDown(Fleet fleet) {
+          pool.shutdown();
+        }
+      });
+
+      benchmarks.add(new Benchmark("analytics.oldest", parallelism) {
+        private ForkJoinPool pool;
+        private FleetQuery query;
+        private FleetSnapshot snapshot;
+
+        void setUp(Fleet fleet) {
+          pool = new ForkJoinPool(parallelism);
+          query = new FleetQuery(pool);
+          snapshot = FleetSnapshot.build();
+        }
+
+        long run(int operations) {
+          long checksum = 0;
+          for (int i = 0; i < operations; i++)
+            checksum += query.top(snapshot, FleetSnapshot.YEAR, true, TOP, null)[0];
+          return checksum;
+        }
+
+        void tearDown(Fleet fleet) {
+          pool.shutdown();
+        }
+      });
+    }
+    return benchmarks;
+  }
+}
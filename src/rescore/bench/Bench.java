@@ -0,0 +1,211 @@
+/**
+ * Esybių sluoksnio, įskaitos ir analitinių užklausų bandymų paleidimas iš komandinės eilutės.
+ * Kiekvienam laivyno dydžiui sukuriama atskira duombazė atmintyje (Fleet),
+ * kiekvienas bandymas kartojamas WARMUP_ITERATIONS kartų neskaičiuojant ir
+ * MEASUREMENT_ITERATIONS kartų matuojant; iteracija trunka ne mažiau kaip
+ * ITERATION_NANOS. Rezultatas – vidutinė operacijos trukmė (ns/op) ir jos
+ * 99,9 % pasikliautinojo intervalo pusplotis. Rezultatai rašomi JSON failu
+ * JMH formatu, kad juos būtų galima lyginti tais pačiais įrankiais.
+ */
+package rescore.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Vector;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+
+public class Bench {
+  private static Logger logger = Logger.getLogger(Bench.class.getName());
+  public static final int WARMUP_ITERATIONS = 3;
+  public static final int MEASUREMENT_ITERATIONS = 5;
+  public static final long ITERATION_NANOS = 500 * 1000000L;
+  private static final int[] DEFAULT_SIZES = {1000, 10000, 100000};
+  // Stjudento t skirstinio 0,9995 kvantiliai, 1–10 laisvės laipsnių
+  private static final double[] STUDENT_T = {636.62, 31.60, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78, 4.59};
+  private static volatile long blackhole; // bandymų kontrolinės sumos
+
+  public static void main(String args[]) {
+    if (args.length < 3 || args.length > 5) {
+      System.out.println("Paleidimo parametrai: log4jKonfigūracijosFailas sql/create.sql rezultatai.json [laivynoDydžiai, pvz., 1000,10000,100000] [bandymoPavadinimoDalis]");
+      return;
+    }
+
+    PropertyConfigurator.configure(args[0]);
+
+    int[] sizes = DEFAULT_SIZES;
+    if (args.length >= 4) {
+      String[] fields = args[3].split(",");
+      sizes = new int[fields.length];
+      try {
+        for (int i = 0; i < fields.length; i++)
+          sizes[i] = Integer.parseInt(fields[i].trim());
+      } catch (NumberFormatException exception) {
+        System.out.println("Neteisingas skaičius: " + exception.getMessage());
+        return;
+      }
+    }
+    String filter = args.length == 5 ? args[4] : "";
+
+    Vector<Result> results = new Vector<Result>();
+    for (int size : sizes) {
+      Fleet fleet;
+      try {
+        fleet = Fleet.create(new File(args[1]), size);
+      } catch (Exception exception) {
+        logger.error("Unable to create the fleet of " + size + " yachts: " + exception.getMessage());
+        System.out.println("Nepavyko sukurti " + size + " jachtų laivyno: " + exception.getMessage());
+        continue;
+      }
+      try {
+        Vector<Benchmark> benchmarks = EntityBenchmarks.all();
+        benchmarks.addAll(ScoringBenchmarks.all());
+        benchmarks.addAll(AnalyticsBenchmarks.all());
+        for (Benchmark benchmark : benchmarks)
+          if (benchmark.getName().contains(filter)) {
+            Result result = run(benchmark, fleet);
+            if (result != null) {
+              results.add(result);
+              System.out.println(result);
+            }
+          }
+      } finally {
+        fleet.close();
+      }
+    }
+
+    try {
+      write(results, new File(args[2]));
+    } catch (IOException exception) {
+      logger.error("Unable to write " + args[2] + ": " + exception.getMessage());
+    }
+  }
+
+/**
+ * Paruošia, išmatuoja ir sutvarko vieną bandymą.
+ *
+ * @return rezultatas arba null, jei bandymas nepavyko
+ */
+  private static Result run(Benchmark benchmark, Fleet fleet) {
+    Result result = new Result(benchmark, fleet.getSize());
+    try {
+      benchmark.setUp(fleet);
+      try {
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS; iteration++)
+          iteration(benchmark);
+        for (int iteration = 0; iteration < MEASUREMENT_ITERATIONS; iteration++)
+          result.scores[iteration] = iteration(benchmark);
+      } finally {
+        benchmark.tearDown(fleet);
+      }
+    } catch (Exception exception) {
+      logger.error(benchmark.getName() + " failed: " + exception);
+      System.out.println(benchmark.getName() + " (" + fleet.getSize() + "): nepavyko – " + exception);
+      return null;
+    }
+    return result;
+  }
+
+/**
+ * Viena iteracija: operacijos vykdomos vis didėjančiais paketais, kol
+ * praeina ITERATION_NANOS (laiko matavimo sąnaudos – kartą paketui).
+ *
+ * @return vidutinė operacijos trukmė nanosekundėmis
+ */
+  private static double iteration(Benchmark benchmark) {
+    long operations = 0, checksum = 0, elapsed;
+    int batch = 1;
+    long start = System.nanoTime();
+    do {
+      checksum += benchmark.run(batch);
+      operations += batch;
+      elapsed = System.nanoTime() - start;
+      if (elapsed < ITERATION_NANOS / 16 && batch < (1 << 30))
+        batch *= 2;
+    } while (elapsed < ITERATION_NANOS);
+    blackhole += checksum;
+    return elapsed / (double)operations;
+  }
+
+  private static void write(Vector<Result> results, File file) throws IOException {
+    PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    try {
+      writer.println("[");
+      for (int i = 0; i < results.size(); i++) {
+        Result result = results.get(i);
+        writer.println("  {");
+        writer.println("    \"benchmark\" : \"" + result.name + "\",");
+        writer.println("    \"mode\" : \"avgt\",");
+        writer.println("    \"threads\" : 1,");
+        writer.println("    \"forks\" : 1,");
+        writer.println("    \"warmupIterations\" : " + WARMUP_ITERATIONS + ",");
+        writer.println("    \"warmupTime\" : \"" + ITERATION_NANOS / 1000000 + " ms\",");
+        writer.println("    \"measurementIterations\" : " + MEASUREMENT_ITERATIONS + ",");
+        writer.println("    \"measurementTime\" : \"" + ITERATION_NANOS / 1000000 + " ms\",");
+        writer.print("    \"params\" : {\"fleet\" : \"" + result.fleet + "\"");
+        if (result.parallelism > 0)
+          writer.print(", \"parallelism\" : \"" + result.parallelism + "\"");
+        writer.println("},");
+        writer.println("    \"primaryMetric\" : {");
+        writer.println("      \"score\" : " + result.getScore() + ",");
+        writer.println("      \"scoreError\" : " + result.getError() + ",");
+        writer.println("      \"scoreUnit\" : \"ns/op\",");
+        writer.print("      \"rawData\" : [[");
+        for (int iteration = 0; iteration < result.scores.length; iteration++)
+          writer.print((iteration == 0 ? "" : ", ") + result.scores[iteration]);
+        writer.println("]]");
+        writer.println("    }");
+        writer.println(i + 1 < results.size() ? "  }," : "  }");
+      }
+      writer.println("]");
+    } finally {
+      writer.close();
+    }
+    if (writer.checkError())
+      throw new IOException("write failed");
+  }
+
+/**
+ * Vieno bandymo su vienu laivynu rezultatas.
+ */
+  private static class Result {
+    final String name;
+    final int fleet;
+    final int parallelism;
+    final double[] scores = new double[MEASUREMENT_ITERATIONS]; // ns/op
+
+    Result(Benchmark benchmark, int fleet) {
+      name = benchmark.getName();
+      parallelism = benchmark.getParallelism();
+      this.fleet = fleet;
+    }
+
+    double getScore() {
+      double sum = 0;
+      for (double score : scores)
+        sum += score;
+      return sum / scores.length;
+    }
+
+/**
+ * 99,9 % pasikliautinojo intervalo pusplotis (0, jei iteracija viena).
+ */
+    double getError() {
+      int n = scores.length;
+      if (n < 2)
+        return 0;
+      double mean = getScore(), squares = 0;
+      for (double score : scores)
+        squares += (score - mean) * (score - mean);
+      double t = n - 1 <= STUDENT_T.length ? STUDENT_T[n - 2] : 3.29;
+      return t * Math.sqrt(squares / (n - 1) / n);
+    }
+
+    public String toString() {
+      return String.format("%-32s %7d %3s %14.1f ± %.1f ns/op", name, fleet, parallelism > 0 ? String.valueOf(parallelism) : "", getScore(), getError());
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Matuojamas veiksmas.
+ * run(operations) atlieka operations kartų tą patį veiksmą ir grąžina iš
+ * rezultatų sudarytą kontrolinę sumą, kad JIT negalėtų jų išmesti.
+ * Paruošimas (setUp) ir sutvarkymas (tearDown) nematuojami.
+ */
+package rescore.bench;
+
+abstract class Benchmark {
+  private final String name;
+  private final int parallelism;
+
+/**
+ * Konstruktorius.
+ *
+ * @param name        pavadinimas (rezultatuose)
+ * @param parallelism gijų skaičius arba 0, jei veiksmas vienos gijos
+ */
+  Benchmark(String name, int parallelism) {
+    this.name = name;
+    this.parallelism = parallelism;
+  }
+
+  Benchmark(String name) {
+    this(name, 0);
+  }
+
+  String getName() {
+    return name;
+  }
+
+  int getParallelism() {
+    return parallelism;
+  }
+
+  void setUp(Fleet fleet) throws Exception {
+  }
+
+  abstract long run(int operations);
+
+  void tearDown(Fleet fleet) throws Exception {
+  }
+}
@@ -0,0 +1,300 @@
+/**
+ * Jungčių telkinio (rescore.Database) ir esybių sluoksnio apkrovos iš kelių
+ * gijų bandymas su H2 duombaze atmintyje (Fleet). Gijų daugiau nei
+ * jungčių, todėl jos laukia laisvų jungčių. Kiekviena gija nurodytą laiką
+ * atsitiktine tvarka:
+ * - pasiima jungtį ir tikrina, kad jos tuo pačiu metu nenaudoja kita gija,
+ *   kad pakartotinis acquire() grąžina tą pačią jungtį ir kad ta pati
+ *   užklausa paruošiama tik kartą;
+ * - vykdo bendrą paruoštą užklausą su savo parametrais ir tikrina rezultatą;
+ * - transakcijoje keičia savo kapitono vardą, tikrina, kad įdėtas acquire()
+ *   mato nepatvirtintą pakeitimą, ir atšaukia transakciją;
+ * - keičia savo kapitono vardą per Captain.setName() ir tikrina jį
+ *   duombazėje;
+ * - skaito atsitiktines jachtas per Yacht.get() ir tikrina jų laukus.
+ * Prieš tai patikrinama, kad jungtis, paimta prieš Database.close() ir
+ * grąžinta po naujo open(), į naują telkinį nepatenka.
+ * Radus klaidą, išvedamas jos aprašas ir programa baigiasi kodu 1.
+ */
+package rescore.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import rescore.Captain;
+import rescore.Database;
+import rescore.Yacht;
+
+public class DatabaseStress {
+  private static Logger logger = Logger.getLogger(DatabaseStress.class.getName());
+  private static final int DEFAULT_THREADS = 16;
+  private static final int DEFAULT_SECONDS = 10;
+  private static final int DEFAULT_POOL_SIZE = 4;
+  private static final int SIZE = 1000; // jachtų (ir kapitonų) skaičius
+  private static final String SELECT_YACHT = "SELECT Id + ?, BurėsNumeris FROM Jachtos WHERE Id = ?";
+  private static final String SELECT_CAPTAIN = "SELECT Vardas FROM Kapitonai WHERE Id = ?";
+  private static final String UPDATE_CAPTAIN = "UPDATE Kapitonai SET Vardas = ? WHERE Id = ?";
+  private final ConcurrentHashMap<Database.Session, Thread> owners = new ConcurrentHashMap<Database.Session, Thread>(); // kuri gija naudoja jungtį
+  private final AtomicLong operations = new AtomicLong();
+  private final AtomicReference<String> failure = new AtomicReference<String>(); // pirmoji klaida
+  private volatile long deadline;
+
+  public static void main(String args[]) {
+    if (args.length < 2 || args.length > 5) {
+      System.out.println("Paleidimo parametrai: log4jKonfigūracijosFailas sql/create.sql [gijųSkaičius] [sekundės] [jungčiųSkaičius]");
+      return;
+    }
+
+    PropertyConfigurator.configure(args[0]);
+
+    int threads = DEFAULT_THREADS, seconds = DEFAULT_SECONDS, poolSize = DEFAULT_POOL_SIZE;
+    try {
+      if (args.length >= 3)
+        threads = Integer.parseInt(args[2]);
+      if (args.length >= 4)
+        seconds = Integer.parseInt(args[3]);
+      if (args.length == 5)
+        poolSize = Integer.parseInt(args[4]);
+    } catch (NumberFormatException exception) {
+      System.out.println("Neteisingas skaičius: " + exception.getMessage());
+      return;
+    }
+    if (threads > SIZE) {
+      System.out.println("Gijų negali būti daugiau nei " + SIZE);
+      return;
+    }
+
+    Fleet fleet;
+    try {
+      fleet = Fleet.create(new File(args[1]), SIZE);
+    } catch (IOException exception) {
+      logger.error("Unable to read " + args[1] + ": " + exception.getMessage());
+      return;
+    } catch (SQLException exception) {
+      logger.error("Unable to create the fleet: " + exception.getMessage());
+      return;
+    }
+    DatabaseStress stress = new DatabaseStress();
+    try {
+      Database.open(fleet.getUrl(), "sa", "", poolSize);
+      stress.reopen(fleet.getUrl(), poolSize);
+      stress.run(threads, seconds);
+    } catch (SQLException exception) {
+      logger.error("Unable to open the database: " + exception.getMessage());
+      return;
+    } finally {
+      fleet.close();
+    }
+    System.out.println(String.format("%d threads, %d connections, %d s: %d operations", threads, poolSize, seconds, stress.operations.get()));
+    if (stress.failure.get() != null) {
+      System.out.println("KLAIDA: " + stress.failure.get());
+      System.exit(1);
+    }
+  }
+
+  private void run(int threads, int seconds) {
+    deadline = System.nanoTime() + seconds * 1000000000L;
+    Thread[] workers = new Thread[threads];
+    for (int thread = 0; thread < threads; thread++) {
+      final int captainId = thread + 1; // kiekviena gija keičia tik savo kapitoną
+      workers[thread] = new Thread(new Runnable() {
+        public void run() {
+          work(captainId);
+        }
+      }, "stress-" + thread);
+      workers[thread].start();
+    }
+    for (Thread worker : workers) {
+      try {
+        worker.join();
+      } catch (InterruptedException exception) {
+        return;
+      }
+    }
+  }
+
+/**
+ * Jungtis iš uždaryto telkinio grąžinant uždaroma ir naujo telkinio
+ * jungčių skaičiaus nekeičia.
+ */
+  private void reopen(String url, int poolSize) throws SQLException {
+    Database.Session old = Database.acquire();
+    Database.close();
+    Database.open(url, "sa", "", poolSize);
+    old.release();
+    check(old.getConnection().isClosed(), "a session of the closed pool was not closed on release");
+    Database.Session[] sessions = new Database.Session[poolSize];
+    try {
+      for (int i = 0; i < poolSize; i++) {
+        sessions[i] = acquireOther();
+        check(sessions[i] != old, "a session of the closed pool was reused");
+      }
+    } finally {
+      for (Database.Session session : sessions)
+        if (session != null)
+          session.release();
+    }
+  }
+
+/**
+ * Pasiima jungtį kitoje gijoje (šios gijos acquire() grąžintų tą pačią).
+ */
+  private Database.Session acquireOther() throws SQLException {
+    final AtomicReference<Database.Session> session = new AtomicReference<Database.Session>();
+    final AtomicReference<SQLException> error = new AtomicReference<SQLException>();
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          session.set(Database.acquire());
+        } catch (SQLException exception) {
+          error.set(exception);
+        }
+      }
+    });
+    thread.start();
+    try {
+      thread.join();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+    if (error.get() != null)
+      throw error.get();
+    return session.get();
+  }
+
+  private void work(int captainId) {
+    Random random = new Random(captainId);
+    String originalName = "Kapitonas " + captainId;
+    int renames = 0;
+    try {
+      while (System.nanoTime() < deadline && failure.get() == null) {
+        switch (random.nextInt(4)) {
+        case 0:
+          query(random.nextInt(SIZE) + 1, random.nextInt(1000));
+          break;
+        case 1:
+          rollback(captainId, originalName);
+          break;
+        case 2:
+          originalName = "Kapitonas " + captainId + "." + ++renames;
+          rename(captainId, originalName);
+          break;
+        default:
+          int id = random.nextInt(SIZE) + 1;
+          Yacht yacht = Yacht.get(id);
+          check(yacht != null && yacht.getId() == id && ("LTU-" + id).equals(yacht.getSailNumber()), "Yacht.get(" + id + ") returned " + (yacht == null ? null : yacht.getSailNumber()));
+          check(Yacht.get(id) == yacht, "Yacht.get(" + id + ") returned a different object");
+        }
+        operations.incrementAndGet();
+      }
+    } catch (SQLException exception) {
+      fail(Thread.currentThread().getName() + ": " + exception.getMessage());
+    }
+  }
+
+/**
+ * Bendra paruošta užklausa su šios gijos parametrais.
+ */
+  private void query(int yachtId, int offset) throws SQLException {
+    Database.Session session = acquire();
+    try {
+      PreparedStatement select = session.prepare(SELECT_YACHT);
+      check(session.prepare(SELECT_YACHT) == select, "the statement was prepared twice in one session");
+      select.setInt(1, offset);
+      select.setInt(2, yachtId);
+      ResultSet resultSet = select.executeQuery();
+      check(resultSet.next() && resultSet.getInt(1) == yachtId + offset && ("LTU-" + yachtId).equals(resultSet.getString(2)), "wrong row for yacht " + yachtId);
+      resultSet.close();
+    } finally {
+      release(session);
+    }
+  }
+
+/**
+ * Nepatvirtintą pakeitimą mato ta pati jungtis (įdėtas acquire()), o
+ * atšaukus transakciją lieka senas vardas.
+ */
+  private void rollback(int captainId, String name) throws SQLException {
+    Database.Session session = acquire();
+    try {
+      session.getConnection().setAutoCommit(false);
+      try {
+        PreparedStatement update = session.prepare(UPDATE_CAPTAIN);
+        update.setString(1, "Atšauktas " + captainId);
+        update.setInt(2, captainId);
+        check(update.executeUpdate() == 1, "captain " + captainId + " not updated");
+        Database.Session nested = Database.acquire();
+        try {
+          check(nested == session, "nested acquire() returned another connection");
+          check(("Atšauktas " + captainId).equals(captainName(nested, captainId)), "uncommitted name not visible in the same connection");
+        } finally {
+          nested.release();
+        }
+      } finally {
+        session.getConnection().rollback();
+        session.getConnection().setAutoCommit(true);
+      }
+      check(name.equals(captainName(session, captainId)), "rollback did not restore captain " + captainId);
+    } finally {
+      release(session);
+    }
+  }
+
+  private void rename(int captainId, String name) throws SQLException {
+    Captain captain = Captain.get(captainId);
+    check(captain != null && captain.setName(name), "Captain.setName failed for " + captainId);
+    check(name.equals(captain.getName()), "captain " + captainId + " name not set");
+    Database.Session session = acquire();
+    try {
+      check(name.equals(captainName(session, captainId)), "captain " + captainId + " name not stored");
+    } finally {
+      release(session);
+    }
+  }
+
+  private static String captainName(Database.Session session, int captainId) throws SQLException {
+    PreparedStatement select = session.prepare(SELECT_CAPTAIN);
+    select.setInt(1, captainId);
+    ResultSet resultSet = select.executeQuery();
+    String name = resultSet.next() ? resultSet.getString(1) : null;
+    resultSet.close();
+    return name;
+  }
+
+/**
+ * Pasiima jungtį ir pažymi ją šios gijos; jungtį, kurią jau naudoja kita
+ * gija, laiko klaida.
+ */
+  private Database.Session acquire() throws SQLException {
+    Database.Session session = Database.acquire();
+    Thread owner = owners.putIfAbsent(session, Thread.currentThread());
+    if (owner != null) {
+      session.release();
+      throw new SQLException("connection already used by " + owner.getName());
+    }
+    return session;
+  }
+
+  private void release(Database.Session session) {
+    owners.remove(session);
+    session.release();
+  }
+
+  private void check(boolean condition, String message) {
+    if (!condition)
+      fail(Thread.currentThread().getName() + ": " + message);
+  }
+
+  private void fail(String message) {
+    if (failure.compareAndSet(null, message))
+      logger.error(message);
+  }
+}
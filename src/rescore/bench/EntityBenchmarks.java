@@ -0,0 +1,471 @@
+/**
+ * Esybių sluoksnio bandymai: get() iš podėlio ir iš duombazės, getAll() su
+ * tuščiu, pilnu ir daliniu podėliu (būdą parenka GetAllPlanner), esybių
+ * kūrimas, visų jachtų kūrimas iš duombazės eilučių RowMapper ir per
+ * refleksiją (kaip iki RowMapper), asociacijų ir visos regatos užkrovimas,
+ * paleidimas iš duombazės ir iš momentinės kopijos.
+ * Jachtų ID imami ratu, kad kiekviena operacija imtų vis kitą jachtą.
+ */
+package rescore.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Vector;
+import rescore.Captain;
+import rescore.Database;
+import rescore.EntityCache;
+import rescore.Entry;
+import rescore.Group;
+import rescore.NamedEntity;
+import rescore.Owner;
+import rescore.Race;
+import rescore.RatingTable;
+import rescore.Regatta;
+import rescore.RowMapper;
+import rescore.Snapshot;
+import rescore.Stage;
+import rescore.Yacht;
+import rescore.YachtClass;
+
+class EntityBenchmarks {
+  // dalinio podėlio talpa (lentelės dalis)
+  private static final double PARTIAL_FILL = 0.6;
+  private static final int CREATE_BATCH = 100;
+  private static final String SELECT_ALL_YACHTS = "SELECT Id, BurėsNumeris, Modelis, Pavadinimas, PagaminimoMetai, Kapitonas, Savininkas, Rėmėjai FROM Jachtos ORDER BY Id";
+  private static final Class<?>[] YACHT_PARAMETERS = {int.class, String.class, int.class, String.class, int.class, int.class, int.class, String.class}; // Yacht konstruktoriaus
+
+  static Vector<Benchmark> all() {
+    Vector<Benchmark> benchmarks = new Vector<Benchmark>();
+
+    // jachta visada podėlyje
+    benchmarks.add(new Benchmark("entity.get.cached") {
+      private int size, next = 0;
+
+      void setUp(Fleet fleet) {
+        size = Math.min(fleet.getSize(), fleet.getCacheCapacity());
+        for (int id = 1; id <= size; id++)
+          Yacht.get(id);
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++) {
+          checksum += Yacht.get(next + 1).getId();
+          next = (next + 1) % size;
+        }
+        return checksum;
+      }
+    });
+
+    // podėlio talpa 1 – kiekvienas get() užklausia duombazės
+    benchmarks.add(new Benchmark("entity.get.cold") {
+      private int size, next = 0;
+
+      void setUp(Fleet fleet) {
+        size = fleet.getSize();
+        NamedEntity.setCacheCapacity(Yacht.class, 1);
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++) {
+          checksum += Yacht.get(next + 1).getId();
+          next = (next + 1) % size;
+        }
+        return checksum;
+      }
+
+      void tearDown(Fleet fleet) {
+        fleet.resetCaches();
+      }
+    });
+
+    // tuščias podėlis; podėlio išvalymas įeina į matavimą, bet jis daug
+    // pigesnis
+    benchmarks.add(new Benchmark("entity.getAll.emptyCache") {
+      private EntityCache cache;
+
+      void setUp(Fleet fleet) {
+        cache = NamedEntity.getCache(Yacht.class);
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++) {
+          cache.clear();
+          checksum += Yacht.getAll().size();
+        }
+        return checksum;
+      }
+
+      void tearDown(Fleet fleet) {
+        fleet.resetCaches();
+      }
+    });
+
+    // visos jachtos podėlyje
+    benchmarks.add(new Benchmark("entity.getAll.fullCache") {
+      void setUp(Fleet fleet) {
+        Yacht.getAll();
+        Yacht.getAll();
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++)
+          checksum += Yacht.getAll().size();
+        return checksum;
+      }
+    });
+
+    // lentelė netelpa į podėlį: nuoseklus visų ID skaitymas LRU podėlyje vis
+    // išmeta jachtas, kurių prireiks paskui
+    benchmarks.add(new Benchmark("entity.getAll.partialCache") {
+      void setUp(Fleet fleet) {
+        NamedEntity.setCacheCapacity(Yacht.class, Math.max(1, (int)(fleet.getSize() * PARTIAL_FILL)));
+        Yacht.getAll();
+        Yacht.getAll();
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++)
+          checksum += Yacht.getAll().size();
+        return checksum;
+      }
+
+      void tearDown(Fleet fleet) {
+        fleet.resetCaches();
+      }
+    });
+
+    benchmarks.add(new Benchmark("entity.yacht.create") {
+      private int size, created = 0;
+      private YachtClass yachtClass;
+      private Captain captain;
+      private Owner owner;
+
+      void setUp(Fleet fleet) {
+        size = fleet.getSize();
+        yachtClass = YachtClass.get(1);
+        captain = Captain.get(1);
+        owner = Owner.get(1);
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++) {
+          created++;
+          checksum += Yacht.create("BENCH-" + created, yachtClass, "Bandomoji " + created, 2005, captain, owner, null).getId();
+        }
+        return checksum;
+      }
+
+      void tearDown(Fleet fleet) throws Exception {
+        fleet.execute("DELETE FROM Jachtos WHERE Id > " + size);
+        fleet.resetCaches();
+      }
+    });
+
+    // CREATE_BATCH kapitonų vienu paketu (viena operacija – visas paketas)
+    benchmarks.add(new Benchmark("entity.captain.createMany" + CREATE_BATCH) {
+      private int size, created = 0;
+
+      void setUp(Fleet fleet) {
+        size = fleet.getSize();
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        String[] names = new String[CREATE_BATCH];
+        for (int i = 0; i < operations; i++) {
+          for (int name = 0; name < names.length; name++)
+            names[name] = "Bandomasis " + ++created;
+          List<Captain> captains = Captain.createMany(names);
+          checksum += captains.get(captains.size() - 1).getId();
+        }
+        return checksum;
+      }
+
+      void tearDown(Fleet fleet) throws Exception {
+        fleet.execute("DELETE FROM Kapitonai WHERE Id > " + size);
+        fleet.resetCaches();
+      }
+    });
+
+    // visos jachtos iš tų pačių eilučių užregistruotu RowMapper (užklausa
+    // įvykdoma kartą, todėl matuojamas tik esybių kūrimas)
+    benchmarks.add(new Benchmark("entity.map.rowMapper") {
+      private Rows rows;
+      private RowMapper<? extends NamedEntity> rowMapper;
+
+      void setUp(Fleet fleet) throws SQLException {
+        rows = new Rows();
+        rowMapper = NamedEntity.getRowMapper(Yacht.class);
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        try {
+          for (int i = 0; i < operations; i++) {
+            ResultSet resultSet = rows.rewind();
+            while (resultSet.next())
+              checksum += rowMapper.map(resultSet, 1).getId();
+          }
+        } catch (SQLException exception) {
+          throw new IllegalStateException(exception);
+        }
+        return checksum;
+      }
+
+      void tearDown(Fleet fleet) throws SQLException {
+        rows.close();
+      }
+    });
+
+    // tas pats per refleksiją, kaip iki RowMapper: konstruktorius ieškomas
+    // kiekvienai eilutei
+    benchmarks.add(new Benchmark("entity.map.reflection") {
+      private Rows rows;
+
+      void setUp(Fleet fleet) throws SQLException {
+        rows = new Rows();
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        try {
+          for (int i = 0; i < operations; i++) {
+            ResultSet resultSet = rows.rewind();
+            while (resultSet.next()) {
+              Constructor<Yacht> constructor = Yacht.class.getDeclaredConstructor(YACHT_PARAMETERS);
+              constructor.setAccessible(true); // privatus – get() ir getAll() kuria tik pati klasė
+              checksum += constructor.newInstance(resultSet.getInt(1), resultSet.getString(2), resultSet.getInt(3), resultSet.getString(4), resultSet.getInt(5), resultSet.getInt(6), resultSet.getInt(7), resultSet.getString(8)).getId();
+            }
+          }
+        } catch (Exception exception) {
+          throw new IllegalStateException(exception);
+        }
+        return checksum;
+      }
+
+      void tearDown(Fleet fleet) throws SQLException {
+        rows.close();
+      }
+    });
+
+    // jachta ir jos modelis, kapitonas, savininkas atskiromis užklausomis
+    benchmarks.add(new Benchmark("entity.associations.lazy") {
+      private int size, next = 0;
+
+      void setUp(Fleet fleet) {
+        size = fleet.getSize();
+        disableCaches();
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++) {
+          Yacht yacht = Yacht.get(next + 1);
+          checksum += yacht.getYachtClass().getId() + yacht.getCaptain().getId() + yacht.getOwner().getId();
+          next = (next + 1) % size;
+        }
+        return checksum;
+      }
+
+      void tearDown(Fleet fleet) {
+        fleet.resetCaches();
+      }
+    });
+
+    // tas pats viena užklausa (get(id, true))
+    benchmarks.add(new Benchmark("entity.associations.fetch") {
+      private int size, next = 0;
+
+      void setUp(Fleet fleet) {
+        size = fleet.getSize();
+        disableCaches();
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++) {
+          Yacht yacht = Yacht.get(next + 1, true);
+          checksum += yacht.getYachtClass().getId() + yacht.getCaptain().getId() + yacht.getOwner().getId();
+          next = (next + 1) % size;
+        }
+        return checksum;
+      }
+
+      void tearDown(Fleet fleet) {
+        fleet.resetCaches();
+      }
+    });
+
+    // visa regata: grupių, etapų ir plaukimų sąrašai ir jachtos – kiekvienas
+    // atskira užklausa, kai jo prireikia
+    benchmarks.add(new Benchmark("entity.regatta.lazy") {
+      private int regattaId;
+
+      void setUp(Fleet fleet) {
+        regattaId = fleet.getRegattaId();
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++) {
+          clearRegattaCaches();
+          checksum += regattaChecksum(Regatta.get(regattaId));
+        }
+        return checksum;
+      }
+    });
+
+    // tas pats pastoviu užklausų skaičiumi (get(id, true))
+    benchmarks.add(new Benchmark("entity.regatta.fetch") {
+      private int regattaId;
+
+      void setUp(Fleet fleet) {
+        regattaId = fleet.getRegattaId();
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++) {
+          clearRegattaCaches();
+          checksum += regattaChecksum(Regatta.get(regattaId, true));
+        }
+        return checksum;
+      }
+    });
+
+    // paleidimas: visos jachtos, modeliai, kapitonai, savininkai, regata ir
+    // RatingTable iš duombazės
+    benchmarks.add(new Benchmark("entity.warmup.sql") {
+      private Fleet fleet;
+
+      void setUp(Fleet fleet) {
+        this.fleet = fleet;
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++) {
+          fleet.resetCaches();
+          RatingTable.invalidate();
+          checksum += Yacht.getAll().size() + YachtClass.getAll().size() + Captain.getAll().size() + Owner.getAll().size();
+          checksum += regattaChecksum(Regatta.get(fleet.getRegattaId(), true)) + RatingTable.get().size();
+        }
+        return checksum;
+      }
+
+      void tearDown(Fleet fleet) {
+        fleet.resetCaches();
+      }
+    });
+
+    // tas pats iš momentinės kopijos (Snapshot.load())
+    benchmarks.add(new Benchmark("entity.warmup.snapshot") {
+      private Fleet fleet;
+      private File file;
+
+      void setUp(Fleet fleet) throws IOException {
+        this.fleet = fleet;
+        file = File.createTempFile("rescore", ".snapshot");
+        if (!Snapshot.write(file))
+          throw new IOException("Unable to write snapshot " + file);
+      }
+
+      long run(int operations) {
+        long checksum = 0;
+        for (int i = 0; i < operations; i++) {
+          fleet.resetCaches();
+          RatingTable.invalidate();
+          if (!Snapshot.load(file))
+            throw new IllegalStateException("Snapshot " + file + " not loaded");
+          checksum += regattaChecksum(Regatta.get(fleet.getRegattaId())) + RatingTable.get().size();
+        }
+        return checksum;
+      }
+
+      void tearDown(Fleet fleet) {
+        file.delete();
+        fleet.resetCaches();
+      }
+    });
+
+    return benchmarks;
+  }
+
+/**
+ * Visų jachtų eilutės: užklausa įvykdoma kartą, o rezultatas perskaitomas
+ * vis iš naujo. Kol neiškviestas close(), laikoma duombazės jungtis.
+ */
+  private static class Rows {
+    private final Database.Session session;
+    private final PreparedStatement select;
+    private final ResultSet resultSet;
+
+    Rows() throws SQLException {
+      session = Database.acquire();
+      try {
+        select = session.getConnection().prepareStatement(SELECT_ALL_YACHTS, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        resultSet = select.executeQuery();
+      } catch (SQLException exception) {
+        session.release();
+        throw exception;
+      }
+    }
+
+    ResultSet rewind() throws SQLException {
+      resultSet.beforeFirst();
+      return resultSet;
+    }
+
+    void close() throws SQLException {
+      try {
+        select.close();
+      } finally {
+        session.release();
+      }
+    }
+  }
+
+/**
+ * Išvalo regatos esybių ir jachtų podėlius (modeliai, kapitonai ir
+ * savininkai lieka).
+ */
+  private static void clearRegattaCaches() {
+    NamedEntity.getCache(Regatta.class).clear();
+    NamedEntity.getCache(Group.class).clear();
+    NamedEntity.getCache(Stage.class).clear();
+    NamedEntity.getCache(Yacht.class).clear();
+  }
+
+  private static long regattaChecksum(Regatta regatta) {
+    long checksum = 0;
+    for (Group group : regatta.getGroups()) {
+      for (Entry entry : group.getEntries())
+        checksum += entry.getYachtId();
+      for (Stage stage : group.getStages())
+        for (Race race : stage.getRaces())
+          checksum += race.getElapsed() + race.getYacht().getYachtClassId();
+    }
+    return checksum;
+  }
+
+/**
+ * Podėlių talpa 1: kiekviena kita esybė gaunama iš duombazės.
+ */
+  private static void disableCaches() {
+    NamedEntity.setCacheCapacity(Yacht.class, 1);
+    NamedEntity.setCacheCapacity(YachtClass.class, 1);
+    NamedEntity.setCacheCapacity(Captain.class, 1);
+    NamedEntity.setCacheCapacity(Owner.class, 1);
+  }
+}
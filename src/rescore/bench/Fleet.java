@@ -0,0 +1,193 @@
+/**
+ * Bandymų duomenys: atmintyje laikoma H2 duombazė su sugeneruotu laivynu –
+ * size jachtų, tiek pat kapitonų ir savininkų, MODELS modelių – ir viena
+ * regata (GROUPS grupės po STAGES etapų, ne daugiau kaip REGATTA_YACHTS
+ * dalyvių, kiekvienas dalyvis plaukia visus savo grupės etapus).
+ * Duombazė egzistuoja, kol neiškviestas close().
+ */
+package rescore.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import rescore.Captain;
+import rescore.Database;
+import rescore.Group;
+import rescore.NamedEntity;
+import rescore.Owner;
+import rescore.Regatta;
+import rescore.Stage;
+import rescore.Yacht;
+import rescore.YachtClass;
+import rescore.validation.Validator;
+
+class Fleet {
+  static final int MODELS = 500;
+  static final int REGATTA_YACHTS = 1000;
+  static final int GROUPS = 4;
+  static final int STAGES = 5;
+  private static final String START = "TIMESTAMP '2010-07-01 12:00:00'";
+  private static final List<Class<? extends NamedEntity>> ENTITIES = Arrays.<Class<? extends NamedEntity>>asList(Yacht.class, YachtClass.class, Captain.class, Owner.class, Regatta.class, Group.class, Stage.class);
+  private final int size;
+  private final String url;
+  private final int cacheCapacity;
+  private final Connection connection; // laiko duombazę atmintyje
+  private final int regattaId;
+
+  private Fleet(int size, String url, Connection connection, int regattaId) {
+    this.size = size;
+    this.url = url;
+    this.connection = connection;
+    this.regattaId = regattaId;
+    cacheCapacity = Math.max(NamedEntity.DEFAULT_CACHE_CAPACITY, size);
+  }
+
+/**
+ * Sukuria duombazę, sugeneruoja duomenis ir nukreipia į ją Database.
+ *
+ * @param schema sql/create.sql
+ * @param size   kiek jachtų sugeneruoti
+ */
+  static Fleet create(File schema, int size) throws IOException, SQLException {
+    try {
+      Class.forName("org.h2.Driver");
+    } catch (ClassNotFoundException exception) {
+      throw new SQLException("H2 driver not found");
+    }
+    String url = "jdbc:h2:mem:fleet" + size;
+    Connection connection = DriverManager.getConnection(url, "sa", "");
+    Statement statement = connection.createStatement();
+    for (String sql : readStatements(schema))
+      statement.execute(sql);
+    int regattaId = 1;
+    Validator.defer(); // INSERT ... SELECT tikrinami viena užklausa, o ne kiekviena eilutė atskirai
+    try {
+      statement.execute("INSERT INTO Modeliai (Pavadinimas, Koeficientas, ProjektavimoMetai) SELECT 'Modelis ' || X, 0.8 + MOD(X, 50) / 100.0, 1950 + MOD(X, 50) FROM SYSTEM_RANGE(1, " + MODELS + ")");
+      statement.execute("INSERT INTO Kapitonai (Vardas) SELECT 'Kapitonas ' || X FROM SYSTEM_RANGE(1, " + size + ")");
+      statement.execute("INSERT INTO Savininkai (Vardas) SELECT 'Savininkas ' || X FROM SYSTEM_RANGE(1, " + size + ")");
+      statement.execute("INSERT INTO Jachtos (BurėsNumeris, Modelis, PagaminimoMetai, Kapitonas, Savininkas, Pavadinimas) SELECT 'LTU-' || X, 1 + MOD(X, " + MODELS + "), 2000 + MOD(X, 10), X, " + size + " + 1 - X, 'Jachta ' || X FROM SYSTEM_RANGE(1, " + size + ")");
+      statement.execute("INSERT INTO Regatos (Pavadinimas) VALUES ('Bandomoji regata')");
+      for (int group = 0; group < GROUPS; group++) {
+        statement.execute("INSERT INTO Grupės (Regata, Pavadinimas) VALUES (" + regattaId + ", 'Grupė " + (group + 1) + "')");
+        for (int stage = 0; stage < STAGES; stage++)
+          statement.execute("INSERT INTO Etapai (Grupė, Pavadinimas) VALUES (" + (group + 1) + ", 'Etapas " + (stage + 1) + "')");
+      }
+      statement.execute("INSERT INTO Dalyviai (Jachta, Grupė) SELECT X, 1 + MOD(X, " + GROUPS + ") FROM SYSTEM_RANGE(1, " + Math.min(size, REGATTA_YACHTS) + ")");
+      statement.execute("INSERT INTO Plaukimai (Jachta, Etapas, StartoLaikas, FinišoLaikas) SELECT d.Jachta, e.Id, " + START + ", DATEADD('SECOND', 3600 + MOD(d.Jachta * 37 + e.Id * 11, 1800), " + START + ") FROM Dalyviai d JOIN Etapai e ON e.Grupė = d.Grupė");
+      String violation = Validator.check(connection);
+      if (violation != null)
+        throw new SQLException(violation);
+    } finally {
+      Validator.resume();
+    }
+    statement.close();
+
+    Database.open(url, "sa", "", Database.DEFAULT_POOL_SIZE);
+    Fleet fleet = new Fleet(size, url, connection, regattaId);
+    fleet.resetCaches();
+    return fleet;
+  }
+
+/**
+ * Perskaito SQL failo sakinius (skiriamus ;, be komentarų).
+ */
+  private static Vector<String> readStatements(File file) throws IOException {
+    StringBuilder text = new StringBuilder();
+    Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+    try {
+      char[] buffer = new char[4096];
+      for (int count; (count = reader.read(buffer)) > 0; )
+        text.append(buffer, 0, count);
+    } finally {
+      reader.close();
+    }
+    Vector<String> statements = new Vector<String>();
+    StringBuilder statement = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < text.length(); i++) {
+      char character = text.charAt(i);
+      if (character == '\'')
+        quoted = !quoted;
+      else if (!quoted && character == '-' && i + 1 < text.length() && text.charAt(i + 1) == '-') {
+        while (i < text.length() && text.charAt(i) != '\n')
+          i++;
+        continue;
+      } else if (!quoted && character == ';') {
+        addStatement(statements, statement.toString().trim());
+        statement.setLength(0);
+        continue;
+      }
+      statement.append(character);
+    }
+    addStatement(statements, statement.toString().trim());
+    return statements;
+  }
+
+  private static void addStatement(Vector<String> statements, String statement) {
+    if (statement.length() > 0)
+      statements.add(statement);
+  }
+
+/**
+ * Išvalo esybių podėlius (ankstesnio laivyno esybės turi tuos pačius ID) ir
+ * nustato talpą, kurioje telpa visas laivynas.
+ */
+  void resetCaches() {
+    for (Class<? extends NamedEntity> subClass : ENTITIES) {
+      NamedEntity.setCacheCapacity(subClass, cacheCapacity);
+      NamedEntity.getCache(subClass).clear();
+    }
+  }
+
+/**
+ * Įvykdo SQL sakinį (pvz., bandymo sukurtiems įrašams pašalinti).
+ */
+  void execute(String sql) throws SQLException {
+    Statement statement = connection.createStatement();
+    try {
+      statement.execute(sql);
+    } finally {
+      statement.close();
+    }
+  }
+
+  int getSize() {
+    return size;
+  }
+
+/**
+ * Duombazės JDBC URL (pvz., Database.open() su kitokiu telkinio dydžiu).
+ */
+  String getUrl() {
+    return url;
+  }
+
+  int getCacheCapacity() {
+    return cacheCapacity;
+  }
+
+  int getRegattaId() {
+    return regattaId;
+  }
+
+/**
+ * Atjungia Database ir sunaikina duombazę.
+ */
+  void close() {
+    Database.close();
+    try {
+      connection.close();
+    } catch (SQLException exception) {
+      // duombazė atmintyje – nėra ko prarasti
+    }
+  }
+}
@@ -0,0 +1,235 @@
+/**
+ * Rezultatų HTTP serverio (rescore.web.ResultServer) apkrovos bandymas.
+ * Sugeneruojamas laivynas (Fleet), tame pačiame procese laisvu prievadu
+ * paleidžiamas serveris, o klientų gijos nurodytą laiką be pertraukų
+ * užklausia visų regatos etapų, grupių ir pačios regatos rezultatų (JSON ir
+ * CSV), kaip per varžybas – telefonai ir ekranas: pusė klientų siunčia
+ * If-None-Match su gautu ETag, pusė – ne. Kas CHANGE_PERIOD milisekundžių
+ * pakeičiamas vieno etapo plaukimo finišo laikas, todėl to etapo, jo grupės
+ * ir regatos atsakymai išmetami ir sugeneruojami iš naujo.
+ * Ataskaita: užklausos per sekundę, atsakymų kodai, trukmių percentiliai,
+ * kiek kartų atsakymai sugeneruoti, kiek įvykdyta duombazės užklausų
+ * (įskaitant ChangePoller) ir kiek baitų serverio gijos išskyrė vienai
+ * užklausai.
+ */
+package rescore.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import rescore.ChangePoller;
+import rescore.LatencyHistogram;
+import rescore.Metrics;
+import rescore.scoring.SeriesScorer;
+import rescore.web.ResultServer;
+
+public class LoadTest {
+  private static Logger logger = Logger.getLogger(LoadTest.class.getName());
+  private static final int DEFAULT_SIZE = 1000;
+  private static final int DEFAULT_CLIENTS = 32;
+  private static final int DEFAULT_SECONDS = 10;
+  private static final int WARMUP_SECONDS = 2;
+  private static final long CHANGE_PERIOD = 1000;
+  private static final String CHANGE_FINISH = "UPDATE Plaukimai SET FinišoLaikas = DATEADD('SECOND', 1, FinišoLaikas) WHERE Etapas = 1 AND Jachta = (SELECT MIN(Jachta) FROM Plaukimai WHERE Etapas = 1)";
+  private final String[] urls;
+  private final LatencyHistogram latencies = new LatencyHistogram();
+  private final AtomicLong ok = new AtomicLong(), notModified = new AtomicLong(), failed = new AtomicLong();
+  private volatile long deadline;
+
+  private LoadTest(String[] urls) {
+    this.urls = urls;
+  }
+
+  public static void main(String args[]) {
+    if (args.length < 2 || args.length > 5) {
+      System.out.println("Paleidimo parametrai: log4jKonfigūracijosFailas sql/create.sql [laivynoDydis] [klientųSkaičius] [sekundės]");
+      return;
+    }
+
+    PropertyConfigurator.configure(args[0]);
+
+    int size = DEFAULT_SIZE, clients = DEFAULT_CLIENTS, seconds = DEFAULT_SECONDS;
+    try {
+      if (args.length >= 3)
+        size = Integer.parseInt(args[2]);
+      if (args.length >= 4)
+        clients = Integer.parseInt(args[3]);
+      if (args.length == 5)
+        seconds = Integer.parseInt(args[4]);
+    } catch (NumberFormatException exception) {
+      System.out.println("Neteisingas skaičius: " + exception.getMessage());
+      return;
+    }
+
+    Fleet fleet;
+    try {
+      fleet = Fleet.create(new File(args[1]), size);
+    } catch (IOException exception) {
+      logger.error("Unable to read " + args[1] + ": " + exception.getMessage());
+      return;
+    } catch (SQLException exception) {
+      logger.error("Unable to create the fleet: " + exception.getMessage());
+      return;
+    }
+    ForkJoinPool pool = new ForkJoinPool();
+    ResultServer server = null;
+    try {
+      if (!ChangePoller.start(ChangePoller.DEFAULT_PERIOD))
+        return;
+      server = new ResultServer(new InetSocketAddress("localhost", 0), ResultServer.DEFAULT_THREADS, new SeriesScorer(pool, 0));
+      server.start();
+      LoadTest test = new LoadTest(urls(server.getPort(), fleet.getRegattaId()));
+      test.run(clients, WARMUP_SECONDS, null);
+      test.reset();
+      long renders = server.getRenders(), executions = Metrics.getExecutions();
+      Map<Long, Long> allocated = serverAllocations();
+      long started = System.nanoTime();
+      test.run(clients, seconds, fleet);
+      double elapsed = (System.nanoTime() - started) / 1e9;
+      long requests = test.ok.get() + test.notModified.get() + test.failed.get();
+      long bytes = 0;
+      for (Map.Entry<Long, Long> thread : serverAllocations().entrySet()) {
+        Long before = allocated.get(thread.getKey());
+        bytes += thread.getValue() - (before == null ? 0 : before);
+      }
+      System.out.println(String.format("%d clients, %d URLs, %.1f s: %d requests, %.0f/s (200: %d, 304: %d, failed: %d)", clients, test.urls.length, elapsed, requests, requests / elapsed,
+          test.ok.get(), test.notModified.get(), test.failed.get()));
+      System.out.println(String.format("latency us: mean %.1f, p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f", test.latencies.getMean() / 1000, test.latencies.getPercentile(50) / 1000.0,
+          test.latencies.getPercentile(99) / 1000.0, test.latencies.getPercentile(99.9) / 1000.0, test.latencies.getMax() / 1000.0));
+      System.out.println(String.format("renders: %d, database statements: %d (%.3f per request), server threads allocated %d B per request", server.getRenders() - renders,
+          Metrics.getExecutions() - executions, (Metrics.getExecutions() - executions) / (double)Math.max(requests, 1), requests == 0 ? 0 : bytes / requests));
+    } catch (IOException exception) {
+      logger.error("Load test failed: " + exception.getMessage());
+    } finally {
+      if (server != null)
+        server.stop();
+      ChangePoller.stop();
+      pool.shutdown();
+      fleet.close();
+    }
+  }
+
+/**
+ * Visų regatos etapų, grupių ir jos pačios adresai abiem formatais.
+ */
+  private static String[] urls(int port, int regattaId) {
+    Vector<String> urls = new Vector<String>();
+    String base = "http://localhost:" + port;
+    for (int stage = 1; stage <= Fleet.GROUPS * Fleet.STAGES; stage++) {
+      urls.add(base + "/stage/" + stage);
+      urls.add(base + "/stage/" + stage + ".csv");
+    }
+    for (int group = 1; group <= Fleet.GROUPS; group++) {
+      urls.add(base + "/group/" + group);
+      urls.add(base + "/group/" + group + ".csv");
+    }
+    urls.add(base + "/regatta/" + regattaId);
+    urls.add(base + "/regatta/" + regattaId + ".csv");
+    return urls.toArray(new String[urls.size()]);
+  }
+
+/**
+ * Kiek baitų išskyrė kiekviena serverio gija (ResultServer telkinio ir
+ * HttpServer priėmimo).
+ */
+  private static Map<Long, Long> serverAllocations() {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    Map<Long, Long> allocated = new HashMap<Long, Long>();
+    for (Thread thread : Thread.getAllStackTraces().keySet())
+      if (thread.getName().startsWith("results-") || thread.getName().startsWith("HTTP-Dispatcher"))
+        allocated.put(thread.getId(), threads.getThreadAllocatedBytes(thread.getId()));
+    return allocated;
+  }
+
+  private void reset() {
+    latencies.reset();
+    ok.set(0);
+    notModified.set(0);
+    failed.set(0);
+  }
+
+/**
+ * Paleidžia klientus ir laukia, kol jie baigs.
+ *
+ * @param fleet jei ne null – kas CHANGE_PERIOD keičiami jo duomenys
+ */
+  private void run(int clients, int seconds, Fleet fleet) {
+    deadline = System.nanoTime() + seconds * 1000000000L;
+    Thread[] threads = new Thread[clients];
+    for (int client = 0; client < clients; client++) {
+      final int first = client;
+      threads[client] = new Thread(new Runnable() {
+        public void run() {
+          poll(first, first % 2 == 0);
+        }
+      }, "client-" + client);
+      threads[client].start();
+    }
+    while (fleet != null && System.nanoTime() < deadline) {
+      try {
+        Thread.sleep(CHANGE_PERIOD);
+        fleet.execute(CHANGE_FINISH);
+      } catch (InterruptedException exception) {
+        break;
+      } catch (SQLException exception) {
+        logger.error("Unable to change a finish: " + exception.getMessage());
+        break;
+      }
+    }
+    for (Thread thread : threads) {
+      try {
+        thread.join();
+      } catch (InterruptedException exception) {
+        return;
+      }
+    }
+  }
+
+/**
+ * Kliento ciklas: adresai paeiliui, pradedant nuo first.
+ *
+ * @param conditional ar siųsti If-None-Match su paskutiniu to adreso ETag
+ */
+  private void poll(int first, boolean conditional) {
+    String[] etags = new String[urls.length];
+    byte[] buffer = new byte[1 << 16];
+    for (int index = first % urls.length; System.nanoTime() < deadline; index = (index + 1) % urls.length) {
+      long start = System.nanoTime();
+      try {
+        HttpURLConnection connection = (HttpURLConnection)new URL(urls[index]).openConnection();
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (conditional && etags[index] != null)
+          connection.setRequestProperty("If-None-Match", etags[index]);
+        int status = connection.getResponseCode();
+        InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (stream != null) { // perskaičius ir uždarius jungtis naudojama toliau
+          while (stream.read(buffer) >= 0)
+            ;
+          stream.close();
+        }
+        if (status == 200) {
+          etags[index] = connection.getHeaderField("ETag");
+          ok.incrementAndGet();
+        } else if (status == 304)
+          notModified.incrementAndGet();
+        else
+          failed.incrementAndGet();
+      } catch (IOException exception) {
+        failed.incrementAndGet();
+      }
+      latencies.record(System.nanoTime() - start);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Serijų įskaitos bandymai su skirtingu ForkJoinPool gijų skaičiumi:
+ * iš atmintyje paruoštų etapų duomenų (visas laivynas, Fleet.GROUPS grupės
+ * po Fleet.STAGES etapų) ir su etapų užkrovimu iš duombazės (Fleet regata).
+ */
+package rescore.bench;
+
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import rescore.scoring.ResultCode;
+import rescore.scoring.SeriesResult;
+import rescore.scoring.SeriesScorer;
+import rescore.scoring.StageFinishes;
+
+class ScoringBenchmarks {
+  private static final int DISCARDS = 1;
+
+  static Vector<Benchmark> all() {
+    Vector<Benchmark> benchmarks = new Vector<Benchmark>();
+    for (final int parallelism : parallelisms()) {
+      benchmarks.add(new Benchmark("scoring.series.memory", parallelism) {
+        private ForkJoinPool pool;
+        private SeriesScorer scorer;
+        private int[] groupIds;
+        private StageFinishes[][] stages;
+
+        void setUp(Fleet fleet) {
+          pool = new ForkJoinPool(parallelism);
+          scorer = new SeriesScorer(pool, DISCARDS);
+          groupIds = new int[Fleet.GROUPS];
+          stages = new StageFinishes[Fleet.GROUPS][Fleet.STAGES];
+          for (int group = 0; group < Fleet.GROUPS; group++) {
+            groupIds[group] = group + 1;
+            for (int stage = 0; stage < Fleet.STAGES; stage++) {
+              StageFinishes finishes = new StageFinishes(group * Fleet.STAGES + stage + 1, fleet.getSize() / Fleet.GROUPS + 1);
+              for (int yachtId = group + 1; yachtId <= fleet.getSize(); yachtId += Fleet.GROUPS) {
+                if (yachtId % 50 == stage)
+                  finishes.add(yachtId, StageFinishes.NO_TIME, 1.0f, ResultCode.DNF);
+                else
+                  finishes.add(yachtId, 3600000 + (yachtId * 7919L + stage * 104729L) % 1800000, 0.8f + yachtId % 50 / 100.0f, ResultCode.FINISHED);
+              }
+              stages[group][stage] = finishes;
+            }
+          }
+        }
+
+        long run(int operations) {
+          long checksum = 0;
+          for (int i = 0; i < operations; i++)
+            checksum += checksum(scorer.score(groupIds, stages));
+          return checksum;
+        }
+
+        void tearDown(Fleet fleet) {
+          pool.shutdown();
+        }
+      });
+
+      benchmarks.add(new Benchmark("scoring.series.regatta", parallelism) {
+        private ForkJoinPool pool;
+        private SeriesScorer scorer;
+        private int regattaId;
+
+        void setUp(Fleet fleet) {
+          pool = new ForkJoinPool(parallelism);
+          scorer = new SeriesScorer(pool, DISCARDS);
+          regattaId = fleet.getRegattaId();
+        }
+
+        long run(int operations) {
+          long checksum = 0;
+          for (int i = 0; i < operations; i++)
+            checksum += checksum(scorer.scoreRegatta(regattaId));
+          return checksum;
+        }
+
+        void tearDown(Fleet fleet) {
+          pool.shutdown();
+        }
+      });
+    }
+    return benchmarks;
+  }
+
+/**
+ * Gijų skaičiai: 1, 2, 4, ... iki procesorių skaičiaus (ir jis pats).
+ */
+  static Vector<Integer> parallelisms() {
+    int processors = Runtime.getRuntime().availableProcessors();
+    Vector<Integer> parallelisms = new Vector<Integer>();
+    for (int parallelism = 1; parallelism < processors; parallelism *= 2)
+      parallelisms.add(parallelism);
+    parallelisms.add(processors);
+    return parallelisms;
+  }
+
+  private static long checksum(Vector<SeriesResult> results) {
+    long checksum = 0;
+    for (SeriesResult result : results)
+      if (result.size() > 0)
+        checksum += result.getYachtId(0) + result.size();
+    return checksum;
+  }
+}
@@ -0,0 +1,290 @@
+/**
+ * Įskaitos (rescore.scoring) patikrinimai be duombazės: žinomi atvejai
+ * skaičiuojami StageScorer ir LiveStage, rezultatai lyginami su laukiamais;
+ * po atsitiktinių plaukimų įrašymų ir taisymų LiveStage ir LiveSeries
+ * rezultatai (ir iš jų pranešimų atnaujinamos kopijos) lyginami su
+ * StageScorer ir SeriesScorer rezultatais iš tų pačių duomenų.
+ * Radus neatitikimą, išvedamas jo aprašas ir programa baigiasi kodu 1.
+ */
+package rescore.bench;
+
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import rescore.scoring.LiveSeries;
+import rescore.scoring.LiveStage;
+import rescore.scoring.Ranking;
+import rescore.scoring.RankingListener;
+import rescore.scoring.ResultCode;
+import rescore.scoring.SeriesResult;
+import rescore.scoring.SeriesScorer;
+import rescore.scoring.StageFinishes;
+import rescore.scoring.StageResult;
+import rescore.scoring.StageScorer;
+
+public class ScoringCheck {
+  private static final int SEED = 20101018;
+  private static final int STAGE_UPDATES = 2000;
+  private static final int SERIES_UPDATES = 1000;
+  private static final int MAX_FAILURES = 20; // kiek neatitikimų išvesti
+  private static final long[] TIMES = {3600000, 3600500, 3601000, 3720000, 3720000, 4000000, -5000, StageFinishes.NO_TIME}; // pasikartojantys – lygūs laikai
+  private static final float[] COEFFICIENTS = {1.0f, 1.0f, 0.9f, 1.1f};
+  private static int failures = 0;
+
+  public static void main(String args[]) {
+    negativeElapsed();
+    invalidValues();
+    missingStage();
+    ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      randomStage(new Random(SEED));
+      for (int discards = 0; discards <= 2; discards++)
+        randomSeries(new Random(SEED + discards), pool, discards);
+    } finally {
+      pool.shutdown();
+    }
+    if (failures > 0) {
+      System.out.println("Neatitikimų: " + failures);
+      System.exit(1);
+    }
+    System.out.println("OK");
+  }
+
+/**
+ * Finišas prieš startą (neigiama trukmė) – kaip DNF, o ne pirma vieta.
+ */
+  private static void negativeElapsed() {
+    StageFinishes finishes = new StageFinishes(0, 3);
+    finishes.add(1, 3600000, 1.0f, ResultCode.FINISHED);
+    finishes.add(2, -5000, 1.0f, ResultCode.FINISHED);
+    finishes.add(3, StageFinishes.NO_TIME, 1.0f, ResultCode.DNF);
+    StageResult result = new StageScorer().score(finishes);
+    check("negativeElapsed finishers", result.getFinishers(), 1);
+    check("negativeElapsed first", result.getYachtId(0), 1);
+    check("negativeElapsed first place", result.getPlace(0), 1);
+    check("negativeElapsed first points", result.getPoints(0), 1);
+    check("negativeElapsed first corrected", result.getCorrected(0), 3600000);
+    int rank = result.indexOf(2);
+    check("negativeElapsed code", result.getCode(rank), ResultCode.DNF);
+    check("negativeElapsed points", result.getPoints(rank), 4);
+    check("negativeElapsed elapsed", result.getElapsed(rank), StageFinishes.NO_TIME);
+    check("negativeElapsed corrected", result.getCorrected(rank), StageFinishes.NO_TIME);
+
+    LiveStage stage = new LiveStage(0, 3);
+    for (int index = 0; index < finishes.size(); index++)
+      stage.update(finishes.getYachtId(index), finishes.getElapsed(index), finishes.getCoefficient(index), finishes.getCode(index));
+    check("negativeElapsed live first", stage.getYachtId(0), 1);
+    check("negativeElapsed live first points", stage.getPoints(0), 1);
+    check("negativeElapsed live code", stage.getCode(stage.indexOf(2)), ResultCode.DNF);
+    check("negativeElapsed live points", stage.getPoints(stage.indexOf(2)), 4);
+  }
+
+/**
+ * Nežinomas kodas (pvz., -1) – kaip DNF, ne teigiamas koeficientas – kaip 1.
+ */
+  private static void invalidValues() {
+    StageFinishes finishes = new StageFinishes(0, 4);
+    finishes.add(1, 3600000, 1.0f, ResultCode.FINISHED);
+    finishes.add(2, 3000000, 1.0f, -1);
+    finishes.add(3, 3000000, 1.0f, ResultCode.DNC + 1);
+    finishes.add(4, 3500000, -0.5f, ResultCode.FINISHED);
+    StageResult result = new StageScorer().score(finishes);
+    check("invalidValues finishers", result.getFinishers(), 2);
+    check("invalidValues first", result.getYachtId(0), 4);
+    check("invalidValues first corrected", result.getCorrected(0), 3500000);
+    check("invalidValues second", result.getYachtId(1), 1);
+    for (int yachtId = 2; yachtId <= 3; yachtId++) {
+      int rank = result.indexOf(yachtId);
+      check("invalidValues code " + yachtId, result.getCode(rank), ResultCode.DNF);
+      check("invalidValues points " + yachtId, result.getPoints(rank), 5);
+    }
+
+    LiveStage stage = new LiveStage(0, 4);
+    for (int index = 0; index < finishes.size(); index++)
+      stage.update(finishes.getYachtId(index), finishes.getElapsed(index), finishes.getCoefficient(index), finishes.getCode(index));
+    check("invalidValues live first", stage.getYachtId(0), 4);
+    check("invalidValues live code", stage.getCode(stage.indexOf(2)), ResultCode.DNF);
+    check("invalidValues live points", stage.getPoints(stage.indexOf(3)), 5);
+  }
+
+/**
+ * Jachta, kurios etape nėra, gauna DNC (jachtų skaičius + 1), o lygios
+ * sumos išsprendžiamos pagal A8 – kaip SeriesScorer.
+ */
+  private static void missingStage() {
+    LiveStage first = new LiveStage(1, 3), second = new LiveStage(2, 2);
+    first.update(1, 3600000, 1.0f, ResultCode.FINISHED);
+    first.update(2, 3700000, 1.0f, ResultCode.FINISHED);
+    first.update(3, 3800000, 1.0f, ResultCode.FINISHED);
+    second.update(1, 3700000, 1.0f, ResultCode.FINISHED);
+    second.update(2, 3600000, 1.0f, ResultCode.FINISHED);
+    LiveSeries series = new LiveSeries(0, 0);
+    series.addStage(first);
+    series.addStage(second);
+    int[] yachtIds = {2, 1, 3}; // 3 ir 3 taškai – A8.2 pagal paskutinį etapą
+    float[] totals = {3, 3, 7};
+    for (int rank = 0; rank < yachtIds.length; rank++) {
+      check("missingStage yacht " + rank, series.getYachtId(rank), yachtIds[rank]);
+      check("missingStage place " + rank, series.getPlace(rank), rank + 1);
+      check("missingStage total " + rank, series.getPoints(rank), totals[rank]);
+    }
+  }
+
+/**
+ * Atsitiktiniai vieno etapo įrašymai ir taisymai.
+ */
+  private static void randomStage(Random random) {
+    LiveStage stage = new LiveStage(1, 4);
+    Mirror mirror = new Mirror(stage);
+    Finishes finishes = new Finishes(1);
+    StageScorer scorer = new StageScorer();
+    for (int update = 0; update < STAGE_UPDATES && failures < MAX_FAILURES; update++) {
+      int yachtId = 1 + random.nextInt(60);
+      long time = TIMES[random.nextInt(TIMES.length)];
+      float coefficient = COEFFICIENTS[random.nextInt(COEFFICIENTS.length)];
+      int code = random.nextInt(5) == 0 ? 1 + random.nextInt(ResultCode.DNC) : ResultCode.FINISHED;
+      stage.update(yachtId, time, coefficient, code);
+      finishes.set(yachtId, time, coefficient, code);
+      StageResult expected = scorer.score(finishes.toStageFinishes());
+      String name = "randomStage " + update;
+      check(name + " size", stage.size(), expected.size());
+      for (int rank = 0; rank < expected.size(); rank++) {
+        check(name + " yacht " + rank, stage.getYachtId(rank), expected.getYachtId(rank));
+        check(name + " place " + rank, stage.getPlace(rank), expected.getPlace(rank));
+        check(name + " points " + rank, stage.getPoints(rank), expected.getPoints(rank));
+        check(name + " code " + rank, stage.getCode(rank), expected.getCode(rank));
+        check(name + " corrected " + rank, stage.getCorrected(rank), expected.getCorrected(rank));
+      }
+      mirror.check(name);
+    }
+  }
+
+/**
+ * Atsitiktiniai kelių grupės etapų įrašymai ir taisymai; ne visos jachtos
+ * plaukia visus etapus.
+ */
+  private static void randomSeries(Random random, ForkJoinPool pool, int discards) {
+    int stageCount = 4;
+    LiveSeries series = new LiveSeries(1, discards);
+    Mirror mirror = new Mirror(series);
+    Vector<LiveStage> stages = new Vector<LiveStage>();
+    Vector<Finishes> finishes = new Vector<Finishes>();
+    for (int stage = 0; stage < stageCount; stage++) {
+      int stageId = stageCount - stage; // įtraukiami ne ID tvarka
+      stages.add(new LiveStage(stageId, 4));
+      finishes.add(new Finishes(stageId));
+      series.addStage(stages.get(stage));
+    }
+    SeriesScorer scorer = new SeriesScorer(pool, discards);
+    for (int update = 0; update < SERIES_UPDATES && failures < MAX_FAILURES; update++) {
+      int stage = random.nextInt(stageCount);
+      int yachtId = 1 + random.nextInt(25);
+      long time = TIMES[random.nextInt(TIMES.length)];
+      float coefficient = COEFFICIENTS[random.nextInt(COEFFICIENTS.length)];
+      int code = random.nextInt(6) == 0 ? ResultCode.DNF : ResultCode.FINISHED;
+      stages.get(stage).update(yachtId, time, coefficient, code);
+      finishes.get(stage).set(yachtId, time, coefficient, code);
+      StageFinishes[] current = new StageFinishes[stageCount];
+      for (int i = 0; i < stageCount; i++)
+        current[i] = finishes.get(i).toStageFinishes();
+      SeriesResult expected = scorer.score(new int[] {1}, new StageFinishes[][] {current}).get(0);
+      String name = "randomSeries discards " + discards + " " + update;
+      check(name + " size", series.size(), expected.size());
+      for (int rank = 0; rank < expected.size(); rank++) {
+        check(name + " yacht " + rank, series.getYachtId(rank), expected.getYachtId(rank));
+        check(name + " place " + rank, series.getPlace(rank), expected.getPlace(rank));
+        check(name + " total " + rank, series.getPoints(rank), expected.getTotal(rank));
+        check(name + " indexOf " + rank, series.indexOf(expected.getYachtId(rank)), rank);
+      }
+      mirror.check(name);
+    }
+  }
+
+/**
+ * Etapo plaukimai jachtų įrašymo tvarka (kaip LiveStage eilutės, todėl
+ * lygūs laikai rikiuojami vienodai).
+ */
+  private static class Finishes {
+    private final int stageId;
+    private final Vector<Integer> yachtIds = new Vector<Integer>();
+    private final Vector<Long> times = new Vector<Long>();
+    private final Vector<Float> coefficients = new Vector<Float>();
+    private final Vector<Integer> codes = new Vector<Integer>();
+
+    Finishes(int stageId) {
+      this.stageId = stageId;
+    }
+
+    void set(int yachtId, long time, float coefficient, int code) {
+      int index = yachtIds.indexOf(yachtId);
+      if (index < 0) {
+        yachtIds.add(yachtId);
+        times.add(time);
+        coefficients.add(coefficient);
+        codes.add(code);
+      } else {
+        times.set(index, time);
+        coefficients.set(index, coefficient);
+        codes.set(index, code);
+      }
+    }
+
+    StageFinishes toStageFinishes() {
+      StageFinishes finishes = new StageFinishes(stageId, yachtIds.size());
+      for (int index = 0; index < yachtIds.size(); index++)
+        finishes.add(yachtIds.get(index), times.get(index), coefficients.get(index), codes.get(index));
+      return finishes;
+    }
+  }
+
+/**
+ * Rezultatų kopija, atnaujinama tik pagal pranešimus (RankingListener):
+ * jei pranešta ne apie visas pasikeitusias eilutes, ji skirsis nuo
+ * rezultatų.
+ */
+  private static class Mirror implements RankingListener {
+    private final Ranking ranking;
+    private final Vector<int[]> rows = new Vector<int[]>(); // jachtos ID, vieta, dvigubi taškai
+
+    Mirror(Ranking ranking) {
+      this.ranking = ranking;
+      if (ranking instanceof LiveStage)
+        ((LiveStage)ranking).addListener(this);
+      else
+        ((LiveSeries)ranking).addListener(this);
+    }
+
+    public void rowsChanged(Ranking ranking, int fromRank, int toRank) {
+      rows.setSize(ranking.size());
+      for (int rank = fromRank; rank <= toRank; rank++)
+        rows.set(rank, row(rank));
+    }
+
+    private int[] row(int rank) {
+      return new int[] {ranking.getYachtId(rank), ranking.getPlace(rank), Math.round(ranking.getPoints(rank) * 2)};
+    }
+
+    void check(String name) {
+      ScoringCheck.check(name + " mirror size", rows.size(), ranking.size());
+      for (int rank = 0; rank < ranking.size() && rank < rows.size(); rank++) {
+        int[] expected = row(rank), actual = rows.get(rank);
+        for (int column = 0; column < expected.length; column++)
+          ScoringCheck.check(name + " mirror " + rank + "." + column, actual == null ? -1 : actual[column], expected[column]);
+      }
+    }
+  }
+
+  private static void check(String name, long actual, long expected) {
+    if (actual != expected) {
+      System.out.println(name + ": " + actual + ", turėtų būti " + expected);
+      failures++;
+    }
+  }
+
+  private static void check(String name, float actual, float expected) {
+    if (actual != expected) {
+      System.out.println(name + ": " + actual + ", turėtų būti " + expected);
+      failures++;
+    }
+  }
+}
@@ -0,0 +1,377 @@
+/**
+ * Didelių TSV/CSV failų importavimas į duombazę.
+ * Įrašai skaitomi po vieną (DelimitedReader) ir siunčiami paketais po
+ * BATCH_SIZE (addBatch()/executeBatch()), kiekvienas paketas – atskira
+ * transakcija. Vientisumo taisyklės (rescore.validation) paketui tikrinamos
+ * po jo įrašymo – viena užklausa kiekvienai taisyklei. Jei paketo įrašyti
+ * nepavyko arba jis pažeidžia taisykles, jis atšaukiamas ir įrašomas po
+ * vieną eilutę (taisyklės tikrinamos iš karto), kad būtų žinoma, kuri eilutė
+ * ir kodėl atmesta.
+ *
+ * Sugeneruoti ID gaunami per getGeneratedKeys(). H2 po executeBatch() grąžina
+ * tik paskutinį raktą, todėl kitų paketo eilučių ID išvedami iš jo, prieš
+ * tai toje pačioje transakcijoje patikrinus, kad jie eina iš eilės
+ * (Database.Session.batchKeys()). Jei ne, paketas atšaukiamas ir įrašomas
+ * po vieną eilutę, kiekvienai gaunant tikslų ID.
+ *
+ * Įrašų formatai (tuščias laukas – NULL; nuorodos – pagal pavadinimą):
+ * <ul>
+ * <li>captains(), owners(): Vardas</li>
+ * <li>yachts(): BurėsNumeris, Modelis (pavadinimas), Pavadinimas,
+ *     PagaminimoMetai, Kapitonas (vardas), Savininkas (vardas), Rėmėjai</li>
+ * <li>entries(): BurėsNumeris, Grupė (ID), Kapitonas (vardas),
+ *     Savininkas (vardas), Rėmėjai</li>
+ * <li>finishes(): BurėsNumeris, Etapas (ID), StartoLaikas, FinišoLaikas
+ *     (yyyy-mm-dd hh:mm:ss[.f]), Kodas (DNF, DSQ... arba tuščias), Pastabos;
+ *     jau esantis jachtos plaukimas etape perrašomas</li>
+ * </ul>
+ * Vienas BulkImporter objektas vienu metu naudojamas tik vienos gijos.
+ */
+package rescore.bulk;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashMap;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import rescore.Database;
+import rescore.scoring.ResultCode;
+import rescore.validation.Validator;
+
+public abstract class BulkImporter {
+  private static Logger logger = Logger.getLogger(BulkImporter.class.getName());
+  public static final int BATCH_SIZE = 500;
+  // vardų ir pavadinimų stulpeliai neindeksuoti, todėl užkraunami iš karto
+  private static final String SELECT_CAPTAIN_IDS = "SELECT Vardas, MIN(Id) FROM Kapitonai GROUP BY Vardas";
+  private static final String SELECT_OWNER_IDS = "SELECT Vardas, MIN(Id) FROM Savininkai GROUP BY Vardas";
+  private static final String SELECT_YACHT_CLASS_IDS = "SELECT Pavadinimas, MIN(Id) FROM Modeliai GROUP BY Pavadinimas";
+  private static final String SELECT_YACHT_ID = "SELECT Id FROM Jachtos WHERE BurėsNumeris = ?";
+  private final String table;
+  private final String insert;
+  private final boolean generatedKeys; // ar lentelė turi IDENTITY stulpelį
+  private final HashMap<String, HashMap<String, Integer>> lookups = new HashMap<String, HashMap<String, Integer>>(); // užklausa -> (pavadinimas -> ID)
+
+/**
+ * Konstruktorius.
+ *
+ * @param table         lentelė (ataskaitoms)
+ * @param insert        vienos eilutės įterpimo užklausa
+ * @param generatedKeys ar lentelė turi IDENTITY stulpelį
+ */
+  protected BulkImporter(String table, String insert, boolean generatedKeys) {
+    this.table = table;
+    this.insert = insert;
+    this.generatedKeys = generatedKeys;
+  }
+
+/**
+ * Nustato įterpimo užklausos parametrus pagal įrašo laukus.
+ *
+ * @throws IllegalArgumentException jei įrašas netinkamas
+ */
+  protected abstract void bind(PreparedStatement statement, String[] fields) throws SQLException;
+
+  public static BulkImporter captains() {
+    return new BulkImporter("Kapitonai", "INSERT INTO Kapitonai (Vardas) VALUES (?)", true) {
+      protected void bind(PreparedStatement statement, String[] fields) throws SQLException {
+        statement.setString(1, required(fields, 0, "name"));
+      }
+    };
+  }
+
+  public static BulkImporter owners() {
+    return new BulkImporter("Savininkai", "INSERT INTO Savininkai (Vardas) VALUES (?)", true) {
+      protected void bind(PreparedStatement statement, String[] fields) throws SQLException {
+        statement.setString(1, required(fields, 0, "name"));
+      }
+    };
+  }
+
+  public static BulkImporter yachts() {
+    return new BulkImporter("Jachtos", "INSERT INTO Jachtos (BurėsNumeris, Modelis, Pavadinimas, PagaminimoMetai, Kapitonas, Savininkas, Rėmėjai) VALUES (?, ?, ?, ?, ?, ?, ?)", true) {
+      protected void bind(PreparedStatement statement, String[] fields) throws SQLException {
+        statement.setString(1, required(fields, 0, "sail number"));
+        statement.setInt(2, lookup(SELECT_YACHT_CLASS_IDS, required(fields, 1, "yacht class"), "yacht class"));
+        statement.setString(3, required(fields, 2, "name"));
+        setInteger(statement, 4, field(fields, 3), "year");
+        setId(statement, 5, SELECT_CAPTAIN_IDS, field(fields, 4), "captain");
+        setId(statement, 6, SELECT_OWNER_IDS, field(fields, 5), "owner");
+        statement.setString(7, field(fields, 6));
+      }
+    };
+  }
+
+  public static BulkImporter entries() {
+    return new BulkImporter("Dalyviai", "INSERT INTO Dalyviai (Jachta, Grupė, Kapitonas, Savininkas, Rėmėjai) VALUES (?, ?, ?, ?, ?)", false) {
+      protected void bind(PreparedStatement statement, String[] fields) throws SQLException {
+        statement.setInt(1, lookup(SELECT_YACHT_ID, required(fields, 0, "sail number"), "yacht"));
+        setInteger(statement, 2, required(fields, 1, "group"), "group");
+        setId(statement, 3, SELECT_CAPTAIN_IDS, field(fields, 2), "captain");
+        setId(statement, 4, SELECT_OWNER_IDS, field(fields, 3), "owner");
+        statement.setString(5, field(fields, 4));
+      }
+    };
+  }
+
+  public static BulkImporter finishes() {
+    return new BulkImporter("Plaukimai", "MERGE INTO Plaukimai (Jachta, Etapas, StartoLaikas, FinišoLaikas, Kodas, Pastabos) KEY (Jachta, Etapas) VALUES (?, ?, ?, ?, ?, ?)", false) {
+      protected void bind(PreparedStatement statement, String[] fields) throws SQLException {
+        statement.setInt(1, lookup(SELECT_YACHT_ID, required(fields, 0, "sail number"), "yacht"));
+        setInteger(statement, 2, required(fields, 1, "stage"), "stage");
+        setTimestamp(statement, 3, field(fields, 2), "start time");
+        setTimestamp(statement, 4, field(fields, 3), "finish time");
+        String code = field(fields, 4);
+        int value = code == null ? ResultCode.FINISHED : ResultCode.getCode(code);
+        if (value < 0)
+          throw new IllegalArgumentException("Bad result code: " + code);
+        if (value == ResultCode.FINISHED)
+          statement.setNull(5, Types.INTEGER);
+        else
+          statement.setInt(5, value);
+        statement.setString(6, field(fields, 5));
+      }
+    };
+  }
+
+/**
+ * Importuoja failą.
+ *
+ * @param input     failas
+ * @param delimiter laukų skirtukas ('\t' arba ',')
+ * @param header    ar pirmas įrašas – antraštė (praleidžiamas)
+ * @param listener  gauna kiekvieną įrašytą ir atmestą įrašą; jei null,
+ *                  atmesti įrašai tik registruojami žurnale
+ * @return suvestinė arba null, jei įvyko klaida (jau įrašyti paketai lieka)
+ */
+  public ImportReport run(Reader input, char delimiter, boolean header, ImportListener listener) {
+    ImportReport report = new ImportReport(table);
+    DelimitedReader reader = new DelimitedReader(input, delimiter);
+    String[][] rows = new String[BATCH_SIZE][]; // paketo įrašai, jei tektų kartoti po vieną
+    long[] lines = new long[BATCH_SIZE];
+    int count = 0;
+    lookups.clear();
+    try {
+      Database.Session session = Database.acquire();
+      Connection connection = session.getConnection();
+      boolean autoCommit = connection.getAutoCommit();
+      try {
+        connection.setAutoCommit(false);
+        PreparedStatement statement = session.prepare(insert, generatedKeys ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS);
+        if (header)
+          reader.next();
+        String[] fields;
+        while ((fields = reader.next()) != null) {
+          report.addRow();
+          try {
+            bind(statement, fields);
+          } catch (IllegalArgumentException exception) {
+            reject(report, listener, reader.getLine(), fields, exception.getMessage());
+            continue;
+          }
+          statement.addBatch();
+          rows[count] = fields;
+          lines[count] = reader.getLine();
+          if (++count == BATCH_SIZE) {
+            flush(session, statement, rows, lines, count, report, listener);
+            count = 0;
+          }
+        }
+        if (count > 0)
+          flush(session, statement, rows, lines, count, report, listener);
+      } finally {
+        connection.rollback(); // jei nutrūko – neatlikto paketo nebelieka
+        connection.setAutoCommit(autoCommit);
+        session.release();
+      }
+    } catch (IOException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("run I/O error at line " + reader.getLine() + ": " + exception.getMessage());
+      report = null;
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("run SQL error: " + exception.getMessage());
+      report = null;
+    }
+    if (report != null) {
+      report.finish();
+      if (logger.isEnabledFor(Level.INFO))
+        logger.info(report);
+    }
+    return report;
+  }
+
+  private void flush(Database.Session session, PreparedStatement statement, String[][] rows, long[] lines, int count, ImportReport report, ImportListener listener) throws SQLException {
+    Connection connection = session.getConnection();
+    boolean keys = generatedKeys && listener != null; // ar reikia eilučių ID
+    int maxId = keys ? session.maxId(table) : 0;
+    boolean failed;
+    Validator.defer();
+    try {
+      statement.executeBatch();
+      failed = Validator.check(connection) != null;
+    } catch (BatchUpdateException exception) {
+      failed = true;
+    } finally {
+      Validator.resume();
+    }
+    int[] ids = null;
+    if (!failed && keys) {
+      ids = session.batchKeys(table, maxId, lastKey(statement), count);
+      if (ids == null) {
+        if (logger.isEnabledFor(Level.WARN))
+          logger.warn(table + " batch keys are not consecutive, inserting row by row");
+        failed = true;
+      }
+    }
+    if (failed) {
+      connection.rollback();
+      statement.clearBatch();
+      for (int row = 0; row < count; row++) {
+        try {
+          bind(statement, rows[row]);
+          statement.executeUpdate();
+        } catch (SQLException rowException) {
+          reject(report, listener, lines[row], rows[row], reason(rowException));
+          continue;
+        }
+        report.addImported();
+        if (listener != null)
+          listener.imported(lines[row], generatedKeys ? lastKey(statement) : 0);
+      }
+      connection.commit();
+      return;
+    }
+    connection.commit();
+    for (int row = 0; row < count; row++) {
+      report.addImported();
+      if (listener != null)
+        listener.imported(lines[row], ids != null ? ids[row] : 0);
+    }
+  }
+
+  private static int lastKey(PreparedStatement statement) throws SQLException {
+    ResultSet keys = statement.getGeneratedKeys();
+    int id = 0;
+    while (keys.next())
+      id = keys.getInt(1);
+    return id;
+  }
+
+  private void reject(ImportReport report, ImportListener listener, long line, String[] fields, String reason) {
+    report.addRejected();
+    if (listener != null)
+      listener.rejected(line, fields, reason);
+    else if (logger.isEnabledFor(Level.WARN))
+      logger.warn(table + " line " + line + " rejected: " + reason);
+  }
+
+/**
+ * Klaidos pranešimas be užklausos teksto.
+ */
+  private static String reason(SQLException exception) {
+    String message = exception.getMessage();
+    int end = message.indexOf("; SQL statement:");
+    return end < 0 ? message : message.substring(0, end);
+  }
+
+/**
+ * Lauko reikšmė be tarpų kraštuose arba null, jei lauko nėra ar jis tuščias.
+ */
+  protected static String field(String[] fields, int index) {
+    if (index >= fields.length)
+      return null;
+    String value = fields[index].trim();
+    return value.length() == 0 ? null : value;
+  }
+
+  protected static String required(String[] fields, int index, String name) {
+    String value = field(fields, index);
+    if (value == null)
+      throw new IllegalArgumentException("Missing " + name);
+    return value;
+  }
+
+  protected static void setInteger(PreparedStatement statement, int parameter, String value, String name) throws SQLException {
+    if (value == null) {
+      statement.setNull(parameter, Types.INTEGER);
+      return;
+    }
+    try {
+      statement.setInt(parameter, Integer.parseInt(value));
+    } catch (NumberFormatException exception) {
+      throw new IllegalArgumentException("Bad " + name + ": " + value);
+    }
+  }
+
+  protected static void setTimestamp(PreparedStatement statement, int parameter, String value, String name) throws SQLException {
+    if (value == null) {
+      statement.setNull(parameter, Types.TIMESTAMP);
+      return;
+    }
+    try {
+      statement.setTimestamp(parameter, Timestamp.valueOf(value));
+    } catch (IllegalArgumentException exception) {
+      throw new IllegalArgumentException("Bad " + name + ": " + value);
+    }
+  }
+
+/**
+ * Nustato nuorodos parametrą pagal pavadinimą (null – NULL).
+ */
+  protected void setId(PreparedStatement statement, int parameter, String select, String key, String name) throws SQLException {
+    if (key == null)
+      statement.setNull(parameter, Types.INTEGER);
+    else
+      statement.setInt(parameter, lookup(select, key, name));
+  }
+
+/**
+ * Randa eilutės ID pagal pavadinimą. Rasti ID įsimenami iki importavimo pabaigos.
+ *
+ * @param select užklausa, grąžinanti ID pagal pavadinimą (su vienu parametru),
+ *               arba visas poras (pavadinimas, ID) – tada jos užkraunamos
+ *               pirmą kartą ieškant
+ * @param key    pavadinimas
+ * @param name   ko ieškoma (klaidos pranešimui)
+ * @throws IllegalArgumentException jei nerasta
+ */
+  protected int lookup(String select, String key, String name) throws SQLException {
+    HashMap<String, Integer> ids = lookups.get(select);
+    boolean loaded = ids != null;
+    if (!loaded) {
+      ids = new HashMap<String, Integer>();
+      lookups.put(select, ids);
+    }
+    Integer id = ids.get(key);
+    boolean single = select.indexOf('?') >= 0;
+    if (id == null && (single || !loaded)) {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement selectIds = session.prepare(select);
+        if (single)
+          selectIds.setString(1, key);
+        ResultSet resultSet = selectIds.executeQuery();
+        while (resultSet.next()) {
+          if (single)
+            ids.put(key, resultSet.getInt(1));
+          else
+            ids.put(resultSet.getString(1), resultSet.getInt(2));
+        }
+      } finally {
+        session.release();
+      }
+      id = ids.get(key);
+    }
+    if (id == null)
+      throw new IllegalArgumentException("Unknown " + name + ": " + key);
+    return id;
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Skirtukais atskirtų reikšmių (TSV, CSV) failo skaitymas po vieną įrašą.
+ * Atmintyje laikomas tik einamasis įrašas, todėl failo dydis neribojamas.
+ * CSV laukai gali būti kabutėse ("..."; kabutės lauko viduje – ""), tada
+ * juose gali būti skirtukų ir eilučių pabaigų. TSV laukai kabučių neturi.
+ * Tuščios eilutės praleidžiamos.
+ */
+package rescore.bulk;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Vector;
+
+public class DelimitedReader {
+  private static final int END = -1;
+  private final Reader reader;
+  private final char delimiter;
+  private final boolean quoted; // ar laukai gali būti kabutėse
+  private final Vector<String> fields = new Vector<String>();
+  private final StringBuilder field = new StringBuilder();
+  private long line = 1; // kurioje eilutėje esame
+  private long recordLine = 0; // kurioje eilutėje prasidėjo paskutinis įrašas
+  private int next = -2; // perskaitytas, bet dar neapdorotas simbolis
+
+/**
+ * Konstruktorius.
+ *
+ * @param reader    skaitomas failas (pageidautina BufferedReader)
+ * @param delimiter laukų skirtukas: '\t' (TSV) arba kitas, pvz., ',' (CSV)
+ */
+  public DelimitedReader(Reader reader, char delimiter) {
+    this.reader = reader;
+    this.delimiter = delimiter;
+    quoted = delimiter != '\t';
+  }
+
+  private int read() throws IOException {
+    int character;
+    if (next != -2) {
+      character = next;
+      next = -2;
+    } else {
+      character = reader.read();
+    }
+    if (character == '\r') { // \r\n ir \r – kaip \n
+      int following = reader.read();
+      if (following != '\n')
+        next = following;
+      character = '\n';
+    }
+    if (character == '\n')
+      line++;
+    return character;
+  }
+
+/**
+ * Perskaito kitą įrašą.
+ *
+ * @return įrašo laukai arba null, jei failas baigėsi
+ * @throws IOException jei nepavyko skaityti arba kabutės neuždarytos
+ */
+  public String[] next() throws IOException {
+    int character;
+    do {
+      recordLine = line;
+      character = read();
+    } while (character == '\n');
+    if (character == END)
+      return null;
+    fields.clear();
+    field.setLength(0);
+    while (true) {
+      if (quoted && character == '"' && field.length() == 0) {
+        while (true) {
+          character = read();
+          if (character == END)
+            throw new IOException("Unterminated quotes in record at line " + recordLine);
+          if (character == '"') {
+            character = read();
+            if (character != '"')
+              break;
+          }
+          field.append((char)character);
+        }
+        continue;
+      }
+      if (character == delimiter) {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else if (character == '\n' || character == END) {
+        fields.add(field.toString());
+        return fields.toArray(new String[fields.size()]);
+      } else {
+        field.append((char)character);
+      }
+      character = read();
+    }
+  }
+
+/**
+ * Failo eilutė (nuo 1), kurioje prasidėjo paskutinis perskaitytas įrašas.
+ */
+  public long getLine() {
+    return recordLine;
+  }
+}
@@ -0,0 +1,72 @@
+/**
+ * Failo importavimas iš komandinės eilutės.
+ * Failai *.csv skaitomi kaip CSV, kiti – kaip TSV; koduotė UTF-8.
+ */
+package rescore.bulk;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.sql.SQLException;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import rescore.Database;
+
+public class Import {
+  private static Logger logger = Logger.getLogger(Import.class.getName());
+
+  public static void main(String args[]) {
+    if (args.length < 6 || args.length > 7) {
+      System.out.println("Paleidimo parametrai: JDBC_URL prisijungimoVardas slaptažodis log4jKonfigūracijosFailas captains|owners|yachts|entries|finishes failas [header]");
+      return;
+    }
+
+    PropertyConfigurator.configure(args[3]);
+
+    BulkImporter importer;
+    if (args[4].equals("captains"))
+      importer = BulkImporter.captains();
+    else if (args[4].equals("owners"))
+      importer = BulkImporter.owners();
+    else if (args[4].equals("yachts"))
+      importer = BulkImporter.yachts();
+    else if (args[4].equals("entries"))
+      importer = BulkImporter.entries();
+    else if (args[4].equals("finishes"))
+      importer = BulkImporter.finishes();
+    else {
+      System.out.println("Nežinomas importuojamų duomenų tipas: " + args[4]);
+      return;
+    }
+
+    try {
+      Database.open(args[0], args[1], args[2], 1);
+    } catch (SQLException exception) {
+      logger.error("Unable to connect to the database: " + exception.getMessage());
+      return;
+    }
+
+    try {
+      Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(args[5]), "UTF-8"), 1 << 16);
+      try {
+        char delimiter = args[5].toLowerCase().endsWith(".csv") ? ',' : '\t';
+        ImportReport report = importer.run(reader, delimiter, args.length == 7 && args[6].equals("header"), new ImportListener() {
+          public void imported(long line, int id) {
+          }
+
+          public void rejected(long line, String[] fields, String reason) {
+            System.out.println("Eilutė " + line + " atmesta: " + reason);
+          }
+        });
+        System.out.println(report == null ? "Importuoti nepavyko" : report.toString());
+      } finally {
+        reader.close();
+      }
+    } catch (IOException exception) {
+      logger.error("Unable to read " + args[5] + ": " + exception.getMessage());
+    }
+    Database.close();
+  }
+}
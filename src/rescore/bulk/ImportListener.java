@@ -0,0 +1,23 @@
+/**
+ * Gauna pranešimus apie kiekvieną importuotą ar atmestą įrašą.
+ */
+package rescore.bulk;
+
+public interface ImportListener {
+/**
+ * Įrašas įrašytas į duombazę.
+ *
+ * @param line failo eilutė, kurioje prasideda įrašas
+ * @param id   sugeneruotas naujos eilutės ID (0, jei lentelė jo neturi)
+ */
+  void imported(long line, int id);
+
+/**
+ * Įrašas atmestas.
+ *
+ * @param line   failo eilutė, kurioje prasideda įrašas
+ * @param fields įrašo laukai
+ * @param reason priežastis
+ */
+  void rejected(long line, String[] fields, String reason);
+}
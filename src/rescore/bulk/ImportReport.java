@@ -0,0 +1,71 @@
+/**
+ * Importavimo suvestinė: kiek įrašų perskaityta, įrašyta ir atmesta, per
+ * kiek laiko.
+ */
+package rescore.bulk;
+
+public class ImportReport {
+  private final String table;
+  private long rows = 0, imported = 0, rejected = 0;
+  private final long started = System.nanoTime();
+  private long finished = 0;
+
+  ImportReport(String table) {
+    this.table = table;
+  }
+
+  void addRow() {
+    rows++;
+  }
+
+  void addImported() {
+    imported++;
+  }
+
+  void addRejected() {
+    rejected++;
+  }
+
+  void finish() {
+    finished = System.nanoTime();
+  }
+
+/**
+ * Lentelė, į kurią importuota.
+ */
+  public String getTable() {
+    return table;
+  }
+
+/**
+ * Kiek įrašų perskaityta iš failo (be antraštės).
+ */
+  public long getRows() {
+    return rows;
+  }
+
+  public long getImported() {
+    return imported;
+  }
+
+  public long getRejected() {
+    return rejected;
+  }
+
+  public long getElapsedMillis() {
+    return ((finished == 0 ? System.nanoTime() : finished) - started) / 1000000;
+  }
+
+/**
+ * Kiek įrašų per sekundę perskaityta ir apdorota.
+ */
+  public double getRowsPerSecond() {
+    long elapsed = (finished == 0 ? System.nanoTime() : finished) - started;
+    return elapsed > 0 ? rows * 1e9 / elapsed : 0;
+  }
+
+  public String toString() {
+    return table + ": " + rows + " rows, " + imported + " imported, " + rejected + " rejected in "
+        + getElapsedMillis() + " ms (" + Math.round(getRowsPerSecond()) + " rows/s)";
+  }
+}
@@ -0,0 +1,231 @@
+/**
+ * Teksto rašymas į kanalą per vieną pakartotinai naudojamą tiesioginį
+ * (direct) ByteBuffer.
+ * Simboliai koduojami UTF-8, skaičiai – skaitmenimis, be tarpinių eilučių ar
+ * masyvų kūrimo, todėl rašant objektai nekuriami. Pilnas buferis
+ * išrašomas į kanalą, tad atminties sąnaudos nepriklauso nuo teksto ilgio.
+ * Objektas nesinchronizuotas.
+ */
+package rescore.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+class ChannelWriter {
+  private static final int MAX_CHAR_BYTES = 4; // ilgiausias UTF-8 simbolis
+  private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+  private final ByteBuffer buffer;
+  private final byte[] digits = new byte[20]; // ilgiausias long skaičius
+  private WritableByteChannel channel;
+
+/**
+ * Konstruktorius.
+ *
+ * @param capacity buferio dydis baitais
+ */
+  ChannelWriter(int capacity) {
+    buffer = ByteBuffer.allocateDirect(Math.max(capacity, 64));
+  }
+
+/**
+ * Pradeda rašyti į kanalą (buferis išvalomas).
+ */
+  void open(WritableByteChannel channel) {
+    this.channel = channel;
+    buffer.clear();
+  }
+
+/**
+ * Išrašo buferį į kanalą.
+ */
+  void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+    buffer.clear();
+  }
+
+  private void ensure(int bytes) throws IOException {
+    if (buffer.remaining() < bytes)
+      flush();
+  }
+
+/**
+ * Rašo ASCII simbolį.
+ */
+  void write(char character) throws IOException {
+    ensure(1);
+    buffer.put((byte)character);
+  }
+
+/**
+ * Rašo tekstą (null – nieko).
+ */
+  void write(String text) throws IOException {
+    if (text == null)
+      return;
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char character = text.charAt(i);
+      if (character < 0x80) {
+        ensure(1);
+        buffer.put((byte)character);
+      } else if (Character.isHighSurrogate(character) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1)))
+        writeCodePoint(Character.toCodePoint(character, text.charAt(++i)));
+      else if (Character.isSurrogate(character))
+        write('?');
+      else
+        writeCodePoint(character);
+    }
+  }
+
+  private void writeCodePoint(int codePoint) throws IOException {
+    ensure(MAX_CHAR_BYTES);
+    if (codePoint < 0x80)
+      buffer.put((byte)codePoint);
+    else if (codePoint < 0x800) {
+      buffer.put((byte)(0xc0 | codePoint >> 6));
+      buffer.put((byte)(0x80 | codePoint & 0x3f));
+    } else if (codePoint < 0x10000) {
+      buffer.put((byte)(0xe0 | codePoint >> 12));
+      buffer.put((byte)(0x80 | codePoint >> 6 & 0x3f));
+      buffer.put((byte)(0x80 | codePoint & 0x3f));
+    } else {
+      buffer.put((byte)(0xf0 | codePoint >> 18));
+      buffer.put((byte)(0x80 | codePoint >> 12 & 0x3f));
+      buffer.put((byte)(0x80 | codePoint >> 6 & 0x3f));
+      buffer.put((byte)(0x80 | codePoint & 0x3f));
+    }
+  }
+
+/**
+ * Rašo CSV lauką: kabutėse, jei jame yra kablelių, kabučių ar eilučių
+ * pabaigų (kabutės lauko viduje – "").
+ */
+  void writeCsv(String text) throws IOException {
+    if (text == null)
+      return;
+    boolean quote = false;
+    for (int i = 0; i < text.length() && !quote; i++) {
+      char character = text.charAt(i);
+      quote = character == ',' || character == '"' || character == '\n' || character == '\r';
+    }
+    if (!quote) {
+      write(text);
+      return;
+    }
+    write('"');
+    int start = 0;
+    for (int i = 0; i < text.length(); i++)
+      if (text.charAt(i) == '"') {
+        write(text.substring(start, i + 1)); // retas atvejis
+        write('"');
+        start = i + 1;
+      }
+    write(start == 0 ? text : text.substring(start));
+    write('"');
+  }
+
+/**
+ * Rašo JSON eilutę kabutėse (null – null).
+ */
+  void writeJson(String text) throws IOException {
+    if (text == null) {
+      write("null");
+      return;
+    }
+    write('"');
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char character = text.charAt(i);
+      if (character == '"' || character == '\\') {
+        ensure(2);
+        buffer.put((byte)'\\');
+        buffer.put((byte)character);
+      } else if (character == '\n') {
+        ensure(2);
+        buffer.put((byte)'\\');
+        buffer.put((byte)'n');
+      } else if (character < 0x20) {
+        ensure(6);
+        buffer.put((byte)'\\');
+        buffer.put((byte)'u');
+        buffer.put((byte)'0');
+        buffer.put((byte)'0');
+        buffer.put(HEX[character >> 4]);
+        buffer.put(HEX[character & 0xf]);
+      } else if (character < 0x80) {
+        ensure(1);
+        buffer.put((byte)character);
+      } else if (Character.isHighSurrogate(character) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1)))
+        writeCodePoint(Character.toCodePoint(character, text.charAt(++i)));
+      else if (Character.isSurrogate(character))
+        write('?');
+      else
+        writeCodePoint(character);
+    }
+    write('"');
+  }
+
+/**
+ * Rašo sveiką skaičių.
+ */
+  void write(long value) throws IOException {
+    ensure(digits.length);
+    if (value < 0) {
+      buffer.put((byte)'-');
+      if (value == Long.MIN_VALUE) { // -value netelpa į long
+        buffer.put((byte)'9');
+        value = -(value + 9 * 1000000000000000000L);
+      } else
+        value = -value;
+    }
+    int start = digits.length;
+    do {
+      digits[--start] = (byte)('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+    buffer.put(digits, start, digits.length - start);
+  }
+
+/**
+ * Rašo skaičių su ne daugiau kaip dviem skaitmenimis po taško (be
+ * nereikšmingų nulių), pvz., 3, 3.5, 3.33.
+ */
+  void writeDecimal(float value) throws IOException {
+    long hundredths = Math.round(value * 100.0);
+    if (hundredths < 0) {
+      write('-');
+      hundredths = -hundredths;
+    }
+    write(hundredths / 100);
+    int fraction = (int)(hundredths % 100);
+    if (fraction != 0) {
+      write('.');
+      write((char)('0' + fraction / 10));
+      if (fraction % 10 != 0)
+        write((char)('0' + fraction % 10));
+    }
+  }
+
+/**
+ * Rašo trukmę formatu V:MM:SS (suapvalinta iki sekundžių).
+ *
+ * @param milliseconds trukmė milisekundėmis (ne neigiama)
+ */
+  void writeDuration(long milliseconds) throws IOException {
+    long seconds = (milliseconds + 500) / 1000;
+    write(seconds / 3600);
+    write(':');
+    writeTwoDigits((int)(seconds / 60 % 60));
+    write(':');
+    writeTwoDigits((int)(seconds % 60));
+  }
+
+  private void writeTwoDigits(int value) throws IOException {
+    ensure(2);
+    buffer.put((byte)('0' + value / 10));
+    buffer.put((byte)('0' + value % 10));
+  }
+}
@@ -0,0 +1,66 @@
+/**
+ * Rezultatų eksportas iš komandinės eilutės.
+ * Failai *.json rašomi JSON formatu, kiti – CSV; koduotė UTF-8.
+ */
+package rescore.export;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import rescore.Database;
+import rescore.scoring.SeriesScorer;
+
+public class Export {
+  private static Logger logger = Logger.getLogger(Export.class.getName());
+
+  public static void main(String args[]) {
+    if (args.length < 7 || args.length > 8) {
+      System.out.println("Paleidimo parametrai: JDBC_URL prisijungimoVardas slaptažodis log4jKonfigūracijosFailas stage|group|regatta ID failas [atmetamųEtapųSkaičius]");
+      return;
+    }
+
+    PropertyConfigurator.configure(args[3]);
+
+    int id, discards = 0;
+    try {
+      id = Integer.parseInt(args[5]);
+      if (args.length == 8)
+        discards = Integer.parseInt(args[7]);
+    } catch (NumberFormatException exception) {
+      System.out.println("Neteisingas skaičius: " + exception.getMessage());
+      return;
+    }
+    if (!args[4].equals("stage") && !args[4].equals("group") && !args[4].equals("regatta")) {
+      System.out.println("Nežinomas eksportuojamų duomenų tipas: " + args[4]);
+      return;
+    }
+
+    try {
+      Database.open(args[0], args[1], args[2], Database.DEFAULT_POOL_SIZE);
+    } catch (SQLException exception) {
+      logger.error("Unable to connect to the database: " + exception.getMessage());
+      return;
+    }
+
+    ForkJoinPool pool = new ForkJoinPool();
+    ResultExporter exporter = new ResultExporter(new SeriesScorer(pool, discards));
+    File file = new File(args[6]);
+    int format = args[6].toLowerCase().endsWith(".json") ? ResultExporter.JSON : ResultExporter.CSV;
+    long started = System.nanoTime();
+    boolean exported;
+    if (args[4].equals("stage"))
+      exported = exporter.exportStage(id, format, file);
+    else if (args[4].equals("group"))
+      exported = exporter.exportGroup(id, format, file);
+    else
+      exported = exporter.exportRegatta(id, format, file);
+    if (exported)
+      System.out.println(file + ": " + file.length() + " B per " + (System.nanoTime() - started) / 1000000 + " ms");
+    else
+      System.out.println("Eksportuoti nepavyko");
+    pool.shutdown();
+    Database.close();
+  }
+}
@@ -0,0 +1,428 @@
+/**
+ * Etapų, grupių ir regatų rezultatų eksportas CSV ir JSON formatais.
+ * Rezultatų eilutės rašomos tiesiai iš StageResult ir SeriesResult masyvų į
+ * pakartotinai naudojamą tiesioginį buferį (žr. ChannelWriter), o iš jo – į
+ * kanalą (pvz., FileChannel), nekuriant tarpinių eilučių. Regatos grupės
+ * skaičiuojamos ir rašomos po vieną, todėl atminties sąnaudos priklauso tik
+ * nuo didžiausios grupės.
+ *
+ * CSV: koduotė UTF-8, pirma eilutė – stulpelių pavadinimai. Regatos CSV
+ * sudaro jos pavadinimas ir kiekvienos grupės lentelė, prieš kurią tuščia
+ * eilutė ir grupės pavadinimas.
+ * Objektas vienu metu naudojamas tik vienos gijos.
+ */
+package rescore.export;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Vector;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import rescore.Database;
+import rescore.scoring.ResultCode;
+import rescore.scoring.SeriesResult;
+import rescore.scoring.SeriesScorer;
+import rescore.scoring.StageFinishes;
+import rescore.scoring.StageResult;
+import rescore.scoring.StageScorer;
+
+public class ResultExporter {
+  private static Logger logger = Logger.getLogger(ResultExporter.class.getName());
+  private static final String SELECT_STAGE_NAME = "SELECT Pavadinimas FROM Etapai WHERE Id = ?";
+  private static final String SELECT_STAGE_NAMES = "SELECT Pavadinimas FROM Etapai WHERE Grupė = ? ORDER BY Id";
+  private static final String SELECT_GROUP_NAME = "SELECT Pavadinimas FROM Grupės WHERE Id = ?";
+  private static final String SELECT_GROUPS = "SELECT Id, Pavadinimas FROM Grupės WHERE Regata = ? ORDER BY Id";
+  private static final String SELECT_REGATTA_NAME = "SELECT Pavadinimas FROM Regatos WHERE Id = ?";
+  public static final int CSV = 0, JSON = 1; // formatai
+  private static final int STAGE = 0, GROUP = 1, REGATTA = 2; // ką eksportuoti (export())
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+  private final SeriesScorer seriesScorer;
+  private final StageScorer stageScorer = new StageScorer();
+  private final ChannelWriter writer;
+
+/**
+ * Konstruktorius.
+ *
+ * @param seriesScorer grupių rezultatų skaičiavimas
+ */
+  public ResultExporter(SeriesScorer seriesScorer) {
+    this(seriesScorer, DEFAULT_BUFFER_SIZE);
+  }
+
+/**
+ * Konstruktorius.
+ *
+ * @param seriesScorer grupių rezultatų skaičiavimas
+ * @param bufferSize   buferio dydis baitais
+ */
+  public ResultExporter(SeriesScorer seriesScorer, int bufferSize) {
+    this.seriesScorer = seriesScorer;
+    writer = new ChannelWriter(bufferSize);
+  }
+
+/**
+ * Eksportuoja etapo rezultatus į failą.
+ *
+ * @param stageId etapo (lentelės Etapai) ID
+ * @param format  CSV arba JSON
+ * @param file    failas (perrašomas)
+ * @return ar pavyko
+ */
+  public boolean exportStage(int stageId, int format, File file) {
+    return export(STAGE, stageId, format, file);
+  }
+
+/**
+ * Eksportuoja grupės serijos rezultatus į failą.
+ *
+ * @param groupId grupės (lentelės Grupės) ID
+ * @param format  CSV arba JSON
+ * @param file    failas (perrašomas)
+ * @return ar pavyko
+ */
+  public boolean exportGroup(int groupId, int format, File file) {
+    return export(GROUP, groupId, format, file);
+  }
+
+/**
+ * Eksportuoja visų regatos grupių serijų rezultatus į failą.
+ *
+ * @param regattaId regatos (lentelės Regatos) ID
+ * @param format    CSV arba JSON
+ * @param file      failas (perrašomas)
+ * @return ar pavyko
+ */
+  public boolean exportRegatta(int regattaId, int format, File file) {
+    return export(REGATTA, regattaId, format, file);
+  }
+
+  private boolean export(int what, int id, int format, File file) {
+    try {
+      FileOutputStream stream = new FileOutputStream(file);
+      try {
+        FileChannel channel = stream.getChannel();
+        if (what == STAGE)
+          return writeStage(id, format, channel);
+        else if (what == GROUP)
+          return writeGroup(id, format, channel);
+        else
+          return writeRegatta(id, format, channel);
+      } finally {
+        stream.close();
+      }
+    } catch (IOException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("Unable to write " + file + ": " + exception.getMessage());
+      return false;
+    }
+  }
+
+/**
+ * Rašo etapo rezultatus į kanalą.
+ *
+ * @return ar pavyko (false – duombazės klaida, kanale gali būti dalis duomenų)
+ * @throws IOException jei nepavyko rašyti į kanalą
+ */
+  public boolean writeStage(int stageId, int format, WritableByteChannel channel) throws IOException {
+    String name;
+    YachtLabels labels;
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        name = selectName(session, SELECT_STAGE_NAME, stageId);
+        labels = YachtLabels.load(session, YachtLabels.SELECT_STAGE_LABELS, stageId);
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("writeStage SQL error: " + exception.getMessage());
+      return false;
+    }
+    StageFinishes finishes = StageFinishes.load(stageId);
+    if (finishes == null)
+      return false;
+    StageResult result = stageScorer.score(finishes);
+    writer.open(channel);
+    if (format == JSON)
+      writeStageJson(result, name, labels);
+    else
+      writeStageCsv(result, labels);
+    writer.flush();
+    return true;
+  }
+
+/**
+ * Rašo grupės serijos rezultatus į kanalą.
+ *
+ * @return ar pavyko (false – duombazės klaida, kanale gali būti dalis duomenų)
+ * @throws IOException jei nepavyko rašyti į kanalą
+ */
+  public boolean writeGroup(int groupId, int format, WritableByteChannel channel) throws IOException {
+    writer.open(channel);
+    boolean written = writeGroup(groupId, null, format);
+    writer.flush();
+    return written;
+  }
+
+/**
+ * Rašo visų regatos grupių serijų rezultatus į kanalą.
+ *
+ * @return ar pavyko (false – duombazės klaida, kanale gali būti dalis duomenų)
+ * @throws IOException jei nepavyko rašyti į kanalą
+ */
+  public boolean writeRegatta(int regattaId, int format, WritableByteChannel channel) throws IOException {
+    String name;
+    Vector<Integer> groupIds = new Vector<Integer>();
+    Vector<String> groupNames = new Vector<String>();
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        name = selectName(session, SELECT_REGATTA_NAME, regattaId);
+        PreparedStatement selectGroups = session.prepare(SELECT_GROUPS);
+        selectGroups.setInt(1, regattaId);
+        ResultSet resultSet = selectGroups.executeQuery();
+        while (resultSet.next()) {
+          groupIds.add(resultSet.getInt(1));
+          groupNames.add(resultSet.getString(2));
+        }
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("writeRegatta SQL error: " + exception.getMessage());
+      return false;
+    }
+    writer.open(channel);
+    if (format == JSON) {
+      writer.write("{\"regatta\":");
+      writer.write(regattaId);
+      writer.write(",\"name\":");
+      writer.writeJson(name);
+      writer.write(",\"groups\":[");
+    } else {
+      writer.writeCsv(name);
+      writer.write('\n');
+    }
+    boolean written = true;
+    for (int group = 0; group < groupIds.size() && written; group++) {
+      if (format == JSON && group > 0)
+        writer.write(',');
+      if (format == CSV) {
+        writer.write('\n');
+        writer.writeCsv(groupNames.get(group));
+        writer.write('\n');
+      }
+      written = writeGroup(groupIds.get(group), groupNames.get(group), format);
+    }
+    if (format == JSON)
+      writer.write("]}\n");
+    writer.flush();
+    return written;
+  }
+
+/**
+ * Apskaičiuoja grupės rezultatus ir rašo juos į buferį.
+ *
+ * @param name grupės pavadinimas arba null – užklausti
+ */
+  private boolean writeGroup(int groupId, String name, int format) throws IOException {
+    Vector<String> stageNames = new Vector<String>();
+    YachtLabels labels;
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        if (name == null)
+          name = selectName(session, SELECT_GROUP_NAME, groupId);
+        PreparedStatement selectStageNames = session.prepare(SELECT_STAGE_NAMES);
+        selectStageNames.setInt(1, groupId);
+        ResultSet resultSet = selectStageNames.executeQuery();
+        while (resultSet.next())
+          stageNames.add(resultSet.getString(1));
+        labels = YachtLabels.load(session, YachtLabels.SELECT_GROUP_LABELS, groupId);
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("writeGroup SQL error: " + exception.getMessage());
+      return false;
+    }
+    SeriesResult result = seriesScorer.scoreGroup(groupId);
+    if (result == null)
+      return false;
+    if (result.getStageCount() != stageNames.size()) { // etapas pridėtas ar pašalintas tarp užklausų
+      if (logger.isEnabledFor(Level.WARN))
+        logger.warn("Stages of group " + groupId + " changed while exporting");
+      return false;
+    }
+    if (format == JSON)
+      writeGroupJson(result, name, stageNames, labels);
+    else
+      writeGroupCsv(result, stageNames, labels);
+    return true;
+  }
+
+  private void writeStageCsv(StageResult result, YachtLabels labels) throws IOException {
+    writer.write("Vieta,BurėsNumeris,Pavadinimas,Modelis,Laikas,PerskaičiuotasLaikas,Taškai,Kodas\n");
+    for (int rank = 0; rank < result.size(); rank++) {
+      int yacht = labels.indexOf(result.getYachtId(rank));
+      if (result.getPlace(rank) > 0)
+        writer.write(result.getPlace(rank));
+      writer.write(',');
+      writer.writeCsv(labels.getSailNumber(yacht));
+      writer.write(',');
+      writer.writeCsv(labels.getName(yacht));
+      writer.write(',');
+      writer.writeCsv(labels.getYachtClass(yacht));
+      writer.write(',');
+      if (result.getElapsed(rank) != StageFinishes.NO_TIME)
+        writer.writeDuration(result.getElapsed(rank));
+      writer.write(',');
+      if (result.getCorrected(rank) != StageFinishes.NO_TIME)
+        writer.writeDuration(result.getCorrected(rank));
+      writer.write(',');
+      writer.writeDecimal(result.getPoints(rank));
+      writer.write(',');
+      writer.write(ResultCode.getName(result.getCode(rank)));
+      writer.write('\n');
+    }
+  }
+
+  private void writeStageJson(StageResult result, String name, YachtLabels labels) throws IOException {
+    writer.write("{\"stage\":");
+    writer.write(result.getStageId());
+    writer.write(",\"name\":");
+    writer.writeJson(name);
+    writer.write(",\"finishers\":");
+    writer.write(result.getFinishers());
+    writer.write(",\"results\":[");
+    for (int rank = 0; rank < result.size(); rank++) {
+      int yacht = labels.indexOf(result.getYachtId(rank));
+      writer.write(rank == 0 ? "\n{\"place\":" : ",\n{\"place\":");
+      if (result.getPlace(rank) > 0)
+        writer.write(result.getPlace(rank));
+      else
+        writer.write("null");
+      writer.write(",\"yacht\":");
+      writer.write(result.getYachtId(rank));
+      writeYachtJson(labels, yacht);
+      writer.write(",\"elapsed\":");
+      writeTimeJson(result.getElapsed(rank));
+      writer.write(",\"corrected\":");
+      writeTimeJson(result.getCorrected(rank));
+      writer.write(",\"points\":");
+      writer.writeDecimal(result.getPoints(rank));
+      writer.write(",\"code\":");
+      writer.writeJson(ResultCode.getName(result.getCode(rank)));
+      writer.write('}');
+    }
+    writer.write("]}\n");
+  }
+
+  private void writeGroupCsv(SeriesResult result, Vector<String> stageNames, YachtLabels labels) throws IOException {
+    writer.write("Vieta,BurėsNumeris,Pavadinimas,Modelis");
+    for (String stageName : stageNames) {
+      writer.write(',');
+      writer.writeCsv(stageName);
+    }
+    writer.write(",Iš viso\n");
+    for (int rank = 0; rank < result.size(); rank++) {
+      int yacht = labels.indexOf(result.getYachtId(rank));
+      writer.write(result.getPlace(rank));
+      writer.write(',');
+      writer.writeCsv(labels.getSailNumber(yacht));
+      writer.write(',');
+      writer.writeCsv(labels.getName(yacht));
+      writer.write(',');
+      writer.writeCsv(labels.getYachtClass(yacht));
+      for (int stage = 0; stage < result.getStageCount(); stage++) {
+        writer.write(',');
+        if (result.isDiscarded(rank, stage)) { // atmesti taškai – skliausteliuose
+          writer.write('(');
+          writer.writeDecimal(result.getPoints(rank, stage));
+          writer.write(')');
+        } else
+          writer.writeDecimal(result.getPoints(rank, stage));
+      }
+      writer.write(',');
+      writer.writeDecimal(result.getTotal(rank));
+      writer.write('\n');
+    }
+  }
+
+  private void writeGroupJson(SeriesResult result, String name, Vector<String> stageNames, YachtLabels labels) throws IOException {
+    writer.write("{\"group\":");
+    writer.write(result.getGroupId());
+    writer.write(",\"name\":");
+    writer.writeJson(name);
+    writer.write(",\"stages\":[");
+    for (int stage = 0; stage < result.getStageCount(); stage++) {
+      writer.write(stage == 0 ? "{\"stage\":" : ",{\"stage\":");
+      writer.write(result.getStageId(stage));
+      writer.write(",\"name\":");
+      writer.writeJson(stageNames.get(stage));
+      writer.write('}');
+    }
+    writer.write("],\"results\":[");
+    for (int rank = 0; rank < result.size(); rank++) {
+      int yacht = labels.indexOf(result.getYachtId(rank));
+      writer.write(rank == 0 ? "\n{\"place\":" : ",\n{\"place\":");
+      writer.write(result.getPlace(rank));
+      writer.write(",\"yacht\":");
+      writer.write(result.getYachtId(rank));
+      writeYachtJson(labels, yacht);
+      writer.write(",\"points\":[");
+      for (int stage = 0; stage < result.getStageCount(); stage++) {
+        if (stage > 0)
+          writer.write(',');
+        writer.writeDecimal(result.getPoints(rank, stage));
+      }
+      writer.write("],\"discarded\":[");
+      for (int stage = 0; stage < result.getStageCount(); stage++) {
+        if (stage > 0)
+          writer.write(',');
+        writer.write(result.isDiscarded(rank, stage) ? "true" : "false");
+      }
+      writer.write("],\"total\":");
+      writer.writeDecimal(result.getTotal(rank));
+      writer.write('}');
+    }
+    writer.write("]}\n");
+  }
+
+  private void writeYachtJson(YachtLabels labels, int yacht) throws IOException {
+    writer.write(",\"sailNumber\":");
+    writer.writeJson(labels.getSailNumber(yacht));
+    writer.write(",\"name\":");
+    writer.writeJson(labels.getName(yacht));
+    writer.write(",\"class\":");
+    writer.writeJson(labels.getYachtClass(yacht));
+  }
+
+  private void writeTimeJson(long milliseconds) throws IOException {
+    if (milliseconds == StageFinishes.NO_TIME)
+      writer.write("null");
+    else
+      writer.write(milliseconds);
+  }
+
+/**
+ * Įvykdo užklausą su vienu int parametru ir grąžina pirmo stulpelio reikšmę.
+ *
+ * @return reikšmė arba null, jei eilutės nėra
+ */
+  private static String selectName(Database.Session session, String select, int id) throws SQLException {
+    PreparedStatement selectName = session.prepare(select);
+    selectName.setInt(1, id);
+    ResultSet resultSet = selectName.executeQuery();
+    return resultSet.next() ? resultSet.getString(1) : null;
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Rezultatų lentelėse rodomi jachtų duomenys (burės numeris, pavadinimas,
+ * modelis), užklausti vienu kartu visam etapui ar grupei.
+ * Laikomi lygiagrečiuose masyvuose, surikiuotuose pagal jachtos ID.
+ */
+package rescore.export;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import rescore.Database;
+
+class YachtLabels {
+  static final String SELECT_STAGE_LABELS = "SELECT j.Id, j.BurėsNumeris, j.Pavadinimas, m.Pavadinimas FROM Plaukimai p JOIN Jachtos j ON j.Id = p.Jachta JOIN Modeliai m ON m.Id = j.Modelis WHERE p.Etapas = ? ORDER BY j.Id";
+  // grupės dalyviai ir jachtos, plaukusios jos etapuose (kaip SeriesScorer);
+  // išvestinė lentelė, nes H2 „Id IN (SELECT ...)“ vykdo kiekvienai eilutei
+  static final String SELECT_GROUP_LABELS = "SELECT j.Id, j.BurėsNumeris, j.Pavadinimas, m.Pavadinimas FROM (SELECT Jachta FROM Dalyviai WHERE Grupė = ? UNION SELECT p.Jachta FROM Plaukimai p JOIN Etapai e ON e.Id = p.Etapas WHERE e.Grupė = ?) d JOIN Jachtos j ON j.Id = d.Jachta JOIN Modeliai m ON m.Id = j.Modelis ORDER BY j.Id";
+  private int size = 0;
+  private int[] yachtIds = new int[64];
+  private String[] sailNumbers = new String[64];
+  private String[] names = new String[64];
+  private String[] yachtClasses = new String[64];
+
+/**
+ * Užklausia jachtų duomenų.
+ *
+ * @param session jungtis
+ * @param select  SELECT_STAGE_LABELS (parametras – etapo ID) arba
+ *                SELECT_GROUP_LABELS (abu parametrai – grupės ID)
+ * @param id      etapo arba grupės ID
+ */
+  static YachtLabels load(Database.Session session, String select, int id) throws SQLException {
+    YachtLabels labels = new YachtLabels();
+    PreparedStatement selectLabels = session.prepare(select);
+    for (int parameter = 1; parameter <= selectLabels.getParameterMetaData().getParameterCount(); parameter++)
+      selectLabels.setInt(parameter, id);
+    ResultSet resultSet = selectLabels.executeQuery();
+    while (resultSet.next()) {
+      if (labels.size == labels.yachtIds.length) {
+        int capacity = labels.size * 2;
+        labels.yachtIds = Arrays.copyOf(labels.yachtIds, capacity);
+        labels.sailNumbers = Arrays.copyOf(labels.sailNumbers, capacity);
+        labels.names = Arrays.copyOf(labels.names, capacity);
+        labels.yachtClasses = Arrays.copyOf(labels.yachtClasses, capacity);
+      }
+      labels.yachtIds[labels.size] = resultSet.getInt(1);
+      labels.sailNumbers[labels.size] = resultSet.getString(2);
+      labels.names[labels.size] = resultSet.getString(3);
+      labels.yachtClasses[labels.size] = resultSet.getString(4);
+      labels.size++;
+    }
+    return labels;
+  }
+
+/**
+ * Jachtos vieta masyvuose.
+ *
+ * @return indeksas arba -1, jei jachtos nėra
+ */
+  int indexOf(int yachtId) {
+    int index = Arrays.binarySearch(yachtIds, 0, size, yachtId);
+    return index >= 0 ? index : -1;
+  }
+
+  String getSailNumber(int index) {
+    return index < 0 ? null : sailNumbers[index];
+  }
+
+  String getName(int index) {
+    return index < 0 ? null : names[index];
+  }
+
+  String getYachtClass(int index) {
+    return index < 0 ? null : yachtClasses[index];
+  }
+}
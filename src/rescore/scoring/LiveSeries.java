@@ -0,0 +1,410 @@
+/**
+ * Nuolat atnaujinama grupės (lentelė Grupės) serijos įskaita – tie patys
+ * rezultatai kaip SeriesScorer: etapų taškų suma, atmetus discards
+ * blogiausių etapų, jachta, kurios etape nėra, gauna jachtų skaičių plius
+ * vieną (DNC), lygias sumas turinčios jachtos rikiuojamos pagal RRS A8, o
+ * neišsprendus lygybės – pagal ID. Klauso savo etapų (LiveStage)
+ * pranešimų ir perskaičiuoja tik pasikeitusių eilučių jachtų sumas,
+ * kiekvieną per O(log n); medyje raktas – suma, o lygias sumas turinčių
+ * jachtų tvarka (A8) apskaičiuojama, kai jos prireikia, ir laikoma iki
+ * kito pakeitimo. Atsiradus naujai jachtai, pasikeičia DNC taškai, todėl
+ * perskaičiuojamos visų jachtų, kurioms trūksta etapų, sumos.
+ */
+package rescore.scoring;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Vector;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import rescore.Database;
+
+public class LiveSeries implements Ranking, RankingListener {
+  private static Logger logger = Logger.getLogger(LiveSeries.class.getName());
+  private static final String SELECT_STAGE_IDS = "SELECT Id FROM Etapai WHERE Grupė = ? ORDER BY Id";
+  private static final String SELECT_ENTRANTS = "SELECT Jachta FROM Dalyviai WHERE Grupė = ?";
+  private final int groupId;
+  private final int discards;
+  private final Vector<LiveStage> stages = new Vector<LiveStage>(); // pagal ID
+  private final RankTree tree = new RankTree(64);
+  private final SlotMap slots = new SlotMap(16); // jachtos ID -> vieta masyvuose
+  private int[] yachtIds = new int[16];
+  private long[] totals = new long[16]; // dviguba taškų suma (taškai būna ir pusiniai)
+  private float[][] stagePoints = new float[16][]; // [jachta][etapas] – etapo taškai, NaN – jachtos etape nėra (DNC)
+  private int[] missing = new int[16]; // [jachta] – kiek etapų jachtos nėra
+  private int size = 0;
+  private int version = 0; // didinamas pasikeitus sumoms ar taškams
+  // paskutinė išrikiuota lygių sumų grupė (A8): eilutės tieFrom..tieFrom + ilgis - 1
+  private int tieVersion = -1, tieFrom;
+  private int[] tieSlots = new int[0], tiePlaces = new int[0];
+  private int changedFrom, changedTo; // eilutės, apie kurias dar nepranešta
+  private final Vector<RankingListener> listeners = new Vector<RankingListener>();
+
+/**
+ * Konstruktorius.
+ *
+ * @param groupId  grupės ID (0, jei duomenys ne iš duombazės)
+ * @param discards kiek blogiausių etapų atmesti
+ */
+  public LiveSeries(int groupId, int discards) {
+    this.groupId = groupId;
+    this.discards = discards;
+    resetChanged();
+  }
+
+/**
+ * Gauna grupės dalyvius ir visus etapus iš duombazės.
+ *
+ * @param groupId  grupės (lentelės Grupės) ID
+ * @param discards kiek blogiausių etapų atmesti
+ * @return serijos įskaita arba null, jei įvyko klaida
+ */
+  public static LiveSeries load(int groupId, int discards) {
+    Vector<Integer> stageIds = new Vector<Integer>();
+    LiveSeries series = new LiveSeries(groupId, discards);
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement selectEntrants = session.prepare(SELECT_ENTRANTS);
+        selectEntrants.setInt(1, groupId);
+        ResultSet resultSet = selectEntrants.executeQuery();
+        while (resultSet.next())
+          series.addEntrant(resultSet.getInt(1));
+        PreparedStatement selectStageIds = session.prepare(SELECT_STAGE_IDS);
+        selectStageIds.setInt(1, groupId);
+        resultSet = selectStageIds.executeQuery();
+        while (resultSet.next())
+          stageIds.add(resultSet.getInt(1));
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("load SQL error: " + exception.getMessage());
+      return null;
+    }
+    for (int stageId : stageIds) {
+      LiveStage stage = LiveStage.load(stageId);
+      if (stage == null)
+        return null;
+      series.addStage(stage);
+    }
+    return series;
+  }
+
+/**
+ * Įtraukia grupės dalyvį (jachtą, kurios etapuose gali nebūti).
+ */
+  public synchronized void addEntrant(int yachtId) {
+    if (slots.get(yachtId) >= 0)
+      return;
+    add(yachtId);
+    recomputeMissing();
+    fireChanged();
+  }
+
+/**
+ * Įtraukia etapą į seriją ir pradeda klausyti jo pranešimų. Etapai
+ * rikiuojami pagal ID (kaip SeriesScorer).
+ */
+  public void addStage(LiveStage stage) {
+    synchronized (stage) {
+      synchronized (this) {
+        int column = 0;
+        while (column < stages.size() && stages.get(column).getStageId() <= stage.getStageId())
+          column++;
+        stages.add(column, stage);
+        for (int slot = 0; slot < size; slot++) {
+          float[] points = new float[stages.size()];
+          System.arraycopy(stagePoints[slot], 0, points, 0, column);
+          points[column] = Float.NaN;
+          System.arraycopy(stagePoints[slot], column, points, column + 1, stages.size() - 1 - column);
+          stagePoints[slot] = points;
+          missing[slot]++;
+        }
+        stage.addListener(this);
+        apply(column, stage, 0, stage.size() - 1);
+        recomputeAll(); // nauji DNC taškai ir atmetamų etapų skaičius
+        fireChanged();
+      }
+    }
+  }
+
+/**
+ * Randa etapą pagal ID.
+ *
+ * @return etapas arba null, jei jo serijoje nėra
+ */
+  public synchronized LiveStage getStage(int stageId) {
+    for (LiveStage stage : stages)
+      if (stage.getStageId() == stageId)
+        return stage;
+    return null;
+  }
+
+/**
+ * Perskaičiuoja jachtų, kurių etapo eilutės pasikeitė, sumas.
+ */
+  public synchronized void rowsChanged(Ranking ranking, int fromRank, int toRank) {
+    int stage = stages.indexOf(ranking);
+    if (stage < 0)
+      return;
+    if (apply(stage, ranking, fromRank, toRank))
+      recomputeAll(); // pasikeitė DNC taškai
+    fireChanged();
+  }
+
+/**
+ * Įrašo etapo eilučių taškus. Jei jachtų skaičius nepasikeitė,
+ * perskaičiuoja pasikeitusias sumas.
+ *
+ * @return ar atsirado naujų jachtų (tada sumos neperskaičiuotos)
+ */
+  private boolean apply(int stage, Ranking ranking, int fromRank, int toRank) {
+    int oldSize = size;
+    for (int rank = fromRank; rank <= toRank; rank++) {
+      int yachtId = ranking.getYachtId(rank);
+      int slot = slots.get(yachtId);
+      if (slot < 0)
+        slot = add(yachtId);
+      float points = ranking.getPoints(rank);
+      float oldPoints = stagePoints[slot][stage];
+      if (points != oldPoints) {
+        if (Float.isNaN(oldPoints))
+          missing[slot]--;
+        stagePoints[slot][stage] = points;
+        if (size == oldSize)
+          setTotal(slot);
+      }
+    }
+    return size != oldSize;
+  }
+
+  private int add(int yachtId) {
+    if (size > StageScorer.INDEX_MASK)
+      throw new IllegalArgumentException("Too many yachts in a series: " + size);
+    if (size == yachtIds.length) {
+      int capacity = size * 2;
+      yachtIds = Arrays.copyOf(yachtIds, capacity);
+      totals = Arrays.copyOf(totals, capacity);
+      stagePoints = Arrays.copyOf(stagePoints, capacity);
+      missing = Arrays.copyOf(missing, capacity);
+    }
+    int slot = size++;
+    yachtIds[slot] = yachtId;
+    totals[slot] = 0;
+    stagePoints[slot] = new float[stages.size()];
+    Arrays.fill(stagePoints[slot], Float.NaN);
+    missing[slot] = stages.size();
+    slots.put(yachtId, slot);
+    tree.insert(key(slot));
+    version++;
+    changed(0, size - 1);
+    return slot;
+  }
+
+/**
+ * Perskaičiuoja visų jachtų sumas (pvz., pasikeitus etapų skaičiui).
+ */
+  private void recomputeAll() {
+    for (int slot = 0; slot < size; slot++)
+      setTotal(slot);
+  }
+
+/**
+ * Perskaičiuoja jachtų, kurioms trūksta etapų, sumas (pasikeitus DNC).
+ */
+  private void recomputeMissing() {
+    for (int slot = 0; slot < size; slot++)
+      if (missing[slot] > 0)
+        setTotal(slot);
+  }
+
+/**
+ * Perskaičiuoja jachtos sumą ir atnaujina medį. Net jei suma nepasikeitė,
+ * jos lygių sumų grupės tvarka (A8) galėjo pasikeisti.
+ */
+  private void setTotal(int slot) {
+    version++;
+    float[] points = points(slot);
+    long total = 0;
+    for (float kept : SeriesScorer.kept(points, SeriesScorer.discard(points, discardCount())))
+      total += Math.round(kept * 2);
+    long oldKey = key(slot);
+    int from = tieFrom(oldKey);
+    int to = tieTo(oldKey);
+    if (total != totals[slot]) {
+      tree.remove(oldKey);
+      totals[slot] = total;
+      long key = key(slot);
+      tree.insert(key);
+      from = Math.min(from, tieFrom(key));
+      to = Math.max(to, tieTo(key));
+    }
+    changed(from, to);
+  }
+
+/**
+ * Jachtos etapų taškai; etapuose, kuriuose jachtos nėra, – DNC.
+ */
+  private float[] points(int slot) {
+    float[] points = stagePoints[slot].clone();
+    if (missing[slot] > 0)
+      for (int stage = 0; stage < points.length; stage++)
+        if (Float.isNaN(points[stage]))
+          points[stage] = size + 1;
+    return points;
+  }
+
+  private int discardCount() {
+    return Math.max(0, Math.min(discards, stages.size() - 1));
+  }
+
+  private long key(int slot) {
+    return totals[slot] << StageScorer.INDEX_BITS | slot;
+  }
+
+  private int tieFrom(long key) {
+    return tree.rank(key >>> StageScorer.INDEX_BITS << StageScorer.INDEX_BITS);
+  }
+
+  private int tieTo(long key) {
+    return tree.rank((key >>> StageScorer.INDEX_BITS) + 1 << StageScorer.INDEX_BITS) - 1;
+  }
+
+/**
+ * Ar kitos jachtos turi tokią pačią sumą.
+ */
+  private boolean isTied(long key) {
+    return tieTo(key) > tieFrom(key);
+  }
+
+/**
+ * Išrikiuoja lygių sumų grupę, kurioje yra eilutė rank (A8, po to – ID),
+ * ir apskaičiuoja jos vietas, jei jos nėra tieSlots.
+ *
+ * @return pirmoji grupės eilutė
+ */
+  private int resolveTie(int rank) {
+    if (tieVersion == version && rank >= tieFrom && rank < tieFrom + tieSlots.length)
+      return tieFrom;
+    long key = tree.select(rank);
+    int from = tieFrom(key), count = tieTo(key) - from + 1;
+    Integer[] order = new Integer[count];
+    final float[][] points = new float[count][];
+    final float[][] kept = new float[count][];
+    final int[] ids = new int[count];
+    int[] slotsByOrder = new int[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+      slotsByOrder[i] = (int)(tree.select(from + i) & StageScorer.INDEX_MASK);
+      points[i] = points(slotsByOrder[i]);
+      kept[i] = SeriesScorer.kept(points[i], SeriesScorer.discard(points[i], discardCount()));
+      ids[i] = yachtIds[slotsByOrder[i]];
+    }
+    Comparator<Integer> tieBreak = new Comparator<Integer>() {
+      public int compare(Integer first, Integer second) {
+        return SeriesScorer.compareTied(kept[first], points[first], kept[second], points[second]);
+      }
+    };
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer first, Integer second) {
+        int comparison = SeriesScorer.compareTied(kept[first], points[first], kept[second], points[second]);
+        return comparison != 0 ? comparison : ids[first] < ids[second] ? -1 : ids[first] == ids[second] ? 0 : 1;
+      }
+    });
+    tieSlots = new int[count];
+    tiePlaces = new int[count];
+    for (int i = 0; i < count; i++) {
+      tieSlots[i] = slotsByOrder[order[i]];
+      tiePlaces[i] = i > 0 && tieBreak.compare(order[i - 1], order[i]) == 0 ? tiePlaces[i - 1] : from + i + 1;
+    }
+    tieFrom = from;
+    tieVersion = version;
+    return from;
+  }
+
+  private void changed(int fromRank, int toRank) {
+    changedFrom = Math.min(changedFrom, fromRank);
+    changedTo = Math.max(changedTo, toRank);
+  }
+
+  private void resetChanged() {
+    changedFrom = Integer.MAX_VALUE;
+    changedTo = -1;
+  }
+
+/**
+ * Praneša klausytojams apie eilutes, pakeistas nuo paskutinio pranešimo.
+ */
+  private void fireChanged() {
+    int fromRank = changedFrom, toRank = Math.min(changedTo, size - 1);
+    resetChanged();
+    if (fromRank <= toRank)
+      for (RankingListener listener : listeners)
+        listener.rowsChanged(this, fromRank, toRank);
+  }
+
+  public void addListener(RankingListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(RankingListener listener) {
+    listeners.remove(listener);
+  }
+
+  public int getGroupId() {
+    return groupId;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized int getYachtId(int rank) {
+    long key = tree.select(rank);
+    if (!isTied(key))
+      return yachtIds[(int)(key & StageScorer.INDEX_MASK)];
+    int from = resolveTie(rank);
+    return yachtIds[tieSlots[rank - from]];
+  }
+
+  public synchronized int getPlace(int rank) {
+    if (!isTied(tree.select(rank)))
+      return rank + 1;
+    int from = resolveTie(rank);
+    return tiePlaces[rank - from];
+  }
+
+/**
+ * Taškų suma be atmestų etapų.
+ *
+ * @param rank eilutės numeris (nuo 0)
+ */
+  public synchronized float getPoints(int rank) {
+    return (tree.select(rank) >>> StageScorer.INDEX_BITS) / 2f;
+  }
+
+/**
+ * Randa jachtos eilutę.
+ *
+ * @param yachtId jachtos ID
+ * @return eilutės numeris arba -1, jei jachtos serijoje nėra
+ */
+  public synchronized int indexOf(int yachtId) {
+    int slot = slots.get(yachtId);
+    if (slot < 0)
+      return -1;
+    int rank = tree.rank(key(slot));
+    if (!isTied(key(slot)))
+      return rank;
+    int from = resolveTie(rank);
+    for (int i = 0; i < tieSlots.length; i++)
+      if (tieSlots[i] == slot)
+        return from + i;
+    return -1;
+  }
+}
@@ -0,0 +1,264 @@
+/**
+ * Nuolat atnaujinami etapo rezultatai (pvz., rezultatų lentai regatos metu).
+ * Įrašius ar pataisius vieną plaukimą, rezultatai atnaujinami per O(log n),
+ * nes raktai (kaip StageScorer) laikomi medyje su eilės statistika, o vieta
+ * ir taškai apskaičiuojami iš rakto eilės numerio. Klausytojams (addListener())
+ * pranešama tik apie eilutes, kurios pasikeitė.
+ */
+package rescore.scoring;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Vector;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import rescore.Database;
+import rescore.RatingTable;
+
+public class LiveStage implements Ranking {
+  private static Logger logger = Logger.getLogger(LiveStage.class.getName());
+  private static final String MERGE_FINISH = "MERGE INTO Plaukimai (Jachta, Etapas, StartoLaikas, FinišoLaikas, Kodas) KEY (Jachta, Etapas) VALUES (?, ?, ?, ?, ?)";
+  private static final String SELECT_YACHT_CLASS_ID = "SELECT Modelis FROM Jachtos WHERE Id = ?";
+  private final int stageId;
+  private final RankTree tree;
+  private final SlotMap slots; // jachtos ID -> vieta masyvuose
+  private int[] yachtIds;
+  private long[] keys; // dabartinis kiekvienos jachtos raktas medyje
+  private int size = 0;
+  private final Vector<RankingListener> listeners = new Vector<RankingListener>();
+
+/**
+ * Konstruktorius.
+ *
+ * @param stageId  etapo ID (0, jei duomenys ne iš duombazės)
+ * @param capacity kiek jachtų numatoma
+ */
+  public LiveStage(int stageId, int capacity) {
+    this.stageId = stageId;
+    capacity = Math.max(capacity, 16);
+    tree = new RankTree(capacity);
+    slots = new SlotMap(capacity);
+    yachtIds = new int[capacity];
+    keys = new long[capacity];
+  }
+
+/**
+ * Gauna etapo plaukimus iš duombazės.
+ *
+ * @param stageId etapo (lentelės Etapai) ID
+ * @return etapo rezultatai arba null, jei įvyko klaida
+ */
+  public static LiveStage load(int stageId) {
+    StageFinishes finishes = StageFinishes.load(stageId);
+    if (finishes == null)
+      return null;
+    LiveStage stage = new LiveStage(stageId, finishes.size());
+    for (int index = 0; index < finishes.size(); index++)
+      stage.put(finishes.getYachtId(index), finishes.getElapsed(index), finishes.getCoefficient(index), finishes.getCode(index));
+    return stage;
+  }
+
+/**
+ * Įrašo (arba pataiso) jachtos plaukimą duombazėje ir atnaujina rezultatus.
+ * Įrašymas ir atnaujinimas atmintyje vykdomi laikant šio objekto užraktą,
+ * todėl lygiagretūs to paties etapo taisymai atmintyje pritaikomi ta pačia
+ * tvarka kaip duombazėje. Jungtis turi būti automatinio patvirtinimo
+ * režimu: rezultatai atnaujinami tik patvirtinus įrašą, o išorinės
+ * transakcijos atšaukimo jie nematytų.
+ *
+ * @param yachtId jachtos ID
+ * @param start   starto laikas arba null
+ * @param finish  finišo laikas arba null
+ * @param code    rezultato kodas (ResultCode)
+ * @return ar pavyko
+ */
+  public boolean recordFinish(int yachtId, Timestamp start, Timestamp finish, int code) {
+    RatingTable ratings = RatingTable.get();
+    if (ratings == null)
+      return false;
+    long time = start == null || finish == null ? StageFinishes.NO_TIME : finish.getTime() - start.getTime();
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        if (!session.getConnection().getAutoCommit()) {
+          if (logger.isEnabledFor(Level.ERROR))
+            logger.error("recordFinish called inside a transaction");
+          return false;
+        }
+        PreparedStatement selectYachtClassId = session.prepare(SELECT_YACHT_CLASS_ID);
+        selectYachtClassId.setInt(1, yachtId);
+        ResultSet resultSet = selectYachtClassId.executeQuery();
+        if (!resultSet.next()) {
+          if (logger.isEnabledFor(Level.WARN))
+            logger.warn("recordFinish: yacht " + yachtId + " not found");
+          return false;
+        }
+        float coefficient = ratings.getCoefficient(resultSet.getInt(1), 1); // nežinomas koeficientas – 1
+        PreparedStatement mergeFinish = session.prepare(MERGE_FINISH);
+        mergeFinish.setInt(1, yachtId);
+        mergeFinish.setInt(2, stageId);
+        mergeFinish.setTimestamp(3, start);
+        mergeFinish.setTimestamp(4, finish);
+        if (code == ResultCode.FINISHED)
+          mergeFinish.setNull(5, Types.INTEGER);
+        else
+          mergeFinish.setInt(5, code);
+        synchronized (this) {
+          mergeFinish.executeUpdate(); // automatinis patvirtinimas
+          update(yachtId, time, coefficient, code);
+        }
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("recordFinish SQL error: " + exception.getMessage());
+      return false;
+    }
+    return true;
+  }
+
+/**
+ * Atnaujina jachtos plaukimą (tik atmintyje) ir praneša klausytojams.
+ * Jei jachtos rezultatuose dar nėra, ji pridedama.
+ *
+ * @param yachtId     jachtos ID
+ * @param time        plaukimo trukmė milisekundėmis arba StageFinishes.NO_TIME
+ * @param coefficient jachtos modelio koeficientas
+ * @param code        rezultato kodas (ResultCode)
+ */
+  public synchronized void update(int yachtId, long time, float coefficient, int code) {
+    int slot = slots.get(yachtId);
+    int from, to;
+    if (slot < 0) {
+      long key = put(yachtId, time, coefficient, code);
+      // visos žemiau esančios eilutės pasislinko, o nefinišavusių taškai
+      // priklauso nuo dalyvių skaičiaus
+      from = Math.min(tieFrom(key), tree.rank(StageScorer.NOT_FINISHED << StageScorer.INDEX_BITS));
+      to = size - 1;
+    } else {
+      long oldKey = keys[slot];
+      long key = StageScorer.sortKey(time, coefficient, code, slot);
+      if (key == oldKey)
+        return;
+      // pasikeičia eilutės tarp senos ir naujos vietos bei abiejų lygių
+      // laikų grupės (jų taškai vidurkinami)
+      from = tieFrom(oldKey);
+      to = tieTo(oldKey);
+      tree.remove(oldKey);
+      tree.insert(key);
+      keys[slot] = key;
+      from = Math.min(from, tieFrom(key));
+      to = Math.max(to, tieTo(key));
+    }
+    fireRowsChanged(from, to);
+  }
+
+  private long put(int yachtId, long time, float coefficient, int code) {
+    if (size > StageScorer.INDEX_MASK)
+      throw new IllegalArgumentException("Too many yachts in a stage: " + size);
+    if (size == yachtIds.length) {
+      int capacity = size * 2;
+      yachtIds = Arrays.copyOf(yachtIds, capacity);
+      keys = Arrays.copyOf(keys, capacity);
+    }
+    long key = StageScorer.sortKey(time, coefficient, code, size);
+    yachtIds[size] = yachtId;
+    keys[size] = key;
+    slots.put(yachtId, size);
+    tree.insert(key);
+    size++;
+    return key;
+  }
+
+/**
+ * Pirmoji eilutė su tuo pačiu perskaičiuotu laiku kaip key.
+ * Nefinišavusios jachtos grupių nesudaro.
+ */
+  private int tieFrom(long key) {
+    long time = key >>> StageScorer.INDEX_BITS;
+    if (time >= StageScorer.NOT_FINISHED)
+      return tree.rank(key);
+    return tree.rank(time << StageScorer.INDEX_BITS);
+  }
+
+/**
+ * Paskutinė eilutė su tuo pačiu perskaičiuotu laiku kaip key.
+ */
+  private int tieTo(long key) {
+    long time = key >>> StageScorer.INDEX_BITS;
+    if (time >= StageScorer.NOT_FINISHED)
+      return tree.rank(key);
+    return tree.rank(time + 1 << StageScorer.INDEX_BITS) - 1;
+  }
+
+  private void fireRowsChanged(int fromRank, int toRank) {
+    for (RankingListener listener : listeners)
+      listener.rowsChanged(this, fromRank, toRank);
+  }
+
+  public void addListener(RankingListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(RankingListener listener) {
+    listeners.remove(listener);
+  }
+
+  public int getStageId() {
+    return stageId;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized int getYachtId(int rank) {
+    return yachtIds[(int)(tree.select(rank) & StageScorer.INDEX_MASK)];
+  }
+
+/**
+ * Perskaičiuota trukmė.
+ *
+ * @param rank eilutės numeris (nuo 0)
+ * @return trukmė milisekundėmis arba StageFinishes.NO_TIME, jei jachta nefinišavo
+ */
+  public synchronized long getCorrected(int rank) {
+    long time = tree.select(rank) >>> StageScorer.INDEX_BITS;
+    return time < StageScorer.NOT_FINISHED ? time : StageFinishes.NO_TIME;
+  }
+
+  public synchronized int getCode(int rank) {
+    long time = tree.select(rank) >>> StageScorer.INDEX_BITS;
+    return time < StageScorer.NOT_FINISHED ? ResultCode.FINISHED : (int)(time - StageScorer.NOT_FINISHED);
+  }
+
+  public synchronized int getPlace(int rank) {
+    long key = tree.select(rank);
+    if (key >>> StageScorer.INDEX_BITS >= StageScorer.NOT_FINISHED)
+      return 0;
+    return tieFrom(key) + 1;
+  }
+
+  public synchronized float getPoints(int rank) {
+    long key = tree.select(rank);
+    if (key >>> StageScorer.INDEX_BITS >= StageScorer.NOT_FINISHED)
+      return size + 1;
+    return (tieFrom(key) + 1 + tieTo(key) + 1) / 2f;
+  }
+
+/**
+ * Randa jachtos eilutę.
+ *
+ * @param yachtId jachtos ID
+ * @return eilutės numeris arba -1, jei jachtos rezultatuose nėra
+ */
+  public synchronized int indexOf(int yachtId) {
+    int slot = slots.get(yachtId);
+    return slot < 0 ? -1 : tree.rank(keys[slot]);
+  }
+}
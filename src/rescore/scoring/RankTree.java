@@ -0,0 +1,163 @@
+/**
+ * Surikiuota skirtingų long raktų aibė su eilės statistika (treap).
+ * Įterpimas, šalinimas, rakto eilės numerio (rank()) ir raktų pagal eilės
+ * numerį (select()) paieška – vidutiniškai O(log n). Mazgai laikomi
+ * primityvių tipų masyvuose, todėl operacijos nekuria objektų.
+ */
+package rescore.scoring;
+
+import java.util.Arrays;
+
+class RankTree {
+  private static final int NIL = 0; // mazgas 0 – tuščias medis
+  private long[] keys;
+  private int[] priorities, left, right, sizes;
+  private int root = NIL;
+  private int usedNodes = 1;
+  private int freeNode = NIL; // atlaisvintų mazgų sąrašas (per right)
+  private int seed = 0x2545F491;
+  private int splitLeft, splitRight; // split() rezultatas
+
+  RankTree(int capacity) {
+    capacity = Math.max(capacity, 16) + 1;
+    keys = new long[capacity];
+    priorities = new int[capacity];
+    left = new int[capacity];
+    right = new int[capacity];
+    sizes = new int[capacity];
+  }
+
+  int size() {
+    return sizes[root];
+  }
+
+/**
+ * Įterpia raktą (jo aibėje dar neturi būti).
+ */
+  void insert(long key) {
+    int node = newNode(key);
+    split(root, key);
+    int greater = splitRight;
+    root = merge(merge(splitLeft, node), greater);
+  }
+
+/**
+ * Pašalina raktą.
+ *
+ * @return true, jei raktas buvo aibėje
+ */
+  boolean remove(long key) {
+    split(root, key);
+    int less = splitLeft;
+    split(splitRight, key + 1);
+    int found = splitLeft;
+    root = merge(less, splitRight);
+    if (found == NIL)
+      return false;
+    right[found] = freeNode;
+    freeNode = found;
+    return true;
+  }
+
+/**
+ * Kiek aibėje yra raktų, mažesnių už duotą.
+ */
+  int rank(long key) {
+    int rank = 0;
+    for (int node = root; node != NIL; ) {
+      if (keys[node] < key) {
+        rank += sizes[left[node]] + 1;
+        node = right[node];
+      } else {
+        node = left[node];
+      }
+    }
+    return rank;
+  }
+
+/**
+ * Raktas, kurio eilės numeris (nuo 0) yra rank.
+ */
+  long select(int rank) {
+    int node = root;
+    while (true) {
+      int leftSize = sizes[left[node]];
+      if (rank < leftSize) {
+        node = left[node];
+      } else if (rank == leftSize) {
+        return keys[node];
+      } else {
+        rank -= leftSize + 1;
+        node = right[node];
+      }
+    }
+  }
+
+  private int newNode(long key) {
+    int node;
+    if (freeNode != NIL) {
+      node = freeNode;
+      freeNode = right[node];
+    } else {
+      if (usedNodes == keys.length) {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+      }
+      node = usedNodes++;
+    }
+    // xorshift – pakanka atsitiktinumo medžio pusiausvyrai
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+    seed ^= seed << 5;
+    keys[node] = key;
+    priorities[node] = seed;
+    left[node] = right[node] = NIL;
+    sizes[node] = 1;
+    return node;
+  }
+
+/**
+ * Padalina medį į raktus, mažesnius už key (splitLeft), ir kitus (splitRight).
+ */
+  private void split(int node, long key) {
+    if (node == NIL) {
+      splitLeft = splitRight = NIL;
+    } else if (keys[node] < key) {
+      split(right[node], key);
+      right[node] = splitLeft;
+      update(node);
+      splitLeft = node;
+    } else {
+      split(left[node], key);
+      left[node] = splitRight;
+      update(node);
+      splitRight = node;
+    }
+  }
+
+/**
+ * Sujungia du medžius; visi first raktai mažesni už second raktus.
+ */
+  private int merge(int first, int second) {
+    if (first == NIL)
+      return second;
+    if (second == NIL)
+      return first;
+    if (priorities[first] > priorities[second]) {
+      right[first] = merge(right[first], second);
+      update(first);
+      return first;
+    }
+    left[second] = merge(first, left[second]);
+    update(second);
+    return second;
+  }
+
+  private void update(int node) {
+    sizes[node] = sizes[left[node]] + sizes[right[node]] + 1;
+  }
+}
@@ -0,0 +1,24 @@
+/**
+ * Surikiuoti rezultatai, kuriuos galima skaityti eilutėmis.
+ * Eilutės numeruojamos nuo 0 pagal užimtą vietą.
+ */
+package rescore.scoring;
+
+public interface Ranking {
+/**
+ * Kiek eilučių yra rezultatuose.
+ */
+  int size();
+
+  int getYachtId(int rank);
+
+/**
+ * Užimta vieta.
+ *
+ * @param rank eilutės numeris (nuo 0)
+ * @return vieta (nuo 1) arba 0, jei jachta neturi vietos (nefinišavo)
+ */
+  int getPlace(int rank);
+
+  float getPoints(int rank);
+}
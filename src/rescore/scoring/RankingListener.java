@@ -0,0 +1,17 @@
+/**
+ * Gauna pranešimus apie pasikeitusias rezultatų eilutes.
+ */
+package rescore.scoring;
+
+public interface RankingListener {
+/**
+ * Iškviečiama pasikeitus rezultatams. Pasikeisti galėjo tik eilutės nuo
+ * fromRank iki toRank imtinai (jachta, vieta ar taškai); kitos liko tokios pat.
+ * Kviečiama laikant ranking užraktą, todėl rezultatus galima skaityti iškart.
+ *
+ * @param ranking rezultatai
+ * @param fromRank pirmoji pasikeitusi eilutė
+ * @param toRank   paskutinė pasikeitusi eilutė
+ */
+  void rowsChanged(Ranking ranking, int fromRank, int toRank);
+}
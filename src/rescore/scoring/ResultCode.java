@@ -0,0 +1,51 @@
+/**
+ * Plaukimo rezultato kodai (lentelės Plaukimai stulpelis Kodas).
+ * Visos jachtos su ne FINISHED kodu gauna tiek taškų, kiek etape dalyvavo
+ * jachtų, plius vieną (mažiausių taškų sistema).
+ */
+package rescore.scoring;
+
+public final class ResultCode {
+  public static final int FINISHED = 0; // finišavo (Kodas NULL arba 0)
+  public static final int DNS = 1; // nestartavo
+  public static final int DNF = 2; // nefinišavo
+  public static final int RET = 3; // pasitraukė
+  public static final int OCS = 4; // startavo per anksti
+  public static final int DSQ = 5; // diskvalifikuota
+  public static final int DNC = 6; // neatvyko į startą
+  private static final String[] NAMES = {"", "DNS", "DNF", "RET", "OCS", "DSQ", "DNC"};
+
+  private ResultCode() {
+  }
+
+/**
+ * Kodo santrumpa rezultatų lentelėms.
+ *
+ * @param code kodas
+ * @return santrumpa (FINISHED – tuščia eilutė), arba kodo skaičius, jei kodas
+ *         nežinomas
+ */
+  public static String getName(int code) {
+    if (code >= 0 && code < NAMES.length)
+      return NAMES[code];
+    return Integer.toString(code);
+  }
+
+/**
+ * Kodas pagal santrumpą (getName() atvirkštinė funkcija).
+ *
+ * @param name santrumpa (tuščia eilutė – FINISHED) arba kodo skaičius
+ * @return kodas arba -1, jei santrumpa nežinoma
+ */
+  public static int getCode(String name) {
+    name = name.trim();
+    for (int code = 0; code < NAMES.length; code++)
+      if (NAMES[code].equalsIgnoreCase(name))
+        return code;
+    try {
+      return Math.max(Integer.parseInt(name), -1);
+    } catch (NumberFormatException exception) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * Grupės serijos įskaitos rezultatai.
+ * Eilutės surikiuotos pagal užimtą vietą (mažiausia taškų suma be atmestų
+ * etapų – pirma), stulpeliai – grupės etapai pagal jų ID.
+ */
+package rescore.scoring;
+
+public class SeriesResult {
+  private final int groupId;
+  private final int[] stageIds;
+  private final int size;
+  final int[] yachtIds;
+  final float[][] stagePoints; // [eilutė][etapas] – etapo taškai
+  final boolean[][] discarded; // [eilutė][etapas] – ar etapas atmestas
+  final float[] totals; // taškų suma be atmestų etapų
+  final int[] places; // vieta (nuo 1); neišsprendus lygybės – ta pati
+
+  SeriesResult(int groupId, int[] stageIds, int size) {
+    this.groupId = groupId;
+    this.stageIds = stageIds;
+    this.size = size;
+    yachtIds = new int[size];
+    stagePoints = new float[size][stageIds.length];
+    discarded = new boolean[size][stageIds.length];
+    totals = new float[size];
+    places = new int[size];
+  }
+
+  public int getGroupId() {
+    return groupId;
+  }
+
+/**
+ * Kiek jachtų (eilučių) yra rezultatuose.
+ */
+  public int size() {
+    return size;
+  }
+
+/**
+ * Kiek etapų (stulpelių) yra rezultatuose.
+ */
+  public int getStageCount() {
+    return stageIds.length;
+  }
+
+  public int getStageId(int stage) {
+    return stageIds[stage];
+  }
+
+  public int getYachtId(int rank) {
+    return yachtIds[rank];
+  }
+
+/**
+ * Jachtos taškai etape.
+ *
+ * @param rank  eilutės numeris (nuo 0)
+ * @param stage stulpelio numeris (nuo 0)
+ */
+  public float getPoints(int rank, int stage) {
+    return stagePoints[rank][stage];
+  }
+
+  public boolean isDiscarded(int rank, int stage) {
+    return discarded[rank][stage];
+  }
+
+  public float getTotal(int rank) {
+    return totals[rank];
+  }
+
+  public int getPlace(int rank) {
+    return places[rank];
+  }
+
+/**
+ * Randa jachtos eilutę.
+ *
+ * @param yachtId jachtos ID
+ * @return eilutės numeris arba -1, jei jachtos rezultatuose nėra
+ */
+  public int indexOf(int yachtId) {
+    for (int rank = 0; rank < size; rank++)
+      if (yachtIds[rank] == yachtId)
+        return rank;
+    return -1;
+  }
+}
@@ -0,0 +1,380 @@
+/**
+ * Serijos įskaitos skaičiavimas.
+ * Regatos grupės ir grupių etapai vienas nuo kito nepriklauso, todėl jie
+ * skaičiuojami lygiagrečiai (ForkJoinPool), o etapų rezultatai sujungiami į
+ * grupės serijos taškus. Regata užklausiama visa iš karto
+ * (Regatta.get(id, true) – pastovus užklausų skaičius), o atskira grupė –
+ * po užklausą kiekvienam etapui (etapai užkraunami lygiagrečiai).
+ * Rezultatai nepriklauso nuo gijų skaičiaus ir vykdymo tvarkos: etapai
+ * visada jungiami pagal ID, jachtos – pagal ID.
+ *
+ * Serijos taškai – etapų taškų suma, atmetus discards blogiausių etapų
+ * (bet visada paliekant bent vieną). Jachta, kurios etape nėra, gauna tiek
+ * taškų, kiek grupėje yra jachtų, plius vieną (DNC). Lygias sumas turinčios
+ * jachtos rikiuojamos pagal RRS A8: pirmiausia pagal geriausius neatmestus
+ * etapų rezultatus, po to – pagal paskutinio (priešpaskutinio ir t. t.)
+ * etapo taškus; jei ir tada lygu, vieta ta pati, o eilės tvarka – pagal ID.
+ */
+package rescore.scoring;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import rescore.Database;
+import rescore.Entry;
+import rescore.Group;
+import rescore.Regatta;
+import rescore.Stage;
+
+public class SeriesScorer {
+  private static Logger logger = Logger.getLogger(SeriesScorer.class.getName());
+  private static final String SELECT_STAGE_IDS = "SELECT Id FROM Etapai WHERE Grupė = ? ORDER BY Id";
+  private static final String SELECT_ENTRANTS = "SELECT Jachta FROM Dalyviai WHERE Grupė = ?";
+  private static final ThreadLocal<StageScorer> stageScorers = new ThreadLocal<StageScorer>() {
+    protected StageScorer initialValue() {
+      return new StageScorer();
+    }
+  }; // StageScorer naudojamas tik vienos gijos
+  private final ForkJoinPool pool;
+  private final int discards;
+
+/**
+ * Konstruktorius.
+ *
+ * @param pool     gijos, kuriose skaičiuojama
+ * @param discards kiek blogiausių etapų atmesti
+ */
+  public SeriesScorer(ForkJoinPool pool, int discards) {
+    this.pool = pool;
+    this.discards = discards;
+  }
+
+/**
+ * Apskaičiuoja visų regatos grupių serijų rezultatus.
+ *
+ * @param regattaId regatos (lentelės Regatos) ID
+ * @return grupių rezultatai pagal grupės ID arba null, jei regatos nėra arba
+ *         įvyko klaida
+ */
+  public Vector<SeriesResult> scoreRegatta(int regattaId) {
+    return scoreRegattas(new int[] {regattaId});
+  }
+
+/**
+ * Apskaičiuoja kelių regatų (pvz., viso sezono) grupių serijų rezultatus.
+ * Kiekviena regata užklausiama Regatta.get(id, true).
+ *
+ * @param regattaIds regatų ID
+ * @return grupių rezultatai (regatų tvarka, regatos viduje – pagal grupės ID)
+ *         arba null, jei kurios nors regatos nėra arba įvyko klaida
+ */
+  public Vector<SeriesResult> scoreRegattas(int[] regattaIds) {
+    Vector<GroupTask> tasks = new Vector<GroupTask>();
+    for (int regattaId : regattaIds) {
+      Regatta regatta = Regatta.get(regattaId, true);
+      if (regatta == null || !addGroupTasks(tasks, regatta))
+        return null;
+    }
+    return invokeGroups(tasks);
+  }
+
+/**
+ * Apskaičiuoja regatos grupių serijų rezultatus iš jau užklaustų regatos
+ * duomenų (Regatta.get(id, true) – tada į duombazę nesikreipiama).
+ *
+ * @param regatta regata
+ * @return grupių rezultatai pagal grupės ID arba null, jei įvyko klaida
+ */
+  public Vector<SeriesResult> score(Regatta regatta) {
+    Vector<GroupTask> tasks = new Vector<GroupTask>();
+    if (!addGroupTasks(tasks, regatta))
+      return null;
+    return invokeGroups(tasks);
+  }
+
+  private boolean addGroupTasks(Vector<GroupTask> tasks, Regatta regatta) {
+    List<Group> groups = regatta.getGroups();
+    if (groups == null)
+      return false;
+    for (Group group : groups) {
+      List<Stage> stages = group.getStages();
+      List<Entry> entries = group.getEntries();
+      if (stages == null || entries == null)
+        return false;
+      StageFinishes[] finishes = new StageFinishes[stages.size()];
+      for (int stage = 0; stage < finishes.length; stage++) {
+        finishes[stage] = StageFinishes.from(stages.get(stage));
+        if (finishes[stage] == null)
+          return false;
+      }
+      int[] entrants = new int[entries.size()];
+      for (int entry = 0; entry < entrants.length; entry++)
+        entrants[entry] = entries.get(entry).getYachtId();
+      tasks.add(new GroupTask(group.getId(), finishes, entrants));
+    }
+    return true;
+  }
+
+/**
+ * Apskaičiuoja grupės serijos rezultatus.
+ *
+ * @param groupId grupės (lentelės Grupės) ID
+ * @return rezultatai arba null, jei įvyko klaida
+ */
+  public SeriesResult scoreGroup(int groupId) {
+    return pool.invoke(new GroupTask(groupId, null, null));
+  }
+
+/**
+ * Apskaičiuoja serijų rezultatus iš jau turimų etapų duomenų.
+ *
+ * @param groupIds grupių ID
+ * @param stages   kiekvienos grupės etapai (stages[i] – groupIds[i] grupės)
+ * @return grupių rezultatai ta pačia tvarka kaip groupIds
+ */
+  public Vector<SeriesResult> score(int[] groupIds, StageFinishes[][] stages) {
+    Vector<GroupTask> tasks = new Vector<GroupTask>();
+    for (int group = 0; group < groupIds.length; group++)
+      tasks.add(new GroupTask(groupIds[group], stages[group], new int[0]));
+    return invokeGroups(tasks);
+  }
+
+  private Vector<SeriesResult> invokeGroups(final Vector<GroupTask> tasks) {
+    return pool.invoke(new RecursiveTask<Vector<SeriesResult>>() {
+      protected Vector<SeriesResult> compute() {
+        invokeAll(tasks);
+        Vector<SeriesResult> results = new Vector<SeriesResult>();
+        for (GroupTask task : tasks) {
+          SeriesResult result = task.join();
+          if (result == null)
+            return null;
+          results.add(result);
+        }
+        return results;
+      }
+    });
+  }
+
+/**
+ * Grupės skaičiavimas: etapai skaičiuojami lygiagrečiai, po to sujungiami.
+ */
+  private class GroupTask extends RecursiveTask<SeriesResult> {
+    private static final long serialVersionUID = 1L; // ForkJoinTask serializuojamas, bet užduotys niekur nesaugomos
+    private final int groupId;
+    private StageFinishes[] stages; // null – užkrauti iš duombazės
+    private int[] entrants; // null – užkrauti iš duombazės
+
+    GroupTask(int groupId, StageFinishes[] stages, int[] entrants) {
+      this.groupId = groupId;
+      this.stages = stages;
+      this.entrants = entrants;
+    }
+
+    protected SeriesResult compute() {
+      Vector<StageTask> tasks = new Vector<StageTask>();
+      if (stages == null) {
+        int[] stageIds = selectIds(SELECT_STAGE_IDS, groupId);
+        entrants = selectIds(SELECT_ENTRANTS, groupId);
+        if (stageIds == null || entrants == null)
+          return null;
+        for (int stageId : stageIds)
+          tasks.add(new StageTask(stageId, null));
+      } else {
+        for (StageFinishes finishes : stages)
+          tasks.add(new StageTask(finishes.getStageId(), finishes));
+      }
+      invokeAll(tasks);
+      StageResult[] results = new StageResult[tasks.size()];
+      for (int stage = 0; stage < results.length; stage++) {
+        results[stage] = tasks.get(stage).join();
+        if (results[stage] == null)
+          return null;
+      }
+      return reduce(groupId, results, entrants, discards);
+    }
+  }
+
+  private static class StageTask extends RecursiveTask<StageResult> {
+    private static final long serialVersionUID = 1L;
+    private final int stageId;
+    private StageFinishes finishes; // null – užkrauti iš duombazės
+
+    StageTask(int stageId, StageFinishes finishes) {
+      this.stageId = stageId;
+      this.finishes = finishes;
+    }
+
+    protected StageResult compute() {
+      if (finishes == null)
+        finishes = StageFinishes.load(stageId);
+      if (finishes == null)
+        return null;
+      return stageScorers.get().score(finishes);
+    }
+  }
+
+/**
+ * Sujungia etapų rezultatus į serijos rezultatus.
+ *
+ * @param groupId  grupės ID
+ * @param stages   etapų rezultatai
+ * @param entrants grupės dalyviai (jachtų ID), kurių gali nebūti etapuose
+ * @param discards kiek blogiausių etapų atmesti
+ */
+  static SeriesResult reduce(int groupId, StageResult[] stages, int[] entrants, int discards) {
+    // etapai pagal ID, jachtos pagal ID – kad tvarka nepriklausytų nuo gijų
+    stages = stages.clone();
+    Arrays.sort(stages, new Comparator<StageResult>() {
+      public int compare(StageResult first, StageResult second) {
+        return first.getStageId() < second.getStageId() ? -1 : first.getStageId() == second.getStageId() ? 0 : 1;
+      }
+    });
+    TreeSet<Integer> yachts = new TreeSet<Integer>();
+    for (int yachtId : entrants)
+      yachts.add(yachtId);
+    for (StageResult stage : stages)
+      for (int rank = 0; rank < stage.size(); rank++)
+        yachts.add(stage.getYachtId(rank));
+    final int size = yachts.size();
+    final int stageCount = stages.length;
+    int[] stageIds = new int[stageCount];
+    int[] yachtIds = new int[size];
+    HashMap<Integer, Integer> indexes = new HashMap<Integer, Integer>();
+    for (int yachtId : yachts) {
+      yachtIds[indexes.size()] = yachtId;
+      indexes.put(yachtId, indexes.size());
+    }
+    final float[][] points = new float[size][stageCount];
+    for (int index = 0; index < size; index++)
+      Arrays.fill(points[index], size + 1); // DNC
+    for (int stage = 0; stage < stageCount; stage++) {
+      stageIds[stage] = stages[stage].getStageId();
+      for (int rank = 0; rank < stages[stage].size(); rank++)
+        points[indexes.get(stages[stage].getYachtId(rank))][stage] = stages[stage].getPoints(rank);
+    }
+    discards = Math.max(0, Math.min(discards, stageCount - 1));
+    final boolean[][] discarded = new boolean[size][];
+    final float[] totals = new float[size];
+    final float[][] kept = new float[size][]; // neatmesti taškai didėjimo tvarka
+    for (int index = 0; index < size; index++) {
+      discarded[index] = discard(points[index], discards);
+      kept[index] = kept(points[index], discarded[index]);
+      for (float keptPoints : kept[index])
+        totals[index] += keptPoints;
+    }
+    final Comparator<Integer> tieBreak = new Comparator<Integer>() {
+      public int compare(Integer first, Integer second) {
+        int comparison = Float.compare(totals[first], totals[second]);
+        return comparison != 0 ? comparison : compareTied(kept[first], points[first], kept[second], points[second]);
+      }
+    };
+    Integer[] order = new Integer[size];
+    for (int index = 0; index < size; index++)
+      order[index] = index; // jachtos jau pagal ID, o rikiavimas stabilus
+    Arrays.sort(order, tieBreak);
+    SeriesResult result = new SeriesResult(groupId, stageIds, size);
+    for (int rank = 0; rank < size; rank++) {
+      int index = order[rank];
+      result.yachtIds[rank] = yachtIds[index];
+      result.stagePoints[rank] = points[index];
+      result.discarded[rank] = discarded[index];
+      result.totals[rank] = totals[index];
+      if (rank > 0 && tieBreak.compare(order[rank - 1], index) == 0)
+        result.places[rank] = result.places[rank - 1];
+      else
+        result.places[rank] = rank + 1;
+    }
+    return result;
+  }
+
+/**
+ * Atmetami blogiausi etapai; iš lygių – vėlesnis.
+ *
+ * @param points   jachtos etapų taškai (etapai pagal ID)
+ * @param discards kiek etapų atmesti (mažiau nei etapų)
+ * @return kurie etapai atmesti
+ */
+  static boolean[] discard(float[] points, int discards) {
+    boolean[] discarded = new boolean[points.length];
+    for (int discard = 0; discard < discards; discard++) {
+      int worst = -1;
+      for (int stage = 0; stage < points.length; stage++)
+        if (!discarded[stage] && (worst < 0 || points[stage] >= points[worst]))
+          worst = stage;
+      discarded[worst] = true;
+    }
+    return discarded;
+  }
+
+/**
+ * Neatmesti etapų taškai didėjimo tvarka.
+ */
+  static float[] kept(float[] points, boolean[] discarded) {
+    float[] kept = new float[points.length];
+    int count = 0;
+    for (int stage = 0; stage < points.length; stage++)
+      if (!discarded[stage])
+        kept[count++] = points[stage];
+    kept = Arrays.copyOf(kept, count);
+    Arrays.sort(kept);
+    return kept;
+  }
+
+/**
+ * Lygias sumas turinčių jachtų palyginimas pagal RRS A8.
+ *
+ * @param firstKept    pirmos jachtos neatmesti taškai didėjimo tvarka
+ * @param firstPoints  pirmos jachtos etapų taškai (etapai pagal ID)
+ * @param secondKept   antros jachtos neatmesti taškai didėjimo tvarka
+ * @param secondPoints antros jachtos etapų taškai
+ * @return neigiamas, jei pirmoji aukščiau; 0, jei lygybė neišsprendžiama
+ */
+  static int compareTied(float[] firstKept, float[] firstPoints, float[] secondKept, float[] secondPoints) {
+    int comparison = 0;
+    for (int i = 0; comparison == 0 && i < firstKept.length; i++) // A8.1
+      comparison = Float.compare(firstKept[i], secondKept[i]);
+    for (int stage = firstPoints.length - 1; comparison == 0 && stage >= 0; stage--) // A8.2
+      comparison = Float.compare(firstPoints[stage], secondPoints[stage]);
+    return comparison;
+  }
+
+/**
+ * Įvykdo užklausą su vienu int parametru ir grąžina pirmo stulpelio reikšmes.
+ *
+ * @return reikšmės arba null, jei įvyko klaida
+ */
+  private static int[] selectIds(String select, int id) {
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement selectIds = session.prepare(select);
+        selectIds.setInt(1, id);
+        ResultSet resultSet = selectIds.executeQuery();
+        int[] ids = new int[16];
+        int count = 0;
+        while (resultSet.next()) {
+          if (count == ids.length)
+            ids = Arrays.copyOf(ids, count * 2);
+          ids[count++] = resultSet.getInt(1);
+        }
+        return Arrays.copyOf(ids, count);
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("selectIds SQL error: " + exception.getMessage());
+      return null;
+    }
+  }
+}
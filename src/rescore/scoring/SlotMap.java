@@ -0,0 +1,73 @@
+/**
+ * Jachtos ID -> vieta masyvuose (nuo 0).
+ * Raktai ir reikšmės – int, todėl jie nėra „įpakuojami“ į Integer objektus;
+ * atvirojo adresavimo (tiesinio zondavimo) maišos lentelė, kaip EntityCache.
+ * Šalinimo nėra – jachtos iš rezultatų nedingsta.
+ */
+package rescore.scoring;
+
+import java.util.Arrays;
+
+class SlotMap {
+  private static final int EMPTY = -1;
+  private int[] keys; // jachtų ID
+  private int[] values; // vietos arba EMPTY
+  private int mask;
+  private int size = 0;
+
+  SlotMap(int capacity) {
+    int tableSize = Integer.highestOneBit(Math.max(capacity, 8)) << 2; // užpildymas ne daugiau 50 %
+    keys = new int[tableSize];
+    values = new int[tableSize];
+    Arrays.fill(values, EMPTY);
+    mask = tableSize - 1;
+  }
+
+  private int slotOf(int id) {
+    int hash = id * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+/**
+ * Jachtos vieta.
+ *
+ * @return vieta arba -1, jei jachtos nėra
+ */
+  int get(int id) {
+    for (int slot = slotOf(id); values[slot] != EMPTY; slot = (slot + 1) & mask)
+      if (keys[slot] == id)
+        return values[slot];
+    return EMPTY;
+  }
+
+/**
+ * Įrašo naujos jachtos vietą (jachtos dar neturi būti).
+ */
+  void put(int id, int value) {
+    if ((size + 1) * 2 > keys.length)
+      rehash(keys.length * 2);
+    int slot = slotOf(id);
+    while (values[slot] != EMPTY)
+      slot = (slot + 1) & mask;
+    keys[slot] = id;
+    values[slot] = value;
+    size++;
+  }
+
+  private void rehash(int tableSize) {
+    int[] oldKeys = keys, oldValues = values;
+    keys = new int[tableSize];
+    values = new int[tableSize];
+    Arrays.fill(values, EMPTY);
+    mask = tableSize - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != EMPTY) {
+        int slot = slotOf(oldKeys[i]);
+        while (values[slot] != EMPTY)
+          slot = (slot + 1) & mask;
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
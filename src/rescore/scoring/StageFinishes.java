@@ -0,0 +1,151 @@
+/**
+ * Vieno etapo plaukimų duomenys, paruošti skaičiavimui.
+ * Laikomi lygiagrečiuose primityvių tipų masyvuose (po vieną elementą
+ * kiekvienai jachtai), kad skaičiuojant nereikėtų kurti objektų.
+ */
+package rescore.scoring;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import rescore.Database;
+import rescore.Race;
+import rescore.RatingTable;
+import rescore.Stage;
+import rescore.Yacht;
+
+public class StageFinishes {
+  private static Logger logger = Logger.getLogger(StageFinishes.class.getName());
+  private static final String SELECT_FINISHES = "SELECT p.Jachta, DATEDIFF('MS', p.StartoLaikas, p.FinišoLaikas), p.Kodas, j.Modelis FROM Plaukimai p JOIN Jachtos j ON j.Id = p.Jachta WHERE p.Etapas = ?"; // koeficientai – iš RatingTable
+  public static final long NO_TIME = -1; // laikas nežinomas
+  private final int stageId;
+  private int size = 0;
+  private int[] yachtIds;
+  private long[] elapsed; // plaukimo trukmė milisekundėmis arba NO_TIME
+  private float[] coefficients; // jachtos modelio koeficientas
+  private int[] codes; // ResultCode
+
+/**
+ * Konstruktorius.
+ *
+ * @param stageId  etapo ID (0, jei duomenys ne iš duombazės)
+ * @param capacity kiek jachtų numatoma
+ */
+  public StageFinishes(int stageId, int capacity) {
+    this.stageId = stageId;
+    capacity = Math.max(capacity, 16);
+    yachtIds = new int[capacity];
+    elapsed = new long[capacity];
+    coefficients = new float[capacity];
+    codes = new int[capacity];
+  }
+
+/**
+ * Gauna etapo plaukimus iš duombazės.
+ *
+ * @param stageId etapo (lentelės Etapai) ID
+ * @return etapo plaukimai arba null, jei įvyko klaida
+ */
+  public static StageFinishes load(int stageId) {
+    RatingTable ratings = RatingTable.get();
+    if (ratings == null)
+      return null;
+    StageFinishes finishes = new StageFinishes(stageId, 64);
+    try {
+      Database.Session session = Database.acquire();
+      try {
+        PreparedStatement selectFinishes = session.prepare(SELECT_FINISHES);
+        selectFinishes.setInt(1, stageId);
+        ResultSet resultSet = selectFinishes.executeQuery();
+        while (resultSet.next()) {
+          int yachtId = resultSet.getInt(1);
+          long time = resultSet.getLong(2);
+          if (resultSet.wasNull())
+            time = NO_TIME;
+          int code = resultSet.getInt(3); // NULL – 0, t. y. FINISHED
+          finishes.add(yachtId, time, ratings.getCoefficient(resultSet.getInt(4), 1), code); // nežinomas koeficientas – 1
+        }
+      } finally {
+        session.release();
+      }
+    } catch (SQLException exception) {
+      if (logger.isEnabledFor(Level.ERROR))
+        logger.error("load SQL error: " + exception.getMessage());
+      finishes = null;
+    }
+    return finishes;
+  }
+
+/**
+ * Paruošia jau užklaustus etapo plaukimus (pvz., Regatta.get(id, true))
+ * skaičiavimui; į duombazę kreipiasi tik tie Race.getYacht(), kurių
+ * jachtos dar neužklaustos.
+ *
+ * @param stage etapas
+ * @return etapo plaukimai arba null, jei įvyko klaida
+ */
+  public static StageFinishes from(Stage stage) {
+    RatingTable ratings = RatingTable.get();
+    List<Race> races = stage.getRaces();
+    if (ratings == null || races == null)
+      return null;
+    StageFinishes finishes = new StageFinishes(stage.getId(), races.size());
+    for (Race race : races) {
+      Yacht yacht = race.getYacht();
+      float coefficient = yacht == null ? 1 : ratings.getCoefficient(yacht.getYachtClassId(), 1); // nežinomas koeficientas – 1
+      finishes.add(race.getYachtId(), race.getElapsed(), coefficient, race.getCode());
+    }
+    return finishes;
+  }
+
+/**
+ * Prideda jachtos plaukimą.
+ *
+ * @param yachtId     jachtos ID
+ * @param time        plaukimo trukmė milisekundėmis arba NO_TIME
+ * @param coefficient jachtos modelio koeficientas
+ * @param code        rezultato kodas (ResultCode)
+ */
+  public void add(int yachtId, long time, float coefficient, int code) {
+    if (size == yachtIds.length) {
+      int capacity = size * 2;
+      yachtIds = Arrays.copyOf(yachtIds, capacity);
+      elapsed = Arrays.copyOf(elapsed, capacity);
+      coefficients = Arrays.copyOf(coefficients, capacity);
+      codes = Arrays.copyOf(codes, capacity);
+    }
+    yachtIds[size] = yachtId;
+    elapsed[size] = time;
+    coefficients[size] = coefficient;
+    codes[size] = code;
+    size++;
+  }
+
+  public int getStageId() {
+    return stageId;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getYachtId(int index) {
+    return yachtIds[index];
+  }
+
+  public long getElapsed(int index) {
+    return elapsed[index];
+  }
+
+  public float getCoefficient(int index) {
+    return coefficients[index];
+  }
+
+  public int getCode(int index) {
+    return codes[index];
+  }
+}
@@ -0,0 +1,96 @@
+/**
+ * Etapo rezultatai.
+ * Eilutės surikiuotos pagal užimtą vietą: pirmiausia finišavusios jachtos
+ * pagal perskaičiuotą laiką, po to – jachtos su kitais kodais.
+ */
+package rescore.scoring;
+
+public class StageResult {
+  private final int stageId;
+  private final int size;
+  private int finishers = 0; // kiek jachtų finišavo
+  final int[] yachtIds;
+  final long[] elapsed; // plaukimo trukmė milisekundėmis
+  final long[] corrected; // perskaičiuota (su koeficientu) trukmė milisekundėmis
+  final int[] places; // vieta (lygūs laikai – ta pati vieta); 0 – nefinišavo
+  final float[] points; // taškai (mažiausių taškų sistema)
+  final int[] codes; // ResultCode
+
+  StageResult(int stageId, int size) {
+    this.stageId = stageId;
+    this.size = size;
+    yachtIds = new int[size];
+    elapsed = new long[size];
+    corrected = new long[size];
+    places = new int[size];
+    points = new float[size];
+    codes = new int[size];
+  }
+
+  void setFinishers(int finishers) {
+    this.finishers = finishers;
+  }
+
+  public int getStageId() {
+    return stageId;
+  }
+
+/**
+ * Kiek jachtų (eilučių) yra rezultatuose.
+ */
+  public int size() {
+    return size;
+  }
+
+  public int getFinishers() {
+    return finishers;
+  }
+
+/**
+ * Eilutės jachtos ID.
+ *
+ * @param rank eilutės numeris (nuo 0)
+ */
+  public int getYachtId(int rank) {
+    return yachtIds[rank];
+  }
+
+  public long getElapsed(int rank) {
+    return elapsed[rank];
+  }
+
+  public long getCorrected(int rank) {
+    return corrected[rank];
+  }
+
+/**
+ * Užimta vieta.
+ *
+ * @param rank eilutės numeris (nuo 0)
+ * @return vieta (nuo 1) arba 0, jei jachta nefinišavo
+ */
+  public int getPlace(int rank) {
+    return places[rank];
+  }
+
+  public float getPoints(int rank) {
+    return points[rank];
+  }
+
+  public int getCode(int rank) {
+    return codes[rank];
+  }
+
+/**
+ * Randa jachtos eilutę.
+ *
+ * @param yachtId jachtos ID
+ * @return eilutės numeris arba -1, jei jachtos rezultatuose nėra
+ */
+  public int indexOf(int yachtId) {
+    for (int rank = 0; rank < size; rank++)
+      if (yachtIds[rank] == yachtId)
+        return rank;
+    return -1;
+  }
+}
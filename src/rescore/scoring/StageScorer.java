@@ -0,0 +1,99 @@
+/**
+ * Etapo rezultatų skaičiavimas.
+ * Perskaičiuotas laikas = plaukimo trukmė × jachtos modelio koeficientas.
+ * Vietos skiriamos pagal perskaičiuotą laiką; lygų laiką turinčios jachtos
+ * užima tą pačią vietą ir gauna vidutinius tų vietų taškus. Nefinišavusios
+ * jachtos (ne FINISHED kodas, nežinomas arba neigiamas laikas) gauna
+ * dalyvių skaičių plius vieną taško; nežinomas kodas (ne ResultCode
+ * reikšmė) laikomas DNF, o neigiamas ar nulinis koeficientas – 1.
+ */
+package rescore.scoring;
+
+import java.util.Arrays;
+
+public class StageScorer {
+  static final int INDEX_BITS = 21; // kiek rikiavimo rakto bitų skirta
+                          // eilutės numeriui (daugiausiai 2 097 152 jachtos)
+  static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+  static final long NOT_FINISHED = 1L << (62 - INDEX_BITS); // rakto
+                          // dalis, dėl kurios nefinišavusios jachtos eina gale
+  private long[] keys = new long[0]; // pakartotinai naudojamas rikiavimo masyvas
+
+/**
+ * Apskaičiuoja etapo rezultatus.
+ * Vienas StageScorer objektas vienu metu naudojamas tik vienos gijos.
+ *
+ * @param finishes etapo plaukimai
+ * @return etapo rezultatai
+ */
+  public StageResult score(StageFinishes finishes) {
+    int size = finishes.size();
+    if (size > INDEX_MASK)
+      throw new IllegalArgumentException("Too many yachts in a stage: " + size);
+    if (keys.length < size)
+      keys = new long[size];
+    StageResult result = new StageResult(finishes.getStageId(), size);
+    for (int index = 0; index < size; index++)
+      keys[index] = sortKey(finishes.getElapsed(index), finishes.getCoefficient(index), finishes.getCode(index), index);
+    Arrays.sort(keys, 0, size);
+    int finishers = 0;
+    float penaltyPoints = size + 1;
+    for (int rank = 0; rank < size; rank++) {
+      int index = (int)(keys[rank] & INDEX_MASK);
+      long key = keys[rank] >>> INDEX_BITS;
+      long elapsed = finishes.getElapsed(index);
+      result.yachtIds[rank] = finishes.getYachtId(index);
+      result.elapsed[rank] = elapsed < 0 ? StageFinishes.NO_TIME : elapsed;
+      if (key < NOT_FINISHED) {
+        result.corrected[rank] = key;
+        result.codes[rank] = ResultCode.FINISHED;
+        finishers++;
+      } else {
+        result.corrected[rank] = StageFinishes.NO_TIME;
+        result.codes[rank] = (int)(key - NOT_FINISHED);
+        result.points[rank] = penaltyPoints;
+      }
+    }
+    // vietos ir taškai; lygūs laikai – ta pati vieta, vidutiniai taškai
+    for (int rank = 0; rank < finishers; ) {
+      int tied = rank + 1;
+      while (tied < finishers && result.corrected[tied] == result.corrected[rank])
+        tied++;
+      float points = (rank + 1 + tied) / 2f;
+      for (int i = rank; i < tied; i++) {
+        result.places[i] = rank + 1;
+        result.points[i] = points;
+      }
+      rank = tied;
+    }
+    result.setFinishers(finishers);
+    return result;
+  }
+
+/**
+ * Rikiavimo raktas: perskaičiuotas laikas (arba NOT_FINISHED ir kodas)
+ * aukštesniuose bituose, eilutės numeris – žemiausiuose INDEX_BITS bitų.
+ *
+ * @param elapsed     plaukimo trukmė milisekundėmis arba StageFinishes.NO_TIME;
+ *                    neigiama (pvz., finišas prieš startą) laikoma DNF
+ * @param coefficient jachtos modelio koeficientas; ne teigiamas laikomas
+ *                    nežinomu (1)
+ * @param code        rezultato kodas (ResultCode); nežinomas laikomas DNF
+ * @param index       eilutės numeris
+ */
+  static long sortKey(long elapsed, float coefficient, int code, int index) {
+    long key;
+    if (code < ResultCode.FINISHED || code > ResultCode.DNC) // Kodas stulpelis neribotas
+      code = ResultCode.DNF;
+    if (!(coefficient > 0)) // kaip ir NaN – neigiamas raktas sugadintų eilutės numerį
+      coefficient = 1;
+    if (code == ResultCode.FINISHED && elapsed >= 0) { // neigiamas raktas sugadintų eilutės numerį
+      key = Math.round(elapsed * (double)coefficient);
+    } else {
+      if (code == ResultCode.FINISHED)
+        code = ResultCode.DNF;
+      key = NOT_FINISHED + code;
+    }
+    return key << INDEX_BITS | index;
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Duomenų vientisumo taisyklė, kurios negalima išreikšti CHECK ar išoriniu
+ * raktu. Tikrinama ne po vieną eilutę, o pakeistų eilučių raktų aibe: check
+ * užklausa gauna raktų stulpelius masyvais (TABLE(...) c) ir grąžina eilutę,
+ * jei bent vienas pakeitimas taisyklę pažeidžia. Todėl vienos eilutės ir
+ * viso importuojamo paketo tikrinimas – ta pati viena užklausa.
+ * NULL reikšmės (nežinomi metai) taisyklių nepažeidžia.
+ */
+package rescore.validation;
+
+class Rule {
+  // Jachtos: Id, BurėsNumeris, Modelis, PagaminimoMetai, ...
+  // Modeliai: Id, Pavadinimas, Koeficientas, ProjektavimoMetai, ...
+  // Dalyviai: Jachta, Grupė, ...; Plaukimai: Jachta, Etapas, ...
+  // Grupės: Id, Regata, ...
+  static final Rule YACHT_YEAR = new Rule(0, "Jachtos", new int[] {0}, new int[] {2, 3},
+    "SELECT 1 FROM TABLE(Id INT = ?) c JOIN Jachtos j ON j.Id = c.Id JOIN Modeliai m ON m.Id = j.Modelis WHERE j.PagaminimoMetai < m.ProjektavimoMetai LIMIT 1",
+    "Jachta negali būti pagaminta anksčiau, negu buvo suprojektuota.");
+  static final Rule YACHT_CLASS_YEAR = new Rule(1, "Modeliai", new int[] {0}, new int[] {3},
+    "SELECT 1 FROM TABLE(Id INT = ?) c JOIN Modeliai m ON m.Id = c.Id JOIN Jachtos j ON j.Modelis = c.Id WHERE j.PagaminimoMetai < m.ProjektavimoMetai LIMIT 1",
+    "Modelis negali būti suprojektuotas vėliau, negu yra pagaminta kokia nors to modelio jachta.");
+  static final Rule ONE_GROUP = new Rule(2, "Dalyviai", new int[] {0, 1}, new int[] {0, 1},
+    "SELECT 1 FROM TABLE(Jachta INT = ?, Grupė INT = ?) c JOIN Grupės g ON g.Id = c.Grupė JOIN Dalyviai d ON d.Jachta = c.Jachta AND d.Grupė <> c.Grupė JOIN Grupės dg ON dg.Id = d.Grupė WHERE dg.Regata = g.Regata LIMIT 1",
+    "Jachta regatoje gali dalyvauti tik vienoje grupėje.");
+  static final Rule ENTRANT = new Rule(3, "Plaukimai", new int[] {0, 1}, new int[] {0, 1},
+    "SELECT 1 FROM TABLE(Jachta INT = ?, Etapas INT = ?) c JOIN Etapai e ON e.Id = c.Etapas WHERE NOT EXISTS (SELECT 1 FROM Dalyviai d WHERE d.Jachta = c.Jachta AND d.Grupė = e.Grupė) LIMIT 1",
+    "Etape gali plaukti tik to etapo grupės dalyvė.");
+  static final Rule GROUP_REGATTA = new Rule(4, "Grupės", new int[] {0}, new int[] {1},
+    "SELECT 1 FROM TABLE(Id INT = ?) c JOIN Grupės g ON g.Id = c.Id JOIN Dalyviai d ON d.Grupė = c.Id JOIN Dalyviai o ON o.Jachta = d.Jachta AND o.Grupė <> c.Id JOIN Grupės og ON og.Id = o.Grupė WHERE og.Regata = g.Regata LIMIT 1",
+    ONE_GROUP.message); // ONE_GROUP, kai grupė perkeliama į kitą regatą
+  static final Rule[] RULES = {YACHT_YEAR, YACHT_CLASS_YEAR, ONE_GROUP, ENTRANT, GROUP_REGATTA}; // RULES[index]
+  final int index;
+  final String table;
+  final int[] keyColumns; // eilutės stulpeliai, perduodami check užklausai
+  final int[] columns; // stulpeliai, kurių pakeitimas tikrinamas (UPDATE)
+  final String check;
+  final String message;
+
+  private Rule(int index, String table, int[] keyColumns, int[] columns, String check, String message) {
+    this.index = index;
+    this.table = table;
+    this.keyColumns = keyColumns;
+    this.columns = columns;
+    this.check = check;
+    this.message = message;
+  }
+
+/**
+ * Grąžina lentelės taisyklę.
+ *
+ * @param table lentelės pavadinimas (bet kokiu registru)
+ * @return taisyklė arba null, jei lentelei taisyklės nėra
+ */
+  static Rule forTable(String table) {
+    for (Rule rule : RULES)
+      if (rule.table.equalsIgnoreCase(table))
+        return rule;
+    return null;
+  }
+
+/**
+ * Ar pakeitimas gali pažeisti taisyklę.
+ *
+ * @param oldRow ankstesnė eilutė (null – įterpta)
+ * @param newRow nauja eilutė
+ */
+  boolean affects(Object[] oldRow, Object[] newRow) {
+    if (oldRow == null)
+      return true;
+    for (int column : columns) {
+      Object oldValue = oldRow[column], newValue = newRow[column];
+      if (oldValue == null ? newValue != null : !oldValue.equals(newValue))
+        return true;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,31 @@
+/**
+ * H2 trigeris (AFTER INSERT, UPDATE ... FOR EACH ROW), perduodantis
+ * pakeistas eilutes Validator; taisyklė parenkama pagal lentelę
+ * (žr. sql/create.sql).
+ */
+package rescore.validation;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.h2.api.Trigger;
+
+public class ValidationTrigger implements Trigger {
+  private Rule rule;
+
+  public void init(Connection connection, String schemaName, String triggerName, String tableName, boolean before, int type) throws SQLException {
+    rule = Rule.forTable(tableName);
+    if (rule == null)
+      throw new SQLException("No validation rule for table " + tableName);
+  }
+
+  public void fire(Connection connection, Object[] oldRow, Object[] newRow) throws SQLException {
+    if (newRow != null)
+      Validator.changed(connection, rule, oldRow, newRow);
+  }
+
+  public void close() {
+  }
+
+  public void remove() {
+  }
+}
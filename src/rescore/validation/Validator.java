@@ -0,0 +1,125 @@
+/**
+ * Vientisumo taisyklių (Rule) tikrinimas. ValidationTrigger praneša apie
+ * kiekvieną pakeistą eilutę; paprastai taisyklė patikrinama iš karto (viena
+ * užklausa eilutei), o pažeidus – SQLException atšaukia sakinį.
+ * Daug eilučių keičiant vienu kartu (paketas, INSERT ... SELECT), gija gali
+ * tikrinimą atidėti: defer() – pakeistų eilučių raktai tik įsimenami,
+ * check() – kiekviena taisyklė patikrinama viena užklausa visiems raktams,
+ * resume() – vėl tikrinama iš karto. Patikrinti reikia prieš commit(), o
+ * radus pažeidimą – transakciją atšaukti.
+ * Atidėjimas veikia tik tada, kai trigeriai vykdomi toje pačioje gijoje
+ * (H2 įterptiniu režimu); kitaip taisyklės tikrinamos iš karto.
+ */
+package rescore.validation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class Validator {
+  private static final ThreadLocal<Pending> deferred = new ThreadLocal<Pending>(); // null – tikrinama iš karto
+
+/**
+ * Atidėtų patikrinimų raktai: kiekvienai taisyklei – raktų stulpeliai.
+ */
+  private static class Pending {
+    final int[][][] keys = new int[Rule.RULES.length][][]; // [taisyklė][rakto stulpelis][eilutė]
+    final int[] counts = new int[Rule.RULES.length];
+
+    void add(Rule rule, Object[] row) {
+      int[][] columns = keys[rule.index];
+      int count = counts[rule.index];
+      if (columns == null)
+        columns = keys[rule.index] = new int[rule.keyColumns.length][64];
+      else if (count == columns[0].length)
+        for (int column = 0; column < columns.length; column++) {
+          int[] grown = new int[count * 2];
+          System.arraycopy(columns[column], 0, grown, 0, count);
+          columns[column] = grown;
+        }
+      for (int column = 0; column < columns.length; column++)
+        columns[column][count] = ((Number) row[rule.keyColumns[column]]).intValue();
+      counts[rule.index] = count + 1;
+    }
+  }
+
+  private Validator() {
+  }
+
+/**
+ * Pradeda atidėti šios gijos pakeitimų tikrinimą (jau atidėti raktai lieka).
+ */
+  public static void defer() {
+    if (deferred.get() == null)
+      deferred.set(new Pending());
+  }
+
+/**
+ * Baigia atidėti; dar nepatikrinti raktai pamirštami.
+ */
+  public static void resume() {
+    deferred.remove();
+  }
+
+/**
+ * Patikrina nuo defer() (arba ankstesnio check()) pakeistas eilutes – po
+ * vieną užklausą kiekvienai taisyklei, kurios lentelė keista – ir jų
+ * raktus pamiršta. Tikrinimas lieka atidėtas.
+ *
+ * @param connection jungtis, kuria eilutės pakeistos (mato neatliktą
+ *                   transakciją)
+ * @return pirmos pažeistos taisyklės pranešimas arba null, jei pažeidimų nėra
+ */
+  public static String check(Connection connection) throws SQLException {
+    Pending pending = deferred.get();
+    if (pending == null)
+      return null;
+    String violation = null;
+    for (Rule rule : Rule.RULES) {
+      int count = pending.counts[rule.index];
+      if (count == 0)
+        continue;
+      if (violation == null && violates(connection, rule, pending.keys[rule.index], count))
+        violation = rule.message;
+      pending.counts[rule.index] = 0;
+    }
+    return violation;
+  }
+
+/**
+ * Praneša apie pakeistą eilutę (kviečia ValidationTrigger).
+ *
+ * @throws SQLException jei tikrinama iš karto ir taisyklė pažeista
+ */
+  static void changed(Connection connection, Rule rule, Object[] oldRow, Object[] newRow) throws SQLException {
+    if (!rule.affects(oldRow, newRow))
+      return;
+    Pending pending = deferred.get();
+    if (pending != null) {
+      pending.add(rule, newRow);
+      return;
+    }
+    int[][] keys = new int[rule.keyColumns.length][1];
+    for (int column = 0; column < keys.length; column++)
+      keys[column][0] = ((Number) newRow[rule.keyColumns[column]]).intValue();
+    if (violates(connection, rule, keys, 1))
+      throw new SQLException(rule.message);
+  }
+
+  private static boolean violates(Connection connection, Rule rule, int[][] keys, int count) throws SQLException {
+    PreparedStatement statement = connection.prepareStatement(rule.check);
+    try {
+      for (int column = 0; column < keys.length; column++) {
+        Object[] values = new Object[count];
+        for (int row = 0; row < count; row++)
+          values[row] = keys[column][row];
+        statement.setObject(column + 1, values);
+      }
+      ResultSet resultSet = statement.executeQuery();
+      return resultSet.next();
+    } finally {
+      statement.close();
+    }
+  }
+}
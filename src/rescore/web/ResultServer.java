@@ -0,0 +1,372 @@
+/**
+ * Rezultatų HTTP serveris (JDK HttpServer): etapų, grupių ir regatų
+ * rezultatai (žr. ResultExporter) adresais /stage/ID, /group/ID ir
+ * /regatta/ID – JSON formatu, o su galūne .csv (pvz., /stage/3.csv) – CSV.
+ * Atsakymas sugeneruojamas vieną kartą ir laikomas baitų masyvu (ir
+ * suspaustas gzip) kartu su ETag, todėl pakartotinės užklausos duombazės
+ * nekreipia ir beveik nieko nekuria; klientas, atsiuntęs If-None-Match su
+ * tuo pačiu ETag, gauna 304 be turinio.
+ * Atsakymas išmetamas, kai ChangePoller praneša apie jo etapų plaukimų
+ * (Plaukimai) ar jo grupių dalyvių (Dalyviai) pakeitimą; pakeitus etapus,
+ * grupes, regatas, jachtas ar modelius, išmetami visi atsakymai. Todėl
+ * ChangePoller turi veikti (ChangePoller.start()).
+ * Užklausos aptarnaujamos fiksuoto dydžio gijų telkinyje; atsakymai
+ * generuojami po vieną (ResultExporter vienu metu naudojamas tik vienos
+ * gijos), todėl po pakeitimo tą patį atsakymą sugeneruoja tik viena gija.
+ * JDK 17 HttpServer po 304 atsakymo jungtį uždaro, todėl klientas su ETag
+ * kitą kartą jungiasi iš naujo (bet turinio nesiunčiama).
+ */
+package rescore.web;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import rescore.ChangeListener;
+import rescore.ChangePoller;
+import rescore.Database;
+import rescore.export.ResultExporter;
+import rescore.scoring.SeriesScorer;
+
+public class ResultServer implements HttpHandler, ChangeListener {
+  private static Logger logger = Logger.getLogger(ResultServer.class.getName());
+  // atsakymo etapai ir grupės (Grupė, Id); NULL – grupė be etapų ar regata be grupių
+  private static final String SELECT_STAGE = "SELECT Grupė, Id FROM Etapai WHERE Id = ?";
+  private static final String SELECT_GROUP = "SELECT g.Id, e.Id FROM Grupės g LEFT JOIN Etapai e ON e.Grupė = g.Id WHERE g.Id = ?";
+  private static final String SELECT_REGATTA = "SELECT g.Id, e.Id FROM Regatos r LEFT JOIN Grupės g ON g.Regata = r.Id LEFT JOIN Etapai e ON e.Grupė = g.Id WHERE r.Id = ?";
+  private static final int STAGE = 0, GROUP = 1, REGATTA = 2; // ką rodo adresas
+  private static final String NODELAY = "sun.net.httpserver.nodelay"; // HttpServer TCP_NODELAY
+  private static final String[] PREFIXES = {"/stage/", "/group/", "/regatta/"};
+  private static final String[] CONTENT_TYPES = {"text/csv; charset=utf-8", "application/json; charset=utf-8"}; // [ResultExporter formatas]
+  public static final int DEFAULT_PORT = 8080;
+  public static final int DEFAULT_THREADS = 16;
+  private static final int BACKLOG = 256; // kiek laukiančių prisijungimų priima OS
+  private static final int MAX_RESPONSES = 4096; // kiek daugiausiai atsakymų laikyti
+  private static final int MIN_GZIP_SIZE = 256; // mažesni atsakymai nespaudžiami
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final ResultExporter exporter;
+  private final ConcurrentHashMap<String, Response> responses = new ConcurrentHashMap<String, Response>(); // pagal adresą
+  private final AtomicLong invalidations = new AtomicLong(); // didinamas prieš išmetant atsakymus
+  private final AtomicLong renders = new AtomicLong();
+
+/**
+ * Sugeneruotas atsakymas.
+ */
+  private static class Response {
+    final byte[] body;
+    final byte[] gzipped; // null – nespaudžiama
+    final String etag;
+    final String contentType;
+    final int[] stageIds, groupIds; // nuo kurių priklauso, didėjimo tvarka
+
+    Response(byte[] body, String contentType, int[] stageIds, int[] groupIds) throws IOException {
+      this.body = body;
+      this.contentType = contentType;
+      this.stageIds = stageIds;
+      this.groupIds = groupIds;
+      CRC32 crc = new CRC32();
+      crc.update(body);
+      etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(body.length) + "\""; // toks pat turinys – toks pat ETag
+      byte[] compressed = null;
+      if (body.length >= MIN_GZIP_SIZE) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(body.length / 4);
+        GZIPOutputStream gzip = new GZIPOutputStream(stream);
+        gzip.write(body);
+        gzip.close();
+        if (stream.size() < body.length)
+          compressed = stream.toByteArray();
+      }
+      gzipped = compressed;
+    }
+  }
+
+/**
+ * Konstruktorius. Serveris pradeda priimti užklausas iškvietus start().
+ *
+ * @param address      adresas ir prievadas (0 – bet kuris laisvas)
+ * @param threads      kiek gijų aptarnauja užklausas
+ * @param seriesScorer grupių rezultatų skaičiavimas
+ */
+  public ResultServer(InetSocketAddress address, int threads, SeriesScorer seriesScorer) throws IOException {
+    exporter = new ResultExporter(seriesScorer);
+    // be TCP_NODELAY antraštės ir turinys siunčiami atskirai, ir klientas
+    // atsakymo laukia iki 40 ms (Nagle algoritmas ir uždelstas ACK);
+    // HttpServer nuostatas skaito vieną kartą, kuriant pirmą serverį
+    if (System.getProperty(NODELAY) == null)
+      System.setProperty(NODELAY, "true");
+    server = HttpServer.create(address, BACKLOG);
+    server.createContext("/", this);
+    executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "results-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    server.setExecutor(executor);
+  }
+
+  public void start() {
+    ChangePoller.addListener(this);
+    server.start();
+  }
+
+/**
+ * Sustabdo serverį (pradėtos užklausos baigiamos ne ilgiau kaip sekundę).
+ */
+  public void stop() {
+    server.stop(1);
+    executor.shutdown();
+    ChangePoller.removeListener(this);
+  }
+
+/**
+ * Prievadas, kurio užklausas priima serveris.
+ */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+/**
+ * Kiek kartų atsakymai buvo sugeneruoti (kreiptasi į duombazę).
+ */
+  public long getRenders() {
+    return renders.get();
+  }
+
+/**
+ * Kiek atsakymų šiuo metu laikoma.
+ */
+  public int getResponseCount() {
+    return responses.size();
+  }
+
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      String method = exchange.getRequestMethod();
+      boolean head = method.equals("HEAD");
+      if (!head && !method.equals("GET")) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      String path = exchange.getRequestURI().getRawPath();
+      Response response = responses.get(path);
+      if (response == null) {
+        try {
+          response = render(path);
+        } catch (SQLException exception) {
+          if (logger.isEnabledFor(Level.ERROR))
+            logger.error("render SQL error: " + exception.getMessage());
+          exchange.sendResponseHeaders(503, -1);
+          return;
+        }
+        if (response == null) {
+          exchange.sendResponseHeaders(404, -1);
+          return;
+        }
+      }
+      Headers headers = exchange.getResponseHeaders();
+      headers.set("ETag", response.etag);
+      headers.set("Cache-Control", "no-cache"); // klientas kiekvieną kartą tikrina ETag
+      String match = exchange.getRequestHeaders().getFirst("If-None-Match");
+      if (match != null && (match.indexOf(response.etag) >= 0 || match.equals("*"))) {
+        exchange.sendResponseHeaders(304, -1);
+        return;
+      }
+      headers.set("Content-Type", response.contentType);
+      byte[] body = response.body;
+      if (response.gzipped != null) {
+        headers.set("Vary", "Accept-Encoding");
+        String encodings = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (encodings != null && encodings.indexOf("gzip") >= 0) {
+          headers.set("Content-Encoding", "gzip");
+          body = response.gzipped;
+        }
+      }
+      if (head) {
+        headers.set("Content-Length", Integer.toString(body.length));
+        exchange.sendResponseHeaders(200, -1);
+        return;
+      }
+      exchange.sendResponseHeaders(200, body.length);
+      OutputStream stream = exchange.getResponseBody();
+      stream.write(body);
+      stream.close();
+    } finally {
+      exchange.close();
+    }
+  }
+
+/**
+ * Sugeneruoja adreso atsakymą ir, jei tuo metu niekas nebuvo išmesta, jį
+ * įsimena.
+ *
+ * @return atsakymas arba null, jei adresas neteisingas ar tokio etapo,
+ *         grupės ar regatos nėra
+ */
+  private Response render(String path) throws SQLException, IOException {
+    int what = -1;
+    for (int prefix = 0; prefix < PREFIXES.length; prefix++)
+      if (path.startsWith(PREFIXES[prefix]))
+        what = prefix;
+    if (what < 0)
+      return null;
+    String target = path.substring(PREFIXES[what].length());
+    int format = ResultExporter.JSON;
+    if (target.endsWith(".csv")) {
+      format = ResultExporter.CSV;
+      target = target.substring(0, target.length() - 4);
+    } else if (target.endsWith(".json"))
+      target = target.substring(0, target.length() - 5);
+    int id = parseId(target);
+    if (id <= 0)
+      return null;
+    synchronized (exporter) {
+      Response response = responses.get(path); // kol laukė, galėjo sugeneruoti kita gija
+      if (response != null)
+        return response;
+      long invalidated = invalidations.get();
+      int[][] dependencies = selectDependencies(what, id);
+      if (dependencies == null)
+        return null;
+      ByteArrayOutputStream stream = new ByteArrayOutputStream(ResultExporter.DEFAULT_BUFFER_SIZE);
+      WritableByteChannel channel = Channels.newChannel(stream);
+      boolean written;
+      if (what == STAGE)
+        written = exporter.writeStage(id, format, channel);
+      else if (what == GROUP)
+        written = exporter.writeGroup(id, format, channel);
+      else
+        written = exporter.writeRegatta(id, format, channel);
+      if (!written)
+        throw new SQLException("Unable to export " + path);
+      renders.incrementAndGet();
+      response = new Response(stream.toByteArray(), CONTENT_TYPES[format], dependencies[0], dependencies[1]);
+      // išmesta generuojant – duomenys galėjo būti seni, todėl neįsimenama
+      if (invalidations.get() == invalidated && responses.size() < MAX_RESPONSES) {
+        responses.put(path, response);
+        // invalidate() ir lost() vykdomi be exporter užrakto: jei skaitiklis
+        // padidėjo iki put(), jų peržiūra šio atsakymo galėjo nematyti
+        if (invalidations.get() != invalidated)
+          responses.remove(path, response);
+      }
+      return response;
+    }
+  }
+
+/**
+ * Teigiamas ID be nereikšmingų nulių (kad vienam atsakymui atitiktų vienas
+ * adresas).
+ *
+ * @return ID arba -1
+ */
+  private static int parseId(String text) {
+    if (text.length() == 0 || text.length() > 9 || text.charAt(0) == '0')
+      return -1;
+    int id = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char digit = text.charAt(i);
+      if (digit < '0' || digit > '9')
+        return -1;
+      id = id * 10 + digit - '0';
+    }
+    return id;
+  }
+
+/**
+ * Užklausia, nuo kurių etapų ir grupių priklauso atsakymas.
+ *
+ * @return {etapų ID, grupių ID} arba null, jei tokio etapo, grupės ar
+ *         regatos nėra
+ */
+  private static int[][] selectDependencies(int what, int id) throws SQLException {
+    int[] stageIds = new int[16], groupIds = new int[16];
+    int stages = 0, groups = 0;
+    boolean found = false;
+    Database.Session session = Database.acquire();
+    try {
+      PreparedStatement select = session.prepare(what == STAGE ? SELECT_STAGE : what == GROUP ? SELECT_GROUP : SELECT_REGATTA);
+      select.setInt(1, id);
+      ResultSet resultSet = select.executeQuery();
+      while (resultSet.next()) {
+        found = true;
+        int groupId = resultSet.getInt(1);
+        if (!resultSet.wasNull() && what != STAGE) { // etapo rezultatai nuo grupės dalyvių nepriklauso
+          if (groups == groupIds.length)
+            groupIds = Arrays.copyOf(groupIds, groups * 2);
+          groupIds[groups++] = groupId;
+        }
+        int stageId = resultSet.getInt(2);
+        if (!resultSet.wasNull()) {
+          if (stages == stageIds.length)
+            stageIds = Arrays.copyOf(stageIds, stages * 2);
+          stageIds[stages++] = stageId;
+        }
+      }
+    } finally {
+      session.release();
+    }
+    if (!found)
+      return null;
+    return new int[][] {unique(stageIds, stages), unique(groupIds, groups)};
+  }
+
+  private static int[] unique(int[] ids, int count) {
+    Arrays.sort(ids, 0, count);
+    int unique = 0;
+    for (int i = 0; i < count; i++)
+      if (unique == 0 || ids[unique - 1] != ids[i])
+        ids[unique++] = ids[i];
+    return Arrays.copyOf(ids, unique);
+  }
+
+  public void changed(String table, int id, int action) {
+    if (table.equals("PLAUKIMAI"))
+      invalidate(id, true);
+    else if (table.equals("DALYVIAI"))
+      invalidate(id, false);
+    else if (!table.equals("KAPITONAI") && !table.equals("SAVININKAI")) // kapitonai ir savininkai nerodomi
+      lost();
+  }
+
+  public void lost() {
+    invalidations.incrementAndGet();
+    responses.clear();
+  }
+
+/**
+ * Išmeta atsakymus, priklausančius nuo etapo ar grupės.
+ *
+ * @param stage ar id – etapo (ne grupės) ID
+ */
+  private void invalidate(int id, boolean stage) {
+    invalidations.incrementAndGet();
+    for (Iterator<Response> iterator = responses.values().iterator(); iterator.hasNext();)
+      if (Arrays.binarySearch(stage ? iterator.next().stageIds : iterator.next().groupIds, id) >= 0)
+        iterator.remove();
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ * Rezultatų HTTP serverio (ResultServer) paleidimas iš komandinės eilutės.
+ * Serveris veikia, kol standartinėje įvestyje nepaspaudžiamas Enter.
+ */
+package rescore.web;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.sql.SQLException;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import rescore.ChangePoller;
+import rescore.Database;
+import rescore.scoring.SeriesScorer;
+
+public class Serve {
+  private static Logger logger = Logger.getLogger(Serve.class.getName());
+
+  public static void main(String args[]) {
+    if (args.length < 4 || args.length > 6) {
+      System.out.println("Paleidimo parametrai: JDBC_URL prisijungimoVardas slaptažodis log4jKonfigūracijosFailas [prievadas] [atmetamųEtapųSkaičius]");
+      return;
+    }
+
+    PropertyConfigurator.configure(args[3]);
+
+    int port = ResultServer.DEFAULT_PORT, discards = 0;
+    try {
+      if (args.length >= 5)
+        port = Integer.parseInt(args[4]);
+      if (args.length == 6)
+        discards = Integer.parseInt(args[5]);
+    } catch (NumberFormatException exception) {
+      System.out.println("Neteisingas skaičius: " + exception.getMessage());
+      return;
+    }
+
+    try {
+      Database.open(args[0], args[1], args[2], Database.DEFAULT_POOL_SIZE);
+    } catch (SQLException exception) {
+      logger.error("Unable to connect to the database: " + exception.getMessage());
+      return;
+    }
+
+    if (!ChangePoller.start(ChangePoller.DEFAULT_PERIOD)) {
+      System.out.println("Nepavyko pradėti sekti pakeitimų (ar duombazėje yra lentelė Pakeitimai?)");
+      Database.close();
+      return;
+    }
+    ForkJoinPool pool = new ForkJoinPool();
+    try {
+      ResultServer server = new ResultServer(new InetSocketAddress(port), ResultServer.DEFAULT_THREADS, new SeriesScorer(pool, discards));
+      server.start();
+      System.out.println("Rezultatai: http://localhost:" + server.getPort() + "/stage/ID, /group/ID, /regatta/ID (.csv – CSV); Enter – sustabdyti");
+      System.in.read();
+      server.stop();
+    } catch (IOException exception) {
+      logger.error("Unable to run the server: " + exception.getMessage());
+    }
+    ChangePoller.stop();
+    pool.shutdown();
+    Database.close();
+  }
+}